@@ -0,0 +1,359 @@
+package org.teachfx.antlr4.common.objectfile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 二进制目标文件容器
+ * 汇编器输出的机器码、常量池、函数表、结构体表和全局数据区大小的版本化容器，
+ * 加载时直接内存映射读取各段，不再经过ANTLR词法/语法分析和汇编。
+ * 栈式VM和寄存器VM共用这一格式，子类只提供目标标记、扩展名和函数符号映射（{@link ObjectFileSymbols}）。
+ *
+ * 文件布局（大端序，与指令编码一致）：
+ * <pre>
+ * 头部   magic(4) version(2) target(1) encoding(1)
+ *        dataSize(4) mainFunction(4) functionCount(4) structCount(4) constCount(4) codeSize(4)
+ * 函数表 name(utf) nargs(4) nlocals(4) address(4)
+ * 结构体 name(utf) nfields(4)
+ * 常量池 tag(1) value
+ * 代码段 codeSize字节
+ * </pre>
+ * 字符串为4字节长度前缀的UTF-8；常量池中的函数条目保存函数表下标，加载后与函数表共享同一对象。
+ * encoding为代码段的指令编码版本，只有一种编码的虚拟机写0。
+ * @param <F> 虚拟机的函数符号类型
+ */
+public abstract class AbstractObjectFile<F> {
+    /** 文件魔数 "CYMO" */
+    public static final int MAGIC = 0x43594D4F;
+    /** 当前格式版本 */
+    public static final int VERSION = 1;
+    /** 目标虚拟机：栈式VM */
+    public static final int TARGET_STACK_VM = 1;
+    /** 目标虚拟机：寄存器VM */
+    public static final int TARGET_REGISTER_VM = 2;
+
+    private static final byte CONST_INT = 1;
+    private static final byte CONST_FLOAT = 2;
+    private static final byte CONST_BOOL = 3;
+    private static final byte CONST_STRING = 4;
+    private static final byte CONST_CHAR = 5;
+    private static final byte CONST_FUNCTION = 6;
+
+    // 各表条目的最小字节数（空字符串名称），用于在分配数组之前校验头部计数
+    private static final int MIN_FUNCTION_BYTES = 16;
+    private static final int MIN_STRUCT_BYTES = 8;
+    private static final int MIN_CONST_BYTES = 2;
+
+    private final byte[] code;
+    private final int codeSize;
+    private final Object[] constPool;
+    private final F mainFunction;
+    private final int dataSize;
+    private final Map<String, Integer> structs;
+    private final int encoding;
+
+    /**
+     * 构造函数
+     * @param code 机器码
+     * @param codeSize 有效代码字节数
+     * @param constPool 常量池（函数以虚拟机的函数符号形式出现）
+     * @param mainFunction 主函数，可为null
+     * @param dataSize 全局数据区大小
+     * @param structs 结构体名到字段数的映射（按定义顺序）
+     * @param encoding 代码段的指令编码版本
+     */
+    protected AbstractObjectFile(byte[] code, int codeSize, Object[] constPool, F mainFunction,
+                                 int dataSize, Map<String, Integer> structs, int encoding) {
+        if (codeSize < 0 || codeSize > code.length) {
+            throw new IllegalArgumentException("Invalid code size: " + codeSize);
+        }
+        this.code = code;
+        this.codeSize = codeSize;
+        this.constPool = constPool;
+        this.mainFunction = mainFunction;
+        this.dataSize = dataSize;
+        this.structs = Collections.unmodifiableMap(new LinkedHashMap<>(structs));
+        this.encoding = encoding;
+    }
+
+    /**
+     * 目标虚拟机标记（{@link #TARGET_STACK_VM} 或 {@link #TARGET_REGISTER_VM}）
+     */
+    protected abstract int target();
+
+    /**
+     * 函数符号映射
+     */
+    protected abstract ObjectFileSymbols<F> symbols();
+
+    // ==================== 写出 ====================
+
+    /**
+     * 写出目标文件
+     * @param out 输出流（调用方负责关闭）
+     */
+    public void write(OutputStream out) throws IOException {
+        ObjectFileSymbols<F> symbols = symbols();
+        List<F> functions = new ArrayList<>();
+        Map<F, Integer> functionIndex = new IdentityHashMap<>();
+        for (Object entry : constPool) {
+            if (symbols.symbolType().isInstance(entry)) {
+                F function = symbols.symbolType().cast(entry);
+                if (!functionIndex.containsKey(function)) {
+                    functionIndex.put(function, functions.size());
+                    functions.add(function);
+                }
+            }
+        }
+        if (mainFunction != null && !functionIndex.containsKey(mainFunction)) {
+            functionIndex.put(mainFunction, functions.size());
+            functions.add(mainFunction);
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeByte(target());
+        data.writeByte(encoding);
+        data.writeInt(dataSize);
+        data.writeInt(mainFunction != null ? functionIndex.get(mainFunction) : -1);
+        data.writeInt(functions.size());
+        data.writeInt(structs.size());
+        data.writeInt(constPool.length);
+        data.writeInt(codeSize);
+
+        for (F function : functions) {
+            writeString(data, symbols.name(function));
+            data.writeInt(symbols.nargs(function));
+            data.writeInt(symbols.nlocals(function));
+            data.writeInt(symbols.address(function));
+        }
+        for (Map.Entry<String, Integer> struct : structs.entrySet()) {
+            writeString(data, struct.getKey());
+            data.writeInt(struct.getValue());
+        }
+        for (Object entry : constPool) {
+            if (entry instanceof Integer value) {
+                data.writeByte(CONST_INT);
+                data.writeInt(value);
+            } else if (entry instanceof Float value) {
+                data.writeByte(CONST_FLOAT);
+                data.writeFloat(value);
+            } else if (entry instanceof Boolean value) {
+                data.writeByte(CONST_BOOL);
+                data.writeByte(value ? 1 : 0);
+            } else if (entry instanceof String value) {
+                data.writeByte(CONST_STRING);
+                writeString(data, value);
+            } else if (entry instanceof Character value) {
+                data.writeByte(CONST_CHAR);
+                data.writeChar(value);
+            } else if (symbols.symbolType().isInstance(entry)) {
+                data.writeByte(CONST_FUNCTION);
+                data.writeInt(functionIndex.get(symbols.symbolType().cast(entry)));
+            } else {
+                throw new IllegalArgumentException("Unsupported constant pool entry: " + entry);
+            }
+        }
+        data.write(code, 0, codeSize);
+        data.flush();
+    }
+
+    /**
+     * 写出目标文件到路径
+     */
+    public void write(Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(out);
+        }
+    }
+
+    /**
+     * 序列化为字节数组
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(codeSize + 256);
+        try {
+            write(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    // ==================== 读取 ====================
+
+    /**
+     * 读取得到的各段内容，由子类据此构造目标文件对象
+     * @param <F> 虚拟机的函数符号类型
+     */
+    protected static final class Sections<F> {
+        public final byte[] code;
+        public final int codeSize;
+        public final Object[] constPool;
+        public final F mainFunction;
+        public final int dataSize;
+        public final Map<String, Integer> structs;
+        public final int encoding;
+
+        Sections(byte[] code, int codeSize, Object[] constPool, F mainFunction,
+                 int dataSize, Map<String, Integer> structs, int encoding) {
+            this.code = code;
+            this.codeSize = codeSize;
+            this.constPool = constPool;
+            this.mainFunction = mainFunction;
+            this.dataSize = dataSize;
+            this.structs = structs;
+            this.encoding = encoding;
+        }
+    }
+
+    /**
+     * 内存映射读取目标文件的各段
+     * @param path 文件路径
+     * @param target 期望的目标虚拟机标记
+     * @param symbols 函数符号映射
+     * @throws IOException 文件不是该虚拟机的有效目标文件
+     */
+    protected static <F> Sections<F> readSections(Path path, int target, ObjectFileSymbols<F> symbols)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readSections(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), target, symbols);
+        }
+    }
+
+    /**
+     * 从缓冲区读取目标文件的各段
+     * @param buffer 缓冲区（从当前位置开始读取）
+     * @param target 期望的目标虚拟机标记
+     * @param symbols 函数符号映射
+     * @throws IOException 格式错误
+     */
+    protected static <F> Sections<F> readSections(ByteBuffer buffer, int target, ObjectFileSymbols<F> symbols)
+            throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a Cymbol object file");
+            }
+            int version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported object file version: " + version);
+            }
+            int fileTarget = buffer.get();
+            if (fileTarget != target) {
+                throw new IOException("Object file targets another VM: " + fileTarget);
+            }
+            int encoding = buffer.get();
+            int dataSize = buffer.getInt();
+            int mainIndex = buffer.getInt();
+            int functionCount = buffer.getInt();
+            int structCount = buffer.getInt();
+            int constCount = buffer.getInt();
+            int codeSize = buffer.getInt();
+            if (functionCount < 0 || structCount < 0 || constCount < 0 || codeSize < 0) {
+                throw new IOException("Corrupt object file header: negative section size");
+            }
+            long required = (long) functionCount * MIN_FUNCTION_BYTES + (long) structCount * MIN_STRUCT_BYTES
+                + (long) constCount * MIN_CONST_BYTES + codeSize;
+            if (required > buffer.remaining()) {
+                throw new IOException("Truncated or corrupt object file: header declares " + required
+                    + " bytes of sections but only " + buffer.remaining() + " remain");
+            }
+
+            List<F> functions = new ArrayList<>(functionCount);
+            for (int i = 0; i < functionCount; i++) {
+                String name = readString(buffer);
+                functions.add(symbols.create(name, buffer.getInt(), buffer.getInt(), buffer.getInt()));
+            }
+            Map<String, Integer> structs = new LinkedHashMap<>();
+            for (int i = 0; i < structCount; i++) {
+                String name = readString(buffer);
+                structs.put(name, buffer.getInt());
+            }
+            Object[] constPool = new Object[constCount];
+            for (int i = 0; i < constCount; i++) {
+                byte tag = buffer.get();
+                constPool[i] = switch (tag) {
+                    case CONST_INT -> buffer.getInt();
+                    case CONST_FLOAT -> buffer.getFloat();
+                    case CONST_BOOL -> buffer.get() != 0;
+                    case CONST_STRING -> readString(buffer);
+                    case CONST_CHAR -> buffer.getChar();
+                    case CONST_FUNCTION -> functions.get(buffer.getInt());
+                    default -> throw new IOException("Unknown constant pool tag: " + tag);
+                };
+            }
+            byte[] code = new byte[codeSize];
+            buffer.get(code);
+
+            F mainFunction = mainIndex >= 0 ? functions.get(mainIndex) : null;
+            return new Sections<>(code, codeSize, constPool, mainFunction, dataSize, structs, encoding);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Truncated or corrupt object file", e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Truncated or corrupt object file: string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ==================== 访问器 ====================
+
+    public byte[] getCode() {
+        return code;
+    }
+
+    public int getCodeSize() {
+        return codeSize;
+    }
+
+    public Object[] getConstantPool() {
+        return constPool;
+    }
+
+    public F getMainFunction() {
+        return mainFunction;
+    }
+
+    public int getDataSize() {
+        return dataSize;
+    }
+
+    public Map<String, Integer> getStructs() {
+        return structs;
+    }
+
+    /**
+     * 获取头部记录的指令编码版本
+     */
+    protected int getEncodingId() {
+        return encoding;
+    }
+}
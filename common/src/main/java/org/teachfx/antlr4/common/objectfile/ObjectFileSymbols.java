@@ -0,0 +1,27 @@
+package org.teachfx.antlr4.common.objectfile;
+
+/**
+ * 目标文件函数表与虚拟机函数符号之间的映射
+ * 容器格式由 {@link AbstractObjectFile} 统一读写，各虚拟机只需说明自己的函数符号如何拆分和重建。
+ * @param <F> 虚拟机的函数符号类型
+ */
+public interface ObjectFileSymbols<F> {
+
+    /**
+     * 函数符号的类型，用于在常量池中识别函数条目
+     */
+    Class<F> symbolType();
+
+    String name(F symbol);
+
+    int nargs(F symbol);
+
+    int nlocals(F symbol);
+
+    int address(F symbol);
+
+    /**
+     * 按函数表条目重建函数符号
+     */
+    F create(String name, int nargs, int nlocals, int address);
+}
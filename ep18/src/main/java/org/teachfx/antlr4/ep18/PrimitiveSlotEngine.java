@@ -0,0 +1,667 @@
+package org.teachfx.antlr4.ep18;
+
+import org.teachfx.antlr4.ep18.stackvm.ByteCodeAssembler;
+import org.teachfx.antlr4.ep18.stackvm.BytecodeDefinition;
+import org.teachfx.antlr4.ep18.stackvm.FunctionSymbol;
+import org.teachfx.antlr4.ep18.stackvm.StackFrame;
+import org.teachfx.antlr4.ep18.stackvm.StructValue;
+import org.teachfx.antlr4.ep18.stackvm.stackframe.FrameArena;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 原始类型槽位执行引擎
+ * <p>
+ * 与 {@link VMInterpreter#cpu()} 执行同一份字节码、产生相同结果，但所有运行时值都存放在 int 槽位中：
+ * <ul>
+ *   <li>操作数栈、全局变量、栈帧（{@link FrameArena}）都是 int[] 值数组加 byte[] 类型标签数组</li>
+ *   <li>float 以 {@link Float#floatToRawIntBits(float)} 位模式存放，boolean 存为 0/1</li>
+ *   <li>结构体引用是句柄，指向独立的结构体表；字段存放在扁平的槽位区中</li>
+ *   <li>字符串等其他常量存为常量池索引</li>
+ * </ul>
+ * 类型标签只在打印和执行结束回写解释器状态时使用，算术、加载/存储和调用路径中不装箱。
+ * 结构体表或字段区将要扩容时先回收不可达的结构体：类型标签精确地标出了所有句柄，
+ * 因此从操作数栈、全局变量和活动栈帧出发标记后，存活结构体按分配顺序滑动到表和字段区的前部，
+ * 所有句柄随之改写。两块区域的大小因此只受同时存活的结构体限制。
+ * </p>
+ */
+final class PrimitiveSlotEngine {
+    // 槽位类型标签
+    static final byte TAG_NULL = 0;
+    static final byte TAG_INT = 1;
+    static final byte TAG_FLOAT = 2;
+    static final byte TAG_BOOL = 3;
+    static final byte TAG_CHAR = 4;
+    static final byte TAG_CONST = 5;   // 常量池对象，值为常量池索引
+    static final byte TAG_STRUCT = 6;  // 结构体句柄
+
+    private final VMInterpreter interp;
+    private final byte[] code;
+    private final int codeSize;
+    private final Object[] constPool;
+
+    // 操作数栈
+    private final int[] stack = new int[VMInterpreter.DEFAULT_OPERAND_STACK_SIZE];
+    private final byte[] stackTags = new byte[VMInterpreter.DEFAULT_OPERAND_STACK_SIZE];
+    private int sp = -1;
+
+    // 全局变量
+    private final int[] globals;
+    private final byte[] globalTags;
+
+    // 栈帧：参数和局部变量连续存放在栈帧区中，槽位类型标签使用栈帧区的标签数组
+    private final FrameArena frames = new FrameArena(VMInterpreter.DEFAULT_CALL_STACK_SIZE, 256);
+    private final FunctionSymbol[] frameFunctions = new FunctionSymbol[VMInterpreter.DEFAULT_CALL_STACK_SIZE];
+    private int fp = -1;
+
+    // 结构体表：句柄 -> 字段区偏移/字段数
+    private int[] structBases = new int[16];
+    private int[] structSizes = new int[16];
+    private int structCount = 0;
+    private int[] fieldSlots = new int[64];
+    private byte[] fieldTags = new byte[64];
+    private int fieldTop = 0;
+    private int[] forwarding = new int[16];   // 回收时：旧句柄 -> 新句柄，-1表示不可达
+    private int[] markStack = new int[16];
+
+    private int ip;
+
+    PrimitiveSlotEngine(VMInterpreter interp) {
+        this.interp = interp;
+        this.code = interp.code;
+        this.codeSize = interp.codeSize;
+        this.constPool = interp.constPool;
+        int dataSize = interp.globals == null ? 0 : interp.globals.length;
+        this.globals = new int[dataSize];
+        this.globalTags = new byte[dataSize];
+    }
+
+    /**
+     * 从主函数开始执行，结束（包括异常结束）后把状态装箱回写到解释器
+     */
+    void run(FunctionSymbol mainFunction) {
+        pushFrame(mainFunction, -1);
+        // 主函数的局部变量初始化为0
+        byte[] frameTags = frames.getTags();
+        for (int i = 0; i < mainFunction.nlocals; i++) {
+            frameTags[frames.localSlot(fp, i)] = TAG_INT;
+        }
+        ip = mainFunction.address;
+        try {
+            cpu();
+        } finally {
+            writeBack();
+        }
+    }
+
+    private void cpu() {
+        final int[] stack = this.stack;
+        final byte[] stackTags = this.stackTags;
+
+        while (ip < codeSize) {
+            short opcode = code[ip];
+            ip++;
+
+            switch (opcode) {
+                case BytecodeDefinition.INSTR_IADD:
+                    sp--;
+                    stack[sp] = stack[sp] + stack[sp + 1];
+                    stackTags[sp] = TAG_INT;
+                    break;
+                case BytecodeDefinition.INSTR_ISUB:
+                    sp--;
+                    stack[sp] = stack[sp] - stack[sp + 1];
+                    stackTags[sp] = TAG_INT;
+                    break;
+                case BytecodeDefinition.INSTR_IMUL:
+                    sp--;
+                    stack[sp] = stack[sp] * stack[sp + 1];
+                    stackTags[sp] = TAG_INT;
+                    break;
+                case BytecodeDefinition.INSTR_IDIV: {
+                    int divisor = stack[sp];
+                    sp--;
+                    if (divisor == 0) {
+                        sp--;
+                        throw new RuntimeException("Division by zero at PC=" + (ip - 1) + " (instruction=IDIV)");
+                    }
+                    stack[sp] = stack[sp] / divisor;
+                    stackTags[sp] = TAG_INT;
+                    break;
+                }
+                case BytecodeDefinition.INSTR_ILT:
+                    sp--;
+                    stack[sp] = stack[sp] < stack[sp + 1] ? 1 : 0;
+                    stackTags[sp] = TAG_BOOL;
+                    break;
+                case BytecodeDefinition.INSTR_ILE:
+                    sp--;
+                    stack[sp] = stack[sp] <= stack[sp + 1] ? 1 : 0;
+                    stackTags[sp] = TAG_BOOL;
+                    break;
+                case BytecodeDefinition.INSTR_IGT:
+                    sp--;
+                    stack[sp] = stack[sp] > stack[sp + 1] ? 1 : 0;
+                    stackTags[sp] = TAG_BOOL;
+                    break;
+                case BytecodeDefinition.INSTR_IGE:
+                    sp--;
+                    stack[sp] = stack[sp] >= stack[sp + 1] ? 1 : 0;
+                    stackTags[sp] = TAG_BOOL;
+                    break;
+                case BytecodeDefinition.INSTR_IEQ:
+                    sp--;
+                    stack[sp] = stack[sp] == stack[sp + 1] ? 1 : 0;
+                    stackTags[sp] = TAG_BOOL;
+                    break;
+                case BytecodeDefinition.INSTR_INE:
+                    sp--;
+                    stack[sp] = stack[sp] != stack[sp + 1] ? 1 : 0;
+                    stackTags[sp] = TAG_BOOL;
+                    break;
+                case BytecodeDefinition.INSTR_INEG:
+                    stack[sp] = -stack[sp];
+                    stackTags[sp] = TAG_INT;
+                    break;
+                case BytecodeDefinition.INSTR_INOT:
+                    stack[sp] = stack[sp] == 0 ? 1 : 0;
+                    stackTags[sp] = TAG_BOOL;
+                    break;
+                case BytecodeDefinition.INSTR_IAND:
+                    sp--;
+                    stack[sp] = stack[sp] & stack[sp + 1];
+                    stackTags[sp] = TAG_INT;
+                    break;
+                case BytecodeDefinition.INSTR_IOR:
+                    sp--;
+                    stack[sp] = stack[sp] | stack[sp + 1];
+                    stackTags[sp] = TAG_INT;
+                    break;
+                case BytecodeDefinition.INSTR_IXOR:
+                    sp--;
+                    stack[sp] = stack[sp] ^ stack[sp + 1];
+                    stackTags[sp] = TAG_INT;
+                    break;
+                case BytecodeDefinition.INSTR_FADD:
+                    sp--;
+                    stack[sp] = Float.floatToRawIntBits(
+                        Float.intBitsToFloat(stack[sp]) + Float.intBitsToFloat(stack[sp + 1]));
+                    stackTags[sp] = TAG_FLOAT;
+                    break;
+                case BytecodeDefinition.INSTR_FSUB:
+                    sp--;
+                    stack[sp] = Float.floatToRawIntBits(
+                        Float.intBitsToFloat(stack[sp]) - Float.intBitsToFloat(stack[sp + 1]));
+                    stackTags[sp] = TAG_FLOAT;
+                    break;
+                case BytecodeDefinition.INSTR_FMUL:
+                    sp--;
+                    stack[sp] = Float.floatToRawIntBits(
+                        Float.intBitsToFloat(stack[sp]) * Float.intBitsToFloat(stack[sp + 1]));
+                    stackTags[sp] = TAG_FLOAT;
+                    break;
+                case BytecodeDefinition.INSTR_FDIV: {
+                    float divisor = Float.intBitsToFloat(stack[sp]);
+                    sp--;
+                    if (divisor == 0.0f) {
+                        sp--;
+                        throw new RuntimeException("Division by zero");
+                    }
+                    stack[sp] = Float.floatToRawIntBits(Float.intBitsToFloat(stack[sp]) / divisor);
+                    stackTags[sp] = TAG_FLOAT;
+                    break;
+                }
+                case BytecodeDefinition.INSTR_FLT:
+                    sp--;
+                    stack[sp] = Float.intBitsToFloat(stack[sp]) < Float.intBitsToFloat(stack[sp + 1]) ? 1 : 0;
+                    stackTags[sp] = TAG_BOOL;
+                    break;
+                case BytecodeDefinition.INSTR_FEQ:
+                    sp--;
+                    stack[sp] = Float.intBitsToFloat(stack[sp]) == Float.intBitsToFloat(stack[sp + 1]) ? 1 : 0;
+                    stackTags[sp] = TAG_BOOL;
+                    break;
+                case BytecodeDefinition.INSTR_ITOF:
+                    stack[sp] = Float.floatToRawIntBits((float) stack[sp]);
+                    stackTags[sp] = TAG_FLOAT;
+                    break;
+                case BytecodeDefinition.INSTR_RET:
+                    handleReturn();
+                    break;
+                case BytecodeDefinition.INSTR_BR:
+                    ip = getIntOperand();
+                    break;
+                case BytecodeDefinition.INSTR_BRT: {
+                    int addr = getIntOperand();
+                    if (stack[sp--] != 0) {
+                        ip = addr;
+                    }
+                    break;
+                }
+                case BytecodeDefinition.INSTR_BRF: {
+                    int addr = getIntOperand();
+                    if (stack[sp--] == 0) {
+                        ip = addr;
+                    }
+                    break;
+                }
+                case BytecodeDefinition.INSTR_CALL:
+                    call(getIntOperand());
+                    break;
+                case BytecodeDefinition.INSTR_CCONST:
+                    push((char) getIntOperand(), TAG_CHAR);
+                    break;
+                case BytecodeDefinition.INSTR_ICONST:
+                    push(getIntOperand(), TAG_INT);
+                    break;
+                case BytecodeDefinition.INSTR_FCONST:
+                case BytecodeDefinition.INSTR_SCONST:
+                    pushConstant(getIntOperand());
+                    break;
+                case BytecodeDefinition.INSTR_LOAD: {
+                    int addr = getIntOperand();
+                    int slot = frameSlotOf(addr);
+                    if (slot >= 0) {
+                        push(frames.getSlots()[slot], frames.getTags()[slot]);
+                    } else {
+                        push(0, TAG_NULL);
+                    }
+                    break;
+                }
+                case BytecodeDefinition.INSTR_STORE: {
+                    int addr = getIntOperand();
+                    int slot = frameSlotOf(addr);
+                    if (slot >= 0) {
+                        frames.getSlots()[slot] = stack[sp];
+                        frames.getTags()[slot] = stackTags[sp];
+                    }
+                    sp--;
+                    break;
+                }
+                case BytecodeDefinition.INSTR_GLOAD: {
+                    int addr = getIntOperand();
+                    push(globals[addr], globalTags[addr]);
+                    break;
+                }
+                case BytecodeDefinition.INSTR_GSTORE: {
+                    int addr = getIntOperand();
+                    globals[addr] = stack[sp];
+                    globalTags[addr] = stackTags[sp];
+                    sp--;
+                    break;
+                }
+                case BytecodeDefinition.INSTR_FLOAD: {
+                    int handle = popStructHandle();
+                    int field = fieldSlotOf(handle, getIntOperand());
+                    push(fieldSlots[field], fieldTags[field]);
+                    break;
+                }
+                case BytecodeDefinition.INSTR_FSTORE: {
+                    int value = stack[sp];
+                    byte tag = stackTags[sp];
+                    sp--;
+                    int handle = popStructHandle();
+                    int field = fieldSlotOf(handle, getIntOperand());
+                    fieldSlots[field] = value;
+                    fieldTags[field] = tag;
+                    break;
+                }
+                case BytecodeDefinition.INSTR_PRINT:
+                    System.out.println(box(stack[sp], stackTags[sp], null));
+                    sp--;
+                    break;
+                case BytecodeDefinition.INSTR_STRUCT:
+                    push(allocateStruct(getIntOperand()), TAG_STRUCT);
+                    break;
+                case BytecodeDefinition.INSTR_NULL:
+                    push(0, TAG_NULL);
+                    break;
+                case BytecodeDefinition.INSTR_POP:
+                    --sp;
+                    break;
+                case BytecodeDefinition.INSTR_HALT:
+                    return;
+                default:
+                    throw new Error("invalid opcode: " + opcode + " at ip=" + (ip - 1));
+            }
+        }
+    }
+
+    private void push(int value, byte tag) {
+        ++sp;
+        stack[sp] = value;
+        stackTags[sp] = tag;
+    }
+
+    private void pushConstant(int poolIndex) {
+        Object constant = constPool[poolIndex];
+        if (constant instanceof Float f) {
+            push(Float.floatToRawIntBits(f), TAG_FLOAT);
+        } else if (constant instanceof Integer i) {
+            push(i, TAG_INT);
+        } else if (constant == null) {
+            push(0, TAG_NULL);
+        } else {
+            push(poolIndex, TAG_CONST);
+        }
+    }
+
+    private int getIntOperand() {
+        int word = ByteCodeAssembler.getInt(code, ip);
+        ip += 4;
+        return word;
+    }
+
+    // ---------------------------------------------------------------- 栈帧
+
+    private void pushFrame(FunctionSymbol function, int returnAddress) {
+        ++fp;
+        // 新栈帧的参数和局部变量初始为null（标签0）
+        frames.enter(fp, function.address, Math.max(function.nargs, 0), function.nlocals, returnAddress);
+        frameFunctions[fp] = function;
+    }
+
+    /**
+     * 按 VMInterpreter 的寻址规则把 load/store 地址换算为帧区槽位：
+     * 先查局部变量区，再按同一下标查参数区，都不在范围内返回-1
+     */
+    private int frameSlotOf(int addr) {
+        FunctionSymbol function = frameFunctions[fp];
+        if (addr < 0) {
+            return -1;
+        }
+        if (addr < function.nlocals) {
+            return frames.localSlot(fp, addr);
+        }
+        if (addr < function.nargs) {
+            return frames.parameterSlot(fp, addr);
+        }
+        return -1;
+    }
+
+    private void call(int functionConstPoolIndex) {
+        FunctionSymbol fs = (FunctionSymbol) constPool[functionConstPoolIndex];
+        int nargs = Math.max(fs.nargs, 0);
+
+        // 参数从右到左压栈，栈顶是最后一个参数
+        if (sp + 1 < nargs) {
+            sp = -1;
+            throw new RuntimeException("Stack underflow while extracting arguments for " + fs.name);
+        }
+        int argBase = sp - nargs + 1;
+        sp = argBase - 1;
+
+        // 保存当前栈深度（用于返回时清理参数）
+        if (fp >= 0) {
+            frames.setSavedStackDepth(fp, sp);
+        }
+
+        pushFrame(fs, ip);
+
+        // 参数优先放入局部变量区，剩余的放入参数区
+        int[] frameSlots = frames.getSlots();
+        byte[] frameTags = frames.getTags();
+        int localsToFill = Math.min(nargs, fs.nlocals);
+        if (localsToFill > 0) {
+            int localBase = frames.localSlot(fp, 0);
+            System.arraycopy(stack, argBase, frameSlots, localBase, localsToFill);
+            System.arraycopy(stackTags, argBase, frameTags, localBase, localsToFill);
+        }
+        int rest = nargs - localsToFill;
+        if (rest > 0) {
+            int paramBase = frames.parameterSlot(fp, 0);
+            System.arraycopy(stack, argBase + localsToFill, frameSlots, paramBase, rest);
+            System.arraycopy(stackTags, argBase + localsToFill, frameTags, paramBase, rest);
+        }
+
+        ip = fs.address;
+    }
+
+    private void handleReturn() {
+        if (fp < 0) {
+            throw new RuntimeException("RET called without active frame");
+        }
+
+        int returnAddress = frames.getReturnAddress(fp--);
+
+        // 获取返回值（如果有）
+        int returnValue = 0;
+        byte returnTag = TAG_NULL;
+        if (sp >= 0) {
+            returnValue = stack[sp];
+            returnTag = stackTags[sp];
+            sp--;
+        }
+
+        // 清理参数：恢复到调用前的栈深度
+        if (fp >= 0 && frames.hasSavedStackDepth(fp)) {
+            sp = frames.getSavedStackDepth(fp);
+        }
+
+        // 压入返回值（null不压栈，与装箱解释器一致）
+        if (returnTag != TAG_NULL) {
+            push(returnValue, returnTag);
+        }
+
+        ip = returnAddress;
+    }
+
+    // ---------------------------------------------------------------- 结构体
+
+    private int allocateStruct(int nfields) {
+        if (nfields < 0) {
+            throw new NegativeArraySizeException(String.valueOf(nfields));
+        }
+        if (structCount == structBases.length || fieldTop + nfields > fieldSlots.length) {
+            collectStructs();
+            // 回收后存活部分仍超过一半时扩容，避免每次分配都触发回收
+            if (structCount * 2 > structBases.length) {
+                structBases = Arrays.copyOf(structBases, structBases.length * 2);
+                structSizes = Arrays.copyOf(structSizes, structSizes.length * 2);
+            }
+            if ((fieldTop + nfields) * 2 > fieldSlots.length) {
+                int capacity = Math.max((fieldTop + nfields) * 2, fieldSlots.length * 2);
+                fieldSlots = Arrays.copyOf(fieldSlots, capacity);
+                fieldTags = Arrays.copyOf(fieldTags, capacity);
+            }
+        }
+        int handle = structCount++;
+        structBases[handle] = fieldTop;
+        structSizes[handle] = nfields;
+        Arrays.fill(fieldTags, fieldTop, fieldTop + nfields, TAG_NULL);
+        fieldTop += nfields;
+        return handle;
+    }
+
+    /**
+     * 回收不可达的结构体：从操作数栈、全局变量和活动栈帧的结构体槽位出发标记，
+     * 存活结构体按句柄顺序（即分配顺序）滑动到前部，最后改写所有根和字段中的句柄
+     */
+    private void collectStructs() {
+        if (forwarding.length < structCount) {
+            forwarding = new int[structBases.length];
+        }
+        Arrays.fill(forwarding, 0, structCount, -1);
+        int markTop = 0;
+
+        // 标记：forwarding 先用作标记位（0表示已标记）
+        markTop = markRoots(stack, stackTags, 0, sp + 1, markTop);
+        markTop = markRoots(globals, globalTags, 0, globals.length, markTop);
+        int[] frameSlots = frames.getSlots();
+        byte[] frameTags = frames.getTags();
+        for (int f = 0; f <= fp; f++) {
+            int base = frames.getFrameBase(f);
+            markTop = markRoots(frameSlots, frameTags, base, base + frames.frameSlotCount(f), markTop);
+        }
+        while (markTop > 0) {
+            int handle = markStack[--markTop];
+            int base = structBases[handle];
+            markTop = markRoots(fieldSlots, fieldTags, base, base + structSizes[handle], markTop);
+        }
+
+        // 整理：新位置不超过旧位置，按升序搬移不会覆盖尚未处理的结构体
+        int live = 0;
+        int top = 0;
+        for (int handle = 0; handle < structCount; handle++) {
+            if (forwarding[handle] < 0) {
+                continue;
+            }
+            int base = structBases[handle];
+            int size = structSizes[handle];
+            System.arraycopy(fieldSlots, base, fieldSlots, top, size);
+            System.arraycopy(fieldTags, base, fieldTags, top, size);
+            structBases[live] = top;
+            structSizes[live] = size;
+            forwarding[handle] = live++;
+            top += size;
+        }
+
+        forwardHandles(stack, stackTags, 0, sp + 1);
+        forwardHandles(globals, globalTags, 0, globals.length);
+        for (int f = 0; f <= fp; f++) {
+            int base = frames.getFrameBase(f);
+            forwardHandles(frameSlots, frameTags, base, base + frames.frameSlotCount(f));
+        }
+        forwardHandles(fieldSlots, fieldTags, 0, top);
+        structCount = live;
+        fieldTop = top;
+    }
+
+    private int markRoots(int[] values, byte[] tags, int from, int to, int markTop) {
+        for (int i = from; i < to; i++) {
+            if (tags[i] == TAG_STRUCT && forwarding[values[i]] < 0) {
+                forwarding[values[i]] = 0;
+                if (markTop == markStack.length) {
+                    markStack = Arrays.copyOf(markStack, markTop * 2);
+                }
+                markStack[markTop++] = values[i];
+            }
+        }
+        return markTop;
+    }
+
+    private void forwardHandles(int[] values, byte[] tags, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (tags[i] == TAG_STRUCT) {
+                values[i] = forwarding[values[i]];
+            }
+        }
+    }
+
+    /**
+     * 获取结构体表的容量（测试用）
+     */
+    int getStructTableCapacity() {
+        return structBases.length;
+    }
+
+    /**
+     * 获取结构体字段区的容量（测试用）
+     */
+    int getFieldAreaCapacity() {
+        return fieldSlots.length;
+    }
+
+    private int popStructHandle() {
+        int value = stack[sp];
+        byte tag = stackTags[sp];
+        sp--;
+        if (tag != TAG_STRUCT) {
+            Object obj = box(value, tag, null);
+            throw new ClassCastException("Expected StructValue but got " + (obj == null ? "null" : obj.getClass()) + " value: " + obj);
+        }
+        return value;
+    }
+
+    private int fieldSlotOf(int handle, int offset) {
+        if (offset < 0 || offset >= structSizes[handle]) {
+            throw new IndexOutOfBoundsException("Field offset out of bounds: " + offset + ", struct has " + structSizes[handle] + " fields");
+        }
+        return structBases[handle] + offset;
+    }
+
+    // ---------------------------------------------------------------- 装箱与回写
+
+    /**
+     * 把槽位值转换为装箱解释器使用的对象表示（仅用于打印和状态回写）
+     * @param structs 已转换的结构体（保持引用同一性），可为null
+     */
+    private Object box(int value, byte tag, Map<Integer, StructValue> structs) {
+        switch (tag) {
+            case TAG_INT:
+                return value;
+            case TAG_FLOAT:
+                return Float.intBitsToFloat(value);
+            case TAG_BOOL:
+                return value != 0;
+            case TAG_CHAR:
+                return (char) value;
+            case TAG_CONST:
+                return constPool[value];
+            case TAG_STRUCT:
+                return boxStruct(value, structs);
+            default:
+                return null;
+        }
+    }
+
+    private StructValue boxStruct(int handle, Map<Integer, StructValue> structs) {
+        if (structs == null) {
+            structs = new HashMap<>();
+        }
+        StructValue existing = structs.get(handle);
+        if (existing != null) {
+            return existing;
+        }
+        StructValue struct = new StructValue(structSizes[handle]);
+        structs.put(handle, struct);
+        int base = structBases[handle];
+        for (int i = 0; i < structSizes[handle]; i++) {
+            struct.setField(i, box(fieldSlots[base + i], fieldTags[base + i], structs));
+        }
+        return struct;
+    }
+
+    /**
+     * 把执行结束时的状态装箱写回解释器，使其观察接口（操作数栈、调用栈、全局变量）与装箱执行一致
+     */
+    private void writeBack() {
+        Map<Integer, StructValue> structs = new HashMap<>();
+
+        interp.ip = ip;
+        interp.sp = sp;
+        for (int i = 0; i <= sp; i++) {
+            interp.operands[i] = box(stack[i], stackTags[i], structs);
+        }
+
+        if (interp.globals != null) {
+            for (int i = 0; i < globals.length; i++) {
+                interp.globals[i] = box(globals[i], globalTags[i], structs);
+            }
+        }
+
+        interp.fp = fp;
+        int[] frameSlots = frames.getSlots();
+        byte[] frameTags = frames.getTags();
+        for (int f = 0; f <= fp; f++) {
+            FunctionSymbol function = frameFunctions[f];
+            StackFrame frame = new StackFrame(function, frames.getReturnAddress(f), null);
+            for (int i = 0; i < function.nlocals; i++) {
+                int slot = frames.localSlot(f, i);
+                frame.getLocals()[i] = box(frameSlots[slot], frameTags[slot], structs);
+            }
+            if (frame.getParameters() != null) {
+                for (int i = 0; i < function.nargs; i++) {
+                    int slot = frames.parameterSlot(f, i);
+                    frame.getParameters()[i] = box(frameSlots[slot], frameTags[slot], structs);
+                }
+            }
+            if (frames.hasSavedStackDepth(f)) {
+                frame.setDebugData("savedStackDepth", frames.getSavedStackDepth(f));
+            }
+            interp.calls[f] = frame;
+        }
+    }
+}
@@ -11,7 +11,9 @@ import org.teachfx.antlr4.ep18.stackvm.ABIConvention.*;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 
 public class VMInterpreter {
     public static final int DEFAULT_OPERAND_STACK_SIZE = 128;
@@ -30,11 +32,13 @@ public class VMInterpreter {
     FunctionSymbol mainFunction;
 
     boolean trace = false;
+    boolean primitiveSlots = false;
 
     public static void main(String[] args) throws Exception {
         boolean trace = false;
         boolean disassemble = false;
         boolean dump = false;
+        boolean primitive = false;
         String fileName = "t.vm";
         int i = 0;
         while (i < args.length) {
@@ -51,6 +55,10 @@ public class VMInterpreter {
                     dump = true;
                     i++;
                 }
+                case "-prim" -> {
+                    primitive = true;
+                    i++;
+                }
                 default -> {
                     fileName = args[i];
                     i++;
@@ -58,27 +66,32 @@ public class VMInterpreter {
             }
         }
 
-        InputStream input = null;
-        if (fileName != null) {
-            // 优先从classpath加载资源
-            input = VMInterpreter.class.getClassLoader().getResourceAsStream(fileName);
-            if (input == null) {
-                // 如果classpath找不到，再尝试从文件系统加载
-                String resourcePath = "src/main/resources/" + fileName;
-                File file = new File(resourcePath);
-                
-                if (file.exists()) {
-                    input = new FileInputStream(file);
+        VMInterpreter interpreter = new VMInterpreter();
+        if (ObjectFile.isObjectFileName(fileName) && new File(fileName).isFile()) {
+            // 二进制目标文件直接映射加载，跳过汇编
+            loadObjectFile(interpreter, new File(fileName).toPath());
+        } else {
+            InputStream input = null;
+            if (fileName != null) {
+                // 优先从classpath加载资源
+                input = VMInterpreter.class.getClassLoader().getResourceAsStream(fileName);
+                if (input == null) {
+                    // 如果classpath找不到，再尝试从文件系统加载
+                    String resourcePath = "src/main/resources/" + fileName;
+                    File file = new File(resourcePath);
+
+                    if (file.exists()) {
+                        input = new FileInputStream(file);
+                    }
                 }
             }
+            if (input == null) {
+                input = System.in;
+            }
+            load(interpreter, input);
         }
-        if (input == null) {
-            input = System.in;
-        }
-
-        VMInterpreter interpreter = new VMInterpreter();
-        load(interpreter, input);
         interpreter.trace = trace;
+        interpreter.primitiveSlots = primitive;
         interpreter.exec();
         if (disassemble)
             interpreter.disassemble();
@@ -109,6 +122,25 @@ public class VMInterpreter {
         return hasErrors;
     }
 
+    /**
+     * 从二进制目标文件加载，不经过词法/语法分析
+     */
+    public static void loadObjectFile(VMInterpreter interp, Path path) throws IOException {
+        load(interp, ObjectFile.read(path));
+    }
+
+    /**
+     * 从已读取的目标文件加载
+     */
+    public static void load(VMInterpreter interp, ObjectFile objectFile) {
+        interp.code = objectFile.getCode();
+        interp.codeSize = objectFile.getCodeSize();
+        interp.constPool = objectFile.getConstantPool();
+        interp.mainFunction = objectFile.getMainFunction();
+        interp.globals = new Object[objectFile.getDataSize()];
+        interp.disasm = new DisAssembler(interp.code, interp.codeSize, interp.constPool);
+    }
+
     /**
      * Execute the bytecodes in code memory starting at mainAddr
      */
@@ -117,6 +149,11 @@ public class VMInterpreter {
         if (mainFunction == null) {
             mainFunction = new FunctionSymbol("main", 0, 0, 0);
         }
+        // 跟踪模式需要逐条打印装箱后的栈内容，仍走常规路径
+        if (primitiveSlots && !trace) {
+            new PrimitiveSlotEngine(this).run(mainFunction);
+            return;
+        }
         StackFrame f = new StackFrame(mainFunction, -1);
         calls[++fp] = f;
         ip = mainFunction.address;
@@ -697,4 +734,21 @@ public class VMInterpreter {
     public void setTrace(boolean trace) {
         this.trace = trace;
     }
+
+    /**
+     * 检查是否使用原始类型槽位执行
+     * @return 是否启用原始类型槽位执行
+     */
+    public boolean isPrimitiveSlotsEnabled() {
+        return primitiveSlots;
+    }
+
+    /**
+     * 设置是否使用原始类型槽位执行（{@link PrimitiveSlotEngine}）
+     * 启用后算术、加载/存储和调用路径不再装箱，执行结束后状态回写为对象表示
+     * @param primitiveSlots 是否启用
+     */
+    public void setPrimitiveSlotsEnabled(boolean primitiveSlots) {
+        this.primitiveSlots = primitiveSlots;
+    }
 }
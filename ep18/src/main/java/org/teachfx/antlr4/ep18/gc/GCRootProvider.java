@@ -0,0 +1,23 @@
+package org.teachfx.antlr4.ep18.gc;
+
+import java.util.function.IntConsumer;
+
+/**
+ * 追踪式垃圾回收器的根集合与对象图访问接口
+ * 由虚拟机实现：虚拟机的值是无类型的int，因此回收器保守地把任何等于存活对象ID的值视为引用。
+ */
+public interface GCRootProvider {
+
+    /**
+     * 枚举所有根槽位中的值（操作数栈、局部变量、全局变量、栈帧）
+     * @param visitor 接收每个候选值
+     */
+    void forEachRoot(IntConsumer visitor);
+
+    /**
+     * 枚举对象字段中的值
+     * @param objectId 对象ID
+     * @param visitor 接收每个候选值
+     */
+    void forEachReference(int objectId, IntConsumer visitor);
+}
@@ -25,6 +25,32 @@ public interface GarbageCollector {
      */
     void decrementRef(int objectId);
 
+    /**
+     * 结构体字段写屏障，在把value写入对象objectId的字段之后调用
+     * 默认为空操作；分代回收器据此记录老年代到新生代的引用
+     * @param objectId 被写入的对象ID
+     * @param value 写入的值
+     */
+    default void writeBarrier(int objectId, int value) {
+    }
+
+    /**
+     * 按给定的对象ID和大小重建对象表，丢弃当前所有对象（从虚拟机快照恢复时使用）
+     * 默认为空操作；不为结构体分配对象的回收器没有需要重建的元数据
+     * @param objectIds 存活对象ID（正数，互不相同）
+     * @param sizes 对应的对象大小
+     * @throws OutOfMemoryError 堆放不下全部对象
+     */
+    default void restoreObjects(int[] objectIds, int[] sizes) {
+    }
+
+    /**
+     * 丢弃所有对象，回到刚创建时的状态（统计信息保留），用于复用虚拟机实例
+     */
+    default void reset() {
+        restoreObjects(new int[0], new int[0]);
+    }
+
     /**
      * 执行垃圾回收
      */
@@ -0,0 +1,509 @@
+package org.teachfx.antlr4.ep18.gc;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * 分代垃圾回收器
+ * 堆分为新生代（nursery）和老年代两部分：
+ * <ul>
+ *   <li>新生代以指针碰撞方式分配，满时执行次要回收：只追踪新生代对象，
+ *       存活者晋升到老年代，之后新生代清空，碰撞指针归零</li>
+ *   <li>老年代使用 {@link SizeClassAllocator}，晋升失败或大对象分配失败时执行完整的标记-清除</li>
+ * </ul>
+ *
+ * 回收器只管理对象的地址簿记，不保存对象数据：晋升只是在老年代为对象重新记账，
+ * 对象字段仍留在使用方（虚拟机的结构体堆）原处，不发生复制。
+ * 因此这里的新生代不是复制式新生代，其作用是让短命对象在次要回收中成批释放，
+ * 而不必遍历老年代。
+ *
+ * 老年代对象到新生代对象的引用只能通过结构体字段写入产生，
+ * 由 {@link #writeBarrier(int, int)} 记入记忆集；次要回收把记忆集中的对象视为额外的根，
+ * 因此无需遍历老年代。每次次要回收后新生代清空，记忆集随之清空。
+ *
+ * 与 {@link MarkSweepGC} 相同，根集合中的值没有类型，标记阶段保守地把等于存活对象ID的值当作引用。
+ */
+public class GenerationalGC implements GarbageCollector {
+    private static final byte FLAG_ALIVE = 1;
+    private static final byte FLAG_MARKED = 2;
+    private static final byte FLAG_NURSERY = 4;
+    private static final byte FLAG_REMEMBERED = 8;
+
+    private final int heapSize;
+    private final int nurserySize;
+    private final SizeClassAllocator oldSpace;
+    private final GCStats stats;
+    private GCRootProvider rootProvider;
+    private IntConsumer collectionListener;
+
+    // 对象头（按对象ID索引）；新生代对象的偏移量相对新生代起点
+    private int[] sizes;
+    private int[] offsets;
+    private int[] blockSizes;
+    private byte[] flags;
+    private int nextObjectId;
+    private int[] freeIds;
+    private int freeIdCount;
+    private int liveObjects;
+    private int liveBytes;
+
+    // 新生代
+    private int nurseryTop;        // 碰撞指针
+    private int[] nurseryIds;      // 自上次次要回收以来分配的对象
+    private int nurseryCount;
+
+    // 记忆集：引用了新生代对象的老年代对象
+    private int[] remembered;
+    private int rememberedCount;
+
+    private int[] markStack;
+    private int markTop;
+
+    private long minorCollections;
+    private long majorCollections;
+    private long promotedObjects;
+
+    /**
+     * 构造函数
+     * @param heapSize 堆大小（新生代与老年代之和）
+     * @param nurserySize 新生代大小，必须小于堆大小
+     */
+    public GenerationalGC(int heapSize, int nurserySize) {
+        if (heapSize <= 0) {
+            throw new IllegalArgumentException("Heap size must be positive");
+        }
+        if (nurserySize <= 0 || nurserySize >= heapSize) {
+            throw new IllegalArgumentException("Nursery size must be positive and smaller than heap size");
+        }
+        this.heapSize = heapSize;
+        this.nurserySize = nurserySize;
+        this.oldSpace = new SizeClassAllocator(heapSize - nurserySize);
+        this.stats = new GCStats();
+        this.sizes = new int[64];
+        this.offsets = new int[64];
+        this.blockSizes = new int[64];
+        this.flags = new byte[64];
+        this.nextObjectId = 1;
+        this.freeIds = new int[16];
+        this.nurseryIds = new int[64];
+        this.remembered = new int[16];
+        this.markStack = new int[64];
+    }
+
+    /**
+     * 设置根集合提供者；未设置时无法判断可达性，回收时保留并晋升所有对象
+     */
+    public void setRootProvider(GCRootProvider rootProvider) {
+        this.rootProvider = rootProvider;
+    }
+
+    /**
+     * 设置对象被回收时的回调（用于清理虚拟机侧的结构体表）
+     */
+    public void setCollectionListener(IntConsumer collectionListener) {
+        this.collectionListener = collectionListener;
+    }
+
+    private boolean isLive(int objectId) {
+        return objectId > 0 && objectId < nextObjectId && (flags[objectId] & FLAG_ALIVE) != 0;
+    }
+
+    @Override
+    public synchronized int allocate(int size) throws OutOfMemoryError {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size must be positive");
+        }
+
+        if (size > heapSize) {
+            throw new OutOfMemoryError("Object size exceeds heap size");
+        }
+
+        if (size <= nurserySize) {
+            if (nurseryTop + size > nurserySize) {
+                collectMinor();
+            }
+            int objectId = newObjectId(size);
+            offsets[objectId] = nurseryTop;
+            nurseryTop += size;
+            flags[objectId] = FLAG_ALIVE | FLAG_NURSERY;
+            if (nurseryCount == nurseryIds.length) {
+                nurseryIds = Arrays.copyOf(nurseryIds, nurseryIds.length * 2);
+            }
+            nurseryIds[nurseryCount++] = objectId;
+            stats.recordAllocation(size);
+            return objectId;
+        }
+
+        // 放不进新生代的大对象直接在老年代分配
+        int blockSize = size;
+        int offset = oldSpace.allocate(blockSize);
+        if (offset < 0) {
+            collectMajor();
+            offset = oldSpace.allocate(blockSize);
+        }
+        if (offset < 0) {
+            throw new OutOfMemoryError("Out of memory after garbage collection");
+        }
+        int objectId = newObjectId(size);
+        offsets[objectId] = offset;
+        blockSizes[objectId] = blockSize;
+        flags[objectId] = FLAG_ALIVE;
+        stats.recordAllocation(size);
+        return objectId;
+    }
+
+    private int newObjectId(int size) {
+        int objectId = freeIdCount > 0 ? freeIds[--freeIdCount] : nextObjectId++;
+        if (objectId >= flags.length) {
+            int capacity = flags.length * 2;
+            sizes = Arrays.copyOf(sizes, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            blockSizes = Arrays.copyOf(blockSizes, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        sizes[objectId] = size;
+        liveObjects++;
+        liveBytes += size;
+        return objectId;
+    }
+
+    /**
+     * 结构体字段写屏障：老年代对象的字段被写入新生代对象ID时，把该老年代对象记入记忆集
+     */
+    @Override
+    public synchronized void writeBarrier(int objectId, int value) {
+        if (isLive(objectId) && (flags[objectId] & (FLAG_NURSERY | FLAG_REMEMBERED)) == 0
+                && isLive(value) && (flags[value] & FLAG_NURSERY) != 0) {
+            flags[objectId] |= FLAG_REMEMBERED;
+            if (rememberedCount == remembered.length) {
+                remembered = Arrays.copyOf(remembered, remembered.length * 2);
+            }
+            remembered[rememberedCount++] = objectId;
+        }
+    }
+
+    /**
+     * 按给定对象ID重建对象表：所有对象直接分配在老年代，新生代和记忆集为空，
+     * 未出现的ID进入空闲ID表
+     */
+    @Override
+    public synchronized void restoreObjects(int[] objectIds, int[] objectSizes) {
+        int maxId = 0;
+        for (int objectId : objectIds) {
+            if (objectId <= 0) {
+                throw new IllegalArgumentException("Object ID must be positive: " + objectId);
+            }
+            maxId = Math.max(maxId, objectId);
+        }
+        int capacity = Math.max(64, maxId + 1);
+        sizes = new int[capacity];
+        offsets = new int[capacity];
+        blockSizes = new int[capacity];
+        flags = new byte[capacity];
+        oldSpace.reset();
+        nurseryTop = 0;
+        nurseryCount = 0;
+        rememberedCount = 0;
+        liveObjects = 0;
+        liveBytes = 0;
+        markTop = 0;
+
+        for (int i = 0; i < objectIds.length; i++) {
+            int objectId = objectIds[i];
+            int size = objectSizes[i];
+            int blockSize = SizeClassAllocator.blockSize(size);
+            int offset = oldSpace.allocate(blockSize);
+            if (offset < 0 && blockSize != size) {
+                blockSize = size;
+                offset = oldSpace.allocate(blockSize);
+            }
+            if (offset < 0) {
+                throw new OutOfMemoryError("Not enough heap space to restore object " + objectId);
+            }
+            sizes[objectId] = size;
+            offsets[objectId] = offset;
+            blockSizes[objectId] = blockSize;
+            flags[objectId] = FLAG_ALIVE;
+            liveObjects++;
+            liveBytes += size;
+        }
+
+        nextObjectId = maxId + 1;
+        freeIdCount = 0;
+        for (int objectId = maxId - 1; objectId > 0; objectId--) {
+            if (flags[objectId] == 0) {
+                if (freeIdCount == freeIds.length) {
+                    freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+                }
+                freeIds[freeIdCount++] = objectId;
+            }
+        }
+    }
+
+    @Override
+    public void incrementRef(int objectId) {
+        // 追踪式回收不维护引用计数
+    }
+
+    @Override
+    public void decrementRef(int objectId) {
+        // 追踪式回收不维护引用计数
+    }
+
+    /**
+     * 执行完整回收（新生代与老年代）
+     */
+    @Override
+    public synchronized void collect() {
+        collectMajor();
+    }
+
+    /**
+     * 次要回收：从根和记忆集出发只追踪新生代对象，晋升存活者并清空新生代
+     * 老年代放不下晋升对象时转为完整回收
+     */
+    public synchronized void collectMinor() {
+        long startTime = System.nanoTime();
+        minorCollections++;
+
+        if (rootProvider != null) {
+            rootProvider.forEachRoot(this::markYoung);
+            for (int i = 0; i < rememberedCount; i++) {
+                int objectId = remembered[i];
+                if (isLive(objectId)) {
+                    rootProvider.forEachReference(objectId, this::markYoung);
+                }
+            }
+            while (markTop > 0) {
+                rootProvider.forEachReference(markStack[--markTop], this::markYoung);
+            }
+        }
+
+        // 未标记的新生代对象直接丢弃；碰撞指针归零即释放其空间
+        int collectedObjects = 0;
+        long collectedMemory = 0;
+        int survivors = 0;
+        for (int i = 0; i < nurseryCount; i++) {
+            int objectId = nurseryIds[i];
+            if (rootProvider != null && (flags[objectId] & FLAG_MARKED) == 0) {
+                collectedMemory += release(objectId);
+                collectedObjects++;
+            } else {
+                flags[objectId] &= ~FLAG_MARKED;
+                nurseryIds[survivors++] = objectId;
+            }
+        }
+        nurseryCount = survivors;
+
+        for (int i = 0; i < nurseryCount; i++) {
+            if (!promote(nurseryIds[i])) {
+                // 老年代空间不足：完整回收会处理剩余的新生代对象
+                stats.recordCollection(collectedObjects, collectedMemory, System.nanoTime() - startTime);
+                collectMajor();
+                return;
+            }
+        }
+        resetNursery();
+        stats.recordCollection(collectedObjects, collectedMemory, System.nanoTime() - startTime);
+    }
+
+    /**
+     * 完整回收：标记-清除老年代和新生代，然后晋升新生代存活者
+     * @throws OutOfMemoryError 老年代放不下全部存活对象
+     */
+    private void collectMajor() {
+        long startTime = System.nanoTime();
+        majorCollections++;
+
+        int collectedObjects = 0;
+        long collectedMemory = 0;
+        if (rootProvider != null) {
+            rootProvider.forEachRoot(this::markAny);
+            while (markTop > 0) {
+                rootProvider.forEachReference(markStack[--markTop], this::markAny);
+            }
+            for (int objectId = 1; objectId < nextObjectId; objectId++) {
+                byte flag = flags[objectId];
+                if ((flag & FLAG_ALIVE) == 0) {
+                    continue;
+                }
+                if ((flag & FLAG_MARKED) != 0) {
+                    flags[objectId] = (byte) (flag & ~FLAG_MARKED);
+                } else {
+                    collectedMemory += release(objectId);
+                    collectedObjects++;
+                }
+            }
+        }
+
+        for (int i = 0; i < nurseryCount; i++) {
+            int objectId = nurseryIds[i];
+            if (isLive(objectId) && (flags[objectId] & FLAG_NURSERY) != 0 && !promote(objectId)) {
+                stats.recordCollection(collectedObjects, collectedMemory, System.nanoTime() - startTime);
+                throw new OutOfMemoryError("Out of memory after garbage collection");
+            }
+        }
+        resetNursery();
+        stats.recordCollection(collectedObjects, collectedMemory, System.nanoTime() - startTime);
+    }
+
+    private void markYoung(int value) {
+        if (isLive(value) && (flags[value] & (FLAG_NURSERY | FLAG_MARKED)) == FLAG_NURSERY) {
+            pushMark(value);
+        }
+    }
+
+    private void markAny(int value) {
+        if (isLive(value) && (flags[value] & FLAG_MARKED) == 0) {
+            pushMark(value);
+        }
+    }
+
+    private void pushMark(int objectId) {
+        flags[objectId] |= FLAG_MARKED;
+        if (markTop == markStack.length) {
+            markStack = Arrays.copyOf(markStack, markStack.length * 2);
+        }
+        markStack[markTop++] = objectId;
+    }
+
+    /**
+     * 把新生代对象晋升到老年代：在老年代为其分配地址，对象数据不移动
+     * @return 老年代空间不足时返回false，对象保持在新生代
+     */
+    private boolean promote(int objectId) {
+        int size = sizes[objectId];
+        int blockSize = SizeClassAllocator.blockSize(size);
+        int offset = oldSpace.allocate(blockSize);
+        if (offset < 0 && blockSize != size) {
+            blockSize = size;
+            offset = oldSpace.allocate(blockSize);
+        }
+        if (offset < 0) {
+            return false;
+        }
+        offsets[objectId] = offset;
+        blockSizes[objectId] = blockSize;
+        flags[objectId] &= ~FLAG_NURSERY;
+        promotedObjects++;
+        return true;
+    }
+
+    private int release(int objectId) {
+        int size = sizes[objectId];
+        if ((flags[objectId] & FLAG_NURSERY) == 0) {
+            oldSpace.free(offsets[objectId], blockSizes[objectId]);
+        }
+        flags[objectId] = 0;
+        liveObjects--;
+        liveBytes -= size;
+        if (freeIdCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+        }
+        freeIds[freeIdCount++] = objectId;
+        if (collectionListener != null) {
+            collectionListener.accept(objectId);
+        }
+        return size;
+    }
+
+    private void resetNursery() {
+        nurseryTop = 0;
+        nurseryCount = 0;
+        for (int i = 0; i < rememberedCount; i++) {
+            flags[remembered[i]] &= ~FLAG_REMEMBERED;
+        }
+        rememberedCount = 0;
+    }
+
+    @Override
+    public synchronized boolean isObjectAlive(int objectId) {
+        return isLive(objectId);
+    }
+
+    /**
+     * 判断对象是否位于新生代
+     */
+    public synchronized boolean isInNursery(int objectId) {
+        return isLive(objectId) && (flags[objectId] & FLAG_NURSERY) != 0;
+    }
+
+    @Override
+    public GCStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void resetStats() {
+        stats.reset();
+    }
+
+    /**
+     * 获取存活对象的请求大小之和
+     */
+    public synchronized int getHeapUsage() {
+        return liveBytes;
+    }
+
+    /**
+     * 获取存活对象数量
+     */
+    public synchronized int getObjectCount() {
+        return liveObjects;
+    }
+
+    /**
+     * 获取新生代已用字节数（碰撞指针位置）
+     */
+    public synchronized int getNurseryUsage() {
+        return nurseryTop;
+    }
+
+    /**
+     * 获取记忆集大小
+     */
+    public synchronized int getRememberedSetSize() {
+        return rememberedCount;
+    }
+
+    /**
+     * 获取次要回收次数
+     */
+    public synchronized long getMinorCollections() {
+        return minorCollections;
+    }
+
+    /**
+     * 获取完整回收次数
+     */
+    public synchronized long getMajorCollections() {
+        return majorCollections;
+    }
+
+    /**
+     * 获取晋升到老年代的对象总数
+     */
+    public synchronized long getPromotedObjects() {
+        return promotedObjects;
+    }
+
+    /**
+     * 获取堆大小
+     */
+    public int getHeapSize() {
+        return heapSize;
+    }
+
+    /**
+     * 获取新生代大小
+     */
+    public int getNurserySize() {
+        return nurserySize;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("GenerationalGC{heapSize=%d, nursery=%d/%d, used=%d, objects=%d, minor=%d, major=%d}",
+            heapSize, nurseryTop, nurserySize, liveBytes, liveObjects, minorCollections, majorCollections);
+    }
+}
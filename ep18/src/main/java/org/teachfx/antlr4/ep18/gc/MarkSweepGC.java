@@ -0,0 +1,357 @@
+package org.teachfx.antlr4.ep18.gc;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * 标记-清除垃圾回收器（可选标记-整理）
+ * 从 {@link GCRootProvider} 给出的根出发追踪可达对象，清除其余对象，因此能回收循环引用的结构体。
+ * 虚拟机的值没有类型标记，标记阶段保守地把等于存活对象ID的任何值当作引用。
+ *
+ * 分配使用 {@link SizeClassAllocator}，对象头按对象ID存放在基本类型数组中；
+ * 被回收对象的ID会被复用，使对象表和虚拟机的结构体表大小受存活对象数约束。
+ * 整理模式下每次回收后按原偏移顺序把存活对象滑动到堆底，消除碎片；
+ * 对象通过ID间接访问，整理时只需更新对象头中的偏移量。
+ * 对象的实际数据由使用方保存（虚拟机的结构体堆），整理后通过整理回调通知使用方同样移动数据。
+ *
+ * 引用计数操作在追踪式回收中没有意义，{@link #incrementRef}/{@link #decrementRef} 为空操作。
+ */
+public class MarkSweepGC implements GarbageCollector {
+    private static final byte FLAG_ALIVE = 1;
+    private static final byte FLAG_MARKED = 2;
+
+    private final int heapSize;
+    private final boolean compacting;
+    private final SizeClassAllocator allocator;
+    private final GCStats stats;
+    private GCRootProvider rootProvider;
+    private IntConsumer collectionListener;
+    private Runnable compactionListener;
+
+    // 对象头（按对象ID索引）
+    private int[] sizes;
+    private int[] offsets;
+    private int[] blockSizes;
+    private byte[] flags;
+    private int nextObjectId;
+    private int[] freeIds;
+    private int freeIdCount;
+    private int liveObjects;
+    private int liveBytes;
+
+    // 标记栈
+    private int[] markStack;
+    private int markTop;
+
+    /**
+     * 构造函数
+     * @param heapSize 堆大小
+     * @param compacting 是否在每次回收后整理堆
+     */
+    public MarkSweepGC(int heapSize, boolean compacting) {
+        if (heapSize <= 0) {
+            throw new IllegalArgumentException("Heap size must be positive");
+        }
+        this.heapSize = heapSize;
+        this.compacting = compacting;
+        this.allocator = new SizeClassAllocator(heapSize);
+        this.stats = new GCStats();
+        this.sizes = new int[64];
+        this.offsets = new int[64];
+        this.blockSizes = new int[64];
+        this.flags = new byte[64];
+        this.nextObjectId = 1;
+        this.freeIds = new int[16];
+        this.markStack = new int[64];
+    }
+
+    /**
+     * 设置根集合提供者；未设置时无法判断可达性，回收不释放任何对象
+     */
+    public void setRootProvider(GCRootProvider rootProvider) {
+        this.rootProvider = rootProvider;
+    }
+
+    /**
+     * 设置对象被回收时的回调（用于清理虚拟机侧的结构体表）
+     */
+    public void setCollectionListener(IntConsumer collectionListener) {
+        this.collectionListener = collectionListener;
+    }
+
+    /**
+     * 设置整理完成后的回调（用于整理虚拟机侧保存对象数据的结构体堆）
+     */
+    public void setCompactionListener(Runnable compactionListener) {
+        this.compactionListener = compactionListener;
+    }
+
+    private boolean isLive(int objectId) {
+        return objectId > 0 && objectId < nextObjectId && (flags[objectId] & FLAG_ALIVE) != 0;
+    }
+
+    @Override
+    public synchronized int allocate(int size) throws OutOfMemoryError {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size must be positive");
+        }
+
+        if (size > heapSize) {
+            throw new OutOfMemoryError("Object size exceeds heap size");
+        }
+
+        int blockSize = SizeClassAllocator.blockSize(size);
+        int offset = allocator.allocate(blockSize);
+        if (offset < 0) {
+            collect();
+            offset = allocator.allocate(blockSize);
+        }
+        if (offset < 0 && blockSize != size) {
+            blockSize = size;
+            offset = allocator.allocate(blockSize);
+        }
+        if (offset < 0) {
+            throw new OutOfMemoryError("Out of memory after garbage collection");
+        }
+
+        int objectId = freeIdCount > 0 ? freeIds[--freeIdCount] : nextObjectId++;
+        if (objectId >= flags.length) {
+            int capacity = flags.length * 2;
+            sizes = Arrays.copyOf(sizes, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            blockSizes = Arrays.copyOf(blockSizes, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        sizes[objectId] = size;
+        offsets[objectId] = offset;
+        blockSizes[objectId] = blockSize;
+        flags[objectId] = FLAG_ALIVE;
+        liveObjects++;
+        liveBytes += size;
+
+        stats.recordAllocation(size);
+        return objectId;
+    }
+
+    /**
+     * 按给定对象ID重建对象表：对象按给出的顺序从空堆重新分配，未出现的ID进入空闲ID表
+     */
+    @Override
+    public synchronized void restoreObjects(int[] objectIds, int[] objectSizes) {
+        int maxId = 0;
+        for (int objectId : objectIds) {
+            if (objectId <= 0) {
+                throw new IllegalArgumentException("Object ID must be positive: " + objectId);
+            }
+            maxId = Math.max(maxId, objectId);
+        }
+        int capacity = Math.max(64, maxId + 1);
+        sizes = new int[capacity];
+        offsets = new int[capacity];
+        blockSizes = new int[capacity];
+        flags = new byte[capacity];
+        allocator.reset();
+        liveObjects = 0;
+        liveBytes = 0;
+        markTop = 0;
+
+        for (int i = 0; i < objectIds.length; i++) {
+            int objectId = objectIds[i];
+            int size = objectSizes[i];
+            int blockSize = SizeClassAllocator.blockSize(size);
+            int offset = allocator.allocate(blockSize);
+            if (offset < 0 && blockSize != size) {
+                blockSize = size;
+                offset = allocator.allocate(blockSize);
+            }
+            if (offset < 0) {
+                throw new OutOfMemoryError("Not enough heap space to restore object " + objectId);
+            }
+            sizes[objectId] = size;
+            offsets[objectId] = offset;
+            blockSizes[objectId] = blockSize;
+            flags[objectId] = FLAG_ALIVE;
+            liveObjects++;
+            liveBytes += size;
+        }
+
+        nextObjectId = maxId + 1;
+        freeIdCount = 0;
+        for (int objectId = maxId - 1; objectId > 0; objectId--) {
+            if (flags[objectId] == 0) {
+                if (freeIdCount == freeIds.length) {
+                    freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+                }
+                freeIds[freeIdCount++] = objectId;
+            }
+        }
+    }
+
+    @Override
+    public void incrementRef(int objectId) {
+        // 追踪式回收不维护引用计数
+    }
+
+    @Override
+    public void decrementRef(int objectId) {
+        // 追踪式回收不维护引用计数
+    }
+
+    @Override
+    public synchronized void collect() {
+        long startTime = System.nanoTime();
+        if (rootProvider == null) {
+            stats.recordCollection(0, 0, System.nanoTime() - startTime);
+            return;
+        }
+
+        // 标记：从根出发，用显式栈遍历对象图
+        rootProvider.forEachRoot(this::markCandidate);
+        while (markTop > 0) {
+            rootProvider.forEachReference(markStack[--markTop], this::markCandidate);
+        }
+
+        // 清除：释放未标记对象，清除存活对象的标记位
+        int collectedObjects = 0;
+        long collectedMemory = 0;
+        for (int objectId = 1; objectId < nextObjectId; objectId++) {
+            byte flag = flags[objectId];
+            if ((flag & FLAG_ALIVE) == 0) {
+                continue;
+            }
+            if ((flag & FLAG_MARKED) != 0) {
+                flags[objectId] = FLAG_ALIVE;
+            } else {
+                collectedMemory += release(objectId);
+                collectedObjects++;
+            }
+        }
+
+        if (compacting) {
+            compact();
+            if (compactionListener != null) {
+                compactionListener.run();
+            }
+        }
+
+        stats.recordCollection(collectedObjects, collectedMemory, System.nanoTime() - startTime);
+    }
+
+    private void markCandidate(int value) {
+        if (isLive(value) && (flags[value] & FLAG_MARKED) == 0) {
+            flags[value] |= FLAG_MARKED;
+            if (markTop == markStack.length) {
+                markStack = Arrays.copyOf(markStack, markStack.length * 2);
+            }
+            markStack[markTop++] = value;
+        }
+    }
+
+    private int release(int objectId) {
+        int size = sizes[objectId];
+        allocator.free(offsets[objectId], blockSizes[objectId]);
+        flags[objectId] = 0;
+        liveObjects--;
+        liveBytes -= size;
+        if (freeIdCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+        }
+        freeIds[freeIdCount++] = objectId;
+        if (collectionListener != null) {
+            collectionListener.accept(objectId);
+        }
+        return size;
+    }
+
+    /**
+     * 整理：按原偏移顺序重新从堆底分配所有存活对象
+     */
+    private void compact() {
+        long[] order = new long[liveObjects];
+        int count = 0;
+        for (int objectId = 1; objectId < nextObjectId; objectId++) {
+            if ((flags[objectId] & FLAG_ALIVE) != 0) {
+                order[count++] = ((long) offsets[objectId] << 32) | objectId;
+            }
+        }
+        Arrays.sort(order, 0, count);
+
+        allocator.reset();
+        for (int i = 0; i < count; i++) {
+            int objectId = (int) order[i];
+            // 分配器已清空且存活总量不超过原占用，这里总是从碰撞指针分配
+            offsets[objectId] = allocator.allocate(blockSizes[objectId]);
+        }
+    }
+
+    @Override
+    public synchronized boolean isObjectAlive(int objectId) {
+        return isLive(objectId);
+    }
+
+    @Override
+    public GCStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void resetStats() {
+        stats.reset();
+    }
+
+    /**
+     * 获取存活对象的请求大小之和
+     */
+    public synchronized int getHeapUsage() {
+        return liveBytes;
+    }
+
+    /**
+     * 获取分配器实际占用的字节数（含大小类别取整）
+     */
+    public synchronized int getReservedBytes() {
+        return allocator.getReservedBytes();
+    }
+
+    /**
+     * 获取空闲块数量，整理后为0
+     */
+    public synchronized int getFreeBlockCount() {
+        return allocator.getFreeBlockCount();
+    }
+
+    /**
+     * 获取对象在堆中的偏移量
+     * @return 偏移量，对象不存活时返回-1
+     */
+    public synchronized int getObjectOffset(int objectId) {
+        return isLive(objectId) ? offsets[objectId] : -1;
+    }
+
+    /**
+     * 获取存活对象数量
+     */
+    public synchronized int getObjectCount() {
+        return liveObjects;
+    }
+
+    /**
+     * 获取堆大小
+     */
+    public int getHeapSize() {
+        return heapSize;
+    }
+
+    /**
+     * 是否为标记-整理模式
+     */
+    public boolean isCompacting() {
+        return compacting;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("MarkSweepGC{heapSize=%d, used=%d, objects=%d, collections=%d, compacting=%s}",
+            heapSize, liveBytes, liveObjects, stats.getTotalCollections(), compacting);
+    }
+}
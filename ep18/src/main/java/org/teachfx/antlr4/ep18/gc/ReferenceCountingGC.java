@@ -1,27 +1,40 @@
 package org.teachfx.antlr4.ep18.gc;
 
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Arrays;
 
 /**
  * 引用计数垃圾回收器
- * 使用空闲链表管理的引用计数算法进行自动内存管理
+ * 使用分离空闲链表分配器的引用计数算法进行自动内存管理
  *
  * 设计改进（2025-12-23）：
- * - 使用TreeMap管理的空闲链表，支持内存重用
- * - 首次适应（First-Fit）分配算法
- * - 空闲块自动合并（简单实现）
+ * - 使用空闲链表管理，支持内存重用
+ * - 空闲块自动合并
+ *
+ * 分配器与对象头：
+ * - 由 {@link SizeClassAllocator} 按大小类别分配，小对象O(1)分配和释放
+ * - 对象头拆分为按对象ID索引的并行基本类型数组（引用计数、大小、偏移量、块大小、状态），
+ *   每个对象约17字节元数据，无需为每个对象创建头部实例和哈希表条目
+ * - 释放的对象ID压入空闲ID栈并优先复用，对象头数组和回收扫描范围只随同时存活的对象数增长
  */
 public class ReferenceCountingGC implements GarbageCollector {
+    private static final byte FLAG_ALIVE = 1;
+
     private final int heapSize;
     private final byte[] heap;
-    private final Map<Integer, GCObjectHeader> objectHeaders;
-    private final AtomicInteger nextObjectId;
+    private final SizeClassAllocator allocator;
     private final GCStats stats;
 
-    // 空闲链表管理（按偏移量排序的TreeMap）
-    private final TreeMap<Integer, FreeBlock> freeList;
+    // 对象头（按对象ID索引）
+    private int[] refCounts;
+    private int[] sizes;        // 请求大小
+    private int[] offsets;
+    private int[] blockSizes;   // 实际占用的块大小
+    private byte[] flags;
+    private int nextObjectId;   // 已使用过的最大ID + 1
+    private int[] freeIds;
+    private int freeIdCount;
+    private int liveObjects;
+    private int liveBytes;
 
     public ReferenceCountingGC(int heapSize) {
         if (heapSize <= 0) {
@@ -30,40 +43,41 @@ public class ReferenceCountingGC implements GarbageCollector {
 
         this.heapSize = heapSize;
         this.heap = new byte[heapSize];
-        this.objectHeaders = new ConcurrentHashMap<>();
-        this.freeList = new TreeMap<>();
-        this.nextObjectId = new AtomicInteger(1);
+        this.allocator = new SizeClassAllocator(heapSize);
         this.stats = new GCStats();
-
-        // 初始化空闲链表：整个堆是一个大空闲块
-        freeList.put(0, new FreeBlock(0, heapSize));
+        initObjectTable(64);
     }
 
-    /**
-     * 空闲块表示
-     */
-    private static class FreeBlock implements Comparable<FreeBlock> {
-        final int offset;
-        final int size;
-
-        FreeBlock(int offset, int size) {
-            this.offset = offset;
-            this.size = size;
-        }
+    private void initObjectTable(int capacity) {
+        this.refCounts = new int[capacity];
+        this.sizes = new int[capacity];
+        this.offsets = new int[capacity];
+        this.blockSizes = new int[capacity];
+        this.flags = new byte[capacity];
+        this.nextObjectId = 1;
+        this.freeIds = new int[16];
+        this.freeIdCount = 0;
+        this.liveObjects = 0;
+        this.liveBytes = 0;
+    }
 
-        @Override
-        public int compareTo(FreeBlock other) {
-            return Integer.compare(this.offset, other.offset);
+    private void ensureObjectCapacity(int objectId) {
+        if (objectId >= flags.length) {
+            int capacity = Math.max(objectId + 1, flags.length * 2);
+            refCounts = Arrays.copyOf(refCounts, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            blockSizes = Arrays.copyOf(blockSizes, capacity);
+            flags = Arrays.copyOf(flags, capacity);
         }
+    }
 
-        @Override
-        public String toString() {
-            return String.format("FreeBlock{offset=%d, size=%d}", offset, size);
-        }
+    private boolean isLive(int objectId) {
+        return objectId > 0 && objectId < nextObjectId && flags[objectId] == FLAG_ALIVE;
     }
 
     @Override
-    public int allocate(int size) throws OutOfMemoryError {
+    public synchronized int allocate(int size) throws OutOfMemoryError {
         if (size <= 0) {
             throw new IllegalArgumentException("Size must be positive");
         }
@@ -72,33 +86,32 @@ public class ReferenceCountingGC implements GarbageCollector {
             throw new OutOfMemoryError("Object size exceeds heap size");
         }
 
-        // 尝试垃圾回收以释放更多空间
-        if (!hasFreeBlockFor(size)) {
+        int blockSize = SizeClassAllocator.blockSize(size);
+        int offset = allocator.allocate(blockSize);
+        if (offset < 0) {
+            // 尝试垃圾回收以释放更多空间
             collect();
+            offset = allocator.allocate(blockSize);
         }
-
-        // 使用首次适应算法查找合适的空闲块
-        Integer offset = findFreeBlock(size);
-        if (offset == null) {
-            throw new OutOfMemoryError("Out of memory after garbage collection");
+        if (offset < 0 && blockSize != size) {
+            // 取整后放不下时退回精确大小
+            blockSize = size;
+            offset = allocator.allocate(blockSize);
         }
-
-        // 从空闲链表中移除该块
-        FreeBlock block = freeList.remove(offset);
-
-        // 如果块太大，分裂它
-        if (block.size > size) {
-            int remainingSize = block.size - size;
-            int remainingOffset = offset + size;
-            freeList.put(remainingOffset, new FreeBlock(remainingOffset, remainingSize));
+        if (offset < 0) {
+            throw new OutOfMemoryError("Out of memory after garbage collection");
         }
 
         // 创建对象ID和头部
-        int objectId = nextObjectId.getAndIncrement();
-        GCObjectHeader header = new GCObjectHeader(size);
-        header.setOffset(offset);  // 记录偏移量
-        header.incrementRef();  // 分配者持有引用，引用计数=1
-        objectHeaders.put(objectId, header);
+        int objectId = freeIdCount > 0 ? freeIds[--freeIdCount] : nextObjectId++;
+        ensureObjectCapacity(objectId);
+        refCounts[objectId] = 1;  // 分配者持有引用，引用计数=1
+        sizes[objectId] = size;
+        offsets[objectId] = offset;
+        blockSizes[objectId] = blockSize;
+        flags[objectId] = FLAG_ALIVE;
+        liveObjects++;
+        liveBytes += size;
 
         // 记录统计信息
         stats.recordAllocation(size);
@@ -106,44 +119,17 @@ public class ReferenceCountingGC implements GarbageCollector {
         return objectId;
     }
 
-    /**
-     * 检查是否有足够大小的空闲块
-     */
-    private boolean hasFreeBlockFor(int size) {
-        for (FreeBlock block : freeList.values()) {
-            if (block.size >= size) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * 使用首次适应算法查找合适的空闲块
-     * @return 空闲块的偏移量，如果没有找到返回null
-     */
-    private Integer findFreeBlock(int size) {
-        for (Map.Entry<Integer, FreeBlock> entry : freeList.entrySet()) {
-            if (entry.getValue().size >= size) {
-                return entry.getKey();
-            }
-        }
-        return null;
-    }
-
     @Override
-    public void incrementRef(int objectId) {
-        GCObjectHeader header = objectHeaders.get(objectId);
-        if (header != null) {
-            header.incrementRef();
+    public synchronized void incrementRef(int objectId) {
+        if (isLive(objectId)) {
+            refCounts[objectId]++;
         }
     }
 
     @Override
-    public void decrementRef(int objectId) {
-        GCObjectHeader header = objectHeaders.get(objectId);
-        if (header != null) {
-            int refCount = header.decrementRef();
+    public synchronized void decrementRef(int objectId) {
+        if (isLive(objectId)) {
+            int refCount = --refCounts[objectId];
 
             // 如果引用计数降为0，回收对象
             if (refCount <= 0) {
@@ -153,29 +139,20 @@ public class ReferenceCountingGC implements GarbageCollector {
     }
 
     @Override
-    public void collect() {
+    public synchronized void collect() {
         long startTime = System.nanoTime();
 
         int collectedObjects = 0;
         long collectedMemory = 0;
 
         // 收集引用计数为0的对象
-        List<Integer> objectsToCollect = new ArrayList<>();
-        for (Map.Entry<Integer, GCObjectHeader> entry : objectHeaders.entrySet()) {
-            int objectId = entry.getKey();
-            GCObjectHeader header = entry.getValue();
-
-            if (header.getRefCount() <= 0) {
-                objectsToCollect.add(objectId);
+        for (int objectId = 1; objectId < nextObjectId; objectId++) {
+            if (flags[objectId] == FLAG_ALIVE && refCounts[objectId] <= 0) {
+                collectedMemory += collectObject(objectId);
+                collectedObjects++;
             }
         }
 
-        // 回收对象
-        for (int objectId : objectsToCollect) {
-            collectedMemory += collectObject(objectId);
-            collectedObjects++;
-        }
-
         long endTime = System.nanoTime();
         long collectionTime = endTime - startTime;
 
@@ -189,57 +166,29 @@ public class ReferenceCountingGC implements GarbageCollector {
      * @return 回收的内存量
      */
     private long collectObject(int objectId) {
-        GCObjectHeader header = objectHeaders.get(objectId);
-        if (header == null) {
+        if (!isLive(objectId)) {
             return 0;
         }
 
-        int size = header.getSize();
-        int offset = header.getOffset();
+        int size = sizes[objectId];
 
-        // 将内存块加入空闲链表
-        addFreeBlock(offset, size);
-
-        objectHeaders.remove(objectId);
-        header.setAlive(false);
-
-        return size;
-    }
-
-    /**
-     * 将空闲块加入空闲链表，尝试合并相邻的空闲块
-     */
-    private void addFreeBlock(int offset, int size) {
-        // 检查是否可以与前一个块合并
-        Map.Entry<Integer, FreeBlock> prevEntry = freeList.floorEntry(offset);
-        if (prevEntry != null) {
-            FreeBlock prevBlock = prevEntry.getValue();
-            if (prevEntry.getKey() + prevBlock.size == offset) {
-                // 可以合并，移除前一个块，创建更大的块
-                freeList.remove(prevEntry.getKey());
-                offset = prevEntry.getKey();
-                size += prevBlock.size;
-            }
-        }
+        // 将内存块交还分配器
+        allocator.free(offsets[objectId], blockSizes[objectId]);
 
-        // 检查是否可以与后一个块合并
-        Map.Entry<Integer, FreeBlock> nextEntry = freeList.higherEntry(offset);
-        if (nextEntry != null && nextEntry.getKey() == offset + size) {
-            // 可以合并，移除后一个块，扩展当前块
-            FreeBlock nextBlock = nextEntry.getValue();
-            freeList.remove(nextEntry.getKey());
-            size += nextBlock.size;
+        flags[objectId] = 0;
+        liveObjects--;
+        liveBytes -= size;
+        if (freeIdCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
         }
+        freeIds[freeIdCount++] = objectId;
 
-        // 添加合并后的空闲块
-        freeList.put(offset, new FreeBlock(offset, size));
+        return size;
     }
 
     @Override
-    public boolean isObjectAlive(int objectId) {
-        GCObjectHeader header = objectHeaders.get(objectId);
-        boolean alive = header != null && header.isAlive();
-        return alive;
+    public synchronized boolean isObjectAlive(int objectId) {
+        return isLive(objectId);
     }
 
     @Override
@@ -256,22 +205,12 @@ public class ReferenceCountingGC implements GarbageCollector {
      * 获取堆使用情况
      * @return 堆使用信息
      */
-    public String getHeapInfo() {
-        int totalUsed = heapSize - getTotalFreeSize();
+    public synchronized String getHeapInfo() {
+        int totalUsed = getHeapUsage();
         double usagePercent = (double) totalUsed / heapSize * 100;
-        return String.format("Heap: %d/%d bytes (%.2f%% used), objects: %d, free blocks: %d",
-            totalUsed, heapSize, usagePercent, objectHeaders.size(), freeList.size());
-    }
-
-    /**
-     * 获取空闲块总大小
-     */
-    private int getTotalFreeSize() {
-        int total = 0;
-        for (FreeBlock block : freeList.values()) {
-            total += block.size;
-        }
-        return total;
+        return String.format("Heap: %d/%d bytes (%.2f%% used, %d reserved), objects: %d, free blocks: %d",
+            totalUsed, heapSize, usagePercent, allocator.getReservedBytes(), liveObjects,
+            allocator.getFreeBlockCount());
     }
 
     /**
@@ -286,30 +225,40 @@ public class ReferenceCountingGC implements GarbageCollector {
      * @param objectId 对象ID
      * @return 是否可能存在循环引用
      */
-    public boolean hasCycleReference(int objectId) {
+    public synchronized boolean hasCycleReference(int objectId) {
         // 简单的循环引用检测
         // 在实际实现中，需要跟踪对象的引用关系
-        GCObjectHeader header = objectHeaders.get(objectId);
-        return header != null && header.getRefCount() > 0 && !header.isAlive();
+        return objectId > 0 && objectId < nextObjectId
+            && flags[objectId] != FLAG_ALIVE && refCounts[objectId] > 0;
+    }
+
+    @Override
+    public void reset() {
+        clearAll();
     }
 
     /**
      * 清理所有对象（用于测试）
      */
-    public void clearAll() {
-        objectHeaders.clear();
-        freeList.clear();
-        nextObjectId.set(1);
-        // 重新初始化空闲链表
-        freeList.put(0, new FreeBlock(0, heapSize));
+    public synchronized void clearAll() {
+        initObjectTable(64);
+        allocator.reset();
     }
 
     /**
      * 获取当前堆使用量
-     * @return 使用的内存量
+     * @return 存活对象的请求大小之和
+     */
+    public synchronized int getHeapUsage() {
+        return liveBytes;
+    }
+
+    /**
+     * 获取分配器实际占用的字节数（含大小类别取整）
+     * @return 已分配块的总大小
      */
-    public int getHeapUsage() {
-        return heapSize - getTotalFreeSize();
+    public synchronized int getReservedBytes() {
+        return allocator.getReservedBytes();
     }
 
     /**
@@ -324,13 +273,13 @@ public class ReferenceCountingGC implements GarbageCollector {
      * 获取对象数量
      * @return 当前对象数量
      */
-    public int getObjectCount() {
-        return objectHeaders.size();
+    public synchronized int getObjectCount() {
+        return liveObjects;
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
         return String.format("ReferenceCountingGC{heapSize=%d, used=%d, objects=%d, collections=%d, freeBlocks=%d}",
-            heapSize, getHeapUsage(), objectHeaders.size(), stats.getTotalCollections(), freeList.size());
+            heapSize, getHeapUsage(), liveObjects, stats.getTotalCollections(), allocator.getFreeBlockCount());
     }
 }
@@ -0,0 +1,230 @@
+package org.teachfx.antlr4.ep18.gc;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 分离空闲链表分配器
+ * 小对象按大小类别（8字节步长到128字节，之后每翻倍4档到256字节）向上取整，
+ * 每个类别维护一个以int数组实现的空闲块栈，分配和释放都是O(1)；
+ * 类别栈为空时从堆顶以指针碰撞方式切分新块。
+ * 超过最大类别的大对象按精确大小分配，释放时与相邻空闲大块合并，
+ * 紧邻堆顶的空闲块直接退回碰撞指针。
+ * 类别栈、碰撞指针和空闲大块都无法满足请求时，把各类别栈中的空闲块并入空闲大块并合并相邻块后重试，
+ * 因此释放的小块最终也能拼成其他类别或大对象所需的空间。
+ */
+public final class SizeClassAllocator {
+    /** 最大的小对象类别 */
+    public static final int MAX_SMALL_SIZE = 256;
+
+    private static final int[] CLASS_SIZES = {
+        8, 16, 24, 32, 40, 48, 56, 64, 72, 80, 88, 96, 104, 112, 120, 128,
+        160, 192, 224, 256
+    };
+
+    private final int capacity;
+    private int bumpPointer;                 // 堆顶：之后的空间从未分配过
+    private final int[][] freeStacks;        // 类别 -> 空闲块偏移量栈
+    private final int[] freeCounts;
+    private final TreeMap<Integer, Integer> largeFreeBlocks; // 偏移量 -> 大小
+    private int reservedBytes;               // 已分配块（含取整）的总大小
+
+    /**
+     * 构造函数
+     * @param capacity 可分配的总字节数
+     */
+    public SizeClassAllocator(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Heap size must be positive");
+        }
+        this.capacity = capacity;
+        this.freeStacks = new int[CLASS_SIZES.length][];
+        this.freeCounts = new int[CLASS_SIZES.length];
+        for (int i = 0; i < freeStacks.length; i++) {
+            freeStacks[i] = new int[16];
+        }
+        this.largeFreeBlocks = new TreeMap<>();
+    }
+
+    /**
+     * 计算请求大小对应的类别编号
+     * @return 类别编号，大对象返回-1
+     */
+    static int sizeClass(int size) {
+        if (size <= 128) {
+            return (size + 7) / 8 - 1;
+        }
+        if (size <= MAX_SMALL_SIZE) {
+            return 16 + (size - 129) / 32;
+        }
+        return -1;
+    }
+
+    /**
+     * 计算请求大小实际占用的块大小
+     * @param size 请求大小（正数）
+     * @return 小对象取整到类别大小，大对象保持原值
+     */
+    public static int blockSize(int size) {
+        int sizeClass = sizeClass(size);
+        return sizeClass >= 0 ? CLASS_SIZES[sizeClass] : size;
+    }
+
+    /**
+     * 分配一个块
+     * 类别大小的块优先取类别空闲栈，其次碰撞指针，最后从空闲大块中切分；
+     * 都失败时合并类别空闲栈中的块后再试一次
+     * @param blockSize 块大小，应由 {@link #blockSize(int)} 得出，或为无法取整时的精确大小
+     * @return 块偏移量，空间不足时返回-1
+     */
+    public int allocate(int blockSize) {
+        int sizeClass = classOfBlock(blockSize);
+        if (sizeClass >= 0 && freeCounts[sizeClass] > 0) {
+            reservedBytes += blockSize;
+            return freeStacks[sizeClass][--freeCounts[sizeClass]];
+        }
+
+        int offset = allocateUnclassified(blockSize);
+        if (offset < 0 && coalesceSmallBlocks()) {
+            offset = allocateUnclassified(blockSize);
+        }
+        if (offset >= 0) {
+            reservedBytes += blockSize;
+        }
+        return offset;
+    }
+
+    /**
+     * 从碰撞指针或空闲大块中切分一个块
+     * @return 块偏移量，空间不足时返回-1
+     */
+    private int allocateUnclassified(int blockSize) {
+        if (capacity - bumpPointer >= blockSize) {
+            int offset = bumpPointer;
+            bumpPointer += blockSize;
+            return offset;
+        }
+
+        for (Map.Entry<Integer, Integer> entry : largeFreeBlocks.entrySet()) {
+            int size = entry.getValue();
+            if (size >= blockSize) {
+                int offset = entry.getKey();
+                largeFreeBlocks.remove(offset);
+                if (size > blockSize) {
+                    largeFreeBlocks.put(offset + blockSize, size - blockSize);
+                }
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 把所有类别空闲栈中的块并入空闲大块，与相邻空闲块合并
+     * @return 是否有块被移动
+     */
+    private boolean coalesceSmallBlocks() {
+        boolean moved = false;
+        for (int sizeClass = 0; sizeClass < freeCounts.length; sizeClass++) {
+            int[] stack = freeStacks[sizeClass];
+            for (int i = 0; i < freeCounts[sizeClass]; i++) {
+                insertFreeBlock(stack[i], CLASS_SIZES[sizeClass]);
+                moved = true;
+            }
+            freeCounts[sizeClass] = 0;
+        }
+        return moved;
+    }
+
+    /**
+     * 释放一个块
+     * @param offset 块偏移量
+     * @param blockSize 分配时使用的块大小
+     */
+    public void free(int offset, int blockSize) {
+        reservedBytes -= blockSize;
+        int sizeClass = classOfBlock(blockSize);
+        if (sizeClass >= 0) {
+            int[] stack = freeStacks[sizeClass];
+            if (freeCounts[sizeClass] == stack.length) {
+                stack = freeStacks[sizeClass] = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[freeCounts[sizeClass]++] = offset;
+            return;
+        }
+        insertFreeBlock(offset, blockSize);
+    }
+
+    /**
+     * 把空闲块放入空闲大块表：与前后相邻的空闲大块合并，紧邻堆顶时退回碰撞指针
+     */
+    private void insertFreeBlock(int offset, int blockSize) {
+        Map.Entry<Integer, Integer> prev = largeFreeBlocks.floorEntry(offset);
+        if (prev != null && prev.getKey() + prev.getValue() == offset) {
+            largeFreeBlocks.remove(prev.getKey());
+            offset = prev.getKey();
+            blockSize += prev.getValue();
+        }
+        Integer nextSize = largeFreeBlocks.remove(offset + blockSize);
+        if (nextSize != null) {
+            blockSize += nextSize;
+        }
+
+        if (offset + blockSize == bumpPointer) {
+            bumpPointer = offset;
+        } else {
+            largeFreeBlocks.put(offset, blockSize);
+        }
+    }
+
+    /**
+     * 块大小恰好等于某个类别大小时返回该类别，否则返回-1
+     */
+    private static int classOfBlock(int blockSize) {
+        int sizeClass = sizeClass(blockSize);
+        return sizeClass >= 0 && CLASS_SIZES[sizeClass] == blockSize ? sizeClass : -1;
+    }
+
+    /**
+     * 释放所有块，回到初始状态
+     */
+    public void reset() {
+        bumpPointer = 0;
+        reservedBytes = 0;
+        Arrays.fill(freeCounts, 0);
+        largeFreeBlocks.clear();
+    }
+
+    /**
+     * 获取已分配块（含取整浪费）的总字节数
+     */
+    public int getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * 获取碰撞指针位置
+     */
+    public int getBumpPointer() {
+        return bumpPointer;
+    }
+
+    /**
+     * 获取空闲块数量（类别空闲栈与空闲大块之和）
+     */
+    public int getFreeBlockCount() {
+        int count = largeFreeBlocks.size();
+        for (int freeCount : freeCounts) {
+            count += freeCount;
+        }
+        return count;
+    }
+
+    /**
+     * 获取可分配的总字节数
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+}
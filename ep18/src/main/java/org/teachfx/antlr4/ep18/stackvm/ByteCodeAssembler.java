@@ -79,6 +79,13 @@ public class ByteCodeAssembler extends VMAssemblerBaseListener {
         return mainFunction;
     }
 
+    /**
+     * 将汇编结果打包为二进制目标文件
+     */
+    public ObjectFile toObjectFile() {
+        return new ObjectFile(getMachineCode(), ip, getConstantPool(), mainFunction, dataSize);
+    }
+
     protected void gen(Token instrToken) {
         String instructionName = instrToken.getText();
         currentInstruction = instructionName;
@@ -0,0 +1,422 @@
+package org.teachfx.antlr4.ep18.stackvm;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * 加载时字节码校验器
+ * 在预解码指令流（超级指令重写之前）上做一次校验，结果在本次加载内一直有效：
+ * <ul>
+ *   <li>结构检查：从入口（槽位0）和所有CALL目标出发的可达指令必须是已支持的操作码，
+ *       跳转目标必须落在指令边界上，执行不能落出代码末尾，
+ *       LOAD/STORE 的局部变量索引必须小于所在函数的局部变量个数，GLOAD/GSTORE 的全局地址必须在程序的全局数据区内。
+ *       结构检查失败抛出 {@link VMVerificationException}。</li>
+ *   <li>栈深度分析：按函数做区间数据流分析，求出每个函数相对入口的最大/最小操作数栈深度
+ *       （含被调函数的栈使用）。调用图无环且主函数深度在 [0, 栈容量] 内时，
+ *       程序运行期间不可能发生栈溢出或下溢，{@link Result#isStackSafe()} 为true。</li>
+ * </ul>
+ * CALL 按VM的调用约定建模：参数留在调用者栈上，返回时恢复到调用前深度并在栈非空时压入返回值，
+ * 因此调用后深度为调用前深度加0或1；被调函数所有返回点深度都不小于1时恰好加1。
+ */
+public final class BytecodeVerifier {
+
+    /** 深度无界的标记 */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private static final int UNVISITED = Integer.MIN_VALUE;
+
+    // 操作码 -> 弹出/压入个数，-1表示不支持
+    private static final int[] POPS = new int[128];
+    private static final int[] PUSHES = new int[128];
+
+    static {
+        Arrays.fill(POPS, -1);
+        Arrays.fill(PUSHES, -1);
+        for (int opcode = BytecodeDefinition.INSTR_IADD; opcode <= BytecodeDefinition.INSTR_FEQ; opcode++) {
+            effect(opcode, 2, 1);
+        }
+        effect(BytecodeDefinition.INSTR_INEG, 1, 1);
+        effect(BytecodeDefinition.INSTR_INOT, 1, 1);
+        effect(BytecodeDefinition.INSTR_ITOF, 1, 1);
+        effect(BytecodeDefinition.INSTR_CALL, 0, 0);   // 单独建模
+        effect(BytecodeDefinition.INSTR_RET, 0, 0);
+        effect(BytecodeDefinition.INSTR_BR, 0, 0);
+        effect(BytecodeDefinition.INSTR_BRT, 1, 0);
+        effect(BytecodeDefinition.INSTR_BRF, 1, 0);
+        effect(BytecodeDefinition.INSTR_ICONST, 0, 1);
+        effect(BytecodeDefinition.INSTR_FCONST, 0, 1);
+        effect(BytecodeDefinition.INSTR_LOAD, 0, 1);
+        effect(BytecodeDefinition.INSTR_GLOAD, 0, 1);
+        effect(BytecodeDefinition.INSTR_FLOAD, 1, 1);
+        effect(BytecodeDefinition.INSTR_STORE, 1, 0);
+        effect(BytecodeDefinition.INSTR_GSTORE, 1, 0);
+        effect(BytecodeDefinition.INSTR_FSTORE, 2, 0);
+        effect(BytecodeDefinition.INSTR_PRINT, 1, 0);
+        effect(BytecodeDefinition.INSTR_STRUCT, 0, 1);
+        effect(BytecodeDefinition.INSTR_NULL, 0, 1);
+        effect(BytecodeDefinition.INSTR_POP, 1, 0);
+        effect(BytecodeDefinition.INSTR_HALT, 0, 0);
+        effect(BytecodeDefinition.INSTR_IALOAD, 0, 1);
+        effect(BytecodeDefinition.INSTR_IASTORE, 1, 0);
+        effect(BytecodeDefinition.INSTR_NEWARRAY, 0, 1);
+    }
+
+    private static void effect(int opcode, int pops, int pushes) {
+        POPS[opcode] = pops;
+        PUSHES[opcode] = pushes;
+    }
+
+    private final DecodedProgram program;
+    private final int[] opcodes;
+    private final int[] operands;
+    private final int length;
+    private final int stackCapacity;
+    private final IntUnaryOperator localCounts;
+    private final int globalCount;
+
+    // 函数表：入口槽位 -> 函数序号
+    private final int[] functionIndex;
+    private int[] entries = new int[8];
+    private int functionCount;
+    private int[][] callees;
+
+    // 函数摘要（相对入口深度，含被调函数）
+    private int[] maxDepth;
+    private int[] minDepth;
+    private boolean[] returnsValue;
+
+    private BytecodeVerifier(DecodedProgram program, int stackCapacity, IntUnaryOperator localCounts, int globalCount) {
+        this.program = program;
+        this.opcodes = program.getOpcodes();
+        this.operands = program.getOperands();
+        this.length = program.getLength();
+        this.stackCapacity = stackCapacity;
+        this.localCounts = localCounts;
+        this.globalCount = globalCount;
+        this.functionIndex = new int[length];
+        Arrays.fill(functionIndex, -1);
+    }
+
+    /**
+     * 校验预解码指令流，所有函数使用同一局部变量个数
+     * @param program 预解码指令流（未做超级指令重写）
+     * @param stackCapacity 操作数栈容量
+     * @param localCount 局部变量个数
+     * @param globalCount 全局数据区大小
+     * @return 校验结果
+     * @throws VMVerificationException 结构检查失败
+     */
+    public static Result verify(DecodedProgram program, int stackCapacity, int localCount, int globalCount) {
+        return verify(program, stackCapacity, entry -> localCount, globalCount);
+    }
+
+    /**
+     * 校验预解码指令流
+     * @param program 预解码指令流（未做超级指令重写）
+     * @param stackCapacity 操作数栈容量
+     * @param localCounts 函数入口槽位 -> 该函数的局部变量个数（参数和局部变量）
+     * @param globalCount 程序的全局数据区大小
+     * @return 校验结果
+     * @throws VMVerificationException 结构检查失败
+     */
+    public static Result verify(DecodedProgram program, int stackCapacity, IntUnaryOperator localCounts,
+                                int globalCount) {
+        BytecodeVerifier verifier = new BytecodeVerifier(program, stackCapacity, localCounts, globalCount);
+        verifier.checkStructure();
+        return verifier.analyzeStack();
+    }
+
+    // ==================== 结构检查 ====================
+
+    private void checkStructure() {
+        if (length == 0) {
+            throw error("Program is empty", 0);
+        }
+        addFunction(0);
+        callees = new int[8][];
+        boolean[] reached = new boolean[length];
+        int[] worklist = new int[length];
+        for (int f = 0; f < functionCount; f++) {
+            if (f == callees.length) {
+                callees = Arrays.copyOf(callees, f * 2);
+            }
+            Arrays.fill(reached, false);
+            int[] targets = new int[0];
+            int localCount = localCounts.applyAsInt(entries[f]);
+            int top = 0;
+            worklist[top++] = entries[f];
+            reached[entries[f]] = true;
+            while (top > 0) {
+                int pc = worklist[--top];
+                int opcode = opcodes[pc];
+                checkInstruction(pc, opcode, operands[pc], localCount);
+                if (opcode == BytecodeDefinition.INSTR_CALL) {
+                    int target = operands[pc];
+                    if (functionIndex[target] < 0) {
+                        addFunction(target);
+                    }
+                    targets = Arrays.copyOf(targets, targets.length + 1);
+                    targets[targets.length - 1] = functionIndex[target];
+                }
+                if (isBranchWithTarget(opcode) && !reached[operands[pc]]) {
+                    reached[operands[pc]] = true;
+                    worklist[top++] = operands[pc];
+                }
+                if (fallsThrough(opcode)) {
+                    if (pc + 1 >= length) {
+                        throw error("Execution falls off the end of code", pc);
+                    }
+                    if (!reached[pc + 1]) {
+                        reached[pc + 1] = true;
+                        worklist[top++] = pc + 1;
+                    }
+                }
+            }
+            callees[f] = targets;
+        }
+    }
+
+    private void addFunction(int entry) {
+        if (functionCount == entries.length) {
+            entries = Arrays.copyOf(entries, functionCount * 2);
+        }
+        functionIndex[entry] = functionCount;
+        entries[functionCount++] = entry;
+    }
+
+    private void checkInstruction(int pc, int opcode, int operand, int localCount) {
+        if (opcode >= POPS.length || POPS[opcode] < 0) {
+            throw error("Unsupported opcode: 0x" + Integer.toHexString(opcode), pc);
+        }
+        if (DecodedProgram.isBranch(opcode) && (operand < 0 || operand >= length)) {
+            // 解码时非指令边界的目标已被映射到陷阱槽位
+            throw error("Branch target is not an instruction boundary", pc);
+        }
+        switch (opcode) {
+            case BytecodeDefinition.INSTR_LOAD:
+            case BytecodeDefinition.INSTR_STORE:
+                if (operand < 0 || operand >= localCount) {
+                    throw error("Local variable index out of range: " + operand + " (locals=" + localCount + ")", pc);
+                }
+                break;
+            case BytecodeDefinition.INSTR_GLOAD:
+            case BytecodeDefinition.INSTR_GSTORE:
+                if (operand < 0 || operand >= globalCount) {
+                    throw error("Global address out of range: " + operand + " (globals=" + globalCount + ")", pc);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static boolean isBranchWithTarget(int opcode) {
+        return opcode == BytecodeDefinition.INSTR_BR
+            || opcode == BytecodeDefinition.INSTR_BRT
+            || opcode == BytecodeDefinition.INSTR_BRF;
+    }
+
+    private static boolean fallsThrough(int opcode) {
+        return opcode != BytecodeDefinition.INSTR_BR
+            && opcode != BytecodeDefinition.INSTR_RET
+            && opcode != BytecodeDefinition.INSTR_HALT;
+    }
+
+    private VMVerificationException error(String message, int pc) {
+        int opcode = opcodes[pc];
+        String name = opcode > 0 && opcode < BytecodeDefinition.instructions.length
+            ? BytecodeDefinition.instructions[opcode].name
+            : "unknown";
+        return new VMVerificationException(message, program.toWordAddress(pc), name);
+    }
+
+    // ==================== 栈深度分析 ====================
+
+    private Result analyzeStack() {
+        maxDepth = new int[functionCount];
+        minDepth = new int[functionCount];
+        returnsValue = new boolean[functionCount];
+
+        // 被调函数先于调用者分析；处于环上的函数深度无界
+        byte[] state = new byte[functionCount];   // 0未访问 1进行中 2完成
+        boolean[] recursive = new boolean[functionCount];
+        for (int f = 0; f < functionCount; f++) {
+            if (state[f] == 0) {
+                visit(f, state, recursive);
+            }
+        }
+
+        boolean stackSafe = minDepth[0] >= 0 && maxDepth[0] != UNBOUNDED && maxDepth[0] <= stackCapacity;
+        return new Result(Arrays.copyOf(entries, functionCount), maxDepth, minDepth, stackSafe, program);
+    }
+
+    private void visit(int f, byte[] state, boolean[] recursive) {
+        state[f] = 1;
+        for (int callee : callees[f]) {
+            if (state[callee] == 0) {
+                visit(callee, state, recursive);
+            }
+            // 被调函数仍在访问栈上说明存在环；被调函数可达环时同样没有可用的摘要
+            if (state[callee] == 1 || recursive[callee]) {
+                recursive[f] = true;
+            }
+        }
+        state[f] = 2;
+        analyzeFunction(f, recursive[f]);
+    }
+
+    /**
+     * 区间数据流分析：每个槽位记录可能的相对栈深度区间，汇合点取并集。
+     * 区间超出 [-容量-1, 容量+1] 时截断，保证在含循环的代码上终止。
+     */
+    private void analyzeFunction(int f, boolean recursive) {
+        int limit = stackCapacity + 1;
+        int[] lo = new int[length];
+        int[] hi = new int[length];
+        Arrays.fill(lo, UNVISITED);
+        int max = 0;
+        int min = 0;
+        boolean returns = true;
+        boolean anyReturn = false;
+
+        ArrayDeque<Integer> worklist = new ArrayDeque<>();
+        int entry = entries[f];
+        lo[entry] = 0;
+        hi[entry] = 0;
+        worklist.add(entry);
+
+        while (!worklist.isEmpty()) {
+            int pc = worklist.poll();
+            int opcode = opcodes[pc];
+            int inLo = lo[pc];
+            int inHi = hi[pc];
+            int outLo;
+            int outHi;
+
+            if (opcode == BytecodeDefinition.INSTR_CALL) {
+                int callee = functionIndex[operands[pc]];
+                if (recursive || maxDepth[callee] == UNBOUNDED) {
+                    max = UNBOUNDED;
+                } else {
+                    max = saturatedMax(max, inHi + maxDepth[callee]);
+                }
+                min = Math.min(min, recursive ? -limit : inLo + minDepth[callee]);
+                boolean pushesResult = inLo >= 1 || (!recursive && returnsValue[callee]);
+                outLo = pushesResult ? inLo + 1 : inLo;
+                outHi = inHi + 1;
+            } else if (opcode == BytecodeDefinition.INSTR_RET) {
+                anyReturn = true;
+                returns &= inLo >= 1;
+                continue;
+            } else if (opcode == BytecodeDefinition.INSTR_HALT) {
+                continue;
+            } else {
+                int pops = POPS[opcode];
+                int pushes = PUSHES[opcode];
+                min = Math.min(min, inLo - pops);
+                outLo = inLo - pops + pushes;
+                outHi = inHi - pops + pushes;
+            }
+            outLo = Math.max(outLo, -limit);
+            outHi = Math.min(outHi, limit);
+            max = saturatedMax(max, outHi);
+
+            if (isBranchWithTarget(opcode)) {
+                merge(operands[pc], outLo, outHi, lo, hi, worklist);
+            }
+            if (fallsThrough(opcode)) {
+                merge(pc + 1, outLo, outHi, lo, hi, worklist);
+            }
+        }
+
+        maxDepth[f] = max > stackCapacity ? UNBOUNDED : max;
+        minDepth[f] = min;
+        returnsValue[f] = anyReturn && returns;
+    }
+
+    private static int saturatedMax(int max, int value) {
+        return max == UNBOUNDED ? UNBOUNDED : Math.max(max, value);
+    }
+
+    private static void merge(int target, int outLo, int outHi, int[] lo, int[] hi, ArrayDeque<Integer> worklist) {
+        if (lo[target] == UNVISITED) {
+            lo[target] = outLo;
+            hi[target] = outHi;
+            worklist.add(target);
+        } else if (outLo < lo[target] || outHi > hi[target]) {
+            lo[target] = Math.min(lo[target], outLo);
+            hi[target] = Math.max(hi[target], outHi);
+            worklist.add(target);
+        }
+    }
+
+    /**
+     * 校验结果
+     */
+    public static final class Result {
+        private final int[] functionEntries;
+        private final int[] maxDepth;
+        private final int[] minDepth;
+        private final boolean stackSafe;
+        private final DecodedProgram program;
+
+        private Result(int[] functionEntries, int[] maxDepth, int[] minDepth, boolean stackSafe, DecodedProgram program) {
+            this.functionEntries = functionEntries;
+            this.maxDepth = maxDepth;
+            this.minDepth = minDepth;
+            this.stackSafe = stackSafe;
+            this.program = program;
+        }
+
+        /**
+         * 程序运行期间操作数栈是否一定不会溢出或下溢
+         */
+        public boolean isStackSafe() {
+            return stackSafe;
+        }
+
+        /**
+         * 获取函数数量（主函数加所有CALL目标）
+         */
+        public int getFunctionCount() {
+            return functionEntries.length;
+        }
+
+        /**
+         * 获取函数入口的原始指令字地址，序号0为主函数
+         */
+        public int getFunctionAddress(int function) {
+            return program.toWordAddress(functionEntries[function]);
+        }
+
+        /**
+         * 获取函数相对入口的最大栈深度（含被调函数）
+         * @return 最大深度，递归或超出栈容量时为 {@link BytecodeVerifier#UNBOUNDED}
+         */
+        public int getMaxStackDepth(int function) {
+            return maxDepth[function];
+        }
+
+        /**
+         * 获取函数相对入口的最小栈深度（负数表示会消费调用者栈上的参数）
+         */
+        public int getMinStackDepth(int function) {
+            return minDepth[function];
+        }
+
+        /**
+         * 按原始指令字地址查找函数序号
+         * @return 函数序号，该地址不是函数入口时返回-1
+         */
+        public int findFunction(int address) {
+            int slot = program.toSlotIndex(address);
+            for (int i = 0; i < functionEntries.length; i++) {
+                if (functionEntries[i] == slot) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
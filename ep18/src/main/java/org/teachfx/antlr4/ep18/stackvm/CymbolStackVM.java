@@ -1,11 +1,22 @@
 package org.teachfx.antlr4.ep18.stackvm;
 
 import org.teachfx.antlr4.ep18.stackvm.ABIConvention.*;
+import org.teachfx.antlr4.ep18.gc.GCRootProvider;
 import org.teachfx.antlr4.ep18.gc.GarbageCollector;
+import org.teachfx.antlr4.ep18.gc.GenerationalGC;
+import org.teachfx.antlr4.ep18.gc.MarkSweepGC;
 import org.teachfx.antlr4.ep18.gc.ReferenceCountingGC;
 import org.teachfx.antlr4.ep18.gc.NoOpGarbageCollector;
+import org.teachfx.antlr4.ep18.stackvm.instructions.Instruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.InstructionFactory;
+import org.teachfx.antlr4.ep18.stackvm.jit.CompiledRegion;
+import org.teachfx.antlr4.ep18.stackvm.jit.TieredCompiler;
+import org.teachfx.antlr4.ep18.stackvm.stackframe.DynamicLinker;
+import org.teachfx.antlr4.ep18.stackvm.stackframe.FrameArena;
 
 import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * CymbolStackVM - 基于栈的虚拟机实现
@@ -23,7 +34,7 @@ public class CymbolStackVM {
     private int[] instructionCache; // 指令缓存
     private int instructionCount;  // 实际加载的指令数量
     private int[] locals;          // 局部变量数组
-    private StackFrame[] callStack; // 调用栈
+    private FrameArena frames;     // 调用栈（栈帧区）
     private int framePointer;      // 当前帧指针
 
     // 调试支持
@@ -34,21 +45,50 @@ public class CymbolStackVM {
     // 堆分配指针
     private int heapAllocPointer;  // 下一个可用堆地址
 
+    // 已使用区间：区间之外的局部变量和堆字一定为0，重置时只清空区间之内
+    private int localsExtent;      // 已加载代码访问的局部变量槽位数
+    private int heapExtent;        // 全局数据区和按堆地址写入的结构体字段所占的堆字数（分配区另计）
+    private int dataSize = -1;     // 已加载程序声明的全局数据区大小，-1表示未知
+
     // 结构体管理（统一表示适配层）
-    private java.util.List<StructValue> structTable;  // 结构体实例表
-    private java.util.Map<Integer, Integer> gcIdToStructIndex;  // GC对象ID到structTable索引的映射
+    private StructHeap structHeap;  // 结构体堆（扁平字段布局）
     private int nextStructId;  // 下一个结构体ID（0保留给null）
 
     // 垃圾回收器
     private GarbageCollector garbageCollector;
+    private boolean tracingGC;     // 追踪式GC：结构体经GC分配，对象ID即结构体引用
 
     // 执行状态
-    private boolean running;
+    private volatile boolean running;   // stop()可从其他线程清除
     private int programCounter;    // 程序计数器
 
     // 异常处理
     private VMExceptionHandler exceptionHandler;
     private VMExceptionMonitor exceptionMonitor;
+
+    // 快速分派模式
+    private Instruction[] dispatchTable;          // 操作码 -> 指令实现
+    private DecodedProgram decodedProgram;        // 已加载代码的预解码指令流（代码改变前一直有效）
+    private SuperInstructionRewriter appliedRewriter; // 已应用于预解码指令流的重写器
+    private int appliedSequenceCount;             // 应用重写时重写器的序列数
+    private Instruction[] activeDispatchTable;    // 装入了超级指令的分派表副本
+    private SharedExecutionContext sharedContext; // 与VM共享寄存器的长生命周期上下文
+    private OpcodeProfiler opcodeProfiler;        // 操作码序列剖析器（可选）
+    private SuperInstructionRewriter superInstructionRewriter; // 超级指令重写器（可选）
+    private boolean slotAddressing;               // 当前地址是否为预解码槽位索引
+    private boolean haltedInSlotAddressing;       // 上次停机时程序计数器和栈帧地址是否为槽位索引
+    private TieredCompiler tieredCompiler;        // 分层编译器（启用JIT时创建）
+    private BytecodeVerifier.Result verificationResult; // 加载时校验结果（启用校验时创建）
+
+    // 动态链接
+    private DynamicLinker dynamicLinker;          // 解析CALL目标的栈帧布局（可选）
+    // 链接器中的函数被重新注册时清除预解码流中缓存的栈帧布局
+    private final Consumer<String> linkerInvalidationListener = name -> {
+        DecodedProgram program = decodedProgram;
+        if (program != null) {
+            program.invalidateCallLayouts();
+        }
+    };
     
     /**
      * 构造函数 - 使用配置创建虚拟机实例
@@ -80,6 +120,21 @@ public class CymbolStackVM {
 
             if ("reference-counting".equals(gcType)) {
                 this.garbageCollector = new ReferenceCountingGC(gcHeapSize);
+            } else if ("mark-sweep".equals(gcType) || "mark-compact".equals(gcType)) {
+                MarkSweepGC markSweep = new MarkSweepGC(gcHeapSize, "mark-compact".equals(gcType));
+                markSweep.setRootProvider(new VMRootProvider());
+                markSweep.setCollectionListener(this::onObjectCollected);
+                markSweep.setCompactionListener(() -> structHeap.compact());
+                this.garbageCollector = markSweep;
+                this.tracingGC = true;
+            } else if ("generational".equals(gcType)) {
+                int nurserySize = config.getGcNurserySize() > 0
+                    ? config.getGcNurserySize() : Math.max(1, gcHeapSize / 4);
+                GenerationalGC generational = new GenerationalGC(gcHeapSize, nurserySize);
+                generational.setRootProvider(new VMRootProvider());
+                generational.setCollectionListener(this::onObjectCollected);
+                this.garbageCollector = generational;
+                this.tracingGC = true;
             } else {
                 // 默认使用引用计数GC
                 this.garbageCollector = new ReferenceCountingGC(gcHeapSize);
@@ -96,9 +151,10 @@ public class CymbolStackVM {
             }
         }
 
-        // 初始化结构体管理
-        this.structTable = new java.util.ArrayList<>();
-        this.gcIdToStructIndex = new java.util.HashMap<>();
+        // 初始化结构体管理：追踪式GC按字节管理的GC堆就是结构体字段区，两者容量一致
+        this.structHeap = new StructHeap(tracingGC
+            ? Math.max(1, config.getGcHeapSize() / Integer.BYTES)
+            : config.getHeapSize());
         this.nextStructId = 1; // 0保留给null引用
 
         // 初始化操作数栈
@@ -112,8 +168,8 @@ public class CymbolStackVM {
         // 初始化局部变量数组（使用栈大小）
         this.locals = new int[config.getStackSize()];
 
-        // 初始化调用栈
-        this.callStack = new StackFrame[config.getMaxFrameCount()];
+        // 初始化调用栈：LOAD/STORE使用共享的局部变量数组，栈帧只记录元数据，不保留槽位
+        this.frames = new FrameArena(config.getMaxFrameCount(), 0, false);
         this.framePointer = -1;
 
         // 初始化调试支持
@@ -125,6 +181,10 @@ public class CymbolStackVM {
         this.running = false;
         this.programCounter = 0;
 
+        // 初始化快速分派所需的指令表和共享上下文
+        this.dispatchTable = InstructionFactory.getInstance().getDispatchTable();
+        this.sharedContext = new SharedExecutionContext();
+
         // 如果是调试模式，输出初始化信息
         if (config.isDebugMode()) {
             System.out.println("VM initialized with config: " + config);
@@ -138,9 +198,25 @@ public class CymbolStackVM {
      * @throws Exception 执行异常
      */
     public int execute(byte[] bytecode) throws Exception {
+        return execute(bytecode, -1);
+    }
+
+    /**
+     * 执行字节码，并给出程序的全局数据区大小
+     * 启用校验时 GLOAD/GSTORE 的地址按该大小检查；未知时按整个堆检查。
+     * @param bytecode 字节码数组
+     * @param dataSize 全局数据区大小（目标文件头中的dataSize），-1表示未知
+     * @return 执行结果
+     * @throws Exception 执行异常
+     */
+    public int execute(byte[] bytecode, int dataSize) throws Exception {
         if (bytecode == null || bytecode.length == 0) {
             throw new IllegalArgumentException("Bytecode cannot be null or empty");
         }
+        if (dataSize > heap.length) {
+            throw new IllegalArgumentException("Data size " + dataSize + " exceeds heap size " + heap.length);
+        }
+        this.dataSize = dataSize;
 
         long startTime = System.nanoTime();
         long startMemory = getUsedMemory();
@@ -149,47 +225,39 @@ public class CymbolStackVM {
         loadBytecode(bytecode);
 
         // 创建主函数栈帧（模拟"call main()"）
-        FunctionSymbol mainSymbol = new FunctionSymbol("main", 0, 0, 0);
-        StackFrame mainFrame = new StackFrame(mainSymbol, -1);
-        callStack[++framePointer] = mainFrame;
+        frames.enter(++framePointer, 0, 0, 0, -1);
 
-        // 开始执行
-        this.running = true;
         this.programCounter = 0;
+        return run(startTime, startMemory, false);
+    }
 
-        try {
-            int stepCount = 0;
-            while (running && programCounter >= 0 && programCounter < instructionCache.length) {
-                stepCount++;
-                if (config.isDebugMode() && stepCount > 20) {
-                    System.out.println("[DEBUG] EXEC: Too many steps, breaking to avoid infinite loop!");
-                    break;
-                }
-
-                // 调试支持：检查断点
-                if (breakpoints.contains(programCounter)) {
-                    System.out.println("[BREAKPOINT] Hit breakpoint at PC=" + programCounter);
-                    // 在实际调试器中，这里会暂停并等待用户输入
-                    // 简化实现：仅打印信息并继续
-                }
-
-                if (config.isDebugMode()) {
-                    System.out.println("[DEBUG] EXEC: Step " + stepCount + ", PC=" + programCounter + ", running=" + running);
-                }
-
-                // 获取当前指令，注意：不要在这里递增PC，让指令自己控制PC
-                int instruction = instructionCache[programCounter];
-                int currentPC = programCounter;
-                programCounter++; // 递增PC，为下一条指令做准备
+    /**
+     * 从当前状态继续执行到停机
+     * 通常在 {@link #restore(VMSnapshot)} 之后调用：快照在HALT处拍下，
+     * 恢复后从HALT的下一条指令继续，初始化阶段无需重新执行。
+     * @return 执行结果（栈顶值）
+     * @throws IllegalStateException 没有已加载的程序或活动栈帧
+     * @throws Exception 执行异常
+     */
+    public int resume() throws Exception {
+        if (instructionCount == 0 || framePointer < 0) {
+            throw new IllegalStateException("No program state to resume");
+        }
+        return run(System.nanoTime(), getUsedMemory(), true);
+    }
 
-                // 执行指令
-                executeInstruction(instruction);
+    /**
+     * 运行主循环并返回栈顶值
+     * @param resuming 是否继续上次停机的状态（需要按分派模式换算代码地址）
+     */
+    private int run(long startTime, long startMemory, boolean resuming) throws Exception {
+        this.running = true;
 
-                // 调试支持：单步执行模式
-                if (stepMode) {
-                    System.out.println("[STEP] Executed instruction at PC=" + currentPC);
-                    stepMode = false; // 执行一步后退出单步模式
-                }
+        try {
+            if (isFastDispatchEnabled()) {
+                runFastDispatchLoop(resuming);
+            } else {
+                runInterpreterLoop(resuming);
             }
 
             // 返回栈顶值作为结果
@@ -219,6 +287,460 @@ public class CymbolStackVM {
         }
     }
     
+    /**
+     * 常规解释循环：逐条解码指令并支持断点、单步和调试输出
+     * @throws Exception 执行异常
+     */
+    private void runInterpreterLoop(boolean resuming) throws Exception {
+        if (resuming && haltedInSlotAddressing) {
+            relocateCodeAddresses(false);
+        }
+        haltedInSlotAddressing = false;
+        int stepCount = 0;
+        while (running && programCounter >= 0 && programCounter < instructionCache.length) {
+            stepCount++;
+            if (config.isDebugMode() && stepCount > 20) {
+                System.out.println("[DEBUG] EXEC: Too many steps, breaking to avoid infinite loop!");
+                break;
+            }
+
+            // 调试支持：检查断点
+            if (breakpoints.contains(programCounter)) {
+                System.out.println("[BREAKPOINT] Hit breakpoint at PC=" + programCounter);
+                // 在实际调试器中，这里会暂停并等待用户输入
+                // 简化实现：仅打印信息并继续
+            }
+
+            if (config.isDebugMode()) {
+                System.out.println("[DEBUG] EXEC: Step " + stepCount + ", PC=" + programCounter + ", running=" + running);
+            }
+
+            // 获取当前指令，注意：不要在这里递增PC，让指令自己控制PC
+            int instruction = instructionCache[programCounter];
+            int currentPC = programCounter;
+            programCounter++; // 递增PC，为下一条指令做准备
+
+            // 执行指令
+            executeInstruction(instruction);
+
+            // 调试支持：单步执行模式
+            if (stepMode) {
+                System.out.println("[STEP] Executed instruction at PC=" + currentPC);
+                stepMode = false; // 执行一步后退出单步模式
+            }
+        }
+    }
+
+    /**
+     * 判断本次执行能否使用快速分派循环
+     * 调试、跟踪、断点和单步模式都需要逐条指令的簿记，此时回退到常规循环
+     * @return 是否启用快速分派
+     */
+    private boolean isFastDispatchEnabled() {
+        return config.isEnableFastDispatch()
+            && !config.isDebugMode()
+            && !config.isTraceEnabled()
+            && breakpoints.isEmpty()
+            && !stepMode;
+    }
+
+    /**
+     * 快速分派循环
+     * 在加载时预解码的指令流上执行：操作码直接索引分派表，操作数和跳转目标已在解码时求出，
+     * 所有指令共享同一个执行上下文，上下文直接读写VM寄存器，因此稳态循环中不分配对象也无需回写状态。
+     * 注意：此模式下程序计数器表示解码后的槽位索引，可用 {@link DecodedProgram#toWordAddress(int)} 换算
+     * @throws Exception 执行异常
+     */
+    private void runFastDispatchLoop(boolean resuming) throws Exception {
+        if (resuming && !haltedInSlotAddressing) {
+            relocateCodeAddresses(true);
+        }
+        Instruction[] activeTable = applySuperInstructions();
+        final int[] opcodes = decodedProgram.getOpcodes();
+        final int[] operands = decodedProgram.getOperands();
+        final Instruction[] table = activeTable;
+        // 校验证明栈深度有界时改用省去边界检查的上下文；
+        // 校验只覆盖从入口开始的执行，继续执行时的栈和程序计数器未经校验，仍使用带检查的上下文
+        final SharedExecutionContext context = !resuming && verificationResult != null && verificationResult.isStackSafe()
+            ? new VerifiedExecutionContext()
+            : sharedContext;
+        final OpcodeProfiler profiler = opcodeProfiler;
+        tieredCompiler = config.isEnableJit()
+            ? new TieredCompiler(decodedProgram, table, config.getJitThreshold())
+            : null;
+        sharedContext.setExceptionHandler(exceptionHandler);
+        sharedContext.setExceptionMonitor(exceptionMonitor);
+        if (context != sharedContext) {
+            context.setExceptionHandler(exceptionHandler);
+            context.setExceptionMonitor(exceptionMonitor);
+        }
+        slotAddressing = true;
+        haltedInSlotAddressing = true;
+        try {
+            dispatch(opcodes, operands, table, context, profiler, tieredCompiler);
+        } finally {
+            slotAddressing = false;
+        }
+    }
+
+    /**
+     * 预解码并校验已加载的代码，结果保留到代码改变（重新加载、恢复快照或重置）为止
+     * 校验按动态链接器中注册的函数布局检查各函数的局部变量索引，未注册的函数按整个局部变量区检查；
+     * 全局地址按程序声明的全局数据区大小检查。
+     */
+    private void decodeLoadedCode() {
+        decodedProgram = DecodedProgram.decode(instructionCache, instructionCount);
+        verificationResult = config.isEnableVerification()
+            ? BytecodeVerifier.verify(decodedProgram, stack.length, this::localCountAt,
+                                      dataSize >= 0 ? dataSize : heap.length)
+            : null;
+        appliedRewriter = null;
+        appliedSequenceCount = 0;
+        activeDispatchTable = dispatchTable;
+    }
+
+    /**
+     * 获取从指定槽位开始的函数可用的局部变量个数
+     */
+    private int localCountAt(int entry) {
+        FunctionSymbol function = dynamicLinker != null
+            ? dynamicLinker.getFunctionAt(decodedProgram.toWordAddress(entry))
+            : null;
+        return function != null ? Math.min(function.nargs + function.nlocals, locals.length) : locals.length;
+    }
+
+    /**
+     * 按当前重写器融合预解码指令流，返回本VM使用的分派表
+     * 同一重写器只重写一次；重写器被替换或新增了序列时从指令缓存重新解码后再重写。
+     * 重写不改变槽位布局，已换算为槽位索引的程序计数器和栈帧地址仍然有效。
+     */
+    private Instruction[] applySuperInstructions() {
+        SuperInstructionRewriter rewriter = superInstructionRewriter;
+        if (rewriter == appliedRewriter
+                && (rewriter == null || rewriter.getSequenceCount() == appliedSequenceCount)) {
+            return activeDispatchTable;
+        }
+        if (appliedRewriter != null) {
+            BytecodeVerifier.Result verified = verificationResult;
+            decodedProgram = DecodedProgram.decode(instructionCache, instructionCount);
+            verificationResult = verified;
+        }
+        if (rewriter != null) {
+            rewriter.rewrite(decodedProgram);
+            // 超级指令只装入本VM的分派表副本，不影响其他VM
+            activeDispatchTable = rewriter.install(dispatchTable, decodedProgram.getOperands());
+            appliedSequenceCount = rewriter.getSequenceCount();
+        } else {
+            activeDispatchTable = dispatchTable;
+            appliedSequenceCount = 0;
+        }
+        appliedRewriter = rewriter;
+        return activeDispatchTable;
+    }
+
+    /**
+     * 在指令字地址和预解码槽位索引之间换算程序计数器及各栈帧的函数入口、返回地址
+     * @param toSlots true表示换算为槽位索引，false表示换算回指令字地址
+     */
+    private void relocateCodeAddresses(boolean toSlots) {
+        programCounter = relocate(programCounter, toSlots);
+        for (int i = 0; i <= framePointer; i++) {
+            frames.relocate(i,
+                relocate(frames.getFunctionAddress(i), toSlots),
+                relocate(frames.getReturnAddress(i), toSlots));
+        }
+    }
+
+    private int relocate(int address, boolean toSlots) {
+        if (address < 0) {
+            return address;
+        }
+        return toSlots ? decodedProgram.toSlotIndex(address) : decodedProgram.toWordAddress(address);
+    }
+
+    /**
+     * 重置为刚创建时的运行状态，复用已分配的栈、堆、指令缓存和栈帧区数组
+     * 清空操作数栈、局部变量、全局数据/堆、已加载代码、调用栈、结构体堆和GC对象表，
+     * 同时清除断点和单步状态；配置、统计信息、异常处理器和动态链接器等设置保持不变。
+     * 与操作数栈一样，局部变量区和堆只清空已使用的前缀，重置的开销与程序实际使用的内存成正比。
+     * 供VM池在两次执行之间回收实例，避免重新分配数组。
+     * @throws IllegalStateException VM正在运行
+     */
+    public void reset() {
+        if (running) {
+            throw new IllegalStateException("Cannot reset a running VM");
+        }
+        Arrays.fill(stack, 0, stackPointer, 0);
+        stackPointer = 0;
+        Arrays.fill(locals, 0, localsExtent, 0);
+        localsExtent = 0;
+        Arrays.fill(heap, 0, usedHeapLength(), 0);
+        heapExtent = 0;
+        dataSize = -1;
+        heapAllocPointer = 0;
+        Arrays.fill(instructionCache, 0, instructionCount, 0);
+        instructionCount = 0;
+        framePointer = -1;
+        structHeap.reset();
+        nextStructId = 1;
+        garbageCollector.reset();
+        breakpoints.clear();
+        stepMode = false;
+        waitingForStep = false;
+        programCounter = 0;
+        decodedProgram = null;
+        verificationResult = null;
+        appliedRewriter = null;
+        activeDispatchTable = null;
+        tieredCompiler = null;
+        haltedInSlotAddressing = false;
+    }
+
+    // ==================== 快照 ====================
+
+    /**
+     * 拍下当前状态的快照
+     * 应在停机后调用（通常是初始化代码末尾的HALT），此后可通过 {@link #restore(VMSnapshot)}
+     * 和 {@link #resume()} 在同一或另一个同配置的VM上反复从该点继续执行。
+     * @return 快照，代码地址为指令字地址
+     * @throws IllegalStateException VM正在运行
+     */
+    public VMSnapshot snapshot() {
+        if (running) {
+            throw new IllegalStateException("Cannot snapshot a running VM");
+        }
+        boolean toWords = haltedInSlotAddressing;
+        int frameCount = framePointer + 1;
+        int[] frameWords = new int[frameCount * VMSnapshot.FRAME_WORDS];
+        int slotCount = 0;
+        for (int i = 0; i < frameCount; i++) {
+            slotCount += frames.frameSlotCount(i);
+        }
+        int[] frameSlots = new int[slotCount];
+        int slotPos = 0;
+        for (int i = 0; i < frameCount; i++) {
+            int base = i * VMSnapshot.FRAME_WORDS;
+            frameWords[base] = toWords ? relocate(frames.getFunctionAddress(i), false) : frames.getFunctionAddress(i);
+            frameWords[base + 1] = frames.getArgCount(i);
+            frameWords[base + 2] = frames.getLocalCount(i);
+            frameWords[base + 3] = toWords ? relocate(frames.getReturnAddress(i), false) : frames.getReturnAddress(i);
+            frameWords[base + 4] = frames.getSavedStackDepth(i);
+            int size = frames.frameSlotCount(i);
+            System.arraycopy(frames.getSlots(), frames.getFrameBase(i), frameSlots, slotPos, size);
+            slotPos += size;
+        }
+
+        int handleCapacity = structHeap.getHandleCapacity();
+        int structCount = structHeap.getStructCount();
+        int[] structWords = new int[structHeap.getUsedWords()];
+        int[] structs = new int[structCount * VMSnapshot.STRUCT_WORDS];
+        int structPos = 0;
+        int wordPos = 0;
+        for (int ref = 1; ref < handleCapacity; ref++) {
+            if (!structHeap.contains(ref)) {
+                continue;
+            }
+            int nfields = structHeap.getFieldCount(ref);
+            structs[structPos++] = ref;
+            structs[structPos++] = nfields;
+            for (int field = 0; field < nfields; field++) {
+                structWords[wordPos++] = structHeap.load(ref, field);
+            }
+        }
+
+        return new VMSnapshot(
+            toWords ? relocate(programCounter, false) : programCounter,
+            heapAllocPointer,
+            nextStructId,
+            Arrays.copyOf(instructionCache, instructionCount),
+            Arrays.copyOf(stack, stackPointer),
+            Arrays.copyOf(locals, VMSnapshot.trimmedLength(locals, locals.length)),
+            Arrays.copyOf(heap, VMSnapshot.trimmedLength(heap, heap.length)),
+            frameWords,
+            frameSlots,
+            structs,
+            structWords);
+    }
+
+    /**
+     * 从快照恢复状态，之后调用 {@link #resume()} 继续执行
+     * 快照的各段复制进VM现有的数组，快照本身不被修改，可以反复恢复。
+     * 使用追踪式GC时按存活结构体重建GC的对象表。
+     * @param snapshot 快照
+     * @throws IllegalStateException VM正在运行
+     * @throws IllegalArgumentException 快照超出本VM配置的容量
+     */
+    public void restore(VMSnapshot snapshot) {
+        if (snapshot == null) {
+            throw new IllegalArgumentException("Snapshot cannot be null");
+        }
+        if (running) {
+            throw new IllegalStateException("Cannot restore a running VM");
+        }
+        int[] code = snapshot.getCode();
+        int[] savedStack = snapshot.getStack();
+        int[] savedLocals = snapshot.getLocals();
+        int[] savedHeap = snapshot.getHeap();
+        int[] frameWords = snapshot.getFrames();
+        int frameCount = snapshot.getFrameCount();
+        if (code.length > instructionCache.length || savedStack.length > stack.length
+                || savedLocals.length > locals.length || savedHeap.length > heap.length
+                || frameCount > frames.getMaxFrames()) {
+            throw new IllegalArgumentException("Snapshot does not fit VM configuration: " + config);
+        }
+
+        System.arraycopy(code, 0, instructionCache, 0, code.length);
+        Arrays.fill(instructionCache, code.length, instructionCache.length, 0);
+        instructionCount = code.length;
+        System.arraycopy(savedStack, 0, stack, 0, savedStack.length);
+        stackPointer = savedStack.length;
+        System.arraycopy(savedLocals, 0, locals, 0, savedLocals.length);
+        Arrays.fill(locals, savedLocals.length, locals.length, 0);
+        System.arraycopy(savedHeap, 0, heap, 0, savedHeap.length);
+        Arrays.fill(heap, savedHeap.length, heap.length, 0);
+        heapAllocPointer = snapshot.getHeapAllocPointer();
+        localsExtent = savedLocals.length;
+        heapExtent = savedHeap.length;
+        scanDataExtents();
+
+        int[] frameSlots = snapshot.getFrameSlots();
+        int slotPos = 0;
+        framePointer = -1;
+        for (int i = 0; i < frameCount; i++) {
+            int base = i * VMSnapshot.FRAME_WORDS;
+            frames.enter(++framePointer, frameWords[base], frameWords[base + 1],
+                         frameWords[base + 2], frameWords[base + 3]);
+            frames.setSavedStackDepth(framePointer, frameWords[base + 4]);
+            int size = frames.frameSlotCount(framePointer);
+            System.arraycopy(frameSlots, slotPos, frames.getSlots(), frames.getFrameBase(framePointer), size);
+            slotPos += size;
+        }
+
+        int[] structs = snapshot.getStructs();
+        int[] structWords = snapshot.getStructWords();
+        int structCount = snapshot.getStructCount();
+        int[] objectIds = new int[structCount];
+        int[] objectSizes = new int[structCount];
+        structHeap.reset();
+        int wordPos = 0;
+        for (int i = 0; i < structCount; i++) {
+            int ref = structs[i * VMSnapshot.STRUCT_WORDS];
+            int nfields = structs[i * VMSnapshot.STRUCT_WORDS + 1];
+            structHeap.allocate(ref, nfields);
+            for (int field = 0; field < nfields; field++) {
+                structHeap.store(ref, field, structWords[wordPos++]);
+            }
+            objectIds[i] = ref;
+            objectSizes[i] = gcObjectSize(nfields);
+        }
+        nextStructId = snapshot.getNextStructId();
+        if (tracingGC) {
+            garbageCollector.restoreObjects(objectIds, objectSizes);
+        }
+
+        programCounter = snapshot.getProgramCounter();
+        haltedInSlotAddressing = false;
+        dataSize = -1;
+        decodedProgram = null;
+        if (config.isEnableFastDispatch()) {
+            decodeLoadedCode();
+        }
+    }
+
+    /**
+     * 快速分派主循环
+     * 启用分层编译时，每条指令分派前先检查当前槽位是否安装了编译代码；
+     * 从编译代码退出后至少解释执行一条指令，保证去优化点（如CALL、HALT）能够向前推进。
+     * 编译代码不更新剖析器和分支、内存访问统计；编译后的循环在回边安全点退回本循环，
+     * 由循环条件检查 {@code running}。
+     * 异常处理器恢复执行时可能改写操作数栈，校验结论不再成立，此后改回带检查的共享上下文。
+     */
+    private void dispatch(int[] opcodes, int[] operands, Instruction[] table,
+                          SharedExecutionContext context, OpcodeProfiler profiler,
+                          TieredCompiler jit) throws Exception {
+        final CompiledRegion[] compiled = jit != null ? jit.getEntries() : null;
+        boolean resumed = false;
+        while (running && programCounter >= 0 && programCounter < opcodes.length) {
+            int pc = programCounter;
+            if (compiled != null) {
+                CompiledRegion region = compiled[pc];
+                if (region != null && !resumed) {
+                    long state = region.run(stack, locals, heap, stackPointer, pc);
+                    programCounter = TieredCompiler.exitPc(state);
+                    stackPointer = TieredCompiler.exitSp(state);
+                    resumed = true;
+                    continue;
+                }
+                resumed = false;
+                jit.profile(pc);
+            }
+            programCounter = pc + 1;
+            int opcode = opcodes[pc];
+            if (profiler != null) {
+                profiler.record(pc, opcode);
+            }
+            Instruction instr = table[opcode];
+            if (instr == null) {
+                throw new VMInvalidOpcodeException(
+                    "Unsupported opcode: 0x" + Integer.toHexString(opcode),
+                    decodedProgram.toWordAddress(pc), opcode);
+            }
+
+            try {
+                instr.execute(context, operands[pc]);
+            } catch (VMException e) {
+                if (exceptionMonitor != null) {
+                    exceptionMonitor.recordException(e, false, 0);
+                }
+                boolean handled = exceptionHandler != null && exceptionHandler.handleException(e, context);
+                if (!handled) {
+                    throw e;
+                }
+                context = sharedContext;
+            }
+        }
+    }
+
+    /**
+     * 获取已加载代码的预解码指令流（设置了超级指令重写器时为重写后的指令流）
+     * @return 预解码指令流，未启用快速分派时为null
+     */
+    public DecodedProgram getDecodedProgram() {
+        return decodedProgram;
+    }
+
+    /**
+     * 获取已加载代码的字节码校验结果
+     * @return 校验结果，未启用校验时为null
+     */
+    public BytecodeVerifier.Result getVerificationResult() {
+        return verificationResult;
+    }
+
+    /**
+     * 获取最近一次快速分派执行所用的分层编译器
+     * @return 分层编译器，未启用JIT时为null
+     */
+    public TieredCompiler getTieredCompiler() {
+        return tieredCompiler;
+    }
+
+    /**
+     * 设置操作码序列剖析器，快速分派循环会记录每条执行的指令
+     * @param opcodeProfiler 剖析器，null表示关闭剖析
+     */
+    public void setOpcodeProfiler(OpcodeProfiler opcodeProfiler) {
+        this.opcodeProfiler = opcodeProfiler;
+    }
+
+    /**
+     * 设置超级指令重写器，快速分派循环在下次执行前用它融合已解码的指令序列
+     * @param superInstructionRewriter 重写器，null表示不融合
+     */
+    public void setSuperInstructionRewriter(SuperInstructionRewriter superInstructionRewriter) {
+        this.superInstructionRewriter = superInstructionRewriter;
+    }
+
     /**
      * 加载字节码到指令缓存
      * @param bytecode 字节码数组
@@ -233,6 +755,7 @@ public class CymbolStackVM {
                                    ((bytecode[offset + 2] & 0xFF) << 8) |
                                    (bytecode[offset + 3] & 0xFF);
         }
+        scanDataExtents();
 
         if (config.isDebugMode()) {
             System.out.println("Loaded " + this.instructionCount + " instructions");
@@ -244,45 +767,78 @@ public class CymbolStackVM {
                 System.out.println("  Instruction " + i + ": opcode=" + opcode + ", operand=" + operand);
             }
         }
+
+        decodedProgram = null;
+        if (config.isEnableFastDispatch()) {
+            decodeLoadedCode();
+        }
     }
     
     /**
-     * 从指令中提取操作数（低24位，有符号扩展）
-     * @param instruction 指令
-     * @return 操作数值
+     * 按已加载代码中的常量操作数扩展局部变量和全局数据的已使用区间
+     * LOAD/STORE、GLOAD/GSTORE 和数组指令的变量槽位都在指令中给出，加载时即可确定范围
      */
-    private int extractOperand(int instruction) {
-        int value = instruction & 0xFFFFFF;
-        // 处理符号扩展（如果最高位是1，则为负数）
-        if ((value & 0x800000) != 0) {
-            value |= 0xFF000000; // 符号扩展
+    private void scanDataExtents() {
+        for (int pc = 0; pc < instructionCount; pc++) {
+            int instruction = instructionCache[pc];
+            int opcode = (instruction >>> 24) & 0xFF;
+            int operand = extractOperand(instruction);
+            if ((opcode & 0x80) != 0 && pc + 1 < instructionCount) {
+                opcode &= 0x7F;
+                operand = instructionCache[++pc];
+            }
+            switch (opcode) {
+                case BytecodeDefinition.INSTR_LOAD:
+                case BytecodeDefinition.INSTR_STORE:
+                    localsExtent = extend(localsExtent, operand, locals.length);
+                    break;
+                case BytecodeDefinition.INSTR_IALOAD:
+                case BytecodeDefinition.INSTR_IASTORE:
+                    localsExtent = extend(localsExtent, operand >>> 16, locals.length);
+                    break;
+                case BytecodeDefinition.INSTR_GLOAD:
+                case BytecodeDefinition.INSTR_GSTORE:
+                    heapExtent = extend(heapExtent, operand, heap.length);
+                    break;
+                default:
+                    break;
+            }
         }
-        return value;
+    }
+
+    private static int extend(int extent, int index, int capacity) {
+        return index >= extent && index < capacity ? index + 1 : extent;
     }
 
     /**
-     * 将int值转换为Object（用于StructValue字段存储）
-     * @param value int值
-     * @return Object值（Integer或null）
+     * 记录按堆地址写入的结构体字段，扩展堆的已使用区间
+     * @param address 写入的堆地址（已检查在范围内）
      */
-    private Object intToValue(int value) {
-        return value; // int自动装箱为Integer
+    void recordHeapWrite(int address) {
+        if (address >= heapExtent) {
+            heapExtent = address + 1;
+        }
     }
 
     /**
-     * 将Object值转换为int（用于从StructValue字段加载）
-     * @param obj Object值
-     * @return int值
-     * @throws ClassCastException 如果obj不是Integer
+     * 获取堆中可能非零的前缀长度：全局数据区、按地址写入的字段和已分配区中较大者
      */
-    private int valueToInt(Object obj) {
-        if (obj == null) {
-            return 0; // null视为0
-        }
-        if (obj instanceof Integer) {
-            return (Integer) obj;
+    private int usedHeapLength() {
+        return Math.min(heap.length, Math.max(heapExtent, heapAllocPointer));
+    }
+
+    /**
+     * 从指令中提取操作数（低24位，有符号扩展）
+     * @param instruction 指令
+     * @return 操作数值
+     */
+    private int extractOperand(int instruction) {
+        int value = instruction & 0xFFFFFF;
+        // 处理符号扩展（如果最高位是1，则为负数）
+        if ((value & 0x800000) != 0) {
+            value |= 0xFF000000; // 符号扩展
         }
-        throw new ClassCastException("Expected Integer but got: " + obj.getClass());
+        return value;
     }
 
     /**
@@ -352,8 +908,8 @@ public class CymbolStackVM {
             VMExecutionContext context = new VMExecutionContext(
                 this, config, stats, programCounter + (isExtended ? 1 : 0), // PC指向操作数字之后（如果是扩展指令）
                 stack, stackPointer,
-                heap, locals, callStack, framePointer, config.isTraceEnabled(),
-                heapAllocPointer, structTable, nextStructId
+                heap, locals, null, framePointer, config.isTraceEnabled(),
+                heapAllocPointer, structHeap, nextStructId
             );
 
             // 设置异常处理器和监控器
@@ -409,8 +965,8 @@ public class CymbolStackVM {
                 if (exceptionHandler != null) {
                     VMExecutionContext context = new VMExecutionContext(
                         this, config, stats, programCounter, stack, stackPointer,
-                        heap, locals, callStack, framePointer, config.isTraceEnabled(),
-                        heapAllocPointer, structTable, nextStructId
+                        heap, locals, null, framePointer, config.isTraceEnabled(),
+                        heapAllocPointer, structHeap, nextStructId
                     );
                     context.setExceptionHandler(exceptionHandler);
                     context.setExceptionMonitor(exceptionMonitor);
@@ -568,67 +1124,98 @@ public class CymbolStackVM {
     // 指令执行方法实现
 
     private void executeStruct(int instruction) {
-        try {
-            int nfields = extractOperand(instruction);
+        int nfields = extractOperand(instruction);
+        push(newStruct(nfields));
+    }
 
-            // 调试信息
-            if (config.isDebugMode()) {
-                System.out.println("[GC] executeStruct called: nfields=" + nfields);
-            }
+    /**
+     * 当GC回收对象时释放其字段区
+     * @param objectId 被回收的对象ID
+     */
+    private void onObjectCollected(int objectId) {
+        structHeap.free(objectId);
+    }
+
+    /**
+     * 创建结构体：追踪式GC下经GC分配，否则按顺序编号
+     * @param nfields 字段数量
+     * @return 结构体引用
+     */
+    int newStruct(int nfields) {
+        if (tracingGC) {
+            return allocateStruct(nfields);
+        }
+        int structId = nextStructId++;
+        structHeap.allocate(structId, nfields);
+        return structId;
+    }
 
-        // 使用GC分配内存
+    /**
+     * 经追踪式GC分配结构体
+     * GC对象ID直接作为结构体引用（句柄），字段区在结构体堆中分配；
+     * 被回收的ID会被GC复用，其字段区在回收时已释放。
+     * @param nfields 字段数量
+     * @return 结构体引用（GC对象ID）
+     */
+    int allocateStruct(int nfields) {
         int structId;
         try {
-            structId = garbageCollector.allocate(nfields);
+            structId = garbageCollector.allocate(gcObjectSize(nfields));
         } catch (OutOfMemoryError e) {
-            // 保持向后兼容的错误消息
             throw new OutOfMemoryError("Not enough heap space for struct with " + nfields + " fields");
         }
+        structHeap.allocate(structId, nfields);
+        return structId;
+    }
 
-        // 创建StructValue实例
-        StructValue struct = new StructValue(nfields);
-        // 初始化字段为0（Integer）
-        for (int i = 0; i < nfields; i++) {
-            struct.setField(i, 0); // int自动装箱为Integer
-        }
-
-        // 添加到结构体表
-        int structIndex = structTable.size();
-        structTable.add(struct);
-
-        // 建立GC对象ID到structTable索引的映射
-        gcIdToStructIndex.put(structId, structIndex);
-
-        // 压入结构体ID（使用GC对象ID）
-        push(structId);
-
-        // 更新堆分配指针以保持向后兼容性
-        heapAllocPointer += nfields;
-
-        // 增加引用计数（结构体被压入栈，有一个引用）
-        garbageCollector.incrementRef(structId);
+    /**
+     * 结构体在GC堆中占用的字节数（每个字段一个字）
+     */
+    private static int gcObjectSize(int nfields) {
+        return Math.max(1, nfields) * Integer.BYTES;
+    }
 
-        // 调试信息
-        if (config.isDebugMode()) {
-            System.out.println("[GC] executeStruct: allocated structId=" + structId +
-                             ", isAlive=" + garbageCollector.isObjectAlive(structId));
-        }
-        } catch (Exception e) {
-            System.err.println("[GC] executeStruct error: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
+    /**
+     * 结构体字段写入后的GC写屏障（仅追踪式GC需要）
+     * @param structRef 被写入的结构体引用
+     * @param value 写入的值
+     */
+    void writeBarrier(int structRef, int value) {
+        if (tracingGC) {
+            garbageCollector.writeBarrier(structRef, value);
         }
     }
 
     /**
-     * 当GC回收对象时清理structTable
-     * @param objectId 被回收的对象ID
+     * 是否使用追踪式GC管理结构体
      */
-    private void onObjectCollected(int objectId) {
-        Integer structIndex = gcIdToStructIndex.remove(objectId);
-        if (structIndex != null && structIndex >= 0 && structIndex < structTable.size()) {
-            // 标记为null，但不从列表中移除以保持索引稳定
-            structTable.set(structIndex, null);
+    boolean isTracingGC() {
+        return tracingGC;
+    }
+
+    /**
+     * 追踪式GC的根集合：操作数栈的活动部分、程序使用的局部变量和全局数据区（含堆上分配的数组）；
+     * 栈帧不保存值，已使用区间之外的数组元素一定为0，不必扫描。
+     * 结构体的出边是其所有字段
+     */
+    private final class VMRootProvider implements GCRootProvider {
+        @Override
+        public void forEachRoot(IntConsumer visitor) {
+            for (int i = 0; i < stackPointer; i++) {
+                visitor.accept(stack[i]);
+            }
+            for (int i = 0; i < localsExtent; i++) {
+                visitor.accept(locals[i]);
+            }
+            int heapLength = usedHeapLength();
+            for (int i = 0; i < heapLength; i++) {
+                visitor.accept(heap[i]);
+            }
+        }
+
+        @Override
+        public void forEachReference(int objectId, IntConsumer visitor) {
+            structHeap.forEachField(objectId, visitor);
         }
     }
 
@@ -807,7 +1394,7 @@ public class CymbolStackVM {
     private void executeFload(int instruction) {
         // FLOAD: 从结构体加载字段
         // 操作数：字段偏移量
-        // 栈顶：结构体引用（可能是ID或堆地址）
+        // 栈顶：结构体引用（结构体句柄或堆地址）
         int fieldOffset = extractOperand(instruction);
         int structRef = pop(); // 结构体引用
 
@@ -816,44 +1403,17 @@ public class CymbolStackVM {
             throw VMMemoryAccessException.nullPointer(programCounter, "FLOAD", VMMemoryException.MemoryAccessType.READ);
         }
 
-        // 判断structRef是结构体ID还是堆地址
-        // 首先检查是否是GC分配的结构体
-        Integer structIndex = gcIdToStructIndex.get(structRef);
-        if (structIndex != null && structIndex >= 0 && structIndex < structTable.size()) {
-            // 有效的结构体ID：使用StructValue
-            StructValue struct = structTable.get(structIndex);
-            if (struct != null) {
-                Object fieldValue = struct.getField(fieldOffset);
-                int intValue = valueToInt(fieldValue);
-                push(intValue);
-            } else {
-                // 结构体已被回收
-                throw VMMemoryAccessException.nullPointer(programCounter, "FLOAD", VMMemoryException.MemoryAccessType.READ);
+        if (structHeap.contains(structRef)) {
+            push(structHeap.load(structRef, fieldOffset));
+        } else if (structRef >= 0 && structRef < heap.length) {
+            // 堆地址：回退到原有堆访问逻辑（保持兼容性）
+            int actualAddress = structRef + fieldOffset;
+            if (actualAddress < 0 || actualAddress >= heap.length) {
+                throw VMMemoryAccessException.outOfBounds(programCounter, "FLOAD", actualAddress, 0, heap.length - 1, VMMemoryException.MemoryAccessType.READ);
             }
+            push(heap[actualAddress]);
         } else {
-            // 检查是否是旧的索引方式（structRef - 1）
-            int oldStructIndex = structRef - 1;
-            if (oldStructIndex >= 0 && oldStructIndex < structTable.size()) {
-                // 旧的索引方式：使用StructValue
-                StructValue struct = structTable.get(oldStructIndex);
-                if (struct != null) {
-                    Object fieldValue = struct.getField(fieldOffset);
-                    int intValue = valueToInt(fieldValue);
-                    push(intValue);
-                } else {
-                    // 结构体已被回收
-                    throw VMMemoryAccessException.nullPointer(programCounter, "FLOAD", VMMemoryException.MemoryAccessType.READ);
-                }
-            } else if (structRef >= 0 && structRef < heap.length) {
-                // 堆地址：回退到原有堆访问逻辑（保持兼容性）
-                int actualAddress = structRef + fieldOffset;
-                if (actualAddress < 0 || actualAddress >= heap.length) {
-                    throw VMMemoryAccessException.outOfBounds(programCounter, "FLOAD", actualAddress, 0, heap.length - 1, VMMemoryException.MemoryAccessType.READ);
-                }
-                push(heap[actualAddress]);
-            } else {
-                throw new VMMemoryAccessException("Invalid struct reference: " + structRef, programCounter, "FLOAD", (long)structRef, 0, VMMemoryException.MemoryAccessType.READ);
-            }
+            throw new VMMemoryAccessException("Invalid struct reference: " + structRef, programCounter, "FLOAD", (long)structRef, 0, VMMemoryException.MemoryAccessType.READ);
         }
     }
 
@@ -870,42 +1430,19 @@ public class CymbolStackVM {
             throw VMMemoryAccessException.nullPointer(programCounter, "FSTORE", VMMemoryException.MemoryAccessType.WRITE);
         }
 
-        // 判断structRef是结构体ID还是堆地址
-        // 首先检查是否是GC分配的结构体
-        Integer structIndex = gcIdToStructIndex.get(structRef);
-        if (structIndex != null && structIndex >= 0 && structIndex < structTable.size()) {
-            // 有效的结构体ID：使用StructValue
-            StructValue struct = structTable.get(structIndex);
-            if (struct != null) {
-                Object fieldValue = intToValue(value);
-                struct.setField(fieldOffset, fieldValue);
-            } else {
-                // 结构体已被回收
-                throw VMMemoryAccessException.nullPointer(programCounter, "FSTORE", VMMemoryException.MemoryAccessType.WRITE);
+        if (structHeap.contains(structRef)) {
+            structHeap.store(structRef, fieldOffset, value);
+            writeBarrier(structRef, value);
+        } else if (structRef >= 0 && structRef < heap.length) {
+            // 堆地址：回退到原有堆访问逻辑（保持兼容性）
+            int actualAddress = structRef + fieldOffset;
+            if (actualAddress < 0 || actualAddress >= heap.length) {
+                throw VMMemoryAccessException.outOfBounds(programCounter, "FSTORE", actualAddress, 0, heap.length - 1, VMMemoryException.MemoryAccessType.WRITE);
             }
+            heap[actualAddress] = value;
+            recordHeapWrite(actualAddress);
         } else {
-            // 检查是否是旧的索引方式（structRef - 1）
-            int oldStructIndex = structRef - 1;
-            if (oldStructIndex >= 0 && oldStructIndex < structTable.size()) {
-                // 旧的索引方式：使用StructValue
-                StructValue struct = structTable.get(oldStructIndex);
-                if (struct != null) {
-                    Object fieldValue = intToValue(value);
-                    struct.setField(fieldOffset, fieldValue);
-                } else {
-                    // 结构体已被回收
-                    throw VMMemoryAccessException.nullPointer(programCounter, "FSTORE", VMMemoryException.MemoryAccessType.WRITE);
-                }
-            } else if (structRef >= 0 && structRef < heap.length) {
-                // 堆地址：回退到原有堆访问逻辑（保持兼容性）
-                int actualAddress = structRef + fieldOffset;
-                if (actualAddress < 0 || actualAddress >= heap.length) {
-                    throw VMMemoryAccessException.outOfBounds(programCounter, "FSTORE", actualAddress, 0, heap.length - 1, VMMemoryException.MemoryAccessType.WRITE);
-                }
-                heap[actualAddress] = value;
-            } else {
-                throw new VMMemoryAccessException("Invalid struct reference: " + structRef, programCounter, "FSTORE", (long)structRef, 0, VMMemoryException.MemoryAccessType.WRITE);
-            }
+            throw new VMMemoryAccessException("Invalid struct reference: " + structRef, programCounter, "FSTORE", (long)structRef, 0, VMMemoryException.MemoryAccessType.WRITE);
         }
     }
 
@@ -922,16 +1459,9 @@ public class CymbolStackVM {
             System.out.println("[ABI] CALL: current framePointer=" + framePointer + ", stackPointer=" + stackPointer);
         }
 
-        // 创建虚拟FunctionSymbol用于栈帧
-        // 注意：由于CymbolStackVM没有完整的常量池信息，我们使用虚拟符号
-        // 在实际使用中，应通过常量池获取完整的函数符号信息
-        FunctionSymbol dummySymbol = new FunctionSymbol("func_" + targetAddress, 0, 0, targetAddress);
-        // 创建栈帧（符合ABI规范）
-        StackFrame frame = new StackFrame(dummySymbol, returnAddress, null);
-
         // 在当前栈帧（调用者）中保存栈深度信息（符合ABI规范）
-        if (framePointer >= 0 && callStack[framePointer] != null) {
-            callStack[framePointer].setDebugData("savedStackDepth", savedStackDepth);
+        if (framePointer >= 0) {
+            frames.setSavedStackDepth(framePointer, savedStackDepth);
             if (config.isDebugMode()) {
                 System.out.println("[ABI] CALL: saved depth in caller frame at index " + framePointer);
             }
@@ -942,10 +1472,10 @@ public class CymbolStackVM {
         }
 
         // 压入调用栈
-        if (framePointer + 1 >= callStack.length) {
+        if (framePointer + 1 >= frames.getMaxFrames()) {
             throw new VMStackOverflowException("Call stack overflow at PC=" + programCounter, programCounter, "CALL");
         }
-        callStack[++framePointer] = frame;
+        pushCallFrame(targetAddress, returnAddress);
 
         // 跳转到目标地址
         programCounter = targetAddress;
@@ -961,8 +1491,7 @@ public class CymbolStackVM {
         if (framePointer < 0) {
             throw new VMStackUnderflowException("RET called without active frame at PC=" + programCounter, programCounter, "RET");
         }
-        StackFrame frame = callStack[framePointer--];
-        int returnAddress = frame.getReturnAddress();
+        int returnAddress = frames.getReturnAddress(framePointer--);
 
         if (config.isDebugMode()) {
             System.out.println("[ABI] RET: popped frame, returnAddress=" + returnAddress);
@@ -971,8 +1500,8 @@ public class CymbolStackVM {
 
         // 从调用者栈帧获取保存的栈深度（如果存在）
         Integer savedDepth = null;
-        if (framePointer >= 0 && callStack[framePointer] != null) {
-            savedDepth = (Integer) callStack[framePointer].getDebugData("savedStackDepth");
+        if (framePointer >= 0 && frames.hasSavedStackDepth(framePointer)) {
+            savedDepth = frames.getSavedStackDepth(framePointer);
             if (config.isDebugMode() && savedDepth != null) {
                 System.out.println("[ABI] RET: found savedDepth=" + savedDepth + ", current sp=" + stackPointer);
             }
@@ -1276,18 +1805,12 @@ public class CymbolStackVM {
             System.out.println("[ABI] CALL: framePointer=" + framePointer + ", returnAddress=" + returnAddress);
         }
 
-        // 创建虚拟FunctionSymbol用于栈帧
-        // 注意：由于CymbolStackVM没有完整的常量池信息，我们使用虚拟符号
-        FunctionSymbol dummySymbol = new FunctionSymbol("func_" + functionAddress, 0, 0, functionAddress);
-        // 创建栈帧（符合ABI规范，使用新的构造函数）
-        StackFrame frame = new StackFrame(dummySymbol, returnAddress, null);
-
         // 在当前栈帧（调用者）中保存栈深度信息 - 符合ABI规范
-        if (framePointer >= 0 && callStack[framePointer] != null) {
-            callStack[framePointer].setDebugData("savedStackDepth", savedStackDepth);
+        if (framePointer >= 0) {
+            frames.setSavedStackDepth(framePointer, savedStackDepth);
             if (config.isDebugMode()) {
                 System.out.println("[ABI] CALL: saved depth in caller frame at index " + framePointer);
-                System.out.println("[ABI] CALL: caller frame=" + callStack[framePointer]);
+                System.out.println("[ABI] CALL: caller frame=" + frames.toStackFrame(framePointer));
             }
         } else {
             if (config.isDebugMode()) {
@@ -1295,11 +1818,11 @@ public class CymbolStackVM {
             }
         }
 
-        // 压入调用栈（符合ABI规范）
-        if (framePointer + 1 >= callStack.length) {
+        // 压入调用栈（符合ABI规范）：只在栈帧区中移动帧指针，不创建栈帧对象
+        if (framePointer + 1 >= frames.getMaxFrames()) {
             throw new VMStackOverflowException("Call stack overflow at PC=" + programCounter, programCounter, "CALL");
         }
-        callStack[++framePointer] = frame;
+        pushCallFrame(functionAddress, returnAddress);
 
         // 跳转到目标地址
         programCounter = functionAddress;
@@ -1310,6 +1833,67 @@ public class CymbolStackVM {
         }
     }
 
+    /**
+     * 在栈帧区中建立被调用函数的栈帧
+     * 字节码只携带入口地址；设置了动态链接器时从中取得目标函数的参数和局部变量个数。
+     * 快速分派模式下解析结果缓存在预解码流的CALL槽位中，同一调用点只在首次执行时查询链接器，
+     * 之后直接读取槽位缓存；链接器中的函数被重新注册时缓存随之失效。
+     * 未设置链接器或地址未注册时栈帧不带参数和局部变量槽位。
+     * @param functionAddress 函数入口地址
+     * @param returnAddress 返回地址（调用点的下一条指令）
+     */
+    private void pushCallFrame(int functionAddress, int returnAddress) {
+        int nargs = 0;
+        int nlocals = 0;
+        if (dynamicLinker != null) {
+            int callSite = returnAddress - 1;
+            if (slotAddressing) {
+                DecodedProgram program = decodedProgram;
+                if (!program.isCallLayoutResolved(callSite)) {
+                    // 链接器使用原始指令字地址
+                    FunctionSymbol function = dynamicLinker.resolveFunctionAt(
+                        program.toWordAddress(callSite), program.toWordAddress(functionAddress));
+                    if (function != null) {
+                        program.setCallLayout(callSite, function.nargs, function.nlocals);
+                    }
+                }
+                if (program.isCallLayoutResolved(callSite)) {
+                    nargs = program.getCallNargs(callSite);
+                    nlocals = program.getCallNlocals(callSite);
+                }
+            } else {
+                FunctionSymbol function = dynamicLinker.resolveFunctionAt(callSite, functionAddress);
+                if (function != null) {
+                    nargs = function.nargs;
+                    nlocals = function.nlocals;
+                }
+            }
+        }
+        frames.enter(++framePointer, functionAddress, nargs, nlocals, returnAddress);
+    }
+
+    /**
+     * 设置动态链接器，CALL按调用点缓存从中解析目标函数的栈帧布局
+     * VM只在当前链接器上注册一个失效监听器，替换链接器时从旧链接器上移除，
+     * 因此池化或重新链接的VM不会经由共享的链接器泄漏。
+     * @param dynamicLinker 动态链接器，null表示不解析
+     */
+    public void setDynamicLinker(DynamicLinker dynamicLinker) {
+        if (this.dynamicLinker == dynamicLinker) {
+            return;
+        }
+        if (this.dynamicLinker != null) {
+            this.dynamicLinker.removeInvalidationListener(linkerInvalidationListener);
+        }
+        this.dynamicLinker = dynamicLinker;
+        if (dynamicLinker != null) {
+            dynamicLinker.addInvalidationListener(linkerInvalidationListener);
+        }
+        if (decodedProgram != null) {
+            decodedProgram.invalidateCallLayouts();
+        }
+    }
+
     /**
      * 函数返回 - 供新的RetInstruction使用
      */
@@ -1322,8 +1906,7 @@ public class CymbolStackVM {
         if (framePointer < 0) {
             throw new VMStackUnderflowException("RET called without active frame at PC=" + programCounter, programCounter, "RET");
         }
-        StackFrame frame = callStack[framePointer--];
-        int returnAddress = frame.getReturnAddress();
+        int returnAddress = frames.getReturnAddress(framePointer--);
 
         if (config.isDebugMode()) {
             System.out.println("[ABI] RET: popped frame, returnAddress=" + returnAddress);
@@ -1332,10 +1915,10 @@ public class CymbolStackVM {
 
         // 从调用者栈帧获取保存的栈深度（如果存在） - 符合ABI规范
         Integer savedDepth = null;
-        if (framePointer >= 0 && callStack[framePointer] != null) {
-            savedDepth = (Integer) callStack[framePointer].getDebugData("savedStackDepth");
+        if (framePointer >= 0 && frames.hasSavedStackDepth(framePointer)) {
+            savedDepth = frames.getSavedStackDepth(framePointer);
             if (config.isDebugMode()) {
-                System.out.println("[ABI] RET: caller frame at index " + framePointer + " is " + callStack[framePointer]);
+                System.out.println("[ABI] RET: caller frame at index " + framePointer + " is " + frames.toStackFrame(framePointer));
                 System.out.println("[ABI] RET: savedDepth=" + savedDepth + ", current sp=" + stackPointer);
             }
         } else {
@@ -1406,6 +1989,33 @@ public class CymbolStackVM {
         return programCounter;
     }
 
+    /**
+     * 获取活动栈帧快照（按需从栈帧区构造，用于调试和可视化）
+     * @return 从底部到顶部的栈帧数组
+     */
+    public StackFrame[] getCallStackFrames() {
+        StackFrame[] snapshot = new StackFrame[framePointer + 1];
+        for (int i = 0; i <= framePointer; i++) {
+            snapshot[i] = frames.toStackFrame(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 获取结构体堆
+     */
+    public StructHeap getStructHeap() {
+        return structHeap;
+    }
+
+    /**
+     * 获取垃圾回收器
+     * @return 当前使用的垃圾回收器，禁用GC时为空实现
+     */
+    public GarbageCollector getGarbageCollector() {
+        return garbageCollector;
+    }
+
     /**
      * 获取当前帧指针
      * @return 当前帧指针值
@@ -1453,4 +2063,159 @@ public class CymbolStackVM {
     public void setExceptionMonitor(VMExceptionMonitor exceptionMonitor) {
         this.exceptionMonitor = exceptionMonitor;
     }
+
+    /**
+     * 共享执行上下文
+     * 不再复制寄存器快照，程序计数器、栈指针、帧指针、堆分配指针和结构体ID
+     * 全部直接读写所属VM的字段，使一个上下文实例可以服务整个执行过程
+     */
+    private class SharedExecutionContext extends VMExecutionContext {
+
+        SharedExecutionContext() {
+            super(CymbolStackVM.this, config, stats, 0, stack, 0, heap, locals, null, -1,
+                  false, 0, structHeap, 1);
+        }
+
+        @Override
+        public int getProgramCounter() {
+            return programCounter;
+        }
+
+        @Override
+        public void setProgramCounter(int programCounter) {
+            CymbolStackVM.this.programCounter = programCounter;
+        }
+
+        @Override
+        public int getStackPointer() {
+            return stackPointer;
+        }
+
+        @Override
+        public void setStackPointer(int stackPointer) {
+            CymbolStackVM.this.stackPointer = stackPointer;
+        }
+
+        @Override
+        public int getFramePointer() {
+            return framePointer;
+        }
+
+        @Override
+        public void setFramePointer(int framePointer) {
+            CymbolStackVM.this.framePointer = framePointer;
+        }
+
+        @Override
+        public int getHeapAllocPointer() {
+            return heapAllocPointer;
+        }
+
+        @Override
+        public void setHeapAllocPointer(int heapAllocPointer) {
+            CymbolStackVM.this.heapAllocPointer = heapAllocPointer;
+        }
+
+        @Override
+        public int getNextStructId() {
+            return nextStructId;
+        }
+
+        @Override
+        public void setNextStructId(int nextStructId) {
+            CymbolStackVM.this.nextStructId = nextStructId;
+        }
+
+        @Override
+        public void push(int value) {
+            if (stackPointer >= stack.length) {
+                throw new StackOverflowError("Stack overflow");
+            }
+            stack[stackPointer++] = value;
+        }
+
+        @Override
+        public int pop() {
+            if (stackPointer <= 0) {
+                throw new IllegalStateException("Stack underflow");
+            }
+            return stack[--stackPointer];
+        }
+
+        @Override
+        public int peek() {
+            if (stackPointer <= 0) {
+                throw new IllegalStateException("Stack is empty");
+            }
+            return stack[stackPointer - 1];
+        }
+
+        @Override
+        public boolean isStackEmpty() {
+            return stackPointer <= 0;
+        }
+
+        @Override
+        public int getStackDepth() {
+            return stackPointer;
+        }
+
+        @Override
+        public int heapAlloc(int size) {
+            if (heapAllocPointer + size > heap.length) {
+                throw new OutOfMemoryError("Not enough heap space");
+            }
+            int address = heapAllocPointer;
+            heapAllocPointer += size;
+            return address;
+        }
+
+        @Override
+        public int createStruct(int nfields) {
+            return newStruct(nfields);
+        }
+    }
+
+    /**
+     * 已校验程序的执行上下文
+     * 校验器已证明操作数栈不会溢出或下溢、局部变量索引和全局地址都在范围内，
+     * 这里省去逐条指令的边界检查。NEWARRAY的堆写入地址由heapAlloc保证在范围内。
+     */
+    private final class VerifiedExecutionContext extends SharedExecutionContext {
+
+        @Override
+        public void push(int value) {
+            stack[stackPointer++] = value;
+        }
+
+        @Override
+        public int pop() {
+            return stack[--stackPointer];
+        }
+
+        @Override
+        public int peek() {
+            return stack[stackPointer - 1];
+        }
+
+        @Override
+        public int loadLocal(int index) {
+            return locals[index];
+        }
+
+        @Override
+        public void storeLocal(int index, int value) {
+            locals[index] = value;
+        }
+
+        @Override
+        public int heapRead(int address) {
+            return heap[address];
+        }
+
+        @Override
+        public void heapWrite(int address, int value) {
+            heap[address] = value;
+        }
+    }
 }
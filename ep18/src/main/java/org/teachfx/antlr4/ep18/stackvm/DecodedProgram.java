@@ -0,0 +1,186 @@
+package org.teachfx.antlr4.ep18.stackvm;
+
+import java.util.Arrays;
+
+/**
+ * 预解码指令流
+ * 在加载时把32位指令字拆分为并行的操作码/操作数数组：
+ * <ul>
+ *   <li>扩展指令（操作码最高位为1）与其后的32位操作数字合并为一个槽位</li>
+ *   <li>普通指令的24位操作数预先做符号扩展</li>
+ *   <li>BR/BRT/BRF/CALL 的目标地址从指令字地址换算为解码后的槽位索引</li>
+ * </ul>
+ * 解释器主循环因此只需按索引读取数组，无需重复解码。
+ * 解码后的末尾额外保留一个陷阱槽位（操作码0），执行越界或跳转到非指令边界时会落到这里，
+ * 与原始指令缓存中读到全零指令字的行为一致。
+ */
+public final class DecodedProgram {
+
+    /** 陷阱槽位使用的操作码（未注册任何指令） */
+    public static final int TRAP_OPCODE = 0;
+
+    private final int[] opcodes;
+    private final int[] operands;
+    private final int[] wordAddresses;   // 槽位索引 -> 原始指令字地址
+    private final int[] slotIndices;     // 原始指令字地址 -> 槽位索引（操作数字为-1）
+    private final int length;            // 实际指令数（不含陷阱槽位）
+    private final int[] callNargs;       // CALL槽位缓存的被调用函数参数个数（-1表示未解析）
+    private final int[] callNlocals;     // CALL槽位缓存的被调用函数局部变量个数
+
+    private DecodedProgram(int[] opcodes, int[] operands, int[] wordAddresses, int[] slotIndices, int length) {
+        this.opcodes = opcodes;
+        this.operands = operands;
+        this.wordAddresses = wordAddresses;
+        this.slotIndices = slotIndices;
+        this.length = length;
+        this.callNargs = new int[opcodes.length];
+        this.callNlocals = new int[opcodes.length];
+        Arrays.fill(callNargs, -1);
+    }
+
+    /**
+     * 解码指令字序列
+     * @param words 指令字数组
+     * @param wordCount 有效指令字数量
+     * @return 解码后的指令流
+     * @throws IllegalStateException 如果扩展指令缺少操作数字
+     */
+    public static DecodedProgram decode(int[] words, int wordCount) {
+        int[] opcodes = new int[wordCount + 1];
+        int[] operands = new int[wordCount + 1];
+        int[] wordAddresses = new int[wordCount + 1];
+        int[] slotIndices = new int[wordCount + 1];
+        Arrays.fill(slotIndices, -1);
+
+        // 第一遍：拆分操作码和操作数，建立地址映射
+        int slot = 0;
+        for (int address = 0; address < wordCount; address++) {
+            int instruction = words[address];
+            int opcode = (instruction >>> 24) & 0xFF;
+            slotIndices[address] = slot;
+            wordAddresses[slot] = address;
+
+            if ((opcode & 0x80) != 0) {
+                if (address + 1 >= wordCount) {
+                    throw new IllegalStateException("Extended instruction missing operand word at PC=" + address);
+                }
+                opcodes[slot] = opcode & 0x7F;
+                operands[slot] = words[++address];
+            } else {
+                opcodes[slot] = opcode;
+                operands[slot] = (instruction << 8) >> 8;
+            }
+            slot++;
+        }
+
+        // 末尾陷阱槽位
+        opcodes[slot] = TRAP_OPCODE;
+        operands[slot] = 0;
+        wordAddresses[slot] = wordCount;
+        slotIndices[wordCount] = slot;
+
+        // 第二遍：把跳转和调用目标换算为槽位索引
+        for (int i = 0; i < slot; i++) {
+            if (isBranch(opcodes[i])) {
+                int target = operands[i];
+                int resolved = target >= 0 && target <= wordCount ? slotIndices[target] : -1;
+                operands[i] = resolved >= 0 ? resolved : slot;
+            }
+        }
+
+        int size = slot + 1;
+        return new DecodedProgram(
+            Arrays.copyOf(opcodes, size),
+            Arrays.copyOf(operands, size),
+            Arrays.copyOf(wordAddresses, size),
+            slotIndices,
+            slot);
+    }
+
+    /**
+     * 判断操作码的操作数是否为代码地址
+     */
+    static boolean isBranch(int opcode) {
+        return opcode == BytecodeDefinition.INSTR_BR
+            || opcode == BytecodeDefinition.INSTR_BRT
+            || opcode == BytecodeDefinition.INSTR_BRF
+            || opcode == BytecodeDefinition.INSTR_CALL;
+    }
+
+    /**
+     * 获取操作码数组（含末尾陷阱槽位，直接返回内部数组）
+     */
+    public int[] getOpcodes() {
+        return opcodes;
+    }
+
+    /**
+     * 获取操作数数组（含末尾陷阱槽位，直接返回内部数组）
+     */
+    public int[] getOperands() {
+        return operands;
+    }
+
+    /**
+     * 获取实际指令数（不含陷阱槽位）
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * 槽位索引换算为原始指令字地址
+     */
+    public int toWordAddress(int slot) {
+        if (slot < 0 || slot >= wordAddresses.length) {
+            return -1;
+        }
+        return wordAddresses[slot];
+    }
+
+    /**
+     * 原始指令字地址换算为槽位索引，非指令边界返回-1
+     */
+    public int toSlotIndex(int wordAddress) {
+        if (wordAddress < 0 || wordAddress >= slotIndices.length) {
+            return -1;
+        }
+        return slotIndices[wordAddress];
+    }
+
+    /**
+     * 检查CALL槽位是否已缓存被调用函数的栈帧布局
+     */
+    public boolean isCallLayoutResolved(int slot) {
+        return callNargs[slot] >= 0;
+    }
+
+    /**
+     * 获取CALL槽位缓存的参数个数
+     */
+    public int getCallNargs(int slot) {
+        return callNargs[slot];
+    }
+
+    /**
+     * 获取CALL槽位缓存的局部变量个数
+     */
+    public int getCallNlocals(int slot) {
+        return callNlocals[slot];
+    }
+
+    /**
+     * 在CALL槽位缓存被调用函数的栈帧布局
+     */
+    public void setCallLayout(int slot, int nargs, int nlocals) {
+        callNlocals[slot] = nlocals;
+        callNargs[slot] = nargs;
+    }
+
+    /**
+     * 清除所有CALL槽位缓存的栈帧布局
+     */
+    public void invalidateCallLayouts() {
+        Arrays.fill(callNargs, -1);
+    }
+}
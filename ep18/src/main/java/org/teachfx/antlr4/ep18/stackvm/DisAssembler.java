@@ -1,5 +1,7 @@
 package org.teachfx.antlr4.ep18.stackvm;
 
+import org.teachfx.antlr4.ep18.stackvm.instructions.SuperInstruction;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -292,6 +294,63 @@ public class DisAssembler {
         return sb.toString();
     }
 
+    /**
+     * 反汇编未经超级指令重写的预解码指令流
+     *
+     * @param program 预解码指令流
+     * @return 反汇编文本
+     */
+    public static String disassemble(DecodedProgram program) {
+        return disassemble(program, null);
+    }
+
+    /**
+     * 反汇编预解码指令流
+     * 超级指令显示为一行标题，其后逐条列出它融合的原始指令及操作数
+     *
+     * @param program 预解码指令流
+     * @param rewriter 重写该指令流的超级指令重写器，null表示未重写
+     * @return 反汇编文本
+     */
+    public static String disassemble(DecodedProgram program, SuperInstructionRewriter rewriter) {
+        int[] opcodes = program.getOpcodes();
+        int[] operands = program.getOperands();
+        StringBuilder sb = new StringBuilder();
+
+        int slot = 0;
+        while (slot < program.getLength()) {
+            int opcode = opcodes[slot];
+            SuperInstruction superInstr = rewriter != null ? rewriter.getSuperInstruction(opcode) : null;
+            if (superInstr != null) {
+                sb.append(String.format("%04d:\t<super %s>%n", program.toWordAddress(slot), superInstr.getName()));
+                for (int i = 0; i < superInstr.getLength(); i++) {
+                    int componentOpcode = superInstr.getComponent(i).getOpcode();
+                    sb.append(String.format("%04d:\t  %s%n",
+                        program.toWordAddress(slot + i), decodedLine(componentOpcode, operands[slot + i])));
+                }
+                slot += superInstr.getLength();
+            } else {
+                sb.append(String.format("%04d:\t%s%n", program.toWordAddress(slot), decodedLine(opcode, operands[slot])));
+                slot++;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String decodedLine(int opcode, int operand) {
+        BytecodeDefinition.Instruction I = opcode > 0 && opcode < BytecodeDefinition.instructions.length
+            ? BytecodeDefinition.instructions[opcode] : null;
+        if (I == null) {
+            return String.format("%-11s [UNKNOWN OPCODE 0x%02X]", "?", opcode);
+        }
+        if (I.n == 0) {
+            return I.name;
+        }
+        // 跳转目标在解码后是槽位索引
+        String prefix = DecodedProgram.isBranch(opcode) ? "@" : "";
+        return String.format("%-11s%s%d", I.name, prefix, operand);
+    }
+
     /**
      * 以十六进制格式反汇编（用于调试）
      */
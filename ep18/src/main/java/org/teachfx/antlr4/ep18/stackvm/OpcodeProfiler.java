@@ -0,0 +1,130 @@
+package org.teachfx.antlr4.ep18.stackvm;
+
+import org.teachfx.antlr4.ep18.stackvm.instructions.InstructionFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 操作码序列剖析器
+ * 在快速分派循环中记录实际执行的操作码，统计长度为2..maxLength的直线型序列（n-gram）出现次数，
+ * 作为选择超级指令的依据。
+ * 序列在以下位置断开：程序计数器不连续（发生跳转）、控制流指令之后（它只能作为序列最后一条）、
+ * 遇到已融合的超级指令。
+ */
+public class OpcodeProfiler {
+    private final int maxLength;
+    private final int[] window;
+    private int windowSize;
+    private int lastPc = -2;
+    private final Map<Long, long[]> counts = new HashMap<>();
+
+    /**
+     * 构造函数
+     * @param maxLength 统计的最长序列长度（2..7）
+     */
+    public OpcodeProfiler(int maxLength) {
+        if (maxLength < 2 || maxLength > 7) {
+            throw new IllegalArgumentException("maxLength must be between 2 and 7");
+        }
+        this.maxLength = maxLength;
+        this.window = new int[maxLength];
+    }
+
+    /**
+     * 记录一次指令执行
+     * @param pc 槽位索引
+     * @param opcode 操作码
+     */
+    public void record(int pc, int opcode) {
+        if (pc != lastPc + 1 || opcode >= InstructionFactory.SUPER_OPCODE_BASE) {
+            windowSize = 0;
+        }
+        lastPc = pc;
+        if (opcode >= InstructionFactory.SUPER_OPCODE_BASE) {
+            return;
+        }
+
+        if (windowSize == maxLength) {
+            System.arraycopy(window, 1, window, 0, maxLength - 1);
+            windowSize--;
+        }
+        window[windowSize++] = opcode;
+
+        // 统计以当前指令结尾的所有序列
+        long key = opcode;
+        for (int n = 2; n <= windowSize; n++) {
+            key |= (long) window[windowSize - n] << (7 * (n - 1));
+            long packed = key | ((long) n << 56);
+            counts.computeIfAbsent(packed, k -> new long[1])[0]++;
+        }
+
+        if (InstructionFactory.isControlFlow(opcode)) {
+            windowSize = 0;
+        }
+    }
+
+    /**
+     * 获取收益最高的序列
+     * 收益按 出现次数 * (长度 - 1) 估算，即融合后节省的分派次数
+     * @param limit 最多返回的序列数
+     * @param minCount 最少出现次数
+     * @return 操作码序列列表，按收益降序
+     */
+    public List<int[]> hottest(int limit, long minCount) {
+        List<Map.Entry<Long, long[]>> entries = new ArrayList<>();
+        for (Map.Entry<Long, long[]> entry : counts.entrySet()) {
+            if (entry.getValue()[0] >= minCount) {
+                entries.add(entry);
+            }
+        }
+        entries.sort((a, b) -> Long.compare(benefit(b), benefit(a)));
+
+        List<int[]> result = new ArrayList<>();
+        for (int i = 0; i < entries.size() && i < limit; i++) {
+            result.add(unpack(entries.get(i).getKey()));
+        }
+        return result;
+    }
+
+    /**
+     * 获取序列出现次数
+     */
+    public long getCount(int[] sequence) {
+        long[] count = counts.get(pack(sequence));
+        return count == null ? 0 : count[0];
+    }
+
+    /**
+     * 清空统计
+     */
+    public void reset() {
+        counts.clear();
+        windowSize = 0;
+        lastPc = -2;
+    }
+
+    private static long benefit(Map.Entry<Long, long[]> entry) {
+        int length = (int) (entry.getKey() >>> 56);
+        return entry.getValue()[0] * (length - 1);
+    }
+
+    private static long pack(int[] sequence) {
+        long key = 0;
+        for (int i = 0; i < sequence.length; i++) {
+            key |= (long) sequence[sequence.length - 1 - i] << (7 * i);
+        }
+        return key | ((long) sequence.length << 56);
+    }
+
+    private static int[] unpack(long packed) {
+        int length = (int) (packed >>> 56);
+        int[] sequence = new int[length];
+        for (int i = 0; i < length; i++) {
+            sequence[length - 1 - i] = (int) ((packed >>> (7 * i)) & 0x7F);
+        }
+        return sequence;
+    }
+}
@@ -0,0 +1,316 @@
+package org.teachfx.antlr4.ep18.stackvm;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+/**
+ * 结构体堆 - 扁平的结构体内存布局
+ * 所有结构体的字段连续存放在一个int数组中，每个结构体占用与字段数相同的字数；
+ * 结构体引用是句柄（ID），通过句柄表找到字段区的起始位置，
+ * 字段访问即一次句柄查表加一次数组下标访问，不再装箱。
+ *
+ * 句柄表与字段区分离，使GC回收和整理时只需改写句柄表。
+ * 字段区按需增长，总字数不超过构造时给定的容量。
+ * 释放的块按精确字数进入空闲栈（小结构体）或首次适配空闲块表（大结构体），
+ * 大块释放时与相邻空闲块合并，与碰撞指针相邻时直接退回碰撞指针。
+ * 空闲总量足够但没有足够大的连续块时，分配前先整理字段区：
+ * 存活结构体按原顺序滑动到起始处，句柄不变，只改写句柄表中的起始位置。
+ */
+public final class StructHeap {
+    /** 按精确大小维护空闲栈的最大字数 */
+    private static final int MAX_EXACT_WORDS = 32;
+
+    private final int capacity;
+    private int[] words;           // 字段区
+    private int bumpPointer;
+    private int usedWords;
+    private int structCount;
+
+    // 句柄表（按结构体引用索引），fieldCounts为-1表示句柄未分配
+    private int[] bases;
+    private int[] fieldCounts;
+
+    private final int[][] freeStacks;     // 字数 -> 空闲块起始位置栈
+    private final int[] freeCounts;
+    private final TreeMap<Integer, Integer> largeFreeBlocks; // 起始位置 -> 字数
+
+    /**
+     * 构造函数
+     * @param capacity 字段区最大字数
+     */
+    public StructHeap(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Struct heap capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.words = new int[Math.min(capacity, 1024)];
+        this.bases = new int[64];
+        this.fieldCounts = new int[64];
+        Arrays.fill(fieldCounts, -1);
+        this.freeStacks = new int[MAX_EXACT_WORDS + 1][];
+        this.freeCounts = new int[MAX_EXACT_WORDS + 1];
+        this.largeFreeBlocks = new TreeMap<>();
+    }
+
+    /**
+     * 为结构体引用分配字段区，字段初始化为0
+     * @param structRef 结构体引用（正数）
+     * @param nfields 字段数
+     * @throws OutOfMemoryError 字段区已满
+     */
+    public void allocate(int structRef, int nfields) {
+        int base = allocateWords(nfields);
+        if (base < 0 && capacity - usedWords >= nfields) {
+            compact();
+            base = allocateWords(nfields);
+        }
+        if (base < 0) {
+            throw new OutOfMemoryError("Not enough heap space for struct with " + nfields + " fields");
+        }
+        Arrays.fill(words, base, base + nfields, 0);
+        if (structRef >= fieldCounts.length) {
+            int length = Math.max(fieldCounts.length * 2, structRef + 1);
+            bases = Arrays.copyOf(bases, length);
+            int oldLength = fieldCounts.length;
+            fieldCounts = Arrays.copyOf(fieldCounts, length);
+            Arrays.fill(fieldCounts, oldLength, length, -1);
+        }
+        bases[structRef] = base;
+        fieldCounts[structRef] = nfields;
+        usedWords += nfields;
+        structCount++;
+    }
+
+    private int allocateWords(int size) {
+        if (size <= MAX_EXACT_WORDS && freeCounts[size] > 0) {
+            return freeStacks[size][--freeCounts[size]];
+        }
+        if (capacity - bumpPointer >= size) {
+            int base = bumpPointer;
+            bumpPointer += size;
+            if (bumpPointer > words.length) {
+                words = Arrays.copyOf(words, (int) Math.min(capacity, Math.max(bumpPointer, words.length * 2L)));
+            }
+            return base;
+        }
+        for (Map.Entry<Integer, Integer> entry : largeFreeBlocks.entrySet()) {
+            int blockSize = entry.getValue();
+            if (blockSize >= size) {
+                int base = entry.getKey();
+                largeFreeBlocks.remove(base);
+                if (blockSize > size) {
+                    largeFreeBlocks.put(base + size, blockSize - size);
+                }
+                return base;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 释放结构体的字段区，句柄随之失效
+     * @param structRef 结构体引用
+     */
+    public void free(int structRef) {
+        if (!contains(structRef)) {
+            return;
+        }
+        int base = bases[structRef];
+        int size = fieldCounts[structRef];
+        fieldCounts[structRef] = -1;
+        usedWords -= size;
+        structCount--;
+
+        if (size == 0) {
+            return;
+        }
+        if (base + size == bumpPointer) {
+            bumpPointer = base;
+            absorbTrailingFreeBlocks();
+        } else if (size <= MAX_EXACT_WORDS) {
+            if (freeStacks[size] == null) {
+                freeStacks[size] = new int[16];
+            } else if (freeCounts[size] == freeStacks[size].length) {
+                freeStacks[size] = Arrays.copyOf(freeStacks[size], freeCounts[size] * 2);
+            }
+            freeStacks[size][freeCounts[size]++] = base;
+        } else {
+            freeLargeBlock(base, size);
+        }
+    }
+
+    /**
+     * 大块放入空闲块表，与前后相邻的空闲块合并
+     */
+    private void freeLargeBlock(int base, int size) {
+        Map.Entry<Integer, Integer> previous = largeFreeBlocks.floorEntry(base);
+        if (previous != null && previous.getKey() + previous.getValue() == base) {
+            largeFreeBlocks.remove(previous.getKey());
+            base = previous.getKey();
+            size += previous.getValue();
+        }
+        Integer next = largeFreeBlocks.remove(base + size);
+        if (next != null) {
+            size += next;
+        }
+        if (base + size == bumpPointer) {
+            bumpPointer = base;
+            absorbTrailingFreeBlocks();
+        } else {
+            largeFreeBlocks.put(base, size);
+        }
+    }
+
+    /**
+     * 碰撞指针下移后，把紧邻其下的空闲大块并回碰撞指针
+     */
+    private void absorbTrailingFreeBlocks() {
+        Map.Entry<Integer, Integer> last = largeFreeBlocks.lastEntry();
+        while (last != null && last.getKey() + last.getValue() == bumpPointer) {
+            largeFreeBlocks.remove(last.getKey());
+            bumpPointer = last.getKey();
+            last = largeFreeBlocks.lastEntry();
+        }
+    }
+
+    /**
+     * 整理字段区：按原位置顺序把存活结构体滑动到字段区起始处，清空所有空闲块
+     * 结构体引用（句柄）保持不变
+     */
+    public void compact() {
+        long[] order = new long[structCount];
+        int count = 0;
+        for (int ref = 1; ref < fieldCounts.length; ref++) {
+            if (fieldCounts[ref] >= 0) {
+                order[count++] = ((long) bases[ref] << 32) | ref;
+            }
+        }
+        Arrays.sort(order, 0, count);
+
+        int next = 0;
+        for (int i = 0; i < count; i++) {
+            int ref = (int) order[i];
+            int size = fieldCounts[ref];
+            if (bases[ref] != next) {
+                System.arraycopy(words, bases[ref], words, next, size);
+                bases[ref] = next;
+            }
+            next += size;
+        }
+        bumpPointer = next;
+        Arrays.fill(freeCounts, 0);
+        largeFreeBlocks.clear();
+    }
+
+    /**
+     * 判断结构体引用是否有效
+     */
+    public boolean contains(int structRef) {
+        return structRef > 0 && structRef < fieldCounts.length && fieldCounts[structRef] >= 0;
+    }
+
+    /**
+     * 读取字段
+     * @throws IndexOutOfBoundsException 字段偏移越界
+     */
+    public int load(int structRef, int fieldOffset) {
+        return words[fieldAddress(structRef, fieldOffset)];
+    }
+
+    /**
+     * 写入字段
+     * @throws IndexOutOfBoundsException 字段偏移越界
+     */
+    public void store(int structRef, int fieldOffset, int value) {
+        words[fieldAddress(structRef, fieldOffset)] = value;
+    }
+
+    private int fieldAddress(int structRef, int fieldOffset) {
+        int nfields = fieldCounts[structRef];
+        if (fieldOffset < 0 || fieldOffset >= nfields) {
+            throw new IndexOutOfBoundsException("Field offset out of bounds: " + fieldOffset + ", struct has " + nfields + " fields");
+        }
+        return bases[structRef] + fieldOffset;
+    }
+
+    /**
+     * 获取结构体的字段数
+     */
+    public int getFieldCount(int structRef) {
+        return fieldCounts[structRef];
+    }
+
+    /**
+     * 依次访问结构体的所有字段值（供GC遍历对象图）
+     */
+    public void forEachField(int structRef, IntConsumer visitor) {
+        if (!contains(structRef)) {
+            return;
+        }
+        int base = bases[structRef];
+        int end = base + fieldCounts[structRef];
+        for (int i = base; i < end; i++) {
+            visitor.accept(words[i]);
+        }
+    }
+
+    /**
+     * 释放所有结构体
+     */
+    public void reset() {
+        bumpPointer = 0;
+        usedWords = 0;
+        structCount = 0;
+        Arrays.fill(fieldCounts, -1);
+        Arrays.fill(freeCounts, 0);
+        largeFreeBlocks.clear();
+    }
+
+    /**
+     * 获取存活结构体占用的字数
+     */
+    public int getUsedWords() {
+        return usedWords;
+    }
+
+    /**
+     * 获取空闲块数量（不含碰撞指针之上的区域），整理后为0
+     */
+    public int getFreeBlockCount() {
+        int count = largeFreeBlocks.size();
+        for (int freeCount : freeCounts) {
+            count += freeCount;
+        }
+        return count;
+    }
+
+    /**
+     * 获取字段区已使用的最高位置（碰撞指针）
+     */
+    public int getTopWord() {
+        return bumpPointer;
+    }
+
+    /**
+     * 获取存活结构体数量
+     */
+    public int getStructCount() {
+        return structCount;
+    }
+
+    /**
+     * 获取句柄表容量，所有有效的结构体引用都小于该值
+     */
+    public int getHandleCapacity() {
+        return fieldCounts.length;
+    }
+
+    /**
+     * 获取字段区最大字数
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,171 @@
+package org.teachfx.antlr4.ep18.stackvm;
+
+import org.teachfx.antlr4.ep18.stackvm.instructions.Instruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.InstructionFactory;
+import org.teachfx.antlr4.ep18.stackvm.instructions.SuperInstruction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 超级指令重写器
+ * 在预解码指令流上按贪心最长匹配把已注册的操作码序列替换为超级指令。
+ * 只改写序列首个槽位的操作码，其余槽位和所有操作数保持不变，
+ * 跳转目标、返回地址以及异常后的恢复位置都不受影响。
+ *
+ * 超级指令操作码（从 {@link InstructionFactory#SUPER_OPCODE_BASE} 起）由重写器自己分配和保存，
+ * 只通过 {@link #install(Instruction[], int[])} 装入使用它的VM的分派表副本，不修改全局指令工厂。
+ * 一个重写器通常只服务一个VM；不是线程安全的。
+ */
+public class SuperInstructionRewriter {
+    /** 可分配的超级指令数量（操作码128-255） */
+    public static final int MAX_SUPER_INSTRUCTIONS = 256 - InstructionFactory.SUPER_OPCODE_BASE;
+
+    private final List<int[]> sequences = new ArrayList<>();
+    private final List<Integer> superOpcodes = new ArrayList<>();
+    private final SuperInstruction[] superInstructions = new SuperInstruction[MAX_SUPER_INSTRUCTIONS];
+    private final Map<String, Integer> registered = new HashMap<>();
+
+    /**
+     * 根据剖析结果选择超级指令
+     * @param profiler 剖析器
+     * @param maxSuperInstructions 最多选择的超级指令数
+     * @return 重写器
+     */
+    public static SuperInstructionRewriter fromProfile(OpcodeProfiler profiler, int maxSuperInstructions) {
+        SuperInstructionRewriter rewriter = new SuperInstructionRewriter();
+        for (int[] sequence : profiler.hottest(maxSuperInstructions, 2)) {
+            rewriter.addSequence(sequence);
+        }
+        return rewriter;
+    }
+
+    /**
+     * 添加一个待融合序列，同一序列重复添加时返回已分配的操作码
+     * @param opcodes 操作码序列（至少两条，除最后一条外不能是控制流指令）
+     * @return 分配的超级指令操作码
+     * @throws IllegalArgumentException 如果序列无效
+     * @throws IllegalStateException 如果超级指令操作码已用尽
+     */
+    public int addSequence(int[] opcodes) {
+        if (opcodes == null || opcodes.length < 2) {
+            throw new IllegalArgumentException("Super instruction needs at least two components");
+        }
+        String key = Arrays.toString(opcodes);
+        Integer existing = registered.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        InstructionFactory factory = InstructionFactory.getInstance();
+        Instruction[] components = new Instruction[opcodes.length];
+        for (int i = 0; i < opcodes.length; i++) {
+            int opcode = opcodes[i];
+            if (opcode < 0 || opcode >= InstructionFactory.SUPER_OPCODE_BASE || factory.getInstruction(opcode) == null) {
+                throw new IllegalArgumentException("Unsupported component opcode: " + opcode);
+            }
+            if (i < opcodes.length - 1 && InstructionFactory.isControlFlow(opcode)) {
+                throw new IllegalArgumentException(
+                    "Control flow instruction must be the last component: " + factory.getInstruction(opcode).getName());
+            }
+            components[i] = factory.getInstruction(opcode);
+        }
+        if (registered.size() >= MAX_SUPER_INSTRUCTIONS) {
+            throw new IllegalStateException("No free opcode for super instruction");
+        }
+
+        int superOpcode = InstructionFactory.SUPER_OPCODE_BASE + registered.size();
+        superInstructions[superOpcode - InstructionFactory.SUPER_OPCODE_BASE] =
+            new SuperInstruction(superOpcode, components);
+        registered.put(key, superOpcode);
+
+        // 保持按长度降序，实现最长匹配
+        int index = 0;
+        while (index < sequences.size() && sequences.get(index).length >= opcodes.length) {
+            index++;
+        }
+        sequences.add(index, opcodes.clone());
+        superOpcodes.add(index, superOpcode);
+        return superOpcode;
+    }
+
+    /**
+     * 原地重写预解码指令流
+     * @param program 预解码指令流
+     * @return 融合的位置数
+     */
+    public int rewrite(DecodedProgram program) {
+        int[] opcodes = program.getOpcodes();
+        int length = program.getLength();
+        int fused = 0;
+
+        int pc = 0;
+        while (pc < length) {
+            int matched = 1;
+            for (int s = 0; s < sequences.size(); s++) {
+                int[] sequence = sequences.get(s);
+                if (matches(opcodes, length, pc, sequence)) {
+                    opcodes[pc] = superOpcodes.get(s);
+                    matched = sequence.length;
+                    fused++;
+                    break;
+                }
+            }
+            pc += matched;
+        }
+        return fused;
+    }
+
+    private static boolean matches(int[] opcodes, int length, int pc, int[] sequence) {
+        if (pc + sequence.length > length) {
+            return false;
+        }
+        for (int i = 0; i < sequence.length; i++) {
+            if (opcodes[pc + i] != sequence[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 返回装入了本重写器超级指令的分派表副本
+     * @param dispatchTable 基础分派表（不会被修改）
+     * @param operands 已重写的预解码指令流的操作数数组，超级指令从中读取组成指令的操作数
+     * @return 新的分派表
+     */
+    public Instruction[] install(Instruction[] dispatchTable, int[] operands) {
+        Instruction[] table = dispatchTable.clone();
+        for (int i = 0; i < registered.size(); i++) {
+            table[InstructionFactory.SUPER_OPCODE_BASE + i] = superInstructions[i].bind(operands);
+        }
+        return table;
+    }
+
+    /**
+     * 检查操作码是否为本重写器分配的超级指令
+     */
+    public boolean isSuperInstruction(int opcode) {
+        return getSuperInstruction(opcode) != null;
+    }
+
+    /**
+     * 获取操作码对应的超级指令
+     * @param opcode 操作码
+     * @return 超级指令，不是本重写器分配的操作码时返回null
+     */
+    public SuperInstruction getSuperInstruction(int opcode) {
+        int index = opcode - InstructionFactory.SUPER_OPCODE_BASE;
+        return index >= 0 && index < registered.size() ? superInstructions[index] : null;
+    }
+
+    /**
+     * 获取已选择的序列数
+     */
+    public int getSequenceCount() {
+        return sequences.size();
+    }
+}
@@ -1,5 +1,7 @@
 package org.teachfx.antlr4.ep18.stackvm;
 
+import java.util.Objects;
+
 /**
  * VMConfig - 虚拟机配置类
  * 提供虚拟机的各种配置选项
@@ -21,11 +23,16 @@ public class VMConfig {
     private final int maxExecutionTime;
     private final boolean enableBoundsCheck;
     private final boolean enableTypeCheck;
+    private final boolean enableFastDispatch;
+    private final boolean enableJit;
+    private final int jitThreshold;
+    private final boolean enableVerification;
 
     // GC配置
     private final boolean enableGC;
     private final String gcType;
     private final int gcHeapSize;
+    private final int gcNurserySize;
     
     private VMConfig(Builder builder) {
         this.heapSize = builder.heapSize;
@@ -39,9 +46,14 @@ public class VMConfig {
         this.maxExecutionTime = builder.maxExecutionTime;
         this.enableBoundsCheck = builder.enableBoundsCheck;
         this.enableTypeCheck = builder.enableTypeCheck;
+        this.enableFastDispatch = builder.enableFastDispatch;
+        this.enableJit = builder.enableJit;
+        this.jitThreshold = builder.jitThreshold;
+        this.enableVerification = builder.enableVerification;
         this.enableGC = builder.enableGC;
         this.gcType = builder.gcType;
         this.gcHeapSize = builder.gcHeapSize;
+        this.gcNurserySize = builder.gcNurserySize;
     }
     
     // Getters
@@ -89,6 +101,22 @@ public class VMConfig {
         return enableTypeCheck;
     }
 
+    public boolean isEnableFastDispatch() {
+        return enableFastDispatch;
+    }
+
+    public boolean isEnableJit() {
+        return enableJit;
+    }
+
+    public int getJitThreshold() {
+        return jitThreshold;
+    }
+
+    public boolean isEnableVerification() {
+        return enableVerification;
+    }
+
     // GC配置getters
     public boolean isEnableGC() {
         return enableGC;
@@ -102,6 +130,52 @@ public class VMConfig {
         return gcHeapSize;
     }
 
+    public int getGcNurserySize() {
+        return gcNurserySize;
+    }
+
+    /**
+     * 配置创建后不可变，按全部配置项比较，
+     * 因此内容相同的配置可以共用按配置划分的资源（如实例池）
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof VMConfig)) {
+            return false;
+        }
+        VMConfig other = (VMConfig) o;
+        return heapSize == other.heapSize
+            && stackSize == other.stackSize
+            && maxStackDepth == other.maxStackDepth
+            && maxFrameCount == other.maxFrameCount
+            && debugMode == other.debugMode
+            && traceEnabled == other.traceEnabled
+            && verboseErrors == other.verboseErrors
+            && instructionCacheSize == other.instructionCacheSize
+            && maxExecutionTime == other.maxExecutionTime
+            && enableBoundsCheck == other.enableBoundsCheck
+            && enableTypeCheck == other.enableTypeCheck
+            && enableFastDispatch == other.enableFastDispatch
+            && enableJit == other.enableJit
+            && jitThreshold == other.jitThreshold
+            && enableVerification == other.enableVerification
+            && enableGC == other.enableGC
+            && Objects.equals(gcType, other.gcType)
+            && gcHeapSize == other.gcHeapSize
+            && gcNurserySize == other.gcNurserySize;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(heapSize, stackSize, maxStackDepth, maxFrameCount, debugMode, traceEnabled,
+            verboseErrors, instructionCacheSize, maxExecutionTime, enableBoundsCheck, enableTypeCheck,
+            enableFastDispatch, enableJit, jitThreshold, enableVerification, enableGC, gcType,
+            gcHeapSize, gcNurserySize);
+    }
+
     /**
      * 创建构建器的静态工厂方法
      * @return 新的Builder实例
@@ -126,11 +200,16 @@ public class VMConfig {
         private int maxExecutionTime = 60000; // 最大执行时间（毫秒）
         private boolean enableBoundsCheck = true;
         private boolean enableTypeCheck = true;
+        private boolean enableFastDispatch = false; // 快速分派模式（无调试时生效）
+        private boolean enableJit = false; // 分层编译（需要快速分派模式）
+        private int jitThreshold = 1000; // 函数调用与回边次数达到该值时编译
+        private boolean enableVerification = false; // 加载时字节码校验（需要快速分派模式）
 
         // GC配置默认值
         private boolean enableGC = true;
         private String gcType = "reference-counting";
         private int gcHeapSize = 1024 * 1024; // 1MB
+        private int gcNurserySize = 0; // 分代GC新生代大小，0表示GC堆的四分之一
         
         public Builder() {}
         
@@ -207,12 +286,36 @@ public class VMConfig {
             return this;
         }
 
+        public Builder setEnableFastDispatch(boolean enableFastDispatch) {
+            this.enableFastDispatch = enableFastDispatch;
+            return this;
+        }
+
+        public Builder setEnableJit(boolean enableJit) {
+            this.enableJit = enableJit;
+            return this;
+        }
+
+        public Builder setJitThreshold(int jitThreshold) {
+            if (jitThreshold <= 0) {
+                throw new IllegalArgumentException("JIT threshold must be positive");
+            }
+            this.jitThreshold = jitThreshold;
+            return this;
+        }
+
+        public Builder setEnableVerification(boolean enableVerification) {
+            this.enableVerification = enableVerification;
+            return this;
+        }
+
         // GC配置setters
         public Builder setEnableGC(boolean enableGC) {
             this.enableGC = enableGC;
             return this;
         }
 
+        // 可选 reference-counting（默认）、mark-sweep、mark-compact、generational，其他值回退为引用计数
         public Builder setGcType(String gcType) {
             if (gcType == null || gcType.trim().isEmpty()) {
                 throw new IllegalArgumentException("GC type cannot be null or empty");
@@ -228,6 +331,14 @@ public class VMConfig {
             this.gcHeapSize = gcHeapSize;
             return this;
         }
+
+        public Builder setGcNurserySize(int gcNurserySize) {
+            if (gcNurserySize < 0) {
+                throw new IllegalArgumentException("GC nursery size cannot be negative");
+            }
+            this.gcNurserySize = gcNurserySize;
+            return this;
+        }
         
         public VMConfig build() {
             return new VMConfig(this);
@@ -30,7 +30,7 @@ public class VMExecutionContext {
     private int heapAllocPointer;
 
     // 结构体管理
-    private java.util.List<StructValue> structTable;
+    private StructHeap structHeap;
     private int nextStructId;
 
     // 异常处理
@@ -51,7 +51,7 @@ public class VMExecutionContext {
      * @param framePointer 帧指针
      * @param traceEnabled 是否启用跟踪
      * @param heapAllocPointer 堆分配指针
-     * @param structTable 结构体表
+     * @param structHeap 结构体堆
      * @param nextStructId 下一个结构体ID
      */
     public VMExecutionContext(
@@ -67,7 +67,7 @@ public class VMExecutionContext {
             int framePointer,
             boolean traceEnabled,
             int heapAllocPointer,
-            java.util.List<StructValue> structTable,
+            StructHeap structHeap,
             int nextStructId) {
         this.vm = vm;
         this.config = config;
@@ -81,7 +81,7 @@ public class VMExecutionContext {
         this.framePointer = framePointer;
         this.traceEnabled = traceEnabled;
         this.heapAllocPointer = heapAllocPointer;
-        this.structTable = structTable;
+        this.structHeap = structHeap;
         this.nextStructId = nextStructId;
     }
 
@@ -103,8 +103,8 @@ public class VMExecutionContext {
             0,
             false,
             0,
-            new java.util.ArrayList<>(),
-            0
+            new StructHeap(1024),
+            1
         );
     }
 
@@ -180,8 +180,12 @@ public class VMExecutionContext {
 
     /**
      * 获取调用栈
+     * 虚拟机使用栈帧区时不持有栈帧数组，此时返回按需构造的快照
      */
     public StackFrame[] getCallStack() {
+        if (callStack == null && vm != null) {
+            return vm.getCallStackFrames();
+        }
         return callStack;
     }
 
@@ -228,10 +232,10 @@ public class VMExecutionContext {
     }
 
     /**
-     * 获取结构体表
+     * 获取结构体堆
      */
-    public java.util.List<StructValue> getStructTable() {
-        return structTable;
+    public StructHeap getStructHeap() {
+        return structHeap;
     }
 
     /**
@@ -380,11 +384,8 @@ public class VMExecutionContext {
             throw new NullPointerException("Null struct reference");
         }
 
-        int structIndex = structRef - 1;
-        if (structIndex >= 0 && structIndex < structTable.size()) {
-            StructValue struct = structTable.get(structIndex);
-            Object fieldValue = struct.getField(fieldOffset);
-            return valueToInt(fieldValue);
+        if (structHeap.contains(structRef)) {
+            return structHeap.load(structRef, fieldOffset);
         } else if (structRef >= 0 && structRef < heap.length) {
             int actualAddress = structRef + fieldOffset;
             if (actualAddress < 0 || actualAddress >= heap.length) {
@@ -404,17 +405,20 @@ public class VMExecutionContext {
             throw new NullPointerException("Null struct reference");
         }
 
-        int structIndex = structRef - 1;
-        if (structIndex >= 0 && structIndex < structTable.size()) {
-            StructValue struct = structTable.get(structIndex);
-            Object fieldValue = intToValue(value);
-            struct.setField(fieldOffset, fieldValue);
+        if (structHeap.contains(structRef)) {
+            structHeap.store(structRef, fieldOffset, value);
+            if (vm != null) {
+                vm.writeBarrier(structRef, value);
+            }
         } else if (structRef >= 0 && structRef < heap.length) {
             int actualAddress = structRef + fieldOffset;
             if (actualAddress < 0 || actualAddress >= heap.length) {
                 throw new IndexOutOfBoundsException("Struct field address out of bounds: " + actualAddress);
             }
             heap[actualAddress] = value;
+            if (vm != null) {
+                vm.recordHeapWrite(actualAddress);
+            }
         } else {
             throw new IndexOutOfBoundsException("Invalid struct reference: " + structRef);
         }
@@ -424,12 +428,11 @@ public class VMExecutionContext {
      * 创建结构体实例
      */
     public int createStruct(int nfields) {
-        StructValue struct = new StructValue(nfields);
-        for (int i = 0; i < nfields; i++) {
-            struct.setField(i, 0);
+        if (vm != null && vm.isTracingGC()) {
+            return vm.allocateStruct(nfields);
         }
-        structTable.add(struct);
         int structId = nextStructId++;
+        structHeap.allocate(structId, nfields);
         return structId;
     }
 
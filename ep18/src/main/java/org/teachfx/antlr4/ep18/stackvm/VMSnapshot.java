@@ -0,0 +1,261 @@
+package org.teachfx.antlr4.ep18.stackvm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 虚拟机状态快照
+ * 保存 {@link CymbolStackVM} 停机后的完整运行状态：程序计数器、操作数栈、局部变量、
+ * 全局数据/堆、已加载代码、调用栈帧和结构体堆（追踪式GC的对象表由结构体句柄重建）。
+ * 完成初始化阶段后拍一次快照，之后每次运行都从快照恢复，不再重复执行初始化代码。
+ *
+ * 快照中的代码地址一律是原始指令字地址，与停机时使用的分派模式无关。
+ * 文件布局（大端序）：
+ * <pre>
+ * 头部   magic(4) version(2) target(1) reserved(1)
+ *        pc(4) heapAllocPointer(4) nextStructId(4)
+ * 各段   code stack locals heap frames frameSlots structs structWords
+ * </pre>
+ * 每段是4字节长度前缀的int数组；locals和heap去掉了末尾的零。
+ * frames每帧5个字：函数入口、参数个数、局部变量个数、返回地址、保存的栈深度；
+ * structs每个结构体2个字：引用、字段数。读取时内存映射文件并批量复制各段。
+ */
+public final class VMSnapshot {
+    /** 文件魔数 "CYMS" */
+    public static final int MAGIC = 0x43594D53;
+    /** 当前格式版本 */
+    public static final int VERSION = 1;
+    /** 快照文件扩展名 */
+    public static final String EXTENSION = ".vms";
+
+    /** 每个栈帧在frames段中占用的字数 */
+    static final int FRAME_WORDS = 5;
+    /** 每个结构体在structs段中占用的字数 */
+    static final int STRUCT_WORDS = 2;
+
+    private final int programCounter;
+    private final int heapAllocPointer;
+    private final int nextStructId;
+    private final int[] code;
+    private final int[] stack;
+    private final int[] locals;
+    private final int[] heap;
+    private final int[] frames;
+    private final int[] frameSlots;
+    private final int[] structs;
+    private final int[] structWords;
+
+    VMSnapshot(int programCounter, int heapAllocPointer, int nextStructId,
+               int[] code, int[] stack, int[] locals, int[] heap,
+               int[] frames, int[] frameSlots, int[] structs, int[] structWords) {
+        this.programCounter = programCounter;
+        this.heapAllocPointer = heapAllocPointer;
+        this.nextStructId = nextStructId;
+        this.code = code;
+        this.stack = stack;
+        this.locals = locals;
+        this.heap = heap;
+        this.frames = frames;
+        this.frameSlots = frameSlots;
+        this.structs = structs;
+        this.structWords = structWords;
+    }
+
+    // ==================== 写出 ====================
+
+    /**
+     * 写出快照
+     * @param out 输出流（调用方负责关闭）
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeByte(ObjectFile.TARGET_STACK_VM);
+        data.writeByte(0);
+        data.writeInt(programCounter);
+        data.writeInt(heapAllocPointer);
+        data.writeInt(nextStructId);
+        for (int[] section : new int[][] {code, stack, locals, heap, frames, frameSlots, structs, structWords}) {
+            data.writeInt(section.length);
+            for (int value : section) {
+                data.writeInt(value);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * 写出快照到路径
+     */
+    public void write(Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(out);
+        }
+    }
+
+    /**
+     * 序列化为字节数组
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+            4 * (code.length + stack.length + heap.length + frameSlots.length + structWords.length) + 64);
+        try {
+            write(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // ==================== 读取 ====================
+
+    /**
+     * 内存映射读取快照文件
+     * @param path 文件路径
+     * @return 快照
+     * @throws IOException 文件不是有效的栈式VM快照
+     */
+    public static VMSnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * 从缓冲区读取快照
+     * @param buffer 缓冲区（从当前位置开始读取）
+     * @return 快照
+     * @throws IOException 格式错误
+     */
+    public static VMSnapshot read(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a Cymbol VM snapshot");
+            }
+            int version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version: " + version);
+            }
+            int target = buffer.get();
+            if (target != ObjectFile.TARGET_STACK_VM) {
+                throw new IOException("Snapshot targets another VM: " + target);
+            }
+            buffer.get();
+            int programCounter = buffer.getInt();
+            int heapAllocPointer = buffer.getInt();
+            int nextStructId = buffer.getInt();
+            int[] code = readInts(buffer);
+            int[] stack = readInts(buffer);
+            int[] locals = readInts(buffer);
+            int[] heap = readInts(buffer);
+            int[] frames = readInts(buffer);
+            int[] frameSlots = readInts(buffer);
+            int[] structs = readInts(buffer);
+            int[] structWords = readInts(buffer);
+            if (frames.length % FRAME_WORDS != 0 || structs.length % STRUCT_WORDS != 0) {
+                throw new IOException("Truncated or corrupt snapshot");
+            }
+            return new VMSnapshot(programCounter, heapAllocPointer, nextStructId,
+                code, stack, locals, heap, frames, frameSlots, structs, structWords);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Truncated or corrupt snapshot", e);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer) {
+        int[] values = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * 4);
+        return values;
+    }
+
+    /**
+     * 去掉末尾零值后的有效长度
+     */
+    static int trimmedLength(int[] values, int limit) {
+        int length = limit;
+        while (length > 0 && values[length - 1] == 0) {
+            length--;
+        }
+        return length;
+    }
+
+    // ==================== 访问器 ====================
+
+    /**
+     * 获取停机时的程序计数器（指令字地址）
+     */
+    public int getProgramCounter() {
+        return programCounter;
+    }
+
+    /**
+     * 获取操作数栈深度
+     */
+    public int getStackDepth() {
+        return stack.length;
+    }
+
+    /**
+     * 获取活动栈帧数
+     */
+    public int getFrameCount() {
+        return frames.length / FRAME_WORDS;
+    }
+
+    /**
+     * 获取存活结构体数
+     */
+    public int getStructCount() {
+        return structs.length / STRUCT_WORDS;
+    }
+
+    int getHeapAllocPointer() {
+        return heapAllocPointer;
+    }
+
+    int getNextStructId() {
+        return nextStructId;
+    }
+
+    int[] getCode() {
+        return code;
+    }
+
+    int[] getStack() {
+        return stack;
+    }
+
+    int[] getLocals() {
+        return locals;
+    }
+
+    int[] getHeap() {
+        return heap;
+    }
+
+    int[] getFrames() {
+        return frames;
+    }
+
+    int[] getFrameSlots() {
+        return frameSlots;
+    }
+
+    int[] getStructs() {
+        return structs;
+    }
+
+    int[] getStructWords() {
+        return structWords;
+    }
+}
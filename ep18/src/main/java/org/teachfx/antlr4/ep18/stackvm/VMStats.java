@@ -38,8 +38,14 @@ public class VMStats {
      */
     public void recordExecution(long startTime) {
         long endTime = System.currentTimeMillis();
-        long executionTime = endTime - startTime;
-        
+        recordExecutionTime(endTime - startTime);
+    }
+
+    /**
+     * 记录一次已测得耗时的执行（供汇总多个虚拟机的执行统计使用）
+     * @param executionTime 执行时间（毫秒）
+     */
+    public void recordExecutionTime(long executionTime) {
         executionCount.incrementAndGet();
         totalExecutionTime.addAndGet(executionTime);
         
@@ -60,7 +66,7 @@ public class VMStats {
      * 记录一次错误
      * @param error 错误信息
      */
-    public void recordError(Exception error) {
+    public void recordError(Throwable error) {
         errorCount.incrementAndGet();
         lastErrorTime.set(System.currentTimeMillis());
     }
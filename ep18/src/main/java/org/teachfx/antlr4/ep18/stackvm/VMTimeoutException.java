@@ -0,0 +1,12 @@
+package org.teachfx.antlr4.ep18.stackvm;
+
+/**
+ * VMTimeoutException - 执行超时异常
+ * 执行时间超过 {@link VMConfig#getMaxExecutionTime()} 被强制停止时抛出
+ */
+public class VMTimeoutException extends VMRuntimeException {
+
+    public VMTimeoutException(String message, int pc) {
+        super(message, pc, null);
+    }
+}
@@ -0,0 +1,12 @@
+package org.teachfx.antlr4.ep18.stackvm;
+
+/**
+ * VMVerificationException - 字节码校验异常
+ * 加载时校验发现非法跳转目标、越界的变量索引或不支持的操作码时抛出
+ */
+public class VMVerificationException extends VMException {
+
+    public VMVerificationException(String message, int pc, String instruction) {
+        super(message, pc, instruction);
+    }
+}
@@ -12,7 +12,9 @@ import org.teachfx.antlr4.ep18.stackvm.instructions.memory.*;
  * 使用单例模式确保指令实例的复用
  */
 public class InstructionFactory {
-    private static InstructionFactory instance;
+    /** 超级指令操作码起始值（原始字节码中操作码最高位是扩展标志，不会出现128及以上的值） */
+    public static final int SUPER_OPCODE_BASE = 128;
+
     private final Instruction[] instructionCache;
 
     /**
@@ -23,14 +25,18 @@ public class InstructionFactory {
         initializeInstructions();
     }
 
+    /**
+     * 延迟初始化持有者（由类加载保证线程安全，无需同步）
+     */
+    private static class Holder {
+        private static final InstructionFactory INSTANCE = new InstructionFactory();
+    }
+
     /**
      * 获取单例实例
      */
-    public static synchronized InstructionFactory getInstance() {
-        if (instance == null) {
-            instance = new InstructionFactory();
-        }
-        return instance;
+    public static InstructionFactory getInstance() {
+        return Holder.INSTANCE;
     }
 
     /**
@@ -105,6 +111,18 @@ public class InstructionFactory {
         }
     }
 
+    /**
+     * 检查操作码是否会改变控制流（跳转、调用、返回、停机）
+     */
+    public static boolean isControlFlow(int opcode) {
+        return opcode == BrInstruction.OPCODE
+            || opcode == BrtInstruction.OPCODE
+            || opcode == BrfInstruction.OPCODE
+            || opcode == CallInstruction.OPCODE
+            || opcode == RetInstruction.OPCODE
+            || opcode == HaltInstruction.OPCODE;
+    }
+
     /**
      * 根据操作码获取指令实例
      * @param opcode 操作码
@@ -117,6 +135,15 @@ public class InstructionFactory {
         return instructionCache[opcode];
     }
 
+    /**
+     * 获取按操作码索引的分派表副本
+     * 解释器主循环可直接用数组下标查找指令，未实现的操作码对应null
+     * @return 长度为256的指令数组
+     */
+    public Instruction[] getDispatchTable() {
+        return instructionCache.clone();
+    }
+
     /**
      * 根据操作码获取指令实例，如果不存在则抛出异常
      * @param opcode 操作码
@@ -0,0 +1,274 @@
+package org.teachfx.antlr4.ep18.stackvm.instructions;
+
+import org.teachfx.antlr4.ep18.stackvm.VMExecutionContext;
+import org.teachfx.antlr4.ep18.stackvm.instructions.arithmetic.ArithmeticExecutor;
+import org.teachfx.antlr4.ep18.stackvm.instructions.arithmetic.IAddInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.arithmetic.IDivInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.arithmetic.IMulInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.arithmetic.ISubInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.comparison.IEqInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.comparison.IGeInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.comparison.IGtInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.comparison.ILeInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.comparison.ILtInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.comparison.INeInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.constant.IConstInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.controlflow.BrInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.controlflow.BrfInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.controlflow.BrtInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.controlflow.PopInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.memory.GLoadInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.memory.GStoreInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.memory.LoadInstruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.memory.StoreInstruction;
+
+/**
+ * 超级指令
+ * 把一段直线型指令序列融合为一次分派。只出现在预解码指令流中：
+ * 重写时仅替换序列首个槽位的操作码，其余槽位保持原样，
+ * 因此跳转到序列中间、或某个组成指令抛出异常后从中间继续执行，都与逐条执行完全一致。
+ * 各组成指令的操作数从预解码流的相应槽位读取：重写器装入分派表时把超级指令绑定到该VM的操作数数组，
+ * 未绑定的超级指令只描述组成序列，不能执行。
+ *
+ * 常见的整数、局部/全局变量和分支指令在构造时被归类，执行时在同一个switch中内联完成，
+ * 不再经过各组成指令的虚调用，也不逐条写回程序计数器；
+ * 只有需要报告位置（溢出、除零、异常）时才把程序计数器补到出错指令之后。
+ * 内联的变量访问和分支直接读写上下文，不更新执行器的进程级统计，避免并发VM在热点指令上竞争。
+ * 其余指令按原实现逐条执行。
+ */
+public class SuperInstruction extends BaseInstruction {
+    private static final int GENERIC = 0;
+    private static final int ICONST = 1;
+    private static final int LOAD = 2;
+    private static final int STORE = 3;
+    private static final int GLOAD = 4;
+    private static final int GSTORE = 5;
+    private static final int IADD = 6;
+    private static final int ISUB = 7;
+    private static final int IMUL = 8;
+    private static final int IDIV = 9;
+    private static final int ILT = 10;
+    private static final int ILE = 11;
+    private static final int IGT = 12;
+    private static final int IGE = 13;
+    private static final int IEQ = 14;
+    private static final int INE = 15;
+    private static final int POP = 16;
+    private static final int BR = 17;
+    private static final int BRT = 18;
+    private static final int BRF = 19;
+
+    private final Instruction[] components;
+    private final int[] kinds;
+    private final int[] operands;
+
+    /**
+     * 构造函数
+     * @param opcode 分配给该超级指令的操作码
+     * @param components 组成指令，除最后一条外都不能改变控制流
+     */
+    public SuperInstruction(int opcode, Instruction[] components) {
+        super(buildName(components), opcode, true);
+        this.components = components.clone();
+        this.kinds = new int[components.length];
+        for (int i = 0; i < components.length; i++) {
+            kinds[i] = kindOf(components[i].getOpcode());
+        }
+        this.operands = null;
+    }
+
+    private SuperInstruction(SuperInstruction template, int[] operands) {
+        super(template.getName(), template.getOpcode(), true);
+        this.components = template.components;
+        this.kinds = template.kinds;
+        this.operands = operands;
+    }
+
+    /**
+     * 返回绑定到预解码操作数数组的副本
+     * @param operands 预解码指令流的操作数数组（按槽位索引）
+     * @return 可执行的超级指令
+     */
+    public SuperInstruction bind(int[] operands) {
+        return new SuperInstruction(this, operands);
+    }
+
+    private static String buildName(Instruction[] components) {
+        StringBuilder sb = new StringBuilder();
+        for (Instruction component : components) {
+            if (sb.length() > 0) {
+                sb.append('_');
+            }
+            sb.append(component.getName());
+        }
+        return sb.toString();
+    }
+
+    private static int kindOf(int opcode) {
+        switch (opcode) {
+            case IConstInstruction.OPCODE: return ICONST;
+            case LoadInstruction.OPCODE: return LOAD;
+            case StoreInstruction.OPCODE: return STORE;
+            case GLoadInstruction.OPCODE: return GLOAD;
+            case GStoreInstruction.OPCODE: return GSTORE;
+            case IAddInstruction.OPCODE: return IADD;
+            case ISubInstruction.OPCODE: return ISUB;
+            case IMulInstruction.OPCODE: return IMUL;
+            case IDivInstruction.OPCODE: return IDIV;
+            case ILtInstruction.OPCODE: return ILT;
+            case ILeInstruction.OPCODE: return ILE;
+            case IGtInstruction.OPCODE: return IGT;
+            case IGeInstruction.OPCODE: return IGE;
+            case IEqInstruction.OPCODE: return IEQ;
+            case INeInstruction.OPCODE: return INE;
+            case PopInstruction.OPCODE: return POP;
+            case BrInstruction.OPCODE: return BR;
+            case BrtInstruction.OPCODE: return BRT;
+            case BrfInstruction.OPCODE: return BRF;
+            default: return GENERIC;
+        }
+    }
+
+    @Override
+    public void execute(VMExecutionContext context, int operand) throws Exception {
+        final int base = context.getProgramCounter() - 1;
+        final int end = base + kinds.length;
+        int i = 0;
+        try {
+            for (; i < kinds.length; i++) {
+                int arg = i == 0 ? operand : operands[base + i];
+                int a;
+                int b;
+                switch (kinds[i]) {
+                    case ICONST:
+                        context.push(arg);
+                        break;
+                    case LOAD:
+                        context.push(context.loadLocal(arg));
+                        break;
+                    case STORE:
+                        context.storeLocal(arg, context.pop());
+                        break;
+                    case GLOAD:
+                        context.push(context.heapRead(arg));
+                        break;
+                    case GSTORE:
+                        context.heapWrite(arg, context.pop());
+                        break;
+                    case IADD: {
+                        b = context.pop();
+                        a = context.pop();
+                        int r = a + b;
+                        if (((a ^ r) & (b ^ r)) < 0) {
+                            context.setProgramCounter(base + i + 1);
+                            r = ArithmeticExecutor.add(context, a, b);
+                        }
+                        context.push(r);
+                        break;
+                    }
+                    case ISUB: {
+                        b = context.pop();
+                        a = context.pop();
+                        int r = a - b;
+                        if (((a ^ b) & (a ^ r)) < 0) {
+                            context.setProgramCounter(base + i + 1);
+                            r = ArithmeticExecutor.subtract(context, a, b);
+                        }
+                        context.push(r);
+                        break;
+                    }
+                    case IMUL: {
+                        b = context.pop();
+                        a = context.pop();
+                        long r = (long) a * (long) b;
+                        if ((int) r != r) {
+                            context.setProgramCounter(base + i + 1);
+                            ArithmeticExecutor.multiply(context, a, b);
+                        }
+                        context.push((int) r);
+                        break;
+                    }
+                    case IDIV:
+                        b = context.pop();
+                        a = context.pop();
+                        if (b == 0 || (a == Integer.MIN_VALUE && b == -1)) {
+                            context.setProgramCounter(base + i + 1);
+                            ArithmeticExecutor.divide(context, a, b);
+                        }
+                        context.push(a / b);
+                        break;
+                    case ILT:
+                        b = context.pop();
+                        a = context.pop();
+                        context.push(a < b ? 1 : 0);
+                        break;
+                    case ILE:
+                        b = context.pop();
+                        a = context.pop();
+                        context.push(a <= b ? 1 : 0);
+                        break;
+                    case IGT:
+                        b = context.pop();
+                        a = context.pop();
+                        context.push(a > b ? 1 : 0);
+                        break;
+                    case IGE:
+                        b = context.pop();
+                        a = context.pop();
+                        context.push(a >= b ? 1 : 0);
+                        break;
+                    case IEQ:
+                        b = context.pop();
+                        a = context.pop();
+                        context.push(a == b ? 1 : 0);
+                        break;
+                    case INE:
+                        b = context.pop();
+                        a = context.pop();
+                        context.push(a != b ? 1 : 0);
+                        break;
+                    case POP:
+                        context.pop();
+                        break;
+                    case BR:
+                        context.setProgramCounter(arg);
+                        return;
+                    case BRT:
+                        context.setProgramCounter(context.pop() != 0 ? arg : end);
+                        return;
+                    case BRF:
+                        context.setProgramCounter(context.pop() == 0 ? arg : end);
+                        return;
+                    default:
+                        // 未内联的指令按逐条执行的方式推进程序计数器，保证返回地址和异常位置一致
+                        context.setProgramCounter(base + i + 1);
+                        components[i].execute(context, arg);
+                        break;
+                }
+            }
+        } catch (Throwable t) {
+            if (kinds[i] != GENERIC) {
+                context.setProgramCounter(base + i + 1);
+            }
+            throw t;
+        }
+        // 最后一条是未内联的指令时，它已设置好程序计数器（可能是CALL的跳转）
+        if (kinds[kinds.length - 1] != GENERIC) {
+            context.setProgramCounter(end);
+        }
+    }
+
+    /**
+     * 获取组成指令数量
+     */
+    public int getLength() {
+        return components.length;
+    }
+
+    /**
+     * 获取第i条组成指令
+     */
+    public Instruction getComponent(int i) {
+        return components[i];
+    }
+}
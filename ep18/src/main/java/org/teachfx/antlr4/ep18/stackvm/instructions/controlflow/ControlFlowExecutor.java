@@ -1,8 +1,7 @@
 package org.teachfx.antlr4.ep18.stackvm.instructions.controlflow;
 
 import org.teachfx.antlr4.ep18.stackvm.VMExecutionContext;
-import java.util.Map;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -18,7 +17,10 @@ public class ControlFlowExecutor {
         private final AtomicLong totalBranches = new AtomicLong(0);
         private final AtomicLong takenBranches = new AtomicLong(0);
         private final AtomicLong notTakenBranches = new AtomicLong(0);
-        private final Map<Integer, long[]> branchHistory = new HashMap<>();
+        // 按分支指令地址索引的历史计数（避免热路径上的装箱与哈希分配）
+        private long[] takenHistory = new long[64];
+        private long[] notTakenHistory = new long[64];
+        private int branchPoints;
 
         /**
          * 记录分支执行
@@ -34,12 +36,33 @@ public class ControlFlowExecutor {
             }
 
             // 记录每个分支点的历史
-            branchHistory.computeIfAbsent(pc, k -> new long[2]);
+            if (pc < 0) {
+                return;
+            }
+            if (pc >= takenHistory.length) {
+                int newLength = Math.max(takenHistory.length * 2, pc + 1);
+                takenHistory = Arrays.copyOf(takenHistory, newLength);
+                notTakenHistory = Arrays.copyOf(notTakenHistory, newLength);
+            }
+            if (takenHistory[pc] == 0 && notTakenHistory[pc] == 0) {
+                branchPoints++;
+            }
             if (taken) {
-                branchHistory.get(pc)[0]++;
+                takenHistory[pc]++;
             } else {
-                branchHistory.get(pc)[1]++;
+                notTakenHistory[pc]++;
+            }
+        }
+
+        /**
+         * 获取特定分支点的历史 [跳转次数, 未跳转次数]，无记录返回null
+         */
+        private synchronized long[] historyOf(int pc) {
+            if (pc < 0 || pc >= takenHistory.length
+                    || (takenHistory[pc] == 0 && notTakenHistory[pc] == 0)) {
+                return null;
             }
+            return new long[]{takenHistory[pc], notTakenHistory[pc]};
         }
 
         /**
@@ -77,7 +100,7 @@ public class ControlFlowExecutor {
          * @return 预测结果：true=预测跳转, false=预测不跳转
          */
         public boolean predictBranch(int pc) {
-            long[] history = branchHistory.get(pc);
+            long[] history = historyOf(pc);
             if (history == null) {
                 // 默认预测不跳转
                 return false;
@@ -91,7 +114,7 @@ public class ControlFlowExecutor {
          * @param pc 分支指令地址
          */
         public double getBranchAccuracy(int pc) {
-            long[] history = branchHistory.get(pc);
+            long[] history = historyOf(pc);
             if (history == null) {
                 return 0.0;
             }
@@ -111,7 +134,7 @@ public class ControlFlowExecutor {
                 totalBranches.get(),
                 takenBranches.get(), getTakenRate() * 100,
                 notTakenBranches.get(), (1 - getTakenRate()) * 100,
-                branchHistory.size()
+                branchPoints
             );
         }
     }
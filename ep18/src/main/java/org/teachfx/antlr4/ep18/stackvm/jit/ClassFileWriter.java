@@ -0,0 +1,382 @@
+package org.teachfx.antlr4.ep18.stackvm.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 最小化的JVM类文件生成器
+ * 只支持即时编译器需要的部分：一个实现单个接口的final类、默认构造函数和一个实例方法。
+ * 输出版本号为49的类文件，这一版本不要求StackMapTable，由JVM在加载时做类型推导校验，
+ * 因此生成代码时无需计算栈映射帧。
+ */
+final class ClassFileWriter {
+    // 本生成器用到的JVM操作码
+    static final int ICONST_M1 = 2;
+    static final int ICONST_0 = 3;
+    static final int ICONST_1 = 4;
+    static final int BIPUSH = 16;
+    static final int SIPUSH = 17;
+    static final int LDC = 18;
+    static final int LDC_W = 19;
+    static final int LDC2_W = 20;
+    static final int ILOAD = 21;
+    static final int LLOAD = 22;
+    static final int ALOAD = 25;
+    static final int IALOAD = 46;
+    static final int ISTORE = 54;
+    static final int LSTORE = 55;
+    static final int IASTORE = 79;
+    static final int IADD = 96;
+    static final int LADD = 97;
+    static final int ISUB = 100;
+    static final int LSUB = 101;
+    static final int IMUL = 104;
+    static final int LMUL = 105;
+    static final int IDIV = 108;
+    static final int INEG = 116;
+    static final int LSHL = 121;
+    static final int IAND = 126;
+    static final int LAND = 127;
+    static final int IOR = 128;
+    static final int LOR = 129;
+    static final int IXOR = 130;
+    static final int IINC = 132;
+    static final int I2L = 133;
+    static final int L2I = 136;
+    static final int LCMP = 148;
+    static final int IFEQ = 153;
+    static final int IFNE = 154;
+    static final int IFLE = 158;
+    static final int IF_ICMPEQ = 159;
+    static final int IF_ICMPNE = 160;
+    static final int IF_ICMPLT = 161;
+    static final int IF_ICMPGE = 162;
+    static final int IF_ICMPGT = 163;
+    static final int IF_ICMPLE = 164;
+    static final int GOTO = 167;
+    static final int LOOKUPSWITCH = 171;
+    static final int LRETURN = 173;
+    static final int RETURN = 177;
+    static final int ARRAYLENGTH = 190;
+    static final int INVOKESPECIAL = 183;
+
+    private static final int CLASS_FILE_VERSION = 49;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final int interfaceClass;
+    private final int superInit;
+
+    /**
+     * 构造函数
+     * @param className 内部形式的类名（以/分隔）
+     * @param interfaceName 内部形式的接口名
+     */
+    ClassFileWriter(String className, String interfaceName) {
+        this.thisClass = classRef(className);
+        this.superClass = classRef("java/lang/Object");
+        this.interfaceClass = classRef(interfaceName);
+        this.superInit = methodRef(superClass, "<init>", "()V");
+    }
+
+    int utf8(String value) {
+        return constant("U" + value, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        }, 1);
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return constant("C" + internalName, out -> {
+            out.writeByte(7);
+            out.writeShort(name);
+        }, 1);
+    }
+
+    int integer(int value) {
+        return constant("I" + value, out -> {
+            out.writeByte(3);
+            out.writeInt(value);
+        }, 1);
+    }
+
+    int longConstant(long value) {
+        // long常量占用两个常量池槽位
+        return constant("J" + value, out -> {
+            out.writeByte(5);
+            out.writeLong(value);
+        }, 2);
+    }
+
+    private int methodRef(int owner, String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descIndex = utf8(descriptor);
+        int nameAndType = constant("N" + name + descriptor, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descIndex);
+        }, 1);
+        return constant("M" + owner + "." + name + descriptor, out -> {
+            out.writeByte(10);
+            out.writeShort(owner);
+            out.writeShort(nameAndType);
+        }, 1);
+    }
+
+    private interface PoolEntry {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int constant(String key, PoolEntry entry, int width) {
+        Integer existing = poolIndex.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            entry.write(poolOut);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        int index = poolCount;
+        poolCount += width;
+        if (poolCount > 0xFFFF) {
+            throw new IllegalStateException("Constant pool overflow");
+        }
+        poolIndex.put(key, index);
+        return index;
+    }
+
+    /**
+     * 创建方法体缓冲区，其中的常量引用写入本类的常量池
+     */
+    Code newCode() {
+        return new Code();
+    }
+
+    /**
+     * 生成完整类文件：默认构造函数加上给定的实例方法
+     * @param methodName 方法名
+     * @param descriptor 方法描述符
+     * @param code 方法体
+     * @param maxStack 最大操作数栈深度
+     * @param maxLocals 局部变量槽位数（含this）
+     * @return 类文件字节
+     */
+    byte[] toByteArray(String methodName, String descriptor, Code code, int maxStack, int maxLocals) {
+        byte[] body = code.resolve();
+        int codeAttr = utf8("Code");
+        int initName = utf8("<init>");
+        int initDesc = utf8("()V");
+        int runName = utf8(methodName);
+        int runDesc = utf8(descriptor);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_FILE_VERSION);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(interfaceClass);
+            out.writeShort(0); // 字段
+            out.writeShort(2); // 方法
+
+            byte[] init = {
+                0x2A,                                           // aload_0
+                (byte) INVOKESPECIAL, (byte) (superInit >> 8), (byte) superInit,
+                (byte) RETURN
+            };
+            writeMethod(out, initName, initDesc, codeAttr, init, 1, 1);
+            writeMethod(out, runName, runDesc, codeAttr, body, maxStack, maxLocals);
+
+            out.writeShort(0); // 类属性
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeAttr,
+                                    byte[] code, int maxStack, int maxLocals) throws IOException {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeAttr);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // 异常表
+        out.writeShort(0); // 代码属性
+    }
+
+    /**
+     * 跳转标签：位置在绑定前未知，引用处记录待回填的偏移
+     */
+    static final class Label {
+        private int position = -1;
+        private final List<int[]> fixups = new ArrayList<>(); // {指令起点, 回填位置, 宽度}
+    }
+
+    /**
+     * 方法体字节码缓冲区
+     */
+    final class Code {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final List<Label> labels = new ArrayList<>();
+
+        int size() {
+            return buffer.size();
+        }
+
+        void op(int opcode) {
+            buffer.write(opcode);
+        }
+
+        void op(int opcode, int localIndex) {
+            buffer.write(opcode);
+            buffer.write(localIndex);
+        }
+
+        void iinc(int localIndex, int delta) {
+            buffer.write(IINC);
+            buffer.write(localIndex);
+            buffer.write(delta);
+        }
+
+        /**
+         * 压入int常量，按取值范围选择最短编码
+         */
+        void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                buffer.write(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                buffer.write(BIPUSH);
+                buffer.write(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                buffer.write(SIPUSH);
+                writeShort(value);
+            } else {
+                int index = integer(value);
+                if (index < 256) {
+                    buffer.write(LDC);
+                    buffer.write(index);
+                } else {
+                    buffer.write(LDC_W);
+                    writeShort(index);
+                }
+            }
+        }
+
+        void pushLong(long value) {
+            buffer.write(LDC2_W);
+            writeShort(longConstant(value));
+        }
+
+        Label newLabel() {
+            Label label = new Label();
+            labels.add(label);
+            return label;
+        }
+
+        void bind(Label label) {
+            if (label.position >= 0) {
+                throw new IllegalStateException("Label already bound");
+            }
+            label.position = buffer.size();
+        }
+
+        /**
+         * 生成条件或无条件跳转（16位相对偏移）
+         */
+        void jump(int opcode, Label target) {
+            int start = buffer.size();
+            buffer.write(opcode);
+            target.fixups.add(new int[]{start, buffer.size(), 2});
+            writeShort(0);
+        }
+
+        /**
+         * 生成lookupswitch，键必须升序
+         */
+        void lookupSwitch(int[] keys, Label[] targets, Label defaultTarget) {
+            int start = buffer.size();
+            buffer.write(LOOKUPSWITCH);
+            while (buffer.size() % 4 != 0) {
+                buffer.write(0);
+            }
+            defaultTarget.fixups.add(new int[]{start, buffer.size(), 4});
+            writeInt(0);
+            writeInt(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                writeInt(keys[i]);
+                targets[i].fixups.add(new int[]{start, buffer.size(), 4});
+                writeInt(0);
+            }
+        }
+
+        private void writeShort(int value) {
+            buffer.write(value >> 8);
+            buffer.write(value);
+        }
+
+        private void writeInt(int value) {
+            writeShort(value >> 16);
+            writeShort(value);
+        }
+
+        /**
+         * 回填所有跳转偏移
+         * @throws IllegalStateException 标签未绑定或偏移超出16位范围
+         */
+        byte[] resolve() {
+            byte[] code = buffer.toByteArray();
+            if (code.length > 0xFFFF) {
+                throw new IllegalStateException("Method too large: " + code.length + " bytes");
+            }
+            for (Label label : labels) {
+                for (int[] fixup : label.fixups) {
+                    if (label.position < 0) {
+                        throw new IllegalStateException("Unbound label");
+                    }
+                    int offset = label.position - fixup[0];
+                    int at = fixup[1];
+                    if (fixup[2] == 2) {
+                        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                            throw new IllegalStateException("Branch offset out of range: " + offset);
+                        }
+                        code[at] = (byte) (offset >> 8);
+                        code[at + 1] = (byte) offset;
+                    } else {
+                        code[at] = (byte) (offset >> 24);
+                        code[at + 1] = (byte) (offset >> 16);
+                        code[at + 2] = (byte) (offset >> 8);
+                        code[at + 3] = (byte) offset;
+                    }
+                }
+            }
+            return code;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.teachfx.antlr4.ep18.stackvm.jit;
+
+/**
+ * 编译后的代码区域
+ * 由 {@link TieredCompiler} 把一个热点函数的预解码指令翻译成JVM字节码后生成的隐藏类实现。
+ * 编译代码直接读写虚拟机的操作数栈、局部变量和堆数组，栈指针通过参数传入、随结果返回。
+ * 遇到不支持的指令、越界访问或需要抛出虚拟机异常的情况时，编译代码在该指令执行前退出，
+ * 由解释器从返回的槽位继续执行（去优化）。
+ */
+public interface CompiledRegion {
+
+    /**
+     * 从指定入口槽位开始执行编译代码
+     * @param stack 操作数栈
+     * @param locals 局部变量数组
+     * @param heap 堆内存（全局变量）
+     * @param sp 当前栈指针
+     * @param entry 入口槽位，必须是已安装的入口之一
+     * @return 打包的退出状态，用 {@link TieredCompiler#exitPc(long)} 和 {@link TieredCompiler#exitSp(long)} 拆分
+     */
+    long run(int[] stack, int[] locals, int[] heap, int sp, int entry);
+}
@@ -0,0 +1,452 @@
+package org.teachfx.antlr4.ep18.stackvm.jit;
+
+import org.teachfx.antlr4.ep18.stackvm.BytecodeDefinition;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.teachfx.antlr4.ep18.stackvm.jit.ClassFileWriter.*;
+
+/**
+ * 区域翻译器
+ * 把一段预解码指令（通常是一个函数体）翻译为 {@link CompiledRegion#run} 的JVM字节码。
+ * 虚拟机栈仍然保存在传入的int数组中，栈指针保存在JVM局部变量里；
+ * 每条虚拟机指令先检查所有可能失败的条件（栈深度、数组边界、算术溢出、除零），
+ * 任一条件不满足就在修改任何状态之前以该槽位为出口返回，由解释器重新执行并报告同样的异常。
+ * 区域内的跳转直接翻译为JVM跳转，跳出区域的分支和不支持的指令都翻译为出口。
+ * 区域内的回边经过安全点：每执行 {@link TieredCompiler#SAFEPOINT_INTERVAL} 次回边就以回边目标为出口返回，
+ * 解释器借此检查停止请求，编译后的死循环也能被 {@code stop()} 终止。
+ */
+final class RegionTranslator {
+    static final String INTERFACE_NAME = "org/teachfx/antlr4/ep18/stackvm/jit/CompiledRegion";
+    static final String RUN_DESCRIPTOR = "([I[I[III)J";
+
+    // run方法的局部变量布局
+    private static final int STACK = 1;
+    private static final int LOCALS = 2;
+    private static final int HEAP = 3;
+    private static final int SP = 4;
+    private static final int PC = 5;   // 入口参数，退出时复用为出口槽位
+    private static final int A = 6;
+    private static final int B = 7;
+    private static final int WIDE = 8; // long，占8、9两个槽位
+    private static final int POLL = 10; // 距下一个安全点的剩余回边数
+    private static final int MAX_LOCALS = 11;
+    private static final int MAX_STACK = 8;
+
+    private final int[] opcodes;
+    private final int[] operands;
+    private final int start;
+    private final int end;
+    private final ClassFileWriter writer;
+    private final ClassFileWriter.Code code;
+    private final ClassFileWriter.Label[] slotLabels;
+    private final Map<Integer, ClassFileWriter.Label> exits = new TreeMap<>();
+    private final Map<Integer, ClassFileWriter.Label> backEdges = new TreeMap<>();
+
+    private RegionTranslator(String className, int[] opcodes, int[] operands, int start, int end) {
+        this.opcodes = opcodes;
+        this.operands = operands;
+        this.start = start;
+        this.end = end;
+        this.writer = new ClassFileWriter(className, INTERFACE_NAME);
+        this.code = writer.newCode();
+        this.slotLabels = new ClassFileWriter.Label[end - start];
+        for (int i = 0; i < slotLabels.length; i++) {
+            slotLabels[i] = code.newLabel();
+        }
+    }
+
+    /**
+     * 判断操作码能否被翻译；其余操作码在编译代码中都是去优化出口
+     */
+    static boolean isSupported(int opcode) {
+        switch (opcode) {
+            case BytecodeDefinition.INSTR_ICONST:
+            case BytecodeDefinition.INSTR_LOAD:
+            case BytecodeDefinition.INSTR_STORE:
+            case BytecodeDefinition.INSTR_GLOAD:
+            case BytecodeDefinition.INSTR_GSTORE:
+            case BytecodeDefinition.INSTR_IADD:
+            case BytecodeDefinition.INSTR_ISUB:
+            case BytecodeDefinition.INSTR_IMUL:
+            case BytecodeDefinition.INSTR_IDIV:
+            case BytecodeDefinition.INSTR_ILT:
+            case BytecodeDefinition.INSTR_ILE:
+            case BytecodeDefinition.INSTR_IGT:
+            case BytecodeDefinition.INSTR_IGE:
+            case BytecodeDefinition.INSTR_IEQ:
+            case BytecodeDefinition.INSTR_INE:
+            case BytecodeDefinition.INSTR_INEG:
+            case BytecodeDefinition.INSTR_INOT:
+            case BytecodeDefinition.INSTR_IAND:
+            case BytecodeDefinition.INSTR_IOR:
+            case BytecodeDefinition.INSTR_IXOR:
+            case BytecodeDefinition.INSTR_BR:
+            case BytecodeDefinition.INSTR_BRT:
+            case BytecodeDefinition.INSTR_BRF:
+            case BytecodeDefinition.INSTR_POP:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 翻译区域并生成类文件
+     * @param className 内部形式的类名，必须位于本包中
+     * @param opcodes 操作码（超级指令已还原为首个组成指令）
+     * @param operands 操作数，跳转目标为槽位索引
+     * @param start 区域起始槽位（含）
+     * @param end 区域结束槽位（不含）
+     * @param entries 入口槽位，升序且位于区域内
+     * @return 类文件字节
+     * @throws IllegalStateException 区域过大，生成的方法超出类文件限制
+     */
+    static byte[] translate(String className, int[] opcodes, int[] operands,
+                            int start, int end, int[] entries) {
+        return new RegionTranslator(className, opcodes, operands, start, end).translate(entries);
+    }
+
+    private byte[] translate(int[] entries) {
+        ClassFileWriter.Label exit = code.newLabel();
+
+        // 入口分派：未知入口直接以入口槽位退出
+        ClassFileWriter.Label[] entryLabels = new ClassFileWriter.Label[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            entryLabels[i] = slotLabels[entries[i] - start];
+        }
+        code.pushInt(TieredCompiler.SAFEPOINT_INTERVAL);
+        code.op(ISTORE, POLL);
+        code.op(ILOAD, PC);
+        code.lookupSwitch(entries, entryLabels, exit);
+
+        for (int slot = start; slot < end; slot++) {
+            code.bind(slotLabels[slot - start]);
+            translateSlot(slot);
+        }
+        code.jump(GOTO, exitTo(end));
+
+        // 回边安全点：计数用完时以回边目标为出口，此时分支已完成，状态与解释器一致
+        for (Map.Entry<Integer, ClassFileWriter.Label> edge : backEdges.entrySet()) {
+            int target = edge.getKey();
+            code.bind(edge.getValue());
+            code.iinc(POLL, -1);
+            code.op(ILOAD, POLL);
+            code.jump(IFLE, exitTo(target));
+            code.jump(GOTO, slotLabels[target - start]);
+        }
+
+        // 出口桩：记录出口槽位后跳到公共出口
+        for (Map.Entry<Integer, ClassFileWriter.Label> stub : exits.entrySet()) {
+            code.bind(stub.getValue());
+            code.pushInt(stub.getKey());
+            code.op(ISTORE, PC);
+            code.jump(GOTO, exit);
+        }
+
+        // 公共出口：返回 (pc << 32) | (sp & 0xFFFFFFFF)
+        code.bind(exit);
+        code.op(ILOAD, PC);
+        code.op(I2L);
+        code.pushInt(32);
+        code.op(LSHL);
+        code.op(ILOAD, SP);
+        code.op(I2L);
+        code.pushLong(0xFFFFFFFFL);
+        code.op(LAND);
+        code.op(LOR);
+        code.op(LRETURN);
+
+        return writer.toByteArray("run", RUN_DESCRIPTOR, code, MAX_STACK, MAX_LOCALS);
+    }
+
+    /**
+     * 获取以指定槽位退出的标签
+     */
+    private ClassFileWriter.Label exitTo(int slot) {
+        return exits.computeIfAbsent(slot, s -> code.newLabel());
+    }
+
+    /**
+     * 获取跳转目标：区域内向前跳到对应指令，区域内的回边先经过安全点，区域外退出到解释器
+     */
+    private ClassFileWriter.Label branchTarget(int slot, int target) {
+        if (target >= start && target < end) {
+            if (target <= slot) {
+                return backEdges.computeIfAbsent(target, t -> code.newLabel());
+            }
+            return slotLabels[target - start];
+        }
+        return exitTo(target);
+    }
+
+    private void translateSlot(int slot) {
+        int opcode = opcodes[slot];
+        int operand = operands[slot];
+        ClassFileWriter.Label deopt = exitTo(slot);
+
+        switch (opcode) {
+            case BytecodeDefinition.INSTR_ICONST:
+                requireRoom(deopt);
+                beginPush();
+                code.pushInt(operand);
+                endPush();
+                break;
+            case BytecodeDefinition.INSTR_LOAD:
+            case BytecodeDefinition.INSTR_GLOAD: {
+                int array = opcode == BytecodeDefinition.INSTR_LOAD ? LOCALS : HEAP;
+                if (operand < 0) {
+                    code.jump(GOTO, deopt);
+                    break;
+                }
+                requireIndex(array, operand, deopt);
+                requireRoom(deopt);
+                beginPush();
+                code.op(ALOAD, array);
+                code.pushInt(operand);
+                code.op(IALOAD);
+                endPush();
+                break;
+            }
+            case BytecodeDefinition.INSTR_STORE:
+            case BytecodeDefinition.INSTR_GSTORE: {
+                int array = opcode == BytecodeDefinition.INSTR_STORE ? LOCALS : HEAP;
+                if (operand < 0) {
+                    code.jump(GOTO, deopt);
+                    break;
+                }
+                requireIndex(array, operand, deopt);
+                requireDepth(1, deopt);
+                code.iinc(SP, -1);
+                code.op(ALOAD, array);
+                code.pushInt(operand);
+                loadStackSlot(0);
+                code.op(IASTORE);
+                break;
+            }
+            case BytecodeDefinition.INSTR_IADD:
+                checkedLongOp(LADD, deopt);
+                break;
+            case BytecodeDefinition.INSTR_ISUB:
+                checkedLongOp(LSUB, deopt);
+                break;
+            case BytecodeDefinition.INSTR_IMUL:
+                checkedLongOp(LMUL, deopt);
+                break;
+            case BytecodeDefinition.INSTR_IDIV: {
+                popOperands(deopt);
+                code.op(ILOAD, B);
+                code.jump(IFEQ, deopt);
+                // Integer.MIN_VALUE / -1 会溢出
+                ClassFileWriter.Label safe = code.newLabel();
+                code.op(ILOAD, A);
+                code.pushInt(Integer.MIN_VALUE);
+                code.jump(IF_ICMPNE, safe);
+                code.op(ILOAD, B);
+                code.pushInt(-1);
+                code.jump(IF_ICMPEQ, deopt);
+                code.bind(safe);
+                replaceTwo();
+                code.op(ILOAD, A);
+                code.op(ILOAD, B);
+                code.op(IDIV);
+                code.op(IASTORE);
+                break;
+            }
+            case BytecodeDefinition.INSTR_IAND:
+                bitwise(IAND, deopt);
+                break;
+            case BytecodeDefinition.INSTR_IOR:
+                bitwise(IOR, deopt);
+                break;
+            case BytecodeDefinition.INSTR_IXOR:
+                bitwise(IXOR, deopt);
+                break;
+            case BytecodeDefinition.INSTR_ILT:
+                compare(IF_ICMPLT, deopt);
+                break;
+            case BytecodeDefinition.INSTR_ILE:
+                compare(IF_ICMPLE, deopt);
+                break;
+            case BytecodeDefinition.INSTR_IGT:
+                compare(IF_ICMPGT, deopt);
+                break;
+            case BytecodeDefinition.INSTR_IGE:
+                compare(IF_ICMPGE, deopt);
+                break;
+            case BytecodeDefinition.INSTR_IEQ:
+                compare(IF_ICMPEQ, deopt);
+                break;
+            case BytecodeDefinition.INSTR_INE:
+                compare(IF_ICMPNE, deopt);
+                break;
+            case BytecodeDefinition.INSTR_INEG:
+            case BytecodeDefinition.INSTR_INOT:
+                requireDepth(1, deopt);
+                loadStackSlot(1);
+                code.op(ISTORE, A);
+                if (opcode == BytecodeDefinition.INSTR_INEG) {
+                    code.op(ILOAD, A);
+                    code.pushInt(Integer.MIN_VALUE);
+                    code.jump(IF_ICMPEQ, deopt);
+                }
+                code.op(ALOAD, STACK);
+                code.op(ILOAD, SP);
+                code.op(ICONST_1);
+                code.op(ISUB);
+                code.op(ILOAD, A);
+                if (opcode == BytecodeDefinition.INSTR_INEG) {
+                    code.op(INEG);
+                } else {
+                    code.op(ICONST_M1);
+                    code.op(IXOR);
+                }
+                code.op(IASTORE);
+                break;
+            case BytecodeDefinition.INSTR_POP:
+                requireDepth(1, deopt);
+                code.iinc(SP, -1);
+                break;
+            case BytecodeDefinition.INSTR_BR:
+                code.jump(GOTO, branchTarget(slot, operand));
+                break;
+            case BytecodeDefinition.INSTR_BRT:
+            case BytecodeDefinition.INSTR_BRF:
+                requireDepth(1, deopt);
+                code.iinc(SP, -1);
+                loadStackSlot(0);
+                code.jump(opcode == BytecodeDefinition.INSTR_BRT ? IFNE : IFEQ, branchTarget(slot, operand));
+                break;
+            default:
+                // 不支持的指令：交还解释器
+                code.jump(GOTO, deopt);
+                break;
+        }
+    }
+
+    /**
+     * 栈深度不足n时退出
+     */
+    private void requireDepth(int n, ClassFileWriter.Label deopt) {
+        code.op(ILOAD, SP);
+        code.pushInt(n);
+        code.jump(IF_ICMPLT, deopt);
+    }
+
+    /**
+     * 栈已满时退出
+     */
+    private void requireRoom(ClassFileWriter.Label deopt) {
+        code.op(ILOAD, SP);
+        code.op(ALOAD, STACK);
+        code.op(ARRAYLENGTH);
+        code.jump(IF_ICMPGE, deopt);
+    }
+
+    /**
+     * 数组下标越界时退出（下标为非负常量）
+     */
+    private void requireIndex(int array, int index, ClassFileWriter.Label deopt) {
+        code.pushInt(index);
+        code.op(ALOAD, array);
+        code.op(ARRAYLENGTH);
+        code.jump(IF_ICMPGE, deopt);
+    }
+
+    /**
+     * 读取 stack[sp - depth]
+     */
+    private void loadStackSlot(int depth) {
+        code.op(ALOAD, STACK);
+        code.op(ILOAD, SP);
+        if (depth != 0) {
+            code.pushInt(depth);
+            code.op(ISUB);
+        }
+        code.op(IALOAD);
+    }
+
+    private void beginPush() {
+        code.op(ALOAD, STACK);
+        code.op(ILOAD, SP);
+    }
+
+    private void endPush() {
+        code.op(IASTORE);
+        code.iinc(SP, 1);
+    }
+
+    /**
+     * 把栈顶两个值读入A、B（不修改栈指针）
+     */
+    private void popOperands(ClassFileWriter.Label deopt) {
+        requireDepth(2, deopt);
+        loadStackSlot(1);
+        code.op(ISTORE, B);
+        loadStackSlot(2);
+        code.op(ISTORE, A);
+    }
+
+    /**
+     * 弹出两个值并准备把结果写到新的栈顶：留下 stack, sp-1 两个操作数
+     */
+    private void replaceTwo() {
+        code.iinc(SP, -1);
+        code.op(ALOAD, STACK);
+        code.op(ILOAD, SP);
+        code.op(ICONST_1);
+        code.op(ISUB);
+    }
+
+    /**
+     * 以long计算，结果超出int范围时退出，与解释器的溢出检测一致
+     */
+    private void checkedLongOp(int longOpcode, ClassFileWriter.Label deopt) {
+        popOperands(deopt);
+        code.op(ILOAD, A);
+        code.op(I2L);
+        code.op(ILOAD, B);
+        code.op(I2L);
+        code.op(longOpcode);
+        code.op(LSTORE, WIDE);
+        code.op(LLOAD, WIDE);
+        code.op(LLOAD, WIDE);
+        code.op(L2I);
+        code.op(I2L);
+        code.op(LCMP);
+        code.jump(IFNE, deopt);
+        replaceTwo();
+        code.op(LLOAD, WIDE);
+        code.op(L2I);
+        code.op(IASTORE);
+    }
+
+    private void bitwise(int intOpcode, ClassFileWriter.Label deopt) {
+        popOperands(deopt);
+        replaceTwo();
+        code.op(ILOAD, A);
+        code.op(ILOAD, B);
+        code.op(intOpcode);
+        code.op(IASTORE);
+    }
+
+    /**
+     * 比较结果以1/0压栈
+     */
+    private void compare(int branchOpcode, ClassFileWriter.Label deopt) {
+        popOperands(deopt);
+        replaceTwo();
+        ClassFileWriter.Label isTrue = code.newLabel();
+        ClassFileWriter.Label done = code.newLabel();
+        code.op(ILOAD, A);
+        code.op(ILOAD, B);
+        code.jump(branchOpcode, isTrue);
+        code.op(ICONST_0);
+        code.jump(GOTO, done);
+        code.bind(isTrue);
+        code.op(ICONST_1);
+        code.bind(done);
+        code.op(IASTORE);
+    }
+}
@@ -0,0 +1,238 @@
+package org.teachfx.antlr4.ep18.stackvm.jit;
+
+import org.teachfx.antlr4.ep18.stackvm.BytecodeDefinition;
+import org.teachfx.antlr4.ep18.stackvm.DecodedProgram;
+import org.teachfx.antlr4.ep18.stackvm.instructions.Instruction;
+import org.teachfx.antlr4.ep18.stackvm.instructions.SuperInstruction;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * 分层编译器
+ * 第一层是快速分派解释器；解释器对每个函数的调用次数和回边（向后跳转）次数计数，
+ * 计数达到阈值后把该函数的预解码指令翻译为JVM字节码，以隐藏类的形式加载，
+ * 并在函数入口和循环头安装入口，之后的调用和回边直接进入编译代码。
+ * 编译代码遇到不支持的指令时退出到解释器（见 {@link CompiledRegion}）。
+ *
+ * 函数边界取自CALL指令的目标：槽位0和所有调用目标把程序划分为若干函数区域。
+ */
+public class TieredCompiler {
+    /** 单个编译区域的最大槽位数，保证生成的方法不超出JVM跳转偏移范围 */
+    public static final int MAX_REGION_SLOTS = 512;
+
+    /** 编译代码每执行这么多次回边就退回解释器一次，使解释器能响应停止请求 */
+    public static final int SAFEPOINT_INTERVAL = 1024;
+
+    private static final byte STATE_INTERPRETED = 0;
+    private static final byte STATE_COMPILED = 1;
+    private static final byte STATE_FAILED = 2;
+
+    private final int[] opcodes;        // 超级指令已还原为首个组成指令
+    private final int[] operands;
+    private final int length;
+    private final int threshold;
+
+    private final int[] functionStarts; // 升序
+    private final int[] counterIndex;   // 槽位 -> 计数的函数编号，-1表示不计数
+    private final int[] counters;
+    private final byte[] states;
+    private final CompiledRegion[] entries; // 槽位 -> 已安装的编译代码
+
+    private int compiledRegions;
+    private int failedRegions;
+
+    /**
+     * 构造函数
+     * @param program 预解码指令流（超级指令重写之后）
+     * @param dispatchTable 分派表，用于还原超级指令
+     * @param threshold 触发编译的调用与回边次数
+     */
+    public TieredCompiler(DecodedProgram program, Instruction[] dispatchTable, int threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("JIT threshold must be positive");
+        }
+        this.length = program.getLength();
+        this.threshold = threshold;
+        this.opcodes = program.getOpcodes().clone();
+        this.operands = program.getOperands();
+        this.entries = new CompiledRegion[opcodes.length];
+
+        int[] rawOpcodes = program.getOpcodes();
+        for (int slot = 0; slot < length; slot++) {
+            SuperInstruction fused = superInstructionAt(dispatchTable, rawOpcodes[slot]);
+            if (fused != null) {
+                opcodes[slot] = fused.getComponent(0).getOpcode();
+            }
+        }
+
+        TreeSet<Integer> starts = new TreeSet<>();
+        starts.add(0);
+        for (int slot = 0; slot < length; slot++) {
+            if (opcodes[slot] == BytecodeDefinition.INSTR_CALL
+                    && operands[slot] >= 0 && operands[slot] < length) {
+                starts.add(operands[slot]);
+            }
+        }
+        this.functionStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+        this.counters = new int[functionStarts.length];
+        this.states = new byte[functionStarts.length];
+
+        // 计数点设在解释器实际分派的槽位上：融合序列的分支由其首槽位代为计数
+        this.counterIndex = new int[opcodes.length];
+        Arrays.fill(counterIndex, -1);
+        for (int slot = 0; slot < length; slot++) {
+            SuperInstruction fused = superInstructionAt(dispatchTable, rawOpcodes[slot]);
+            int last = fused != null ? slot + fused.getLength() - 1 : slot;
+            counterIndex[slot] = hotFunction(last);
+        }
+    }
+
+    private static SuperInstruction superInstructionAt(Instruction[] dispatchTable, int opcode) {
+        if (opcode >= 0 && opcode < dispatchTable.length
+                && dispatchTable[opcode] instanceof SuperInstruction) {
+            return (SuperInstruction) dispatchTable[opcode];
+        }
+        return null;
+    }
+
+    /**
+     * 计算执行该槽位时应计数的函数：CALL计入被调函数，向后跳转计入所在函数
+     */
+    private int hotFunction(int slot) {
+        int opcode = opcodes[slot];
+        int target = operands[slot];
+        if (opcode == BytecodeDefinition.INSTR_CALL && target >= 0 && target < length) {
+            return functionOf(target);
+        }
+        boolean branch = opcode == BytecodeDefinition.INSTR_BR
+            || opcode == BytecodeDefinition.INSTR_BRT
+            || opcode == BytecodeDefinition.INSTR_BRF;
+        if (branch && target <= slot && target >= 0) {
+            return functionOf(slot);
+        }
+        return -1;
+    }
+
+    private int functionOf(int slot) {
+        int index = Arrays.binarySearch(functionStarts, slot);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * 解释器每分派一条指令调用一次；计数达到阈值时编译对应函数
+     * @param pc 当前槽位
+     */
+    public void profile(int pc) {
+        int function = counterIndex[pc];
+        if (function >= 0 && ++counters[function] == threshold
+                && states[function] == STATE_INTERPRETED) {
+            compile(function);
+        }
+    }
+
+    /**
+     * 编译指定函数并安装入口
+     * @param function 函数编号
+     * @return 是否编译成功
+     */
+    private boolean compile(int function) {
+        int start = functionStarts[function];
+        int end = function + 1 < functionStarts.length ? functionStarts[function + 1] : length;
+        end = Math.min(end, start + MAX_REGION_SLOTS);
+
+        // 入口：函数起点和区域内的回边目标，且必须是可翻译的指令，否则进入后会立即退出
+        TreeSet<Integer> entrySlots = new TreeSet<>();
+        if (RegionTranslator.isSupported(opcodes[start])) {
+            entrySlots.add(start);
+        }
+        for (int slot = start; slot < end; slot++) {
+            int target = operands[slot];
+            boolean branch = opcodes[slot] == BytecodeDefinition.INSTR_BR
+                || opcodes[slot] == BytecodeDefinition.INSTR_BRT
+                || opcodes[slot] == BytecodeDefinition.INSTR_BRF;
+            if (branch && target <= slot && target >= start && RegionTranslator.isSupported(opcodes[target])) {
+                entrySlots.add(target);
+            }
+        }
+        if (entrySlots.isEmpty()) {
+            states[function] = STATE_FAILED;
+            failedRegions++;
+            return false;
+        }
+        int[] entryPoints = entrySlots.stream().mapToInt(Integer::intValue).toArray();
+
+        try {
+            String className = RegionTranslator.INTERFACE_NAME.substring(0,
+                RegionTranslator.INTERFACE_NAME.lastIndexOf('/') + 1) + "Region_" + start;
+            byte[] classFile = RegionTranslator.translate(className, opcodes, operands, start, end, entryPoints);
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            CompiledRegion region = (CompiledRegion) lookup
+                .findConstructor(lookup.lookupClass(), MethodType.methodType(void.class))
+                .invoke();
+            for (int entry : entryPoints) {
+                entries[entry] = region;
+            }
+            states[function] = STATE_COMPILED;
+            compiledRegions++;
+            return true;
+        } catch (Throwable e) {
+            // 编译失败不影响执行，该函数保持解释执行
+            states[function] = STATE_FAILED;
+            failedRegions++;
+            return false;
+        }
+    }
+
+    /**
+     * 获取按槽位索引的编译代码入口表，未编译的槽位为null
+     */
+    public CompiledRegion[] getEntries() {
+        return entries;
+    }
+
+    /**
+     * 判断从指定槽位开始的函数是否已编译
+     */
+    public boolean isCompiled(int functionStart) {
+        int index = Arrays.binarySearch(functionStarts, functionStart);
+        return index >= 0 && states[index] == STATE_COMPILED;
+    }
+
+    /**
+     * 获取已编译的区域数
+     */
+    public int getCompiledRegionCount() {
+        return compiledRegions;
+    }
+
+    /**
+     * 获取编译失败（保持解释执行）的区域数
+     */
+    public int getFailedRegionCount() {
+        return failedRegions;
+    }
+
+    /**
+     * 获取触发编译的阈值
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * 从退出状态中取出解释器应继续执行的槽位
+     */
+    public static int exitPc(long state) {
+        return (int) (state >>> 32);
+    }
+
+    /**
+     * 从退出状态中取出栈指针
+     */
+    public static int exitSp(long state) {
+        return (int) state;
+    }
+}
@@ -5,8 +5,32 @@ import java.util.*;
 /**
  * 内存保护类
  * 提供内存访问保护、边界检查、对齐验证和访问统计
+ *
+ * 支持两种保护模式：
+ * <ul>
+ *   <li>{@link ProtectionMode#FULL}：每次访问都分类区域、检查对齐并计入统计</li>
+ *   <li>{@link ProtectionMode#FAST}：只用预先计算的区域边界做越界检查，不检查对齐，
+ *       统计（包括总访问次数）按1/N采样并以N为权重记入，估计值与全量统计同量纲；
+ *       被拒绝的访问很少发生，仍逐次计数</li>
+ * </ul>
+ * 加载时能证明安全的常量地址访问可用 {@link #isStaticallySafe(int, int)} 提前检查，
+ * 运行时不再逐次验证。
+ *
+ * 本类按字节地址划分堆、栈、代码、全局四个连续区域，是独立使用的内存模型；
+ * {@link org.teachfx.antlr4.ep18.stackvm.CymbolStackVM} 的全局变量直接按字索引堆数组，
+ * 其常量地址由 {@link org.teachfx.antlr4.ep18.stackvm.BytecodeVerifier} 在加载时检查，不经过本类。
  */
 public class MemoryProtection {
+    /**
+     * 保护模式
+     */
+    public enum ProtectionMode {
+        FULL,
+        FAST
+    }
+
+    private static final AccessValidationResult SUCCESS = AccessValidationResult.success();
+
     // 内存区域定义
     public enum MemoryRegion {
         STACK("Stack", 0),
@@ -41,12 +65,23 @@ public class MemoryProtection {
     private final int globalStart;
     private final int globalEnd;
 
+    // 按地址顺序预先计算的区域边界（堆、栈、代码、全局）
+    private final MemoryRegion[] orderedRegions;
+    private final int[] orderedEnds;
+
     // 访问控制
     private final Set<MemoryRegion> protectedRegions;
+    private int protectedMask;     // 按MemoryRegion.ordinal()的位掩码
     private final boolean strictBoundsChecking;
+    private final ProtectionMode mode;
+
+    // 统计采样
+    private final int sampleInterval;
+    private int sampleCountdown;
 
     // 访问统计
     private final Map<MemoryRegion, AccessStatistics> statistics;
+    private final AccessStatistics[] statisticsByRegion;
     private long totalAccessCount;
     private long blockedAccessCount;
 
@@ -61,6 +96,30 @@ public class MemoryProtection {
      * @param globalSize 全局数据区大小
      */
     public MemoryProtection(int heapSize, int stackSize, int codeSize, int globalSize) {
+        this(heapSize, stackSize, codeSize, globalSize, ProtectionMode.FULL, 1);
+    }
+
+    /**
+     * 构造函数
+     * @param heapSize 堆大小
+     * @param stackSize 栈大小
+     * @param codeSize 代码段大小
+     * @param globalSize 全局数据区大小
+     * @param mode 保护模式
+     * @param sampleInterval 统计采样间隔N（每N次访问记录一次），FULL模式下忽略
+     */
+    public MemoryProtection(int heapSize, int stackSize, int codeSize, int globalSize,
+                            ProtectionMode mode, int sampleInterval) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Protection mode cannot be null");
+        }
+        if (sampleInterval <= 0) {
+            throw new IllegalArgumentException("Sample interval must be positive");
+        }
+        this.mode = mode;
+        this.sampleInterval = mode == ProtectionMode.FULL ? 1 : sampleInterval;
+        this.sampleCountdown = this.sampleInterval;
+
         // 设置内存区域边界
         this.heapStart = 0;
         this.heapEnd = heapSize - 1;
@@ -74,16 +133,27 @@ public class MemoryProtection {
         this.globalStart = codeStart + codeSize;
         this.globalEnd = globalStart + globalSize - 1;
 
+        this.orderedRegions = new MemoryRegion[]{
+            MemoryRegion.HEAP, MemoryRegion.STACK, MemoryRegion.CODE, MemoryRegion.GLOBAL
+        };
+        this.orderedEnds = new int[]{heapEnd, stackEnd, codeEnd, globalEnd};
+
         // 初始化保护区域（默认保护所有区域）
         this.protectedRegions = new HashSet<>(Arrays.asList(MemoryRegion.values()));
+        for (MemoryRegion region : protectedRegions) {
+            protectedMask |= 1 << region.ordinal();
+        }
 
         // 启用严格边界检查
         this.strictBoundsChecking = true;
 
         // 初始化统计
         this.statistics = new HashMap<>();
+        this.statisticsByRegion = new AccessStatistics[MemoryRegion.values().length];
         for (MemoryRegion region : MemoryRegion.values()) {
-            statistics.put(region, new AccessStatistics(region));
+            AccessStatistics regionStatistics = new AccessStatistics(region);
+            statistics.put(region, regionStatistics);
+            statisticsByRegion[region.ordinal()] = regionStatistics;
         }
         this.totalAccessCount = 0;
         this.blockedAccessCount = 0;
@@ -134,6 +204,9 @@ public class MemoryProtection {
      * @return 验证结果
      */
     public AccessValidationResult validateAccess(int address, int size, AccessType accessType) {
+        if (mode == ProtectionMode.FAST) {
+            return checkAccess(address, size, accessType) ? SUCCESS : diagnose(address, size);
+        }
         totalAccessCount++;
 
         // 检查地址范围
@@ -176,6 +249,81 @@ public class MemoryProtection {
         return AccessValidationResult.success();
     }
 
+    /**
+     * 快速访问检查（不分配结果对象）
+     * 只做越界和受保护区域边界检查；允许的访问只在采样点计入统计和总访问次数，
+     * 未采样的访问不写任何计数器（FULL模式下采样间隔为1，即逐次记录）
+     * @param address 内存地址
+     * @param size 访问大小（字节）
+     * @param accessType 访问类型
+     * @return 访问是否允许
+     */
+    public boolean checkAccess(int address, int size, AccessType accessType) {
+        int last = address + size - 1;
+        if (address < 0 || last < address || last > globalEnd) {
+            totalAccessCount++;
+            blockedAccessCount++;
+            return false;
+        }
+
+        int index = regionIndex(address);
+        MemoryRegion region = orderedRegions[index];
+        if ((protectedMask & (1 << region.ordinal())) != 0 && last > orderedEnds[index]) {
+            totalAccessCount++;
+            blockedAccessCount++;
+            return false;
+        }
+
+        if (--sampleCountdown == 0) {
+            sampleCountdown = sampleInterval;
+            totalAccessCount += sampleInterval;
+            statisticsByRegion[region.ordinal()].recordAccess(accessType, size, sampleInterval);
+        }
+        return true;
+    }
+
+    /**
+     * 加载时检查：地址在加载时已知的访问是否一定安全
+     * 结果成立时运行时可以省略对该访问的检查，也不计入统计
+     * @param address 内存地址
+     * @param size 访问大小（字节）
+     * @return 是否安全
+     */
+    public boolean isStaticallySafe(int address, int size) {
+        int last = address + size - 1;
+        if (address < 0 || last < address || last > globalEnd) {
+            return false;
+        }
+        int index = regionIndex(address);
+        return (protectedMask & (1 << orderedRegions[index].ordinal())) == 0 || last <= orderedEnds[index];
+    }
+
+    /**
+     * 按预先计算的边界查找地址所在区域（地址已确认在范围内）
+     */
+    private int regionIndex(int address) {
+        int index = 0;
+        while (address > orderedEnds[index]) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * 为快速检查失败的访问生成与FULL模式一致的失败信息
+     */
+    private AccessValidationResult diagnose(int address, int size) {
+        if (address < 0) {
+            return AccessValidationResult.failure("Negative address: " + address);
+        }
+        if (address > globalEnd) {
+            return AccessValidationResult.failure("Address out of bounds: " + address);
+        }
+        return AccessValidationResult.failure(
+            "Access size " + size + " exceeds region boundary at address " + address
+        );
+    }
+
     /**
      * 检查内存对齐
      */
@@ -211,11 +359,27 @@ public class MemoryProtection {
     public void setRegionProtected(MemoryRegion region, boolean protected_) {
         if (protected_) {
             protectedRegions.add(region);
+            protectedMask |= 1 << region.ordinal();
         } else {
             protectedRegions.remove(region);
+            protectedMask &= ~(1 << region.ordinal());
         }
     }
 
+    /**
+     * 获取保护模式
+     */
+    public ProtectionMode getMode() {
+        return mode;
+    }
+
+    /**
+     * 获取统计采样间隔
+     */
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
     /**
      * 获取访问统计
      */
@@ -266,6 +430,7 @@ public class MemoryProtection {
         }
         totalAccessCount = 0;
         blockedAccessCount = 0;
+        sampleCountdown = sampleInterval;
     }
 
     /**
@@ -375,12 +540,19 @@ public class MemoryProtection {
         }
 
         public void recordAccess(AccessType type, int size) {
+            recordAccess(type, size, 1);
+        }
+
+        /**
+         * 记录一次采样访问，按权重计入（代表weight次同类访问）
+         */
+        public void recordAccess(AccessType type, int size, int weight) {
             if (type == AccessType.READ) {
-                readCount++;
-                bytesRead += size;
+                readCount += weight;
+                bytesRead += (long) size * weight;
             } else if (type == AccessType.WRITE) {
-                writeCount++;
-                bytesWritten += size;
+                writeCount += weight;
+                bytesWritten += (long) size * weight;
             }
         }
 
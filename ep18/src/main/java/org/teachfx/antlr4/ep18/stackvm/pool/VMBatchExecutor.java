@@ -0,0 +1,210 @@
+package org.teachfx.antlr4.ep18.stackvm.pool;
+
+import org.teachfx.antlr4.ep18.stackvm.CymbolStackVM;
+import org.teachfx.antlr4.ep18.stackvm.VMConfig;
+import org.teachfx.antlr4.ep18.stackvm.VMStats;
+import org.teachfx.antlr4.ep18.stackvm.VMTimeoutException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 批量字节码执行器
+ * 每个作业在独立的虚拟线程上执行，虚拟机实例从按配置内容划分的 {@link VMPool} 中借用，执行后重置归还。
+ * 同时执行的作业数受并行度限制（解释执行是纯计算任务，超过CPU核数的并发没有收益），
+ * 池中每种配置的实例数因此也不超过并行度。
+ *
+ * 作业的资源上限来自其配置：堆大小由实例的堆决定，超出时作业以内存不足失败；
+ * 执行时间超过 {@link VMConfig#getMaxExecutionTime()} 时由看门狗线程停止虚拟机，作业以
+ * {@link VMTimeoutException} 失败。启用JIT时编译后的循环每隔若干次回边退回解释器检查停止标志
+ * （见 {@link org.teachfx.antlr4.ep18.stackvm.jit.TieredCompiler#SAFEPOINT_INTERVAL}），同样能被看门狗停止，
+ * 超时作业因此总会归还并行许可，{@link #close()} 不会被失控的作业挂起。
+ * 所有作业的耗时和失败次数汇总在 {@link #getStats()} 中。
+ */
+public class VMBatchExecutor implements AutoCloseable {
+    private final VMConfig defaultConfig;
+    private final int parallelism;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService watchdog;
+    private final Semaphore permits;
+    private final Map<VMConfig, VMPool> pools;
+    private final VMStats stats;
+
+    /**
+     * 构造函数，并行度取可用处理器数
+     * @param defaultConfig 未单独指定配置的作业使用的配置
+     */
+    public VMBatchExecutor(VMConfig defaultConfig) {
+        this(defaultConfig, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 构造函数
+     * @param defaultConfig 未单独指定配置的作业使用的配置
+     * @param parallelism 最多同时执行的作业数
+     */
+    public VMBatchExecutor(VMConfig defaultConfig, int parallelism) {
+        if (defaultConfig == null) {
+            throw new IllegalArgumentException("VMConfig cannot be null");
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.defaultConfig = defaultConfig;
+        this.parallelism = parallelism;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "vm-batch-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 绝大多数作业在时限内完成，取消的计时任务立即出队，不在队列中堆积
+        timer.setRemoveOnCancelPolicy(true);
+        this.watchdog = timer;
+        this.permits = new Semaphore(parallelism);
+        this.pools = new ConcurrentHashMap<>();
+        this.stats = new VMStats();
+    }
+
+    /**
+     * 使用默认配置提交作业
+     * @param bytecode 字节码
+     * @return 作业结果；作业失败不会使Future异常完成，而是体现在结果中
+     */
+    public Future<VMJobResult> submit(byte[] bytecode) {
+        return submit(bytecode, defaultConfig);
+    }
+
+    /**
+     * 使用指定配置提交作业，内容相同的配置共用一个实例池
+     * @param bytecode 字节码
+     * @param config 作业配置（决定堆大小和最大执行时间）
+     * @return 作业结果
+     */
+    public Future<VMJobResult> submit(byte[] bytecode, VMConfig config) {
+        if (bytecode == null || bytecode.length == 0) {
+            throw new IllegalArgumentException("Bytecode cannot be null or empty");
+        }
+        VMPool pool = getPool(config);
+        return executor.submit(() -> run(bytecode, pool));
+    }
+
+    /**
+     * 使用默认配置执行一批作业并等待全部完成
+     * @param programs 字节码列表
+     * @return 与输入顺序一致的结果列表
+     * @throws InterruptedException 等待时被中断
+     */
+    public List<VMJobResult> executeAll(List<byte[]> programs) throws InterruptedException {
+        List<Future<VMJobResult>> futures = new ArrayList<>(programs.size());
+        for (byte[] program : programs) {
+            futures.add(submit(program));
+        }
+        List<VMJobResult> results = new ArrayList<>(futures.size());
+        for (Future<VMJobResult> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                // run()捕获了执行中的所有异常，这里只可能是排队时被中断等异常情况
+                results.add(VMJobResult.failure(e.getCause(), 0));
+            }
+        }
+        return results;
+    }
+
+    private VMJobResult run(byte[] bytecode, VMPool pool) throws InterruptedException {
+        permits.acquire();
+        try {
+            CymbolStackVM vm = pool.acquire();
+            int timeLimit = pool.getConfig().getMaxExecutionTime();
+            AtomicBoolean timedOut = new AtomicBoolean();
+            ScheduledFuture<?> deadline = watchdog.schedule(() -> {
+                timedOut.set(true);
+                vm.stop();
+            }, timeLimit, TimeUnit.MILLISECONDS);
+
+            long startTime = System.nanoTime();
+            VMJobResult result;
+            try {
+                int value = vm.execute(bytecode);
+                awaitCancel(deadline);
+                if (timedOut.get()) {
+                    throw new VMTimeoutException(
+                        "Execution exceeded max execution time of " + timeLimit + "ms", vm.getProgramCounter());
+                }
+                result = VMJobResult.success(value, System.nanoTime() - startTime);
+                stats.recordExecutionTime(TimeUnit.NANOSECONDS.toMillis(result.getExecutionTimeNanos()));
+            } catch (Exception | OutOfMemoryError e) {
+                awaitCancel(deadline);
+                result = VMJobResult.failure(e, System.nanoTime() - startTime);
+                stats.recordError(e);
+            }
+            pool.release(vm);
+            return result;
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 取消看门狗；若它已经开始运行则等待其结束，避免归还池后的实例被误停
+     */
+    private static void awaitCancel(ScheduledFuture<?> deadline) {
+        if (!deadline.cancel(false)) {
+            try {
+                deadline.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ignored) {
+                // stop()不会抛出异常
+            }
+        }
+    }
+
+    /**
+     * 获取配置对应的实例池，不存在时创建
+     * 池按配置内容（{@link VMConfig#equals(Object)}）划分，每个作业新建的等值配置不会各自产生新池，
+     * 池的数量因此受不同配置的种类数限制。
+     */
+    public VMPool getPool(VMConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("VMConfig cannot be null");
+        }
+        return pools.computeIfAbsent(config, c -> new VMPool(c, parallelism));
+    }
+
+    /**
+     * 获取所有作业的汇总统计（成功作业的耗时和失败次数）
+     */
+    public VMStats getStats() {
+        return stats;
+    }
+
+    /**
+     * 获取并行度
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * 等待已提交的作业完成后关闭执行器
+     */
+    @Override
+    public void close() {
+        executor.close();
+        watchdog.shutdownNow();
+    }
+}
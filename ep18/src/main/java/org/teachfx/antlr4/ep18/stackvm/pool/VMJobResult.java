@@ -0,0 +1,73 @@
+package org.teachfx.antlr4.ep18.stackvm.pool;
+
+import org.teachfx.antlr4.ep18.stackvm.VMTimeoutException;
+
+/**
+ * 批量执行中单个作业的结果
+ * 成功时携带栈顶值，失败时携带异常（包括超时和堆内存不足）
+ */
+public final class VMJobResult {
+    private final int value;
+    private final Throwable error;
+    private final long executionTimeNanos;
+
+    private VMJobResult(int value, Throwable error, long executionTimeNanos) {
+        this.value = value;
+        this.error = error;
+        this.executionTimeNanos = executionTimeNanos;
+    }
+
+    static VMJobResult success(int value, long executionTimeNanos) {
+        return new VMJobResult(value, null, executionTimeNanos);
+    }
+
+    static VMJobResult failure(Throwable error, long executionTimeNanos) {
+        return new VMJobResult(0, error, executionTimeNanos);
+    }
+
+    /**
+     * 作业是否成功执行到停机
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * 作业是否因超过最大执行时间被停止
+     */
+    public boolean isTimedOut() {
+        return error instanceof VMTimeoutException;
+    }
+
+    /**
+     * 获取执行结果（栈顶值）
+     * @throws IllegalStateException 作业失败
+     */
+    public int getValue() {
+        if (error != null) {
+            throw new IllegalStateException("Job failed: " + error.getMessage(), error);
+        }
+        return value;
+    }
+
+    /**
+     * 获取失败原因，成功时为null
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * 获取执行耗时（纳秒，不含排队等待）
+     */
+    public long getExecutionTimeNanos() {
+        return executionTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess()
+            ? "VMJobResult{value=" + value + ", time=" + executionTimeNanos + "ns}"
+            : "VMJobResult{error=" + error + ", time=" + executionTimeNanos + "ns}";
+    }
+}
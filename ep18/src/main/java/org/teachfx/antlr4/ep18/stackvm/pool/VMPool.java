@@ -0,0 +1,93 @@
+package org.teachfx.antlr4.ep18.stackvm.pool;
+
+import org.teachfx.antlr4.ep18.stackvm.CymbolStackVM;
+import org.teachfx.antlr4.ep18.stackvm.VMConfig;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 虚拟机实例池
+ * 同一配置的 {@link CymbolStackVM} 在执行之间经 {@link CymbolStackVM#reset()} 重置后复用，
+ * 省去每次构造时分配堆、栈、指令缓存和栈帧区数组的开销。
+ * 空闲实例按后进先出取用，最近用过的实例更可能仍在CPU缓存中；超出上限的归还实例直接丢弃。
+ * 池本身是线程安全的，但取出的实例同一时间只能由一个线程使用。
+ */
+public class VMPool {
+    private final VMConfig config;
+    private final int maxIdle;
+    private final ConcurrentLinkedDeque<CymbolStackVM> idle;
+    private final AtomicInteger idleCount;
+    private final AtomicLong createdCount;
+
+    /**
+     * 构造函数
+     * @param config 池中所有实例共用的配置
+     * @param maxIdle 最多保留的空闲实例数
+     */
+    public VMPool(VMConfig config, int maxIdle) {
+        if (config == null) {
+            throw new IllegalArgumentException("VMConfig cannot be null");
+        }
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("Max idle count cannot be negative");
+        }
+        this.config = config;
+        this.maxIdle = maxIdle;
+        this.idle = new ConcurrentLinkedDeque<>();
+        this.idleCount = new AtomicInteger();
+        this.createdCount = new AtomicLong();
+    }
+
+    /**
+     * 取出一个已重置的实例，没有空闲实例时新建
+     */
+    public CymbolStackVM acquire() {
+        CymbolStackVM vm = idle.pollFirst();
+        if (vm != null) {
+            idleCount.decrementAndGet();
+            return vm;
+        }
+        createdCount.incrementAndGet();
+        return new CymbolStackVM(config);
+    }
+
+    /**
+     * 归还实例：重置后放回池中，池已满时丢弃
+     * @param vm 由本池取出的实例
+     * @throws IllegalArgumentException 实例的配置与池不同
+     */
+    public void release(CymbolStackVM vm) {
+        if (vm.getConfig() != config) {
+            throw new IllegalArgumentException("VM does not belong to this pool");
+        }
+        vm.reset();
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offerFirst(vm);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * 获取池中实例共用的配置
+     */
+    public VMConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * 获取当前空闲实例数
+     */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * 获取池创建过的实例总数
+     */
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+}
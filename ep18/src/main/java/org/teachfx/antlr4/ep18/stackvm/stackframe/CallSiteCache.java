@@ -0,0 +1,147 @@
+package org.teachfx.antlr4.ep18.stackvm.stackframe;
+
+import org.teachfx.antlr4.ep18.stackvm.FunctionSymbol;
+
+import java.util.Arrays;
+
+/**
+ * 调用点内联缓存
+ * 按调用点地址缓存首次解析得到的目标函数（入口地址、参数个数、局部变量个数、栈帧槽位数），
+ * 之后同一调用点再次执行时直接读取缓存，跳过按入口地址的符号查找。
+ * 缓存条目带有版本号：函数被重新注册时调用 {@link #invalidateAll()} 递增全局版本，
+ * 旧条目在下一次访问时自然失效并重新解析。
+ */
+public class CallSiteCache {
+    private int[] versions;          // 条目版本，0表示空
+    private int[] targetAddresses;
+    private int[] argCounts;
+    private int[] localCounts;
+    private int[] frameSlotCounts;
+    private FunctionSymbol[] targets;
+    private int version = 1;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * 构造函数
+     * @param initialSites 初始调用点地址容量（不足时按倍增扩容）
+     */
+    public CallSiteCache(int initialSites) {
+        int capacity = Math.max(initialSites, 16);
+        this.versions = new int[capacity];
+        this.targetAddresses = new int[capacity];
+        this.argCounts = new int[capacity];
+        this.localCounts = new int[capacity];
+        this.frameSlotCounts = new int[capacity];
+        this.targets = new FunctionSymbol[capacity];
+    }
+
+    /**
+     * 检查调用点是否有指向指定入口地址的有效缓存，并计入命中/未命中统计
+     * 同一调用点地址在另一段程序中可能调用别的函数，入口地址不一致的条目按未命中处理
+     * @param site 调用点地址
+     * @param targetAddress 本次调用的目标入口地址
+     * @return true如果缓存有效
+     */
+    public boolean lookup(int site, int targetAddress) {
+        if (site >= 0 && site < versions.length && versions[site] == version
+                && targetAddresses[site] == targetAddress) {
+            hits++;
+            return true;
+        }
+        misses++;
+        return false;
+    }
+
+    /**
+     * 填充调用点缓存
+     * @param site 调用点地址
+     * @param target 解析得到的目标函数
+     */
+    public void fill(int site, FunctionSymbol target) {
+        if (site < 0) {
+            throw new IllegalArgumentException("Invalid call site: " + site);
+        }
+        ensureCapacity(site + 1);
+        versions[site] = version;
+        targets[site] = target;
+        targetAddresses[site] = target.address;
+        argCounts[site] = target.nargs;
+        localCounts[site] = target.nlocals;
+        frameSlotCounts[site] = StackFrameCalculator.getFrameSlotCount(target.nargs, target.nlocals);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > versions.length) {
+            int capacity = Math.max(required, versions.length * 2);
+            versions = Arrays.copyOf(versions, capacity);
+            targetAddresses = Arrays.copyOf(targetAddresses, capacity);
+            argCounts = Arrays.copyOf(argCounts, capacity);
+            localCounts = Arrays.copyOf(localCounts, capacity);
+            frameSlotCounts = Arrays.copyOf(frameSlotCounts, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+        }
+    }
+
+    /**
+     * 使所有调用点缓存失效（函数重新注册或清空符号表时调用）
+     */
+    public void invalidateAll() {
+        version++;
+        if (version == 0) {
+            // 版本号回绕时清空，避免与空条目混淆
+            Arrays.fill(versions, 0);
+            version = 1;
+        }
+    }
+
+    /**
+     * 获取缓存的目标函数
+     */
+    public FunctionSymbol getTarget(int site) {
+        return targets[site];
+    }
+
+    /**
+     * 获取缓存的目标入口地址
+     */
+    public int getTargetAddress(int site) {
+        return targetAddresses[site];
+    }
+
+    /**
+     * 获取缓存的参数个数
+     */
+    public int getArgCount(int site) {
+        return argCounts[site];
+    }
+
+    /**
+     * 获取缓存的局部变量个数
+     */
+    public int getLocalCount(int site) {
+        return localCounts[site];
+    }
+
+    /**
+     * 获取缓存的栈帧槽位数
+     */
+    public int getFrameSlotCount(int site) {
+        return frameSlotCounts[site];
+    }
+
+    /**
+     * 获取缓存命中次数
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * 获取缓存未命中次数
+     */
+    public long getMisses() {
+        return misses;
+    }
+}
@@ -6,6 +6,7 @@ import org.teachfx.antlr4.ep18.stackvm.StackFrame;
 import org.teachfx.antlr4.ep18.symtab.symbol.StructSymbol;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * 动态链接器
@@ -21,6 +22,11 @@ public class DynamicLinker {
     private final Deque<LinkageRecord> callStack;
     private int callDepth;
 
+    // 调用点内联缓存
+    private final Map<Integer, FunctionSymbol> functionsByAddress;
+    private final CallSiteCache callSiteCache;
+    private final List<Consumer<String>> invalidationListeners;
+
     // 链接统计
     private int totalCalls;
     private int resolvedCalls;
@@ -34,6 +40,9 @@ public class DynamicLinker {
         this.labelTable = new HashMap<>();
         this.structTable = new HashMap<>();
         this.callStack = new ArrayDeque<>();
+        this.functionsByAddress = new HashMap<>();
+        this.callSiteCache = new CallSiteCache(256);
+        this.invalidationListeners = new ArrayList<>();
         this.callDepth = 0;
         this.totalCalls = 0;
         this.resolvedCalls = 0;
@@ -42,12 +51,54 @@ public class DynamicLinker {
 
     /**
      * 注册函数符号
+     * 重新注册同名函数会使所有调用点缓存失效并通知失效监听器
      */
     public void registerFunction(FunctionSymbol function) {
         if (function == null || function.name == null) {
             throw new IllegalArgumentException("Invalid function symbol");
         }
-        functionTable.put(function.name, function);
+        FunctionSymbol previous = functionTable.put(function.name, function);
+        if (previous != null) {
+            functionsByAddress.remove(previous.address, previous);
+        }
+        functionsByAddress.put(function.address, function);
+        if (previous != null) {
+            invalidate(function.name);
+        }
+    }
+
+    /**
+     * 添加调用点缓存失效监听器，函数被重新注册时以函数名回调
+     * 持有自己缓存的执行引擎可借此同步失效
+     */
+    public void addInvalidationListener(Consumer<String> listener) {
+        invalidationListeners.add(Objects.requireNonNull(listener));
+    }
+
+    /**
+     * 移除调用点缓存失效监听器
+     * @param listener 之前添加的监听器
+     */
+    public void removeInvalidationListener(Consumer<String> listener) {
+        invalidationListeners.remove(listener);
+    }
+
+    /**
+     * 获取已添加的失效监听器数量
+     */
+    int getInvalidationListenerCount() {
+        return invalidationListeners.size();
+    }
+
+    /**
+     * 使所有调用点缓存失效
+     * @param functionName 引起失效的函数名，清空符号表时为null
+     */
+    private void invalidate(String functionName) {
+        callSiteCache.invalidateAll();
+        for (Consumer<String> listener : invalidationListeners) {
+            listener.accept(functionName);
+        }
     }
 
     /**
@@ -113,6 +164,34 @@ public class DynamicLinker {
         return LinkageResult.success(targetFunction, record);
     }
 
+    /**
+     * 按入口地址解析调用目标（供按地址调用的字节码使用），结果缓存在调用点上
+     * 缓存条目按入口地址校验，共享链接器的VM加载另一段程序后不会读到旧程序的条目
+     * @param callSite 调用点地址
+     * @param functionAddress 目标入口地址
+     * @return 目标函数，未注册时返回null
+     */
+    public FunctionSymbol resolveFunctionAt(int callSite, int functionAddress) {
+        if (callSiteCache.lookup(callSite, functionAddress)) {
+            return callSiteCache.getTarget(callSite);
+        }
+
+        FunctionSymbol target = functionsByAddress.get(functionAddress);
+        if (target != null && callSite >= 0) {
+            callSiteCache.fill(callSite, target);
+        }
+        return target;
+    }
+
+    /**
+     * 按入口地址查找已注册的函数，不经过调用点缓存，也不计入链接统计
+     * @param functionAddress 函数入口地址
+     * @return 函数符号，未注册时返回null
+     */
+    public FunctionSymbol getFunctionAt(int functionAddress) {
+        return functionsByAddress.get(functionAddress);
+    }
+
     /**
      * 解析跳转标签
      * @param labelName 标签名
@@ -176,6 +255,13 @@ public class DynamicLinker {
         return new ArrayList<>(callStack);
     }
 
+    /**
+     * 获取调用点缓存
+     */
+    public CallSiteCache getCallSiteCache() {
+        return callSiteCache;
+    }
+
     /**
      * 获取链接统计信息
      */
@@ -196,6 +282,8 @@ public class DynamicLinker {
      */
     public void clear() {
         functionTable.clear();
+        functionsByAddress.clear();
+        invalidate(null);
         labelTable.clear();
         structTable.clear();
         callStack.clear();
@@ -0,0 +1,246 @@
+package org.teachfx.antlr4.ep18.stackvm.stackframe;
+
+import org.teachfx.antlr4.ep18.stackvm.FunctionSymbol;
+import org.teachfx.antlr4.ep18.stackvm.StackFrame;
+
+import java.util.Arrays;
+
+/**
+ * 栈帧区
+ * 用一块预分配的 int 数组连续存放所有活动栈帧的参数和局部变量（布局由 {@link StackFrameCalculator} 给出），
+ * 返回地址、保存的栈深度等元数据存放在按帧索引的并行原始类型数组中。
+ * 调用和返回只是移动帧索引和帧基址，不产生任何对象；
+ * 需要 {@link StackFrame} 视图时（调试、可视化）再通过 {@link #toStackFrame(int)} 按需构造。
+ *
+ * 局部变量不存放在栈帧中的解释器（如共用局部变量数组的栈式虚拟机）可以构造不保留槽位的栈帧区，
+ * 此时栈帧只记录元数据，{@link #frameSlotCount(int)} 为0，进入栈帧时也不清零任何槽位。
+ */
+public class FrameArena {
+    /** 栈帧未保存调用前栈深度 */
+    public static final int NO_SAVED_DEPTH = Integer.MIN_VALUE;
+
+    private final int maxFrames;
+    private final boolean reserveSlots;
+
+    // 帧元数据（按帧索引）
+    private final int[] frameBases;
+    private final int[] functionAddresses;
+    private final int[] argCounts;
+    private final int[] localCounts;
+    private final int[] returnAddresses;
+    private final int[] savedStackDepths;
+
+    // 参数和局部变量槽位
+    private int[] slots;
+    private byte[] tags;
+
+    /**
+     * 构造函数
+     * @param maxFrames 最大帧数
+     * @param initialSlots 初始槽位容量（不足时按倍增扩容）
+     */
+    public FrameArena(int maxFrames, int initialSlots) {
+        this(maxFrames, initialSlots, true);
+    }
+
+    /**
+     * 构造函数
+     * @param maxFrames 最大帧数
+     * @param initialSlots 初始槽位容量（不足时按倍增扩容）
+     * @param reserveSlots 栈帧是否为参数和局部变量保留槽位；为false时只记录帧元数据
+     */
+    public FrameArena(int maxFrames, int initialSlots, boolean reserveSlots) {
+        if (maxFrames <= 0) {
+            throw new IllegalArgumentException("maxFrames must be positive");
+        }
+        this.maxFrames = maxFrames;
+        this.reserveSlots = reserveSlots;
+        this.frameBases = new int[maxFrames];
+        this.functionAddresses = new int[maxFrames];
+        this.argCounts = new int[maxFrames];
+        this.localCounts = new int[maxFrames];
+        this.returnAddresses = new int[maxFrames];
+        this.savedStackDepths = new int[maxFrames];
+        this.slots = new int[reserveSlots ? Math.max(initialSlots, 16) : 0];
+        this.tags = new byte[slots.length];
+    }
+
+    /**
+     * 在指定帧索引处建立栈帧，帧基址紧跟前一帧
+     * 新帧的参数和局部变量清零（不保留槽位时不占用也不清零槽位），且没有保存的栈深度
+     * @param index 帧索引（即帧指针）
+     * @param functionAddress 函数入口地址
+     * @param nargs 参数个数
+     * @param nlocals 局部变量个数
+     * @param returnAddress 返回地址
+     * @throws IndexOutOfBoundsException 如果帧索引超出最大帧数
+     */
+    public void enter(int index, int functionAddress, int nargs, int nlocals, int returnAddress) {
+        if (index < 0 || index >= maxFrames) {
+            throw new IndexOutOfBoundsException("Frame index out of bounds: " + index);
+        }
+        int base = index == 0 ? 0 : frameBases[index - 1] + frameSlotCount(index - 1);
+        int size = reserveSlots ? StackFrameCalculator.getFrameSlotCount(nargs, nlocals) : 0;
+        ensureCapacity(base + size);
+
+        frameBases[index] = base;
+        functionAddresses[index] = functionAddress;
+        argCounts[index] = nargs;
+        localCounts[index] = nlocals;
+        returnAddresses[index] = returnAddress;
+        savedStackDepths[index] = NO_SAVED_DEPTH;
+        if (size > 0) {
+            Arrays.fill(slots, base, base + size, 0);
+            Arrays.fill(tags, base, base + size, (byte) 0);
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > slots.length) {
+            int capacity = Math.max(required, slots.length * 2);
+            slots = Arrays.copyOf(slots, capacity);
+            tags = Arrays.copyOf(tags, capacity);
+        }
+    }
+
+    /**
+     * 获取帧占用的槽位数（不保留槽位时为0）
+     */
+    public int frameSlotCount(int index) {
+        if (!reserveSlots) {
+            return 0;
+        }
+        return StackFrameCalculator.getFrameSlotCount(argCounts[index], localCounts[index]);
+    }
+
+    /**
+     * 获取帧基址（槽位数组下标）
+     */
+    public int getFrameBase(int index) {
+        return frameBases[index];
+    }
+
+    /**
+     * 获取第i个参数的槽位数组下标
+     */
+    public int parameterSlot(int index, int argIndex) {
+        return frameBases[index] + StackFrameCalculator.getParameterSlot(argIndex);
+    }
+
+    /**
+     * 获取第i个局部变量的槽位数组下标
+     */
+    public int localSlot(int index, int localIndex) {
+        return frameBases[index] + StackFrameCalculator.getLocalVariableSlot(argCounts[index], localIndex);
+    }
+
+    /**
+     * 获取槽位数组（扩容后会替换，调用/返回后需重新获取）
+     */
+    public int[] getSlots() {
+        return slots;
+    }
+
+    /**
+     * 获取槽位类型标签数组，供需要区分值类型的解释器使用（与槽位数组同步扩容）
+     */
+    public byte[] getTags() {
+        return tags;
+    }
+
+    /**
+     * 获取帧所属函数的入口地址
+     */
+    public int getFunctionAddress(int index) {
+        return functionAddresses[index];
+    }
+
+    /**
+     * 获取帧的参数个数
+     */
+    public int getArgCount(int index) {
+        return argCounts[index];
+    }
+
+    /**
+     * 获取帧的局部变量个数
+     */
+    public int getLocalCount(int index) {
+        return localCounts[index];
+    }
+
+    /**
+     * 获取帧的返回地址
+     */
+    public int getReturnAddress(int index) {
+        return returnAddresses[index];
+    }
+
+    /**
+     * 改写帧的函数入口和返回地址（指令地址与预解码槽位索引互相换算时使用）
+     */
+    public void relocate(int index, int functionAddress, int returnAddress) {
+        functionAddresses[index] = functionAddress;
+        returnAddresses[index] = returnAddress;
+    }
+
+    /**
+     * 在帧中保存调用前的栈深度（调用者帧保存，被调用者返回时恢复）
+     */
+    public void setSavedStackDepth(int index, int depth) {
+        savedStackDepths[index] = depth;
+    }
+
+    /**
+     * 获取保存的栈深度，未保存时为 {@link #NO_SAVED_DEPTH}
+     */
+    public int getSavedStackDepth(int index) {
+        return savedStackDepths[index];
+    }
+
+    /**
+     * 检查帧是否保存了栈深度
+     */
+    public boolean hasSavedStackDepth(int index) {
+        return savedStackDepths[index] != NO_SAVED_DEPTH;
+    }
+
+    /**
+     * 检查栈帧是否为参数和局部变量保留槽位
+     */
+    public boolean isReservingSlots() {
+        return reserveSlots;
+    }
+
+    /**
+     * 获取最大帧数
+     */
+    public int getMaxFrames() {
+        return maxFrames;
+    }
+
+    /**
+     * 构造指定帧的 {@link StackFrame} 视图（用于调试和可视化，不参与执行）
+     * @param index 帧索引
+     * @return 栈帧对象，参数和局部变量为槽位中的整数值（不保留槽位时为空）
+     */
+    public StackFrame toStackFrame(int index) {
+        int nargs = argCounts[index];
+        int nlocals = localCounts[index];
+        FunctionSymbol symbol = new FunctionSymbol(
+            "func_" + functionAddresses[index], nargs, nlocals, functionAddresses[index]);
+        StackFrame frame = new StackFrame(symbol, returnAddresses[index], null);
+        if (reserveSlots) {
+            for (int i = 0; i < nlocals; i++) {
+                frame.getLocals()[i] = slots[localSlot(index, i)];
+            }
+            for (int i = 0; i < nargs; i++) {
+                frame.getParameters()[i] = slots[parameterSlot(index, i)];
+            }
+        }
+        if (hasSavedStackDepth(index)) {
+            frame.setDebugData("savedStackDepth", savedStackDepths[index]);
+        }
+        return frame;
+    }
+}
@@ -120,6 +120,36 @@ public class StackFrameCalculator {
         return 0; // 返回地址在栈帧底部
     }
 
+    /**
+     * 计算栈帧在帧区中占用的槽位数（每个槽位对应一个8字节的参数或局部变量）
+     * 槽位布局：参数在前，局部变量在后
+     * @param nargs 参数个数
+     * @param nlocals 局部变量个数
+     * @return 槽位数
+     */
+    public static int getFrameSlotCount(int nargs, int nlocals) {
+        return Math.max(nargs, 0) + Math.max(nlocals, 0);
+    }
+
+    /**
+     * 计算参数相对帧基址的槽位
+     * @param argIndex 参数索引
+     * @return 槽位偏移
+     */
+    public static int getParameterSlot(int argIndex) {
+        return argIndex;
+    }
+
+    /**
+     * 计算局部变量相对帧基址的槽位
+     * @param nargs 参数个数
+     * @param localIndex 局部变量索引
+     * @return 槽位偏移
+     */
+    public static int getLocalVariableSlot(int nargs, int localIndex) {
+        return Math.max(nargs, 0) + localIndex;
+    }
+
     /**
      * 计算保存的帧指针偏移量
      * @return 保存的帧指针偏移量（字节）
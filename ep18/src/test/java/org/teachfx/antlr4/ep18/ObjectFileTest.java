@@ -0,0 +1,142 @@
+package org.teachfx.antlr4.ep18;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18.parser.VMAssemblerLexer;
+import org.teachfx.antlr4.ep18.parser.VMAssemblerParser;
+import org.teachfx.antlr4.ep18.stackvm.ByteCodeAssembler;
+import org.teachfx.antlr4.ep18.stackvm.BytecodeDefinition;
+import org.teachfx.antlr4.ep18.stackvm.FunctionSymbol;
+import org.teachfx.antlr4.ep18.stackvm.ObjectFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 二进制目标文件测试
+ */
+@DisplayName("二进制目标文件测试")
+public class ObjectFileTest {
+
+    private static final String PROGRAM = """
+        .def square: args=1, locals=1
+            load 0
+            load 0
+            imul
+            ret
+        .def main: args=0, locals=1
+            iconst 7
+            call square
+            print
+            fconst 2.5
+            print
+            sconst "done"
+            print
+            halt
+        """;
+
+    private static ByteCodeAssembler assemble(String program) {
+        VMAssemblerParser parser = new VMAssemblerParser(new CommonTokenStream(new VMAssemblerLexer(CharStreams.fromString(program))));
+        ByteCodeAssembler assembler = new ByteCodeAssembler(BytecodeDefinition.instructions);
+        new ParseTreeWalker().walk(assembler, parser.program());
+        assertThat(assembler.hasErrors()).isFalse();
+        return assembler;
+    }
+
+    private static String run(VMInterpreter interpreter) throws Exception {
+        PrintStream original = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        try {
+            interpreter.exec();
+        } finally {
+            System.setOut(original);
+        }
+        return out.toString();
+    }
+
+    @Test
+    @DisplayName("写出后内存映射读回的目标文件应与汇编结果一致并得到相同输出")
+    void testRoundTripThroughMappedFile() throws Exception {
+        ByteCodeAssembler assembler = assemble(PROGRAM);
+        Path path = Files.createTempFile("program", ObjectFile.EXTENSION);
+        try {
+            assembler.toObjectFile().write(path);
+            ObjectFile loaded = ObjectFile.read(path);
+
+            assertThat(loaded.getCode()).isEqualTo(assembler.getMachineCode());
+            assertThat(loaded.getConstantPool()).isEqualTo(assembler.getConstantPool());
+            assertThat(loaded.getMainFunction().address).isEqualTo(assembler.getMainFunction().address);
+            FunctionSymbol square = (FunctionSymbol) loaded.getConstantPool()[0];
+            assertThat(square.nargs).isEqualTo(1);
+            assertThat(square.nlocals).isEqualTo(1);
+
+            VMInterpreter fromText = new VMInterpreter();
+            assertThat(VMInterpreter.load(fromText, new ByteArrayInputStream(PROGRAM.getBytes()))).isFalse();
+            VMInterpreter fromObject = new VMInterpreter();
+            VMInterpreter.loadObjectFile(fromObject, path);
+
+            assertThat(run(fromObject)).isEqualTo(run(fromText)).contains("49");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    @DisplayName("魔数、版本或目标虚拟机不匹配以及截断的文件应被拒绝")
+    void testRejectsInvalidFiles() {
+        byte[] bytes = assemble(PROGRAM).toObjectFile().toByteArray();
+
+        byte[] badMagic = bytes.clone();
+        badMagic[0] = 0;
+        byte[] badVersion = bytes.clone();
+        badVersion[5] = 9;
+        byte[] badTarget = bytes.clone();
+        badTarget[6] = ObjectFile.TARGET_REGISTER_VM;
+        byte[] truncated = java.util.Arrays.copyOf(bytes, bytes.length - 1);
+
+        assertThatThrownBy(() -> ObjectFile.read(ByteBuffer.wrap(badMagic)))
+            .isInstanceOf(IOException.class).hasMessageContaining("Not a Cymbol object file");
+        assertThatThrownBy(() -> ObjectFile.read(ByteBuffer.wrap(badVersion)))
+            .isInstanceOf(IOException.class).hasMessageContaining("Unsupported object file version: 9");
+        assertThatThrownBy(() -> ObjectFile.read(ByteBuffer.wrap(badTarget)))
+            .isInstanceOf(IOException.class).hasMessageContaining("targets another VM");
+        assertThatThrownBy(() -> ObjectFile.read(ByteBuffer.wrap(truncated)))
+            .isInstanceOf(IOException.class).hasMessageContaining("Truncated");
+    }
+
+    @Test
+    @DisplayName("头部计数或字符串长度超出文件剩余长度时应抛出IOException而不是分配巨大数组")
+    void testRejectsOversizedCounts() {
+        byte[] bytes = assemble(PROGRAM).toObjectFile().toByteArray();
+
+        byte[] hugeFunctionCount = bytes.clone();
+        ByteBuffer.wrap(hugeFunctionCount).putInt(16, Integer.MAX_VALUE);
+        byte[] hugeCodeSize = bytes.clone();
+        ByteBuffer.wrap(hugeCodeSize).putInt(28, Integer.MAX_VALUE);
+        byte[] negativeConstCount = bytes.clone();
+        ByteBuffer.wrap(negativeConstCount).putInt(24, -1);
+        byte[] hugeName = bytes.clone();
+        ByteBuffer.wrap(hugeName).putInt(32, Integer.MAX_VALUE);
+
+        assertThatThrownBy(() -> ObjectFile.read(ByteBuffer.wrap(hugeFunctionCount)))
+            .isInstanceOf(IOException.class).hasMessageContaining("Truncated");
+        assertThatThrownBy(() -> ObjectFile.read(ByteBuffer.wrap(hugeCodeSize)))
+            .isInstanceOf(IOException.class).hasMessageContaining("Truncated");
+        assertThatThrownBy(() -> ObjectFile.read(ByteBuffer.wrap(negativeConstCount)))
+            .isInstanceOf(IOException.class).hasMessageContaining("negative section size");
+        assertThatThrownBy(() -> ObjectFile.read(ByteBuffer.wrap(hugeName)))
+            .isInstanceOf(IOException.class).hasMessageContaining("string length");
+    }
+}
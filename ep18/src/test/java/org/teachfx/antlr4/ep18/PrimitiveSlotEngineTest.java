@@ -0,0 +1,303 @@
+package org.teachfx.antlr4.ep18;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 原始类型槽位执行引擎测试
+ * 每个程序分别用装箱解释器和原始槽位引擎执行，比较输出和最终状态
+ */
+@DisplayName("原始类型槽位执行引擎测试")
+public class PrimitiveSlotEngineTest {
+
+    private static VMInterpreter load(String program, boolean primitive) throws Exception {
+        VMInterpreter interpreter = new VMInterpreter();
+        boolean hasErrors = VMInterpreter.load(interpreter, new ByteArrayInputStream(program.getBytes()));
+        assertThat(hasErrors).isFalse();
+        interpreter.setPrimitiveSlotsEnabled(primitive);
+        return interpreter;
+    }
+
+    /** 执行程序并返回标准输出 */
+    private static String run(VMInterpreter interpreter) throws Exception {
+        PrintStream original = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        try {
+            interpreter.exec();
+        } finally {
+            System.setOut(original);
+        }
+        return out.toString();
+    }
+
+    private static void assertSameBehaviour(String program) throws Exception {
+        VMInterpreter boxed = load(program, false);
+        VMInterpreter primitive = load(program, true);
+
+        String boxedOutput = run(boxed);
+        String primitiveOutput = run(primitive);
+
+        assertThat(primitiveOutput).isEqualTo(boxedOutput);
+        // 结构体没有值相等语义，按文本表示比较
+        assertThat(Arrays.deepToString(primitive.getOperandStack()))
+            .isEqualTo(Arrays.deepToString(boxed.getOperandStack()));
+        assertThat(primitive.getStackPointer()).isEqualTo(boxed.getStackPointer());
+        assertThat(primitive.getFramePointer()).isEqualTo(boxed.getFramePointer());
+        assertThat(primitive.getProgramCounter()).isEqualTo(boxed.getProgramCounter());
+        assertThat(Arrays.deepToString(primitive.getGlobalVariables()))
+            .isEqualTo(Arrays.deepToString(boxed.getGlobalVariables()));
+        assertThat(Arrays.deepToString(primitive.getCallStackFrames()[0].getLocals()))
+            .isEqualTo(Arrays.deepToString(boxed.getCallStackFrames()[0].getLocals()));
+    }
+
+    @Test
+    @DisplayName("循环、调用和打印结果应与装箱解释器一致")
+    void testLoopWithCallsAndPrint() throws Exception {
+        assertSameBehaviour("""
+            .def dec1: args=1, locals=1
+                load 0
+                iconst 1
+                isub
+                ret
+            .def main: args=0, locals=1
+                iconst 10
+                store 0
+            loop:
+                load 0
+                iconst 0
+                igt
+                brf done
+                load 0
+                print
+                sconst "tick"
+                print
+                load 0
+                call dec1
+                store 0
+                br loop
+            done:
+                iconst 0
+                halt
+            """);
+    }
+
+    @Test
+    @DisplayName("递归调用结果应一致")
+    void testRecursion() throws Exception {
+        String program = """
+            .def factorial: args=1, locals=1
+                load 0
+                iconst 1
+                ile
+                brf recursion
+                iconst 1
+                ret
+            recursion:
+                load 0
+                iconst 1
+                isub
+                call factorial
+                load 0
+                imul
+                ret
+            .def main: args=0, locals=0
+                iconst 10
+                call factorial
+                halt
+            """;
+        assertSameBehaviour(program);
+
+        VMInterpreter primitive = load(program, true);
+        primitive.exec();
+        assertThat(primitive.getOperandStack()).containsExactly(3628800);
+    }
+
+    @Test
+    @DisplayName("浮点、布尔和字符值应保持原有类型")
+    void testFloatBooleanAndChar() throws Exception {
+        assertSameBehaviour("""
+            .def main: args=0, locals=1
+                fconst 1.5
+                fconst 2.25
+                fmul
+                print
+                iconst 3
+                itof
+                fconst 0.5
+                flt
+                print
+                iconst 4
+                iconst 4
+                ieq
+                inot
+                print
+                cconst 'x'
+                print
+                fconst 2.5
+                store 0
+                load 0
+                iconst 1
+                iconst 2
+                ilt
+                halt
+            """);
+    }
+
+    @Test
+    @DisplayName("结构体句柄应保持引用同一性")
+    void testStructsAndGlobals() throws Exception {
+        assertSameBehaviour("""
+            .global int g
+            .def main: args=0, locals=1
+                struct 2
+                store 0
+                load 0
+                gstore g
+                gload g
+                iconst 42
+                fstore 0
+                load 0
+                struct 1
+                fstore 1
+                load 0
+                fload 1
+                fconst 1.5
+                fstore 0
+                load 0
+                print
+                load 0
+                fload 0
+                load 0
+                halt
+            """);
+    }
+
+    @Test
+    @DisplayName("回收不可达结构体后存活结构体之间的引用应保持不变")
+    void testStructCollectionKeepsReachableGraph() throws Exception {
+        assertSameBehaviour("""
+            .def main: args=0, locals=3
+                null
+                store 0
+                iconst 0
+                store 1
+            loop:
+                load 1
+                iconst 50
+                ilt
+                brf done
+                struct 4
+                pop
+                struct 2
+                store 2
+                load 2
+                load 1
+                fstore 0
+                load 2
+                load 0
+                fstore 1
+                load 2
+                store 0
+                load 1
+                iconst 1
+                iadd
+                store 1
+                br loop
+            done:
+                load 0
+                fload 0
+                print
+                load 0
+                fload 1
+                fload 1
+                fload 0
+                print
+                load 0
+                halt
+            """);
+    }
+
+    @Test
+    @DisplayName("只有少量结构体存活时结构体表和字段区不应随分配次数增长")
+    void testStructAreaBoundedByLiveStructs() throws Exception {
+        VMInterpreter interpreter = load("""
+            .def main: args=0, locals=2
+                iconst 0
+                store 1
+            loop:
+                load 1
+                iconst 10000
+                ilt
+                brf done
+                struct 3
+                store 0
+                load 0
+                load 1
+                fstore 2
+                load 1
+                iconst 1
+                iadd
+                store 1
+                br loop
+            done:
+                load 0
+                fload 2
+                halt
+            """, true);
+        PrimitiveSlotEngine engine = new PrimitiveSlotEngine(interpreter);
+        engine.run(interpreter.mainFunction);
+
+        assertThat(interpreter.getOperandStack()[0]).isEqualTo(9999);
+        // 始终只有一个结构体存活，两块区域都保持初始容量
+        assertThat(engine.getStructTableCapacity()).isEqualTo(16);
+        assertThat(engine.getFieldAreaCapacity()).isEqualTo(64);
+    }
+
+    @Test
+    @DisplayName("返回null的函数不压入返回值")
+    void testNullReturnValue() throws Exception {
+        assertSameBehaviour("""
+            .def f: args=0, locals=0
+                null
+                ret
+            .def main: args=0, locals=0
+                iconst 7
+                call f
+                halt
+            """);
+    }
+
+    @Test
+    @DisplayName("错误应以相同异常报告")
+    void testErrors() throws Exception {
+        String divide = """
+            .def main: args=0, locals=0
+                iconst 1
+                iconst 0
+                idiv
+                halt
+            """;
+        assertThatThrownBy(() -> load(divide, true).exec())
+            .isInstanceOf(RuntimeException.class)
+            .hasMessageContaining("Division by zero");
+
+        String badField = """
+            .def main: args=0, locals=0
+                iconst 1
+                fload 0
+                halt
+            """;
+        assertThatThrownBy(() -> load(badField, true).exec())
+            .isInstanceOf(ClassCastException.class)
+            .hasMessageContaining("Expected StructValue");
+    }
+}
@@ -0,0 +1,39 @@
+package org.teachfx.antlr4.ep18;
+
+/**
+ * 直接编码字节码的测试辅助方法
+ * 供绕过汇编器、按指令字构造程序的测试共用（预解码、超级指令、JIT、GC等）。
+ */
+public final class VMTestBytecode {
+
+    private VMTestBytecode() {
+    }
+
+    /**
+     * 编码带24位操作数的指令字
+     */
+    public static int op(int opcode, int operand) {
+        return (opcode << 24) | (operand & 0xFFFFFF);
+    }
+
+    /**
+     * 编码无操作数的指令字
+     */
+    public static int op(int opcode) {
+        return opcode << 24;
+    }
+
+    /**
+     * 把指令字序列按大端序转换为字节码
+     */
+    public static byte[] toBytes(int... words) {
+        byte[] bytecode = new byte[words.length * 4];
+        for (int i = 0; i < words.length; i++) {
+            bytecode[i * 4] = (byte) (words[i] >> 24);
+            bytecode[i * 4 + 1] = (byte) (words[i] >> 16);
+            bytecode[i * 4 + 2] = (byte) (words[i] >> 8);
+            bytecode[i * 4 + 3] = (byte) words[i];
+        }
+        return bytecode;
+    }
+}
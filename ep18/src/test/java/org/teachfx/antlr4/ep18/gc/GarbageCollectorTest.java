@@ -243,4 +243,24 @@ public class GarbageCollectorTest {
         GCStats stats = gc.getStats();
         assertThat(stats.getTotalCollections()).isGreaterThanOrEqualTo(3);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("释放的对象ID应被复用，反复分配释放不使ID持续增长")
+    void testObjectIdsAreReused() throws Exception {
+        int first = gc.allocate(16);
+        gc.decrementRef(first);
+
+        for (int i = 0; i < 100_000; i++) {
+            int objectId = gc.allocate(16);
+            assertThat(objectId).isEqualTo(first);
+            gc.decrementRef(objectId);
+        }
+
+        int a = gc.allocate(16);
+        int b = gc.allocate(16);
+        assertThat(b).isEqualTo(first + 1);
+        assertThat(gc.isObjectAlive(a)).isTrue();
+        assertThat(gc.isObjectAlive(b)).isTrue();
+        assertThat(gc.getObjectCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,171 @@
+package org.teachfx.antlr4.ep18.gc;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18.stackvm.BytecodeDefinition;
+import org.teachfx.antlr4.ep18.stackvm.CymbolStackVM;
+import org.teachfx.antlr4.ep18.stackvm.VMConfig;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.op;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.toBytes;
+
+/**
+ * 分代垃圾回收器测试
+ */
+@DisplayName("分代垃圾回收器测试")
+public class GenerationalGCTest {
+
+    /** 用列表模拟根集合，用映射模拟对象的出边 */
+    private static final class FakeRoots implements GCRootProvider {
+        final List<Integer> roots = new ArrayList<>();
+        final Map<Integer, int[]> edges = new HashMap<>();
+
+        @Override
+        public void forEachRoot(IntConsumer visitor) {
+            roots.forEach(visitor::accept);
+        }
+
+        @Override
+        public void forEachReference(int objectId, IntConsumer visitor) {
+            for (int target : edges.getOrDefault(objectId, new int[0])) {
+                visitor.accept(target);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("新生代满时次要回收应只晋升存活对象并清空新生代")
+    void testMinorCollectionPromotesSurvivors() {
+        GenerationalGC gc = new GenerationalGC(1024, 64);
+        FakeRoots roots = new FakeRoots();
+        gc.setRootProvider(roots);
+
+        int live = gc.allocate(16);
+        int child = gc.allocate(16);
+        gc.allocate(16);
+        gc.allocate(16);
+        roots.roots.add(live);
+        roots.edges.put(live, new int[]{child});
+        assertThat(gc.getNurseryUsage()).isEqualTo(64);
+
+        int fresh = gc.allocate(16);
+
+        assertThat(gc.getMinorCollections()).isEqualTo(1);
+        assertThat(gc.getMajorCollections()).isEqualTo(0);
+        assertThat(gc.getPromotedObjects()).isEqualTo(2);
+        assertThat(gc.isInNursery(live)).isFalse();
+        assertThat(gc.isObjectAlive(child)).isTrue();
+        assertThat(gc.isInNursery(fresh)).isTrue();
+        assertThat(gc.getNurseryUsage()).isEqualTo(16);
+        assertThat(gc.getObjectCount()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("写屏障记录的老年代引用应使新生代对象在次要回收中存活")
+    void testWriteBarrierKeepsYoungObjectAlive() {
+        GenerationalGC gc = new GenerationalGC(1024, 64);
+        FakeRoots roots = new FakeRoots();
+        gc.setRootProvider(roots);
+
+        int old = gc.allocate(8);
+        roots.roots.add(old);
+        gc.collectMinor();
+        assertThat(gc.isInNursery(old)).isFalse();
+
+        int young = gc.allocate(8);
+        int unrelated = gc.allocate(8);
+        roots.edges.put(old, new int[]{young});
+        gc.writeBarrier(old, young);
+        gc.writeBarrier(old, young);
+        assertThat(gc.getRememberedSetSize()).isEqualTo(1);
+
+        gc.collectMinor();
+
+        assertThat(gc.isObjectAlive(young)).isTrue();
+        assertThat(gc.isObjectAlive(unrelated)).isFalse();
+        assertThat(gc.getRememberedSetSize()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("老年代放不下晋升对象时应执行完整回收，仍不够则抛出内存不足")
+    void testPromotionFailureTriggersMajorCollection() {
+        GenerationalGC gc = new GenerationalGC(96, 64);
+        FakeRoots roots = new FakeRoots();
+        gc.setRootProvider(roots);
+
+        int garbage = gc.allocate(32);
+        roots.roots.add(garbage);
+        gc.collectMinor();
+        roots.roots.clear();
+
+        int survivor = gc.allocate(32);
+        roots.roots.add(survivor);
+        gc.collectMinor();
+
+        assertThat(gc.getMajorCollections()).isEqualTo(1);
+        assertThat(gc.isObjectAlive(garbage)).isFalse();
+        assertThat(gc.isInNursery(survivor)).isFalse();
+
+        roots.roots.add(gc.allocate(32));
+        assertThatThrownBy(gc::collectMinor)
+            .isInstanceOf(OutOfMemoryError.class)
+            .hasMessage("Out of memory after garbage collection");
+    }
+
+    @Test
+    @DisplayName("虚拟机选择generational时写入老年代结构体的新对象不应被回收")
+    void testVMGenerationalWithBarrier() throws Exception {
+        int[] program = {
+            op(BytecodeDefinition.INSTR_STRUCT, 1),   // 0 root = new
+            op(BytecodeDefinition.INSTR_STORE, 3),
+            op(BytecodeDefinition.INSTR_ICONST, 0),   // 2 i = 0
+            op(BytecodeDefinition.INSTR_STORE, 2),
+            op(BytecodeDefinition.INSTR_LOAD, 2),     // 4 loop:
+            op(BytecodeDefinition.INSTR_ICONST, 500),
+            op(BytecodeDefinition.INSTR_ILT),
+            op(BytecodeDefinition.INSTR_BRF, 22),
+            op(BytecodeDefinition.INSTR_LOAD, 3),     // 8 root.f0 = new
+            op(BytecodeDefinition.INSTR_STRUCT, 2),
+            op(BytecodeDefinition.INSTR_FSTORE, 0),
+            op(BytecodeDefinition.INSTR_LOAD, 3),     // 11 root.f0.f1 = i
+            op(BytecodeDefinition.INSTR_FLOAD, 0),
+            op(BytecodeDefinition.INSTR_LOAD, 2),
+            op(BytecodeDefinition.INSTR_FSTORE, 1),
+            op(BytecodeDefinition.INSTR_STRUCT, 4),   // 15 垃圾
+            op(BytecodeDefinition.INSTR_POP),
+            op(BytecodeDefinition.INSTR_LOAD, 2),     // 17 i++
+            op(BytecodeDefinition.INSTR_ICONST, 1),
+            op(BytecodeDefinition.INSTR_IADD),
+            op(BytecodeDefinition.INSTR_STORE, 2),
+            op(BytecodeDefinition.INSTR_BR, 4),       // 21
+            op(BytecodeDefinition.INSTR_LOAD, 3),     // 22 end: root.f0.f1
+            op(BytecodeDefinition.INSTR_FLOAD, 0),
+            op(BytecodeDefinition.INSTR_FLOAD, 1),
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+
+        for (boolean fastDispatch : new boolean[]{false, true}) {
+            CymbolStackVM vm = new CymbolStackVM(VMConfig.builder()
+                .setHeapSize(256)
+                .setEnableGC(true)
+                .setGcType("generational")
+                .setGcHeapSize(256)
+                .setGcNurserySize(64)
+                .setEnableFastDispatch(fastDispatch)
+                .build());
+
+            assertThat(vm.execute(toBytes(program))).isEqualTo(499);
+            GenerationalGC gc = (GenerationalGC) vm.getGarbageCollector();
+            assertThat(gc.getMinorCollections()).isGreaterThan(0);
+            assertThat(gc.getMajorCollections()).isGreaterThan(0);
+        }
+    }
+}
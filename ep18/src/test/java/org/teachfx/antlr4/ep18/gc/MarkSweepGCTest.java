@@ -0,0 +1,202 @@
+package org.teachfx.antlr4.ep18.gc;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18.stackvm.BytecodeDefinition;
+import org.teachfx.antlr4.ep18.stackvm.CymbolStackVM;
+import org.teachfx.antlr4.ep18.stackvm.VMConfig;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.op;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.toBytes;
+
+/**
+ * 标记-清除垃圾回收器测试
+ */
+@DisplayName("标记-清除垃圾回收器测试")
+public class MarkSweepGCTest {
+
+    /** 用列表模拟根集合，用映射模拟对象的出边 */
+    private static final class FakeRoots implements GCRootProvider {
+        final List<Integer> roots = new ArrayList<>();
+        final Map<Integer, int[]> edges = new HashMap<>();
+
+        @Override
+        public void forEachRoot(IntConsumer visitor) {
+            roots.forEach(visitor::accept);
+        }
+
+        @Override
+        public void forEachReference(int objectId, IntConsumer visitor) {
+            for (int target : edges.getOrDefault(objectId, new int[0])) {
+                visitor.accept(target);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("不可达的循环引用应被回收，可达对象应保留")
+    void testCollectsUnreachableCycle() {
+        MarkSweepGC gc = new MarkSweepGC(1024, false);
+        FakeRoots roots = new FakeRoots();
+        gc.setRootProvider(roots);
+        List<Integer> collected = new ArrayList<>();
+        gc.setCollectionListener(collected::add);
+
+        int a = gc.allocate(16);
+        int b = gc.allocate(16);
+        int kept = gc.allocate(16);
+        int child = gc.allocate(16);
+        roots.edges.put(a, new int[]{b});
+        roots.edges.put(b, new int[]{a});
+        roots.edges.put(kept, new int[]{child});
+        roots.roots.add(kept);
+
+        gc.collect();
+
+        assertThat(gc.isObjectAlive(a)).isFalse();
+        assertThat(gc.isObjectAlive(b)).isFalse();
+        assertThat(gc.isObjectAlive(kept)).isTrue();
+        assertThat(gc.isObjectAlive(child)).isTrue();
+        assertThat(collected).containsExactlyInAnyOrder(a, b);
+        assertThat(gc.getHeapUsage()).isEqualTo(32);
+        assertThat(gc.getStats().getTotalCollectedObjects()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("分配失败时应自动回收并复用对象ID")
+    void testCollectOnAllocationFailure() {
+        MarkSweepGC gc = new MarkSweepGC(64, false);
+        gc.setRootProvider(new FakeRoots());
+
+        int first = gc.allocate(32);
+        gc.allocate(32);
+        int third = gc.allocate(32);
+
+        assertThat(gc.getStats().getTotalCollections()).isEqualTo(1);
+        assertThat(gc.isObjectAlive(third)).isTrue();
+        assertThat(gc.getObjectCount()).isEqualTo(1);
+        assertThat(third).isLessThanOrEqualTo(2);
+        assertThat(first).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("整理模式回收后存活对象应连续排列且没有空闲块")
+    void testCompaction() {
+        MarkSweepGC gc = new MarkSweepGC(1024, true);
+        FakeRoots roots = new FakeRoots();
+        gc.setRootProvider(roots);
+
+        int[] ids = new int[6];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = gc.allocate(i % 2 == 0 ? 24 : 300);
+        }
+        roots.roots.add(ids[1]);
+        roots.roots.add(ids[4]);
+        roots.roots.add(ids[5]);
+
+        gc.collect();
+
+        assertThat(gc.getFreeBlockCount()).isEqualTo(0);
+        assertThat(gc.getObjectOffset(ids[1])).isEqualTo(0);
+        assertThat(gc.getObjectOffset(ids[4])).isEqualTo(300);
+        assertThat(gc.getObjectOffset(ids[5])).isEqualTo(324);
+        assertThat(gc.getReservedBytes()).isEqualTo(624);
+        assertThat(gc.getObjectOffset(ids[0])).isEqualTo(-1);
+    }
+
+    @Test
+    @DisplayName("虚拟机选择mark-sweep时循环结构体不应耗尽堆")
+    void testVMCollectsStructCycles() throws Exception {
+        int[] program = {
+            op(BytecodeDefinition.INSTR_ICONST, 0),   // 0 i = 0
+            op(BytecodeDefinition.INSTR_STORE, 2),
+            op(BytecodeDefinition.INSTR_LOAD, 2),     // 2 loop:
+            op(BytecodeDefinition.INSTR_ICONST, 500),
+            op(BytecodeDefinition.INSTR_ILT),
+            op(BytecodeDefinition.INSTR_BRF, 23),
+            op(BytecodeDefinition.INSTR_STRUCT, 2),   // 6 a = new
+            op(BytecodeDefinition.INSTR_STORE, 0),
+            op(BytecodeDefinition.INSTR_STRUCT, 2),   // 8 b = new
+            op(BytecodeDefinition.INSTR_STORE, 1),
+            op(BytecodeDefinition.INSTR_LOAD, 0),     // 10 a.f0 = b
+            op(BytecodeDefinition.INSTR_LOAD, 1),
+            op(BytecodeDefinition.INSTR_FSTORE, 0),
+            op(BytecodeDefinition.INSTR_LOAD, 1),     // 13 b.f0 = a
+            op(BytecodeDefinition.INSTR_LOAD, 0),
+            op(BytecodeDefinition.INSTR_FSTORE, 0),
+            op(BytecodeDefinition.INSTR_LOAD, 2),     // 16 i++
+            op(BytecodeDefinition.INSTR_ICONST, 1),
+            op(BytecodeDefinition.INSTR_IADD),
+            op(BytecodeDefinition.INSTR_STORE, 2),
+            op(BytecodeDefinition.INSTR_BR, 2),       // 20
+            op(BytecodeDefinition.INSTR_HALT),
+            op(BytecodeDefinition.INSTR_HALT),
+            op(BytecodeDefinition.INSTR_LOAD, 2),     // 23 end:
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+
+        for (boolean fastDispatch : new boolean[]{false, true}) {
+            CymbolStackVM vm = new CymbolStackVM(VMConfig.builder()
+                .setHeapSize(256)
+                .setEnableGC(true)
+                .setGcType("mark-sweep")
+                .setGcHeapSize(128)
+                .setEnableFastDispatch(fastDispatch)
+                .build());
+
+            assertThat(vm.execute(toBytes(program))).isEqualTo(500);
+            MarkSweepGC gc = (MarkSweepGC) vm.getGarbageCollector();
+            assertThat(gc.getStats().getTotalCollections()).isGreaterThan(0);
+            assertThat(gc.getObjectCount()).isLessThanOrEqualTo(16);
+        }
+    }
+
+    @Test
+    @DisplayName("虚拟机选择mark-compact时应整理结构体堆中的实际字段，交替存活的大小结构体不会耗尽堆")
+    void testVMCompactsStructHeap() throws Exception {
+        int[] program = {
+            op(BytecodeDefinition.INSTR_ICONST, 0),   // 0 i = 0
+            op(BytecodeDefinition.INSTR_STORE, 1),
+            op(BytecodeDefinition.INSTR_LOAD, 1),     // 2 loop:
+            op(BytecodeDefinition.INSTR_ICONST, 200),
+            op(BytecodeDefinition.INSTR_ILT),
+            op(BytecodeDefinition.INSTR_BRF, 20),
+            op(BytecodeDefinition.INSTR_STRUCT, 3),   // 6 短命的小结构体
+            op(BytecodeDefinition.INSTR_POP),
+            op(BytecodeDefinition.INSTR_STRUCT, 40),  // 8 kept = new big; kept.f0 = i
+            op(BytecodeDefinition.INSTR_STORE, 0),
+            op(BytecodeDefinition.INSTR_LOAD, 0),
+            op(BytecodeDefinition.INSTR_LOAD, 1),
+            op(BytecodeDefinition.INSTR_FSTORE, 0),
+            op(BytecodeDefinition.INSTR_LOAD, 1),     // 13 i++
+            op(BytecodeDefinition.INSTR_ICONST, 1),
+            op(BytecodeDefinition.INSTR_IADD),
+            op(BytecodeDefinition.INSTR_STORE, 1),
+            op(BytecodeDefinition.INSTR_BR, 2),
+            op(BytecodeDefinition.INSTR_HALT),
+            op(BytecodeDefinition.INSTR_HALT),
+            op(BytecodeDefinition.INSTR_LOAD, 0),     // 20 end: kept.f0
+            op(BytecodeDefinition.INSTR_FLOAD, 0),
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+
+        CymbolStackVM vm = new CymbolStackVM(VMConfig.builder()
+            .setEnableGC(true)
+            .setGcType("mark-compact")
+            .setGcHeapSize(1024)   // 256个字；根是保守扫描的，计数器可能让少量死对象暂时存活
+            .build());
+
+        assertThat(vm.execute(toBytes(program))).isEqualTo(199);
+        MarkSweepGC gc = (MarkSweepGC) vm.getGarbageCollector();
+        assertThat(gc.getStats().getTotalCollections()).isGreaterThan(0);
+        assertThat(vm.getStructHeap().getCapacity()).isEqualTo(256);
+        assertThat(vm.getStructHeap().getTopWord()).isLessThanOrEqualTo(256);
+    }
+}
@@ -0,0 +1,94 @@
+package org.teachfx.antlr4.ep18.gc;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 分离空闲链表分配器测试
+ */
+@DisplayName("分离空闲链表分配器测试")
+public class SizeClassAllocatorTest {
+
+    @Test
+    @DisplayName("小对象应取整到类别大小，大对象保持精确大小")
+    void testBlockSizeRounding() {
+        assertThat(SizeClassAllocator.blockSize(1)).isEqualTo(8);
+        assertThat(SizeClassAllocator.blockSize(100)).isEqualTo(104);
+        assertThat(SizeClassAllocator.blockSize(129)).isEqualTo(160);
+        assertThat(SizeClassAllocator.blockSize(256)).isEqualTo(256);
+        assertThat(SizeClassAllocator.blockSize(257)).isEqualTo(257);
+    }
+
+    @Test
+    @DisplayName("释放的小块应被同类别的下一次分配重用")
+    void testSmallBlockReuse() {
+        SizeClassAllocator allocator = new SizeClassAllocator(1024);
+
+        int first = allocator.allocate(32);
+        int second = allocator.allocate(32);
+        allocator.free(first, 32);
+
+        assertThat(allocator.allocate(32)).isEqualTo(first);
+        assertThat(allocator.getBumpPointer()).isEqualTo(second + 32);
+        assertThat(allocator.getReservedBytes()).isEqualTo(64);
+    }
+
+    @Test
+    @DisplayName("相邻空闲大块应合并并退回碰撞指针")
+    void testLargeBlockCoalescing() {
+        SizeClassAllocator allocator = new SizeClassAllocator(2000);
+
+        int a = allocator.allocate(500);
+        int b = allocator.allocate(600);
+        int c = allocator.allocate(700);
+        assertThat(allocator.allocate(300)).isEqualTo(-1);
+
+        allocator.free(a, 500);
+        allocator.free(b, 600);
+        assertThat(allocator.getFreeBlockCount()).isEqualTo(1);
+        // 合并后的1100字节空闲块可容纳1000字节
+        assertThat(allocator.allocate(1000)).isEqualTo(a);
+
+        allocator.free(c, 700);
+        assertThat(allocator.getBumpPointer()).isEqualTo(1000);
+    }
+
+    @Test
+    @DisplayName("其他类别和大对象放不下时应合并释放的小块后重试")
+    void testSmallBlocksCoalesceOnFailure() {
+        SizeClassAllocator allocator = new SizeClassAllocator(1024);
+        int[] blocks = new int[128];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = allocator.allocate(8);
+        }
+        assertThat(allocator.allocate(8)).isEqualTo(-1);
+        for (int block : blocks) {
+            allocator.free(block, 8);
+        }
+
+        // 8字节类别栈中的块合并后整体退回碰撞指针
+        assertThat(allocator.allocate(16)).isEqualTo(0);
+        assertThat(allocator.getBumpPointer()).isEqualTo(16);
+        assertThat(allocator.allocate(300)).isEqualTo(16);
+        assertThat(allocator.getReservedBytes()).isEqualTo(316);
+        assertThat(allocator.getFreeBlockCount()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("取整后放不下时引用计数GC应退回精确大小")
+    void testExactFallbackInTinyHeap() {
+        ReferenceCountingGC gc = new ReferenceCountingGC(100);
+
+        int objectId = gc.allocate(100);
+
+        assertThat(gc.isObjectAlive(objectId)).isTrue();
+        assertThat(gc.getHeapUsage()).isEqualTo(100);
+        assertThat(gc.getReservedBytes()).isEqualTo(100);
+
+        gc.decrementRef(objectId);
+        assertThat(gc.getReservedBytes()).isEqualTo(0);
+        assertThat(gc.isObjectAlive(objectId)).isFalse();
+    }
+}
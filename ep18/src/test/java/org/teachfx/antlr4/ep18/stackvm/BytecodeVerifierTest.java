@@ -0,0 +1,208 @@
+package org.teachfx.antlr4.ep18.stackvm;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18.stackvm.stackframe.DynamicLinker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.op;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.toBytes;
+
+/**
+ * 加载时字节码校验器测试
+ */
+@DisplayName("字节码校验器测试")
+public class BytecodeVerifierTest {
+
+    private static BytecodeVerifier.Result verify(int[] words) {
+        return BytecodeVerifier.verify(DecodedProgram.decode(words, words.length), 16, 8, 8);
+    }
+
+    @Test
+    @DisplayName("应计算每个函数的最大栈深度，并在程序栈深度有界时判定为栈安全")
+    void testMaxStackDepthPerFunction() {
+        int[] words = {
+            op(BytecodeDefinition.INSTR_ICONST, 1),   // 0 main
+            op(BytecodeDefinition.INSTR_ICONST, 2),
+            op(BytecodeDefinition.INSTR_CALL, 5),
+            op(BytecodeDefinition.INSTR_IADD),
+            op(BytecodeDefinition.INSTR_HALT),
+            op(BytecodeDefinition.INSTR_ICONST, 3),   // 5 f: 参数留在调用者栈上
+            op(BytecodeDefinition.INSTR_ICONST, 4),
+            op(BytecodeDefinition.INSTR_ICONST, 5),
+            op(BytecodeDefinition.INSTR_IMUL),
+            op(BytecodeDefinition.INSTR_IADD),
+            op(BytecodeDefinition.INSTR_RET)
+        };
+
+        BytecodeVerifier.Result result = verify(words);
+
+        assertThat(result.getFunctionCount()).isEqualTo(2);
+        int f = result.findFunction(5);
+        assertThat(result.getMaxStackDepth(f)).isEqualTo(3);
+        assertThat(result.getMaxStackDepth(0)).isEqualTo(5);
+        assertThat(result.isStackSafe()).isTrue();
+    }
+
+    @Test
+    @DisplayName("递归调用和可能的栈下溢不应判定为栈安全")
+    void testRecursionAndUnderflowAreNotStackSafe() {
+        int[] recursive = {
+            op(BytecodeDefinition.INSTR_CALL, 2),     // 0
+            op(BytecodeDefinition.INSTR_HALT),
+            op(BytecodeDefinition.INSTR_ICONST, 1),   // 2 f: 无条件递归
+            op(BytecodeDefinition.INSTR_CALL, 2),
+            op(BytecodeDefinition.INSTR_RET)
+        };
+        int[] underflow = {
+            op(BytecodeDefinition.INSTR_ICONST, 1),
+            op(BytecodeDefinition.INSTR_BRT, 3),
+            op(BytecodeDefinition.INSTR_ICONST, 2),
+            op(BytecodeDefinition.INSTR_POP),         // 3 从BRT跳来时栈为空
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+
+        BytecodeVerifier.Result result = verify(recursive);
+        assertThat(result.getMaxStackDepth(result.findFunction(2))).isEqualTo(BytecodeVerifier.UNBOUNDED);
+        assertThat(result.isStackSafe()).isFalse();
+        assertThat(verify(underflow).isStackSafe()).isFalse();
+    }
+
+    @Test
+    @DisplayName("非指令边界的跳转目标、越界的变量索引和落出代码末尾应被拒绝")
+    void testStructuralErrorsAreRejected() {
+        int[] badBranch = {
+            op(BytecodeDefinition.INSTR_ICONST | 0x80), 7,
+            op(BytecodeDefinition.INSTR_BR, 1),       // 跳到扩展指令的操作数字
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+        int[] badLocal = {
+            op(BytecodeDefinition.INSTR_LOAD, 8),
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+        int[] badGlobal = {
+            op(BytecodeDefinition.INSTR_ICONST, 1),
+            op(BytecodeDefinition.INSTR_GSTORE, 100),
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+        int[] fallsOff = {
+            op(BytecodeDefinition.INSTR_ICONST, 1)
+        };
+
+        assertThatThrownBy(() -> verify(badBranch))
+            .isInstanceOf(VMVerificationException.class)
+            .hasMessageContaining("Branch target is not an instruction boundary")
+            .hasMessageContaining("at PC=2");
+        assertThatThrownBy(() -> verify(badLocal))
+            .isInstanceOf(VMVerificationException.class)
+            .hasMessageContaining("Local variable index out of range: 8");
+        assertThatThrownBy(() -> verify(badGlobal))
+            .isInstanceOf(VMVerificationException.class)
+            .hasMessageContaining("Global address out of range: 100");
+        assertThatThrownBy(() -> verify(fallsOff))
+            .isInstanceOf(VMVerificationException.class)
+            .hasMessageContaining("Execution falls off the end of code");
+    }
+
+    @Test
+    @DisplayName("启用校验后虚拟机应在省去检查的模式下得到相同结果")
+    void testVerifiedExecutionMatchesChecked() throws Exception {
+        int[] words = {
+            op(BytecodeDefinition.INSTR_ICONST, 0),   // 0 sum = 0
+            op(BytecodeDefinition.INSTR_GSTORE, 0),
+            op(BytecodeDefinition.INSTR_ICONST, 0),   // 2 i = 0
+            op(BytecodeDefinition.INSTR_STORE, 1),
+            op(BytecodeDefinition.INSTR_LOAD, 1),     // 4 loop:
+            op(BytecodeDefinition.INSTR_ICONST, 100),
+            op(BytecodeDefinition.INSTR_ILT),
+            op(BytecodeDefinition.INSTR_BRF, 18),
+            op(BytecodeDefinition.INSTR_GLOAD, 0),    // 8 sum += i
+            op(BytecodeDefinition.INSTR_LOAD, 1),
+            op(BytecodeDefinition.INSTR_IADD),
+            op(BytecodeDefinition.INSTR_GSTORE, 0),
+            op(BytecodeDefinition.INSTR_LOAD, 1),     // 12 i++
+            op(BytecodeDefinition.INSTR_ICONST, 1),
+            op(BytecodeDefinition.INSTR_IADD),
+            op(BytecodeDefinition.INSTR_STORE, 1),
+            op(BytecodeDefinition.INSTR_BR, 4),
+            op(BytecodeDefinition.INSTR_HALT),
+            op(BytecodeDefinition.INSTR_GLOAD, 0),    // 18 end:
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+        byte[] bytecode = toBytes(words);
+
+        CymbolStackVM checked = new CymbolStackVM(VMConfig.builder()
+            .setEnableFastDispatch(true)
+            .build());
+        CymbolStackVM verified = new CymbolStackVM(VMConfig.builder()
+            .setEnableFastDispatch(true)
+            .setEnableVerification(true)
+            .build());
+
+        assertThat(verified.execute(bytecode)).isEqualTo(checked.execute(bytecode)).isEqualTo(4950);
+        assertThat(checked.getVerificationResult()).isNull();
+        assertThat(verified.getVerificationResult().isStackSafe()).isTrue();
+        assertThat(verified.getVerificationResult().getMaxStackDepth(0)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("局部变量索引应按所在函数的局部变量个数检查，全局地址按程序的全局数据区检查")
+    void testPerFunctionAndProgramLimits() throws Exception {
+        int[] words = {
+            op(BytecodeDefinition.INSTR_LOAD, 3),     // 0 main未注册，按整个局部变量区检查
+            op(BytecodeDefinition.INSTR_CALL, 3),
+            op(BytecodeDefinition.INSTR_HALT),
+            op(BytecodeDefinition.INSTR_LOAD, 2),     // 3 f: nargs=1, nlocals=1
+            op(BytecodeDefinition.INSTR_RET)
+        };
+        int[] globals = {
+            op(BytecodeDefinition.INSTR_ICONST, 1),
+            op(BytecodeDefinition.INSTR_GSTORE, 4),
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+        DecodedProgram program = DecodedProgram.decode(words, words.length);
+        DynamicLinker linker = new DynamicLinker();
+        linker.registerFunction(new FunctionSymbol("f", 1, 1, 3));
+        CymbolStackVM vm = new CymbolStackVM(VMConfig.builder()
+            .setEnableFastDispatch(true)
+            .setEnableVerification(true)
+            .build());
+        vm.setDynamicLinker(linker);
+
+        assertThat(BytecodeVerifier.verify(program, 16, entry -> 8, 8).getFunctionCount()).isEqualTo(2);
+        assertThatThrownBy(() -> BytecodeVerifier.verify(program, 16, entry -> entry == 3 ? 2 : 8, 8))
+            .isInstanceOf(VMVerificationException.class)
+            .hasMessageContaining("Local variable index out of range: 2 (locals=2)");
+        assertThatThrownBy(() -> vm.execute(toBytes(words)))
+            .isInstanceOf(VMVerificationException.class)
+            .hasMessageContaining("(locals=2)");
+        assertThat(vm.execute(toBytes(globals), 5)).isEqualTo(0);
+        assertThatThrownBy(() -> vm.execute(toBytes(globals), 4))
+            .isInstanceOf(VMVerificationException.class)
+            .hasMessageContaining("Global address out of range: 4 (globals=4)");
+    }
+
+    @Test
+    @DisplayName("继续执行时栈状态未经校验，应使用带检查的上下文")
+    void testResumeUsesCheckedContext() throws Exception {
+        int[] words = {
+            op(BytecodeDefinition.INSTR_HALT),        // 0 校验只覆盖到这里
+            op(BytecodeDefinition.INSTR_ICONST, 1),
+            op(BytecodeDefinition.INSTR_ICONST, 2),
+            op(BytecodeDefinition.INSTR_ICONST, 3),
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+        CymbolStackVM vm = new CymbolStackVM(VMConfig.builder()
+            .setEnableFastDispatch(true)
+            .setEnableVerification(true)
+            .setStackSize(2)
+            .build());
+
+        vm.execute(toBytes(words));
+
+        assertThat(vm.getVerificationResult().isStackSafe()).isTrue();
+        // 省去检查的上下文会越过数组末尾，带检查的上下文报告栈溢出
+        assertThatThrownBy(vm::resume).isInstanceOf(StackOverflowError.class).hasMessage("Stack overflow");
+    }
+}
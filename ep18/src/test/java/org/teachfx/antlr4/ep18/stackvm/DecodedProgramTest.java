@@ -0,0 +1,76 @@
+package org.teachfx.antlr4.ep18.stackvm;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.op;
+
+/**
+ * 预解码指令流测试
+ */
+@DisplayName("预解码指令流测试")
+public class DecodedProgramTest {
+
+    @Test
+    @DisplayName("扩展指令应合并为单个槽位")
+    void testExtendedInstructionFolding() {
+        int[] words = {
+            op(BytecodeDefinition.INSTR_FCONST | 0x80), Float.floatToIntBits(2.5f),
+            op(BytecodeDefinition.INSTR_ICONST, -3),
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+
+        DecodedProgram program = DecodedProgram.decode(words, words.length);
+
+        assertThat(program.getLength()).isEqualTo(3);
+        assertThat(program.getOpcodes()[0]).isEqualTo(BytecodeDefinition.INSTR_FCONST);
+        assertThat(program.getOperands()[0]).isEqualTo(Float.floatToIntBits(2.5f));
+        assertThat(program.getOperands()[1]).isEqualTo(-3);
+        assertThat(program.toWordAddress(1)).isEqualTo(2);
+        assertThat(program.toSlotIndex(1)).isEqualTo(-1);
+    }
+
+    @Test
+    @DisplayName("跳转目标应换算为槽位索引")
+    void testBranchTargetResolution() {
+        int[] words = {
+            op(BytecodeDefinition.INSTR_BR, 3),                           // 0
+            op(BytecodeDefinition.INSTR_ICONST | 0x80), 100000000,        // 1-2
+            op(BytecodeDefinition.INSTR_CALL, 4),                         // 3
+            op(BytecodeDefinition.INSTR_HALT)                             // 4
+        };
+
+        DecodedProgram program = DecodedProgram.decode(words, words.length);
+
+        assertThat(program.getOperands()[0]).isEqualTo(2);
+        assertThat(program.getOperands()[2]).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("无效跳转目标应指向末尾陷阱槽位")
+    void testInvalidTargetMapsToTrap() {
+        int[] words = {
+            op(BytecodeDefinition.INSTR_BRT, 2),                          // 跳入操作数字
+            op(BytecodeDefinition.INSTR_ICONST | 0x80), 7,
+            op(BytecodeDefinition.INSTR_BR, 500)
+        };
+
+        DecodedProgram program = DecodedProgram.decode(words, words.length);
+
+        assertThat(program.getOperands()[0]).isEqualTo(program.getLength());
+        assertThat(program.getOperands()[2]).isEqualTo(program.getLength());
+        assertThat(program.getOpcodes()[program.getLength()]).isEqualTo(DecodedProgram.TRAP_OPCODE);
+    }
+
+    @Test
+    @DisplayName("缺少操作数字的扩展指令应在解码时报错")
+    void testTruncatedExtendedInstruction() {
+        int[] words = { op(BytecodeDefinition.INSTR_ICONST | 0x80) };
+
+        assertThatThrownBy(() -> DecodedProgram.decode(words, words.length))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("missing operand word");
+    }
+}
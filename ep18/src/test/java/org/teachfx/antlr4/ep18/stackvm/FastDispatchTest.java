@@ -0,0 +1,161 @@
+package org.teachfx.antlr4.ep18.stackvm;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.op;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.toBytes;
+
+/**
+ * 快速分派模式测试
+ * 验证快速分派循环与常规循环产生相同的执行结果
+ */
+@DisplayName("快速分派模式测试")
+public class FastDispatchTest {
+
+    private static VMConfig config(boolean fastDispatch) {
+        return VMConfig.builder()
+            .setEnableFastDispatch(fastDispatch)
+            .build();
+    }
+
+    private static int run(boolean fastDispatch, int... instructions) throws Exception {
+        return new CymbolStackVM(config(fastDispatch)).execute(toBytes(instructions));
+    }
+
+    /** sum = 0; for (i = 1; i <= 100; i++) sum += i; */
+    private static final int[] SUM_LOOP = {
+        op(BytecodeDefinition.INSTR_ICONST, 0),  // 0
+        op(BytecodeDefinition.INSTR_STORE, 0),   // 1
+        op(BytecodeDefinition.INSTR_ICONST, 1),  // 2
+        op(BytecodeDefinition.INSTR_STORE, 1),   // 3
+        op(BytecodeDefinition.INSTR_LOAD, 1),    // 4 loop:
+        op(BytecodeDefinition.INSTR_ICONST, 100),
+        op(BytecodeDefinition.INSTR_ILE),
+        op(BytecodeDefinition.INSTR_BRF, 17),
+        op(BytecodeDefinition.INSTR_LOAD, 0),    // 8
+        op(BytecodeDefinition.INSTR_LOAD, 1),
+        op(BytecodeDefinition.INSTR_IADD),
+        op(BytecodeDefinition.INSTR_STORE, 0),
+        op(BytecodeDefinition.INSTR_LOAD, 1),    // 12
+        op(BytecodeDefinition.INSTR_ICONST, 1),
+        op(BytecodeDefinition.INSTR_IADD),
+        op(BytecodeDefinition.INSTR_STORE, 1),
+        op(BytecodeDefinition.INSTR_BR, 4),      // 16
+        op(BytecodeDefinition.INSTR_LOAD, 0),    // 17 end:
+        op(BytecodeDefinition.INSTR_HALT)
+    };
+
+    @Test
+    @DisplayName("循环程序在两种模式下结果一致")
+    void testLoopMatchesRegularMode() throws Exception {
+        assertThat(run(true, SUM_LOOP)).isEqualTo(5050);
+        assertThat(run(false, SUM_LOOP)).isEqualTo(5050);
+    }
+
+    @Test
+    @DisplayName("预解码结果应在加载时生成并在继续执行时复用")
+    void testDecodedOnceAtLoad() throws Exception {
+        int[] program = {
+            op(BytecodeDefinition.INSTR_ICONST, 1),
+            op(BytecodeDefinition.INSTR_HALT),
+            op(BytecodeDefinition.INSTR_ICONST, 2),
+            op(BytecodeDefinition.INSTR_IADD),
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+
+        CymbolStackVM vm = new CymbolStackVM(config(true));
+        assertThat(vm.execute(toBytes(program))).isEqualTo(1);
+        DecodedProgram decoded = vm.getDecodedProgram();
+        assertThat(decoded).isNotNull();
+
+        assertThat(vm.resume()).isEqualTo(3);
+        assertThat(vm.getDecodedProgram()).isSameAs(decoded);
+
+        vm.reset();
+        assertThat(vm.getDecodedProgram()).isNull();
+    }
+
+    @Test
+    @DisplayName("应该正确执行嵌套函数调用")
+    void testNestedCalls() throws Exception {
+        int[] program = {
+            op(BytecodeDefinition.INSTR_ICONST, 1), // 0 main
+            op(BytecodeDefinition.INSTR_CALL, 4),   // 1
+            op(BytecodeDefinition.INSTR_HALT),      // 2
+            op(BytecodeDefinition.INSTR_ICONST, 0), // 3
+            op(BytecodeDefinition.INSTR_ICONST, 2), // 4 func1
+            op(BytecodeDefinition.INSTR_CALL, 8),   // 5
+            op(BytecodeDefinition.INSTR_RET),       // 6
+            op(BytecodeDefinition.INSTR_ICONST, 0), // 7
+            op(BytecodeDefinition.INSTR_ICONST, 3), // 8 func2
+            op(BytecodeDefinition.INSTR_RET),       // 9
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+
+        CymbolStackVM vm = new CymbolStackVM(config(true));
+        assertThat(vm.execute(toBytes(program))).isEqualTo(3);
+        // 两次返回后只剩主帧
+        assertThat(vm.getFramePointer()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("扩展格式指令应读取完整的32位操作数")
+    void testExtendedOperand() throws Exception {
+        int[] program = {
+            op(BytecodeDefinition.INSTR_FCONST | 0x80), Float.floatToIntBits(1.5f),
+            op(BytecodeDefinition.INSTR_FCONST | 0x80), Float.floatToIntBits(2.25f),
+            op(BytecodeDefinition.INSTR_FADD),
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+
+        assertThat(Float.intBitsToFloat(run(true, program))).isEqualTo(3.75f);
+    }
+
+    @Test
+    @DisplayName("跨越扩展指令的跳转应落在正确的指令上")
+    void testBranchAcrossExtendedInstruction() throws Exception {
+        int[] program = {
+            op(BytecodeDefinition.INSTR_ICONST | 0x80), 1 << 29,  // 0-1
+            op(BytecodeDefinition.INSTR_BR, 5),                   // 2
+            op(BytecodeDefinition.INSTR_ICONST | 0x80), 99,       // 3-4 跳过
+            op(BytecodeDefinition.INSTR_ICONST, 2),               // 5
+            op(BytecodeDefinition.INSTR_IMUL),                    // 6
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+
+        assertThat(run(true, program)).isEqualTo(1 << 30);
+    }
+
+    @Test
+    @DisplayName("未实现的操作码应抛出VMInvalidOpcodeException")
+    void testUnsupportedOpcode() {
+        int[] program = {
+            op(BytecodeDefinition.INSTR_SCONST, 0),
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+
+        assertThatThrownBy(() -> run(true, program))
+            .isInstanceOf(VMInvalidOpcodeException.class);
+    }
+
+    @Test
+    @DisplayName("调试模式下应回退到常规循环")
+    void testDebugModeFallsBack() throws Exception {
+        VMConfig debugConfig = VMConfig.builder()
+            .setEnableFastDispatch(true)
+            .setDebugMode(true)
+            .build();
+
+        int result = new CymbolStackVM(debugConfig).execute(toBytes(new int[]{
+            op(BytecodeDefinition.INSTR_ICONST, 6),
+            op(BytecodeDefinition.INSTR_ICONST, 7),
+            op(BytecodeDefinition.INSTR_IMUL),
+            op(BytecodeDefinition.INSTR_HALT)
+        }));
+
+        assertThat(result).isEqualTo(42);
+    }
+}
@@ -0,0 +1,108 @@
+package org.teachfx.antlr4.ep18.stackvm;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 结构体堆测试
+ */
+@DisplayName("结构体堆测试")
+public class StructHeapTest {
+
+    @Test
+    @DisplayName("新结构体字段应为0，字段读写互不干扰")
+    void testLoadStore() {
+        StructHeap heap = new StructHeap(64);
+        heap.allocate(1, 3);
+        heap.allocate(2, 2);
+
+        heap.store(1, 2, 42);
+        heap.store(2, 0, 7);
+
+        assertThat(heap.load(1, 0)).isEqualTo(0);
+        assertThat(heap.load(1, 2)).isEqualTo(42);
+        assertThat(heap.load(2, 0)).isEqualTo(7);
+        assertThat(heap.getUsedWords()).isEqualTo(5);
+        assertThat(heap.getStructCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("字段偏移越界应抛出异常")
+    void testFieldOutOfBounds() {
+        StructHeap heap = new StructHeap(64);
+        heap.allocate(1, 2);
+
+        assertThatThrownBy(() -> heap.load(1, 2))
+            .isInstanceOf(IndexOutOfBoundsException.class)
+            .hasMessage("Field offset out of bounds: 2, struct has 2 fields");
+    }
+
+    @Test
+    @DisplayName("释放的字段区应被同样大小的结构体复用，容量耗尽时抛出内存不足")
+    void testFreeAndReuse() {
+        StructHeap heap = new StructHeap(8);
+        heap.allocate(1, 3);
+        heap.allocate(2, 3);
+        heap.store(1, 0, 99);
+        heap.free(1);
+
+        assertThat(heap.contains(1)).isFalse();
+        heap.allocate(3, 3);
+        assertThat(heap.load(3, 0)).isEqualTo(0);
+
+        assertThatThrownBy(() -> heap.allocate(4, 3))
+            .isInstanceOf(OutOfMemoryError.class)
+            .hasMessage("Not enough heap space for struct with 3 fields");
+        heap.free(2);
+        heap.allocate(4, 5);
+        assertThat(heap.getUsedWords()).isEqualTo(8);
+    }
+
+    @Test
+    @DisplayName("相邻的大块释放后应合并，并退回碰撞指针")
+    void testLargeFreeBlocksCoalesce() {
+        StructHeap heap = new StructHeap(200);
+        heap.allocate(1, 40);
+        heap.allocate(2, 40);
+        heap.allocate(3, 40);
+        heap.allocate(4, 40);
+
+        heap.free(2);
+        heap.free(1);
+        assertThat(heap.getFreeBlockCount()).isEqualTo(1);
+        heap.allocate(5, 80);   // 合并后的块正好容纳
+        assertThat(heap.getTopWord()).isEqualTo(160);
+
+        heap.free(3);
+        heap.free(4);           // 3、4与碰撞指针相连
+        assertThat(heap.getTopWord()).isEqualTo(80);
+        assertThat(heap.getFreeBlockCount()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("空闲总量足够但不连续时应整理字段区后分配，字段值和句柄保持不变")
+    void testCompactOnFragmentation() {
+        StructHeap heap = new StructHeap(12);
+        for (int ref = 1; ref <= 6; ref++) {
+            heap.allocate(ref, 2);
+            heap.store(ref, 0, ref * 10);
+            heap.store(ref, 1, ref * 10 + 1);
+        }
+        heap.free(1);
+        heap.free(3);
+        heap.free(5);
+
+        heap.allocate(7, 6);
+
+        assertThat(heap.getFreeBlockCount()).isEqualTo(0);
+        assertThat(heap.getTopWord()).isEqualTo(12);
+        for (int ref : new int[]{2, 4, 6}) {
+            assertThat(heap.load(ref, 0)).isEqualTo(ref * 10);
+            assertThat(heap.load(ref, 1)).isEqualTo(ref * 10 + 1);
+        }
+        assertThat(heap.load(7, 5)).isEqualTo(0);
+    }
+}
@@ -0,0 +1,226 @@
+package org.teachfx.antlr4.ep18.stackvm;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18.stackvm.instructions.InstructionFactory;
+import org.teachfx.antlr4.ep18.stackvm.instructions.controlflow.ControlFlowExecutor;
+import org.teachfx.antlr4.ep18.stackvm.instructions.memory.MemoryAccessExecutor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.op;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.toBytes;
+
+/**
+ * 超级指令测试
+ * 验证剖析、融合后的执行结果与逐条执行一致，且反汇编仍能显示原始指令
+ */
+@DisplayName("超级指令测试")
+public class SuperInstructionTest {
+
+    private static VMConfig config() {
+        return VMConfig.builder()
+            .setEnableFastDispatch(true)
+            .build();
+    }
+
+    /** sum = 0; for (i = 1; i <= 100; i++) sum += i; */
+    private static final int[] SUM_LOOP = {
+        op(BytecodeDefinition.INSTR_ICONST, 0),  // 0
+        op(BytecodeDefinition.INSTR_STORE, 0),   // 1
+        op(BytecodeDefinition.INSTR_ICONST, 1),  // 2
+        op(BytecodeDefinition.INSTR_STORE, 1),   // 3
+        op(BytecodeDefinition.INSTR_LOAD, 1),    // 4 loop:
+        op(BytecodeDefinition.INSTR_ICONST, 100),
+        op(BytecodeDefinition.INSTR_ILE),
+        op(BytecodeDefinition.INSTR_BRF, 17),
+        op(BytecodeDefinition.INSTR_LOAD, 0),    // 8
+        op(BytecodeDefinition.INSTR_LOAD, 1),
+        op(BytecodeDefinition.INSTR_IADD),
+        op(BytecodeDefinition.INSTR_STORE, 0),
+        op(BytecodeDefinition.INSTR_LOAD, 1),    // 12
+        op(BytecodeDefinition.INSTR_ICONST, 1),
+        op(BytecodeDefinition.INSTR_IADD),
+        op(BytecodeDefinition.INSTR_STORE, 1),
+        op(BytecodeDefinition.INSTR_BR, 4),      // 16
+        op(BytecodeDefinition.INSTR_LOAD, 0),    // 17 end:
+        op(BytecodeDefinition.INSTR_HALT)
+    };
+
+    @Test
+    @DisplayName("剖析后融合的程序结果应与逐条执行一致")
+    void testProfiledRewriteMatchesResult() throws Exception {
+        OpcodeProfiler profiler = new OpcodeProfiler(4);
+        CymbolStackVM warmup = new CymbolStackVM(config());
+        warmup.setOpcodeProfiler(profiler);
+        assertThat(warmup.execute(toBytes(SUM_LOOP))).isEqualTo(5050);
+
+        // 循环体执行了100次
+        assertThat(profiler.getCount(new int[]{
+            BytecodeDefinition.INSTR_LOAD, BytecodeDefinition.INSTR_ICONST,
+            BytecodeDefinition.INSTR_ILE, BytecodeDefinition.INSTR_BRF})).isEqualTo(101);
+
+        SuperInstructionRewriter rewriter = SuperInstructionRewriter.fromProfile(profiler, 4);
+        CymbolStackVM vm = new CymbolStackVM(config());
+        vm.setSuperInstructionRewriter(rewriter);
+
+        assertThat(vm.execute(toBytes(SUM_LOOP))).isEqualTo(5050);
+        assertThat(rewriter.rewrite(DecodedProgram.decode(new int[]{
+            SUM_LOOP[4], SUM_LOOP[5], SUM_LOOP[6], SUM_LOOP[7]}, 4))).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("融合序列直接读写上下文，不更新进程级的内存访问和分支统计")
+    void testFusedSequencesSkipGlobalStatistics() throws Exception {
+        int[] brtProgram = {
+            op(BytecodeDefinition.INSTR_ICONST, 1),  // 0
+            op(BytecodeDefinition.INSTR_BRT, 3),     // 1
+            op(BytecodeDefinition.INSTR_ICONST, 9),  // 2
+            op(BytecodeDefinition.INSTR_ICONST, 2),  // 3
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+        SuperInstructionRewriter rewriter = new SuperInstructionRewriter();
+        rewriter.addSequence(new int[]{
+            BytecodeDefinition.INSTR_LOAD, BytecodeDefinition.INSTR_ICONST,
+            BytecodeDefinition.INSTR_ILE, BytecodeDefinition.INSTR_BRF});
+        rewriter.addSequence(new int[]{
+            BytecodeDefinition.INSTR_LOAD, BytecodeDefinition.INSTR_LOAD,
+            BytecodeDefinition.INSTR_IADD, BytecodeDefinition.INSTR_STORE});
+        rewriter.addSequence(new int[]{
+            BytecodeDefinition.INSTR_ICONST, BytecodeDefinition.INSTR_IADD,
+            BytecodeDefinition.INSTR_STORE, BytecodeDefinition.INSTR_BR});
+        rewriter.addSequence(new int[]{BytecodeDefinition.INSTR_ICONST, BytecodeDefinition.INSTR_BRT});
+
+        MemoryAccessExecutor.MemoryAccessStatistics memory = MemoryAccessExecutor.getGlobalStatistics();
+        ControlFlowExecutor.BranchStatistics branches = ControlFlowExecutor.getGlobalStatistics();
+        long[] before = {memory.getTotalAccesses(), branches.getTotalBranches()};
+
+        CymbolStackVM loop = new CymbolStackVM(config());
+        loop.setSuperInstructionRewriter(rewriter);
+        assertThat(loop.execute(toBytes(SUM_LOOP))).isEqualTo(5050);
+        CymbolStackVM brt = new CymbolStackVM(config());
+        brt.setSuperInstructionRewriter(rewriter);
+        assertThat(brt.execute(toBytes(brtProgram))).isEqualTo(2);
+
+        // SUM_LOOP中的分支都在融合序列内，其余LOAD/STORE独立执行时同样不计数
+        assertThat(new long[]{memory.getTotalAccesses(), branches.getTotalBranches()}).containsExactly(before);
+    }
+
+    @Test
+    @DisplayName("跳转到超级指令中间应按原始指令继续执行")
+    void testBranchIntoFusedSequence() throws Exception {
+        int[] program = {
+            op(BytecodeDefinition.INSTR_BR, 2),      // 0
+            op(BytecodeDefinition.INSTR_ICONST, 5),  // 1 融合起点，被跳过
+            op(BytecodeDefinition.INSTR_ICONST, 7),  // 2 跳转目标
+            op(BytecodeDefinition.INSTR_ICONST, 6),  // 3
+            op(BytecodeDefinition.INSTR_IMUL),       // 4
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+
+        SuperInstructionRewriter rewriter = new SuperInstructionRewriter();
+        rewriter.addSequence(new int[]{
+            BytecodeDefinition.INSTR_ICONST, BytecodeDefinition.INSTR_ICONST,
+            BytecodeDefinition.INSTR_ICONST, BytecodeDefinition.INSTR_IMUL});
+
+        CymbolStackVM vm = new CymbolStackVM(config());
+        vm.setSuperInstructionRewriter(rewriter);
+
+        assertThat(vm.execute(toBytes(program))).isEqualTo(42);
+        assertThat(rewriter.isSuperInstruction(vm.getDecodedProgram().getOpcodes()[1])).isTrue();
+    }
+
+    @Test
+    @DisplayName("以调用结尾的超级指令应压入正确的返回地址")
+    void testFusedCall() throws Exception {
+        int[] program = {
+            op(BytecodeDefinition.INSTR_ICONST, 4), // 0
+            op(BytecodeDefinition.INSTR_CALL, 5),   // 1
+            op(BytecodeDefinition.INSTR_ICONST, 1), // 2
+            op(BytecodeDefinition.INSTR_IADD),      // 3
+            op(BytecodeDefinition.INSTR_HALT),      // 4
+            op(BytecodeDefinition.INSTR_ICONST, 9), // 5 func
+            op(BytecodeDefinition.INSTR_RET)        // 6
+        };
+
+        SuperInstructionRewriter rewriter = new SuperInstructionRewriter();
+        rewriter.addSequence(new int[]{BytecodeDefinition.INSTR_ICONST, BytecodeDefinition.INSTR_CALL});
+
+        CymbolStackVM vm = new CymbolStackVM(config());
+        vm.setSuperInstructionRewriter(rewriter);
+
+        assertThat(vm.execute(toBytes(program))).isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("控制流指令只能作为超级指令的最后一条")
+    void testControlFlowMustBeLast() {
+        assertThatThrownBy(() -> new SuperInstructionRewriter().addSequence(new int[]{
+                BytecodeDefinition.INSTR_BR, BytecodeDefinition.INSTR_ICONST}))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("超级指令操作码由各重写器独立分配，互不影响")
+    void testRewritersAreIndependent() throws Exception {
+        SuperInstructionRewriter first = new SuperInstructionRewriter();
+        SuperInstructionRewriter second = new SuperInstructionRewriter();
+        int a = first.addSequence(new int[]{BytecodeDefinition.INSTR_LOAD, BytecodeDefinition.INSTR_ICONST});
+        int b = second.addSequence(new int[]{BytecodeDefinition.INSTR_ICONST, BytecodeDefinition.INSTR_STORE});
+
+        // 两个重写器分配了同一个操作码，但各自对应不同的序列
+        assertThat(a).isEqualTo(InstructionFactory.SUPER_OPCODE_BASE).isEqualTo(b);
+        assertThat(first.getSuperInstruction(a).getName()).isEqualTo("load_iconst");
+        assertThat(second.getSuperInstruction(b).getName()).isEqualTo("iconst_store");
+        assertThat(InstructionFactory.getInstance().getInstruction(a)).isNull();
+
+        CymbolStackVM vm1 = new CymbolStackVM(config());
+        vm1.setSuperInstructionRewriter(first);
+        CymbolStackVM vm2 = new CymbolStackVM(config());
+        vm2.setSuperInstructionRewriter(second);
+        assertThat(vm1.execute(toBytes(SUM_LOOP))).isEqualTo(5050);
+        assertThat(vm2.execute(toBytes(SUM_LOOP))).isEqualTo(5050);
+    }
+
+    @Test
+    @DisplayName("融合序列中的溢出应与逐条执行报告相同的位置和恢复结果")
+    void testOverflowInsideFusedSequence() throws Exception {
+        int[] program = {
+            op(BytecodeDefinition.INSTR_ICONST, 1),        // 0
+            op(BytecodeDefinition.INSTR_ICONST, 0x7FFFFF), // 1
+            op(BytecodeDefinition.INSTR_ICONST, 0x7FFFFF), // 2
+            op(BytecodeDefinition.INSTR_IMUL),             // 3 溢出
+            op(BytecodeDefinition.INSTR_HALT)              // 4 处理器恢复后从这里继续
+        };
+
+        SuperInstructionRewriter rewriter = new SuperInstructionRewriter();
+        rewriter.addSequence(new int[]{
+            BytecodeDefinition.INSTR_ICONST, BytecodeDefinition.INSTR_ICONST,
+            BytecodeDefinition.INSTR_ICONST, BytecodeDefinition.INSTR_IMUL});
+
+        CymbolStackVM plain = new CymbolStackVM(config());
+        CymbolStackVM fused = new CymbolStackVM(config());
+        fused.setSuperInstructionRewriter(rewriter);
+
+        assertThat(fused.execute(toBytes(program))).isEqualTo(plain.execute(toBytes(program)));
+        assertThat(fused.getExceptionMonitor().getRecentExceptions(1).get(0).getPC())
+            .isEqualTo(plain.getExceptionMonitor().getRecentExceptions(1).get(0).getPC())
+            .isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("反汇编应列出超级指令融合的原始指令")
+    void testDisassemblyShowsComponents() {
+        SuperInstructionRewriter rewriter = new SuperInstructionRewriter();
+        rewriter.addSequence(new int[]{BytecodeDefinition.INSTR_LOAD, BytecodeDefinition.INSTR_ICONST});
+
+        DecodedProgram program = DecodedProgram.decode(SUM_LOOP, SUM_LOOP.length);
+        assertThat(rewriter.rewrite(program)).isEqualTo(2);
+
+        String text = DisAssembler.disassemble(program, rewriter);
+        assertThat(text).contains("<super load_iconst>");
+        assertThat(text).contains("  load       1");
+        assertThat(text).contains("  iconst     100");
+        assertThat(text).contains("brf        @17");
+    }
+}
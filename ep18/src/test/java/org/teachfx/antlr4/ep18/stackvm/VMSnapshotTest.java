@@ -0,0 +1,102 @@
+package org.teachfx.antlr4.ep18.stackvm;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.op;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.toBytes;
+
+/**
+ * 虚拟机状态快照测试
+ */
+@DisplayName("虚拟机快照测试")
+public class VMSnapshotTest {
+
+    /** 初始化阶段创建结构体并写入全局变量后停机，主阶段在此基础上计算 */
+    private static byte[] program() {
+        int[] words = {
+            op(BytecodeDefinition.INSTR_STRUCT, 2),    // 0 初始化
+            op(BytecodeDefinition.INSTR_GSTORE, 1),
+            op(BytecodeDefinition.INSTR_GLOAD, 1),
+            op(BytecodeDefinition.INSTR_ICONST, 40),
+            op(BytecodeDefinition.INSTR_FSTORE, 1),
+            op(BytecodeDefinition.INSTR_ICONST, 2),
+            op(BytecodeDefinition.INSTR_GSTORE, 0),
+            op(BytecodeDefinition.INSTR_HALT),          // 7 检查点
+            op(BytecodeDefinition.INSTR_GLOAD, 0),      // 8 主阶段：g0 += 1
+            op(BytecodeDefinition.INSTR_ICONST, 1),
+            op(BytecodeDefinition.INSTR_IADD),
+            op(BytecodeDefinition.INSTR_GSTORE, 0),
+            op(BytecodeDefinition.INSTR_GLOAD, 1),      // g1.f1 + g0
+            op(BytecodeDefinition.INSTR_FLOAD, 1),
+            op(BytecodeDefinition.INSTR_GLOAD, 0),
+            op(BytecodeDefinition.INSTR_IADD),
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+        return toBytes(words);
+    }
+
+    @Test
+    @DisplayName("快照写入文件后内存映射恢复，可在另一种分派模式的VM上反复从检查点继续执行")
+    void testRestoreFromFileAndResumeRepeatedly() throws Exception {
+        CymbolStackVM warm = new CymbolStackVM(VMConfig.builder()
+            .setEnableFastDispatch(true)
+            .setEnableGC(true)
+            .setGcType("mark-sweep")
+            .build());
+        warm.execute(program());
+        Path file = Files.createTempFile("init", VMSnapshot.EXTENSION);
+        VMSnapshot snapshot;
+        try {
+            warm.snapshot().write(file);
+            snapshot = VMSnapshot.read(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        assertThat(snapshot.getProgramCounter()).isEqualTo(8);
+        assertThat(snapshot.getFrameCount()).isEqualTo(1);
+        assertThat(snapshot.getStructCount()).isEqualTo(1);
+
+        CymbolStackVM vm = new CymbolStackVM(VMConfig.builder()
+            .setEnableGC(true)
+            .setGcType("mark-sweep")
+            .build());
+        for (int run = 0; run < 3; run++) {
+            vm.restore(snapshot);
+            assertThat(vm.resume()).isEqualTo(43);
+        }
+        assertThat(vm.getGarbageCollector().isObjectAlive(1)).isTrue();
+
+        // 快速分派VM停机后的快照同样可以在快速分派模式下恢复
+        warm.restore(snapshot);
+        assertThat(warm.resume()).isEqualTo(43);
+    }
+
+    @Test
+    @DisplayName("非快照文件和超出配置容量的快照应被拒绝")
+    void testRejectsInvalidSnapshots() throws Exception {
+        CymbolStackVM vm = new CymbolStackVM(VMConfig.builder().build());
+        vm.execute(program());
+        byte[] bytes = vm.snapshot().toByteArray();
+
+        CymbolStackVM small = new CymbolStackVM(VMConfig.builder().setInstructionCacheSize(8).build());
+        VMSnapshot snapshot = VMSnapshot.read(ByteBuffer.wrap(bytes));
+        assertThatThrownBy(() -> small.restore(snapshot))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Snapshot does not fit VM configuration");
+
+        bytes[0] = 0;
+        assertThatThrownBy(() -> VMSnapshot.read(ByteBuffer.wrap(bytes)))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("Not a Cymbol VM snapshot");
+        assertThatThrownBy(() -> VMSnapshot.read(ByteBuffer.wrap(bytes, 0, 10)))
+            .isInstanceOf(IOException.class);
+    }
+}
@@ -11,7 +11,6 @@ import org.teachfx.antlr4.ep18.stackvm.instructions.constant.*;
 import org.teachfx.antlr4.ep18.stackvm.instructions.controlflow.*;
 import org.teachfx.antlr4.ep18.stackvm.instructions.memory.*;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -41,12 +40,12 @@ public class InstructionExecutorTest {
         int[] heap = new int[1000];
         int[] locals = new int[100];
         StackFrame[] callStack = new StackFrame[10];
-        List<StructValue> structTable = new ArrayList<>();
+        StructHeap structHeap = new StructHeap(1000);
 
         return new VMExecutionContext(
             null, config, stats, 0, stack, sp,
             heap, locals, callStack, -1, false,
-            0, structTable, 1
+            0, structHeap, 1
         );
     }
 
@@ -0,0 +1,172 @@
+package org.teachfx.antlr4.ep18.stackvm.jit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18.stackvm.BytecodeDefinition;
+import org.teachfx.antlr4.ep18.stackvm.CymbolStackVM;
+import org.teachfx.antlr4.ep18.stackvm.VMConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.op;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.toBytes;
+
+import java.time.Duration;
+
+/**
+ * 分层编译测试
+ * 验证热点函数被编译后结果与解释执行一致，且不支持的指令能回退到解释器
+ */
+@DisplayName("分层编译测试")
+public class TieredCompilerTest {
+
+    private static CymbolStackVM newVM(boolean jit) {
+        return new CymbolStackVM(VMConfig.builder()
+            .setEnableFastDispatch(true)
+            .setEnableJit(jit)
+            .setJitThreshold(10)
+            .build());
+    }
+
+    /** sum = 0; for (i = 1; i <= limit; i++) sum += i; */
+    private static int[] sumLoop(int limit) {
+        return new int[]{
+            op(BytecodeDefinition.INSTR_ICONST, 0),  // 0
+            op(BytecodeDefinition.INSTR_STORE, 0),   // 1
+            op(BytecodeDefinition.INSTR_ICONST, 1),  // 2
+            op(BytecodeDefinition.INSTR_STORE, 1),   // 3
+            op(BytecodeDefinition.INSTR_LOAD, 1),    // 4 loop:
+            op(BytecodeDefinition.INSTR_ICONST, limit),
+            op(BytecodeDefinition.INSTR_ILE),
+            op(BytecodeDefinition.INSTR_BRF, 17),
+            op(BytecodeDefinition.INSTR_LOAD, 0),    // 8
+            op(BytecodeDefinition.INSTR_LOAD, 1),
+            op(BytecodeDefinition.INSTR_IADD),
+            op(BytecodeDefinition.INSTR_STORE, 0),
+            op(BytecodeDefinition.INSTR_LOAD, 1),    // 12
+            op(BytecodeDefinition.INSTR_ICONST, 1),
+            op(BytecodeDefinition.INSTR_IADD),
+            op(BytecodeDefinition.INSTR_STORE, 1),
+            op(BytecodeDefinition.INSTR_BR, 4),      // 16
+            op(BytecodeDefinition.INSTR_LOAD, 0),    // 17 end:
+            op(BytecodeDefinition.INSTR_HALT)
+        };
+    }
+
+    @Test
+    @DisplayName("热点循环应被编译且结果与解释执行一致")
+    void testHotLoopCompiled() throws Exception {
+        CymbolStackVM vm = newVM(true);
+
+        assertThat(vm.execute(toBytes(sumLoop(1000)))).isEqualTo(500500);
+        assertThat(vm.getTieredCompiler().isCompiled(0)).isTrue();
+        assertThat(vm.getTieredCompiler().getCompiledRegionCount()).isEqualTo(1);
+        assertThat(newVM(false).execute(toBytes(sumLoop(1000)))).isEqualTo(500500);
+    }
+
+    @Test
+    @DisplayName("低于阈值时不应编译")
+    void testColdLoopNotCompiled() throws Exception {
+        CymbolStackVM vm = newVM(true);
+
+        assertThat(vm.execute(toBytes(sumLoop(5)))).isEqualTo(15);
+        assertThat(vm.getTieredCompiler().getCompiledRegionCount()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("循环体中的CALL应去优化到解释器并在回边重新进入编译代码")
+    void testDeoptimizeAtCall() throws Exception {
+        int[] program = {
+            op(BytecodeDefinition.INSTR_ICONST, 0),  // 0 main: total = 0
+            op(BytecodeDefinition.INSTR_GSTORE, 0),  // 1
+            op(BytecodeDefinition.INSTR_ICONST, 0),  // 2 i = 0
+            op(BytecodeDefinition.INSTR_STORE, 1),   // 3
+            op(BytecodeDefinition.INSTR_LOAD, 1),    // 4 loop:
+            op(BytecodeDefinition.INSTR_ICONST, 50),
+            op(BytecodeDefinition.INSTR_ILT),
+            op(BytecodeDefinition.INSTR_BRF, 15),
+            op(BytecodeDefinition.INSTR_CALL, 17),   // 8 total += 3
+            op(BytecodeDefinition.INSTR_POP),
+            op(BytecodeDefinition.INSTR_LOAD, 1),    // 10
+            op(BytecodeDefinition.INSTR_ICONST, 1),
+            op(BytecodeDefinition.INSTR_IADD),
+            op(BytecodeDefinition.INSTR_STORE, 1),
+            op(BytecodeDefinition.INSTR_BR, 4),      // 14
+            op(BytecodeDefinition.INSTR_GLOAD, 0),   // 15 end:
+            op(BytecodeDefinition.INSTR_HALT),       // 16
+            op(BytecodeDefinition.INSTR_GLOAD, 0),   // 17 func:
+            op(BytecodeDefinition.INSTR_ICONST, 3),
+            op(BytecodeDefinition.INSTR_IADD),
+            op(BytecodeDefinition.INSTR_GSTORE, 0),
+            op(BytecodeDefinition.INSTR_ICONST, 0),
+            op(BytecodeDefinition.INSTR_RET)         // 22 RET不支持编译
+        };
+
+        CymbolStackVM vm = newVM(true);
+
+        assertThat(vm.execute(toBytes(program))).isEqualTo(150);
+        assertThat(vm.getTieredCompiler().isCompiled(0)).isTrue();
+        assertThat(vm.getTieredCompiler().isCompiled(17)).isTrue();
+        assertThat(vm.getFramePointer()).isEqualTo(0);
+        assertThat(newVM(false).execute(toBytes(program))).isEqualTo(150);
+    }
+
+    @Test
+    @DisplayName("编译代码中的溢出应交由解释器按同样方式处理")
+    void testOverflowDeoptimizes() {
+        int[] program = {
+            op(BytecodeDefinition.INSTR_ICONST, 1),  // 0
+            op(BytecodeDefinition.INSTR_STORE, 0),   // 1
+            op(BytecodeDefinition.INSTR_LOAD, 0),    // 2 loop: x = x * 2
+            op(BytecodeDefinition.INSTR_ICONST, 2),
+            op(BytecodeDefinition.INSTR_IMUL),
+            op(BytecodeDefinition.INSTR_STORE, 0),
+            op(BytecodeDefinition.INSTR_BR, 2)       // 6
+        };
+
+        CymbolStackVM interpreted = newVM(false);
+        Throwable expected = catchThrowable(() -> interpreted.execute(toBytes(program)));
+        CymbolStackVM vm = newVM(true);
+
+        assertThat(expected).isNotNull();
+        assertThatThrownBy(() -> vm.execute(toBytes(program)))
+            .isInstanceOf(expected.getClass())
+            .hasMessage(expected.getMessage());
+        assertThat(vm.getTieredCompiler().isCompiled(0)).isTrue();
+        assertThat(vm.getExceptionMonitor().getTotalExceptionCount())
+            .isEqualTo(interpreted.getExceptionMonitor().getTotalExceptionCount());
+    }
+
+    @Test
+    @DisplayName("编译后的死循环应在回边安全点响应stop()")
+    void testStopCompiledLoop() {
+        int[] program = {
+            op(BytecodeDefinition.INSTR_ICONST, 0),  // 0
+            op(BytecodeDefinition.INSTR_STORE, 0),   // 1
+            op(BytecodeDefinition.INSTR_LOAD, 0),    // 2 loop: 没有出口
+            op(BytecodeDefinition.INSTR_STORE, 0),
+            op(BytecodeDefinition.INSTR_BR, 2)       // 4
+        };
+        CymbolStackVM vm = newVM(true);
+
+        Thread stopper = new Thread(() -> {
+            try {
+                while (vm.getTieredCompiler() == null || !vm.getTieredCompiler().isCompiled(0)) {
+                    Thread.sleep(1);
+                }
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            vm.stop();
+        });
+        stopper.setDaemon(true);
+        stopper.start();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> vm.execute(toBytes(program)));
+        assertThat(vm.getTieredCompiler().isCompiled(0)).isTrue();
+        assertThat(vm.isRunning()).isFalse();
+    }
+}
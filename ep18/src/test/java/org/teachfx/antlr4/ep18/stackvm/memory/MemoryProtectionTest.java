@@ -270,4 +270,55 @@ class MemoryProtectionTest {
         assertThat(str).contains("MemoryMapping");
         assertThat(str).contains("0x");
     }
+
+    @Test
+    @DisplayName("Fast mode should enforce bounds and region protection like full mode")
+    void testFastModeBounds() {
+        MemoryProtection fast = new MemoryProtection(1000, 1000, 1000, 1000,
+            MemoryProtection.ProtectionMode.FAST, 16);
+
+        assertThat(fast.checkAccess(0, 4, MemoryProtection.AccessType.READ)).isTrue();
+        assertThat(fast.checkAccess(3996, 4, MemoryProtection.AccessType.WRITE)).isTrue();
+        assertThat(fast.checkAccess(-1, 4, MemoryProtection.AccessType.READ)).isFalse();
+        assertThat(fast.checkAccess(3998, 4, MemoryProtection.AccessType.READ)).isFalse();
+        assertThat(fast.checkAccess(998, 4, MemoryProtection.AccessType.READ)).isFalse();
+
+        fast.setRegionProtected(MemoryProtection.MemoryRegion.HEAP, false);
+        assertThat(fast.checkAccess(998, 4, MemoryProtection.AccessType.READ)).isTrue();
+
+        MemoryProtection.AccessValidationResult result =
+            fast.validateAccess(5000, 4, MemoryProtection.AccessType.READ);
+        assertThat(result.isSuccess()).isFalse();
+        assertThat(result.getMessage()).isEqualTo("Address out of bounds: 5000");
+        assertThat(fast.getOverallStatistics().getBlockedAccessCount()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Fast mode should sample statistics with weight N")
+    void testFastModeSampledStatistics() {
+        MemoryProtection fast = new MemoryProtection(1000, 1000, 1000, 1000,
+            MemoryProtection.ProtectionMode.FAST, 10);
+
+        for (int i = 0; i < 95; i++) {
+            fast.checkAccess(100, 4, MemoryProtection.AccessType.READ);
+        }
+
+        MemoryProtection.AccessStatistics stats = fast.getStatistics(MemoryProtection.MemoryRegion.HEAP);
+        assertThat(stats.getReadCount()).isEqualTo(90);
+        assertThat(stats.getBytesRead()).isEqualTo(360);
+        // 总访问次数同样是采样估计，未采样的访问不写计数器
+        assertThat(fast.getOverallStatistics().getTotalAccessCount()).isEqualTo(90);
+    }
+
+    @Test
+    @DisplayName("Static safety check should accept only in-bounds constant accesses")
+    void testStaticallySafe() {
+        assertThat(memoryProtection.isStaticallySafe(3000, 4)).isTrue();
+        assertThat(memoryProtection.isStaticallySafe(3998, 4)).isFalse();
+        assertThat(memoryProtection.isStaticallySafe(1998, 4)).isFalse();
+        assertThat(memoryProtection.getOverallStatistics().getTotalAccessCount()).isEqualTo(0);
+        assertThatThrownBy(() -> new MemoryProtection(10, 10, 10, 10,
+            MemoryProtection.ProtectionMode.FAST, 0))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
 }
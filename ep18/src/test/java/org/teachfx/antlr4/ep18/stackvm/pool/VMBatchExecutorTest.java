@@ -0,0 +1,162 @@
+package org.teachfx.antlr4.ep18.stackvm.pool;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18.stackvm.BytecodeDefinition;
+import org.teachfx.antlr4.ep18.stackvm.CymbolStackVM;
+import org.teachfx.antlr4.ep18.stackvm.VMConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.op;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.toBytes;
+
+/**
+ * 虚拟机实例池与批量执行器测试
+ */
+@DisplayName("虚拟机池与批量执行器测试")
+public class VMBatchExecutorTest {
+
+    /** g0 = g0 + n; 结果为g0，只有全局数据区被清空时才恒等于n */
+    private static byte[] accumulate(int n) {
+        return toBytes(
+            op(BytecodeDefinition.INSTR_GLOAD, 0),
+            op(BytecodeDefinition.INSTR_ICONST, n),
+            op(BytecodeDefinition.INSTR_IADD),
+            op(BytecodeDefinition.INSTR_GSTORE, 0),
+            op(BytecodeDefinition.INSTR_GLOAD, 0),
+            op(BytecodeDefinition.INSTR_HALT));
+    }
+
+    @Test
+    @DisplayName("归还的实例应被重置后复用，不残留上次执行的状态")
+    void testPoolReusesResetInstances() throws Exception {
+        VMPool pool = new VMPool(VMConfig.builder().build(), 2);
+
+        CymbolStackVM first = pool.acquire();
+        assertThat(first.execute(accumulate(5))).isEqualTo(5);
+        pool.release(first);
+
+        CymbolStackVM second = pool.acquire();
+        assertThat(second).isSameAs(first);
+        assertThat(second.getStackPointer()).isEqualTo(0);
+        assertThat(second.getFramePointer()).isEqualTo(-1);
+        assertThat(second.execute(accumulate(5))).isEqualTo(5);
+        assertThat(pool.getCreatedCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("重置应清空上次执行写过的局部变量、全局变量和按堆地址写入的字段")
+    void testResetClearsUsedMemory() throws Exception {
+        VMPool pool = new VMPool(VMConfig.builder().setHeapSize(256).build(), 1);
+        byte[] writer = toBytes(
+            op(BytecodeDefinition.INSTR_ICONST, 7),
+            op(BytecodeDefinition.INSTR_STORE, 3),
+            op(BytecodeDefinition.INSTR_ICONST, 9),
+            op(BytecodeDefinition.INSTR_GSTORE, 40),
+            op(BytecodeDefinition.INSTR_ICONST, 100),   // 按堆地址写入 heap[102]
+            op(BytecodeDefinition.INSTR_ICONST, 5),
+            op(BytecodeDefinition.INSTR_FSTORE, 2),
+            op(BytecodeDefinition.INSTR_HALT));
+        byte[] reader = toBytes(
+            op(BytecodeDefinition.INSTR_LOAD, 3),
+            op(BytecodeDefinition.INSTR_GLOAD, 40),
+            op(BytecodeDefinition.INSTR_IADD),
+            op(BytecodeDefinition.INSTR_ICONST, 102),
+            op(BytecodeDefinition.INSTR_FLOAD, 0),
+            op(BytecodeDefinition.INSTR_IADD),
+            op(BytecodeDefinition.INSTR_HALT));
+
+        CymbolStackVM vm = pool.acquire();
+        vm.execute(writer);
+        pool.release(vm);
+
+        CymbolStackVM reused = pool.acquire();
+        assertThat(reused).isSameAs(vm);
+        assertThat(reused.execute(reader)).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("内容相同的配置应共用一个实例池，不随每个作业新建的配置对象增长")
+    void testEqualConfigsSharePool() throws Exception {
+        try (VMBatchExecutor executor = new VMBatchExecutor(VMConfig.builder().build(), 2)) {
+            for (int i = 0; i < 50; i++) {
+                VMConfig config = VMConfig.builder().setHeapSize(512).setMaxExecutionTime(1000).build();
+                assertThat(executor.submit(accumulate(i), config).get().getValue()).isEqualTo(i);
+            }
+            VMPool pool = executor.getPool(VMConfig.builder().setHeapSize(512).setMaxExecutionTime(1000).build());
+            assertThat(pool.getCreatedCount()).isEqualTo(1);
+            assertThat(executor.getPool(VMConfig.builder().setHeapSize(1024).build())).isNotSameAs(pool);
+        }
+    }
+
+    @Test
+    @DisplayName("批量作业应在虚拟线程上并发执行，实例数不超过并行度并汇总统计")
+    void testBatchExecutionAggregatesStats() throws Exception {
+        VMConfig config = VMConfig.builder().setEnableFastDispatch(true).build();
+        List<byte[]> programs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            programs.add(accumulate(i));
+        }
+
+        List<VMJobResult> results;
+        try (VMBatchExecutor executor = new VMBatchExecutor(config, 4)) {
+            results = executor.executeAll(programs);
+            assertThat(executor.getPool(config).getCreatedCount()).isLessThanOrEqualTo(4);
+            assertThat(executor.getStats().getExecutionCount()).isEqualTo(200);
+            assertThat(executor.getStats().getErrorCount()).isEqualTo(0);
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.get(i).getValue()).isEqualTo(i);
+        }
+    }
+
+    @Test
+    @DisplayName("超过最大执行时间或堆容量的作业应失败，且不影响后续作业")
+    void testPerJobLimits() throws Exception {
+        VMConfig config = VMConfig.builder()
+            .setEnableFastDispatch(true)
+            .setHeapSize(64)
+            .setMaxExecutionTime(50)
+            .build();
+        byte[] infiniteLoop = toBytes(op(BytecodeDefinition.INSTR_BR, 0));
+        byte[] hugeStruct = toBytes(op(BytecodeDefinition.INSTR_STRUCT, 1000), op(BytecodeDefinition.INSTR_HALT));
+
+        try (VMBatchExecutor executor = new VMBatchExecutor(config, 2)) {
+            VMJobResult timeout = executor.submit(infiniteLoop).get();
+            VMJobResult outOfMemory = executor.submit(hugeStruct).get();
+            VMJobResult ok = executor.submit(accumulate(7)).get();
+
+            assertThat(timeout.isTimedOut()).isTrue();
+            assertThat(outOfMemory.isSuccess()).isFalse();
+            assertThat(outOfMemory.getError()).isInstanceOf(OutOfMemoryError.class);
+            assertThat(ok.getValue()).isEqualTo(7);
+            assertThat(executor.getStats().getErrorCount()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    @DisplayName("看门狗应能停止已编译为JVM字节码的死循环，关闭执行器不被挂起")
+    void testTimeoutStopsCompiledLoop() throws Exception {
+        VMConfig config = VMConfig.builder()
+            .setEnableFastDispatch(true)
+            .setEnableJit(true)
+            .setJitThreshold(10)
+            .setMaxExecutionTime(50)
+            .build();
+        byte[] infiniteLoop = toBytes(
+            op(BytecodeDefinition.INSTR_ICONST, 1),
+            op(BytecodeDefinition.INSTR_POP),
+            op(BytecodeDefinition.INSTR_BR, 0));
+
+        try (VMBatchExecutor executor = new VMBatchExecutor(config, 1)) {
+            VMJobResult timeout = executor.submit(infiniteLoop).get();
+            VMJobResult ok = executor.submit(accumulate(3)).get();
+
+            assertThat(timeout.isTimedOut()).isTrue();
+            assertThat(ok.getValue()).isEqualTo(3);
+        }
+    }
+}
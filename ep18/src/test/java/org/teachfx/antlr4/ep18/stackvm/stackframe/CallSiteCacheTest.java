@@ -0,0 +1,139 @@
+package org.teachfx.antlr4.ep18.stackvm.stackframe;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18.stackvm.BytecodeDefinition;
+import org.teachfx.antlr4.ep18.stackvm.CymbolStackVM;
+import org.teachfx.antlr4.ep18.stackvm.FunctionSymbol;
+import org.teachfx.antlr4.ep18.stackvm.StackFrame;
+import org.teachfx.antlr4.ep18.stackvm.VMConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.op;
+import static org.teachfx.antlr4.ep18.VMTestBytecode.toBytes;
+
+/**
+ * 调用点内联缓存测试
+ * 测试DynamicLinker的调用点缓存、失效机制以及CymbolStackVM中的使用
+ */
+@DisplayName("CallSiteCache Tests")
+class CallSiteCacheTest {
+
+    @Test
+    @DisplayName("Should skip the address lookup on repeated calls from the same site")
+    void testRepeatedCallsHitCache() {
+        DynamicLinker linker = new DynamicLinker();
+        linker.registerFunction(new FunctionSymbol("f", 1, 2, 40));
+
+        FunctionSymbol first = linker.resolveFunctionAt(7, 40);
+        FunctionSymbol second = linker.resolveFunctionAt(7, 40);
+
+        assertThat(first.name).isEqualTo("f");
+        assertThat(second).isSameAs(first);
+        assertThat(linker.getCallSiteCache().getHits()).isEqualTo(1);
+        assertThat(linker.getCallSiteCache().getMisses()).isEqualTo(1);
+        assertThat(linker.getCallSiteCache().getFrameSlotCount(7)).isEqualTo(3);
+        // 按地址解析不创建链接记录
+        assertThat(linker.getCallStack()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should invalidate cached sites when a function is re-registered")
+    void testInvalidationOnReRegister() {
+        DynamicLinker linker = new DynamicLinker();
+        List<String> invalidated = new ArrayList<>();
+        linker.addInvalidationListener(invalidated::add);
+        linker.registerFunction(new FunctionSymbol("f", 1, 0, 40));
+
+        linker.resolveFunctionAt(3, 40);
+        linker.registerFunction(new FunctionSymbol("f", 1, 0, 80));
+        FunctionSymbol target = linker.resolveFunctionAt(3, 80);
+
+        assertThat(invalidated).containsExactly("f");
+        assertThat(target.address).isEqualTo(80);
+        assertThat(linker.getCallSiteCache().getHits()).isZero();
+        assertThat(linker.resolveFunctionAt(9, 40)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should give CymbolStackVM frames the layout of the registered callee")
+    void testStackVMUsesCachedLayout() throws Exception {
+        int[] program = {
+            op(BytecodeDefinition.INSTR_ICONST, 3),   // 0
+            op(BytecodeDefinition.INSTR_CALL, 5),     // 1
+            op(BytecodeDefinition.INSTR_CALL, 5),     // 2 同一函数的另一个调用点
+            op(BytecodeDefinition.INSTR_CALL, 7),     // 3
+            op(BytecodeDefinition.INSTR_HALT),        // 4
+            op(BytecodeDefinition.INSTR_ICONST, 1),   // 5 inc
+            op(BytecodeDefinition.INSTR_RET),         // 6
+            op(BytecodeDefinition.INSTR_HALT)         // 7 stop：在被调用函数内停机
+        };
+
+        DynamicLinker linker = new DynamicLinker();
+        linker.registerFunction(new FunctionSymbol("inc", 0, 2, 5));
+        linker.registerFunction(new FunctionSymbol("stop", 1, 3, 7));
+
+        CymbolStackVM vm = new CymbolStackVM(VMConfig.builder().setEnableFastDispatch(true).build());
+        vm.setDynamicLinker(linker);
+        vm.execute(toBytes(program));
+
+        StackFrame[] frames = vm.getCallStackFrames();
+        assertThat(frames).hasSize(2);
+        assertThat(frames[1].getSymbol().nargs).isEqualTo(1);
+        assertThat(frames[1].getSymbol().nlocals).isEqualTo(3);
+        // 三个调用点各解析一次
+        assertThat(linker.getCallSiteCache().getMisses()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should keep one invalidation listener per VM and detach it when the linker is replaced")
+    void testStackVMDetachesListenerFromReplacedLinker() {
+        DynamicLinker first = new DynamicLinker();
+        DynamicLinker second = new DynamicLinker();
+        CymbolStackVM vm = new CymbolStackVM(VMConfig.builder().setEnableFastDispatch(true).build());
+
+        vm.setDynamicLinker(first);
+        vm.setDynamicLinker(first);
+        assertThat(first.getInvalidationListenerCount()).isEqualTo(1);
+
+        vm.setDynamicLinker(second);
+        assertThat(first.getInvalidationListenerCount()).isZero();
+        assertThat(second.getInvalidationListenerCount()).isEqualTo(1);
+
+        vm.setDynamicLinker(null);
+        assertThat(second.getInvalidationListenerCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should not reuse a cached site when a reused VM loads a program calling another function there")
+    void testReusedStackVMRevalidatesCallSites() throws Exception {
+        int[] callsInc = {
+            op(BytecodeDefinition.INSTR_CALL, 4),     // 0
+            op(BytecodeDefinition.INSTR_HALT),        // 1
+            op(BytecodeDefinition.INSTR_HALT),        // 2 stop
+            op(BytecodeDefinition.INSTR_HALT),        // 3
+            op(BytecodeDefinition.INSTR_HALT)         // 4 inc
+        };
+        int[] callsStop = callsInc.clone();
+        callsStop[0] = op(BytecodeDefinition.INSTR_CALL, 2);
+
+        DynamicLinker linker = new DynamicLinker();
+        linker.registerFunction(new FunctionSymbol("stop", 1, 3, 2));
+        linker.registerFunction(new FunctionSymbol("inc", 0, 2, 4));
+
+        // 常规循环使用链接器按指令字地址维护的调用点缓存
+        CymbolStackVM vm = new CymbolStackVM(VMConfig.builder().build());
+        vm.setDynamicLinker(linker);
+        vm.execute(toBytes(callsInc));
+        assertThat(linker.getCallSiteCache().getTarget(0).name).isEqualTo("inc");
+
+        vm.reset();
+        vm.execute(toBytes(callsStop));
+        assertThat(linker.getCallSiteCache().getTarget(0).name).isEqualTo("stop");
+        assertThat(linker.getCallSiteCache().getHits()).isZero();
+        assertThat(linker.getCallSiteCache().getMisses()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,97 @@
+package org.teachfx.antlr4.ep18.stackvm.stackframe;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18.stackvm.StackFrame;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * FrameArena单元测试
+ * 测试栈帧区的帧布局、元数据和按需构造的栈帧视图
+ */
+@DisplayName("FrameArena Tests")
+class FrameArenaTest {
+
+    @Test
+    @DisplayName("Should lay out consecutive frames back to back")
+    void testConsecutiveFrames() {
+        FrameArena arena = new FrameArena(8, 16);
+        arena.enter(0, 0, 0, 2, -1);
+        arena.enter(1, 100, 2, 3, 7);
+
+        assertThat(arena.getFrameBase(0)).isEqualTo(0);
+        assertThat(arena.getFrameBase(1)).isEqualTo(2);
+        assertThat(arena.frameSlotCount(1)).isEqualTo(5);
+        // 参数在前，局部变量在后
+        assertThat(arena.parameterSlot(1, 1)).isEqualTo(3);
+        assertThat(arena.localSlot(1, 0)).isEqualTo(4);
+        assertThat(arena.getReturnAddress(1)).isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("Should clear slots and saved depth when a frame index is reused")
+    void testReenterClearsFrame() {
+        FrameArena arena = new FrameArena(4, 16);
+        arena.enter(0, 0, 0, 0, -1);
+        arena.enter(1, 10, 0, 2, 3);
+        arena.getSlots()[arena.localSlot(1, 1)] = 42;
+        arena.setSavedStackDepth(1, 5);
+
+        arena.enter(1, 20, 0, 2, 4);
+
+        assertThat(arena.getSlots()[arena.localSlot(1, 1)]).isZero();
+        assertThat(arena.hasSavedStackDepth(1)).isFalse();
+        assertThat(arena.getFunctionAddress(1)).isEqualTo(20);
+    }
+
+    @Test
+    @DisplayName("Should grow slot storage for deep recursion")
+    void testGrowth() {
+        FrameArena arena = new FrameArena(1000, 16);
+        for (int i = 0; i < 1000; i++) {
+            arena.enter(i, 50, 1, 2, i);
+        }
+        arena.getSlots()[arena.localSlot(999, 1)] = 9;
+
+        assertThat(arena.getFrameBase(999)).isEqualTo(999 * 3);
+        assertThat(arena.getSlots()[arena.getFrameBase(999) + 2]).isEqualTo(9);
+        assertThatThrownBy(() -> arena.enter(1000, 50, 0, 0, 0))
+            .isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    @DisplayName("Should build a StackFrame view on demand")
+    void testToStackFrame() {
+        FrameArena arena = new FrameArena(4, 16);
+        arena.enter(0, 0, 0, 0, -1);
+        arena.enter(1, 30, 1, 1, 12);
+        arena.getSlots()[arena.parameterSlot(1, 0)] = 6;
+        arena.getSlots()[arena.localSlot(1, 0)] = 8;
+        arena.setSavedStackDepth(1, 2);
+
+        StackFrame frame = arena.toStackFrame(1);
+
+        assertThat(frame.getReturnAddress()).isEqualTo(12);
+        assertThat(frame.getParameters()[0]).isEqualTo(6);
+        assertThat(frame.getLocals()[0]).isEqualTo(8);
+        assertThat(frame.getDebugData("savedStackDepth")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should keep only metadata when slots are not reserved")
+    void testMetadataOnlyFrames() {
+        FrameArena arena = new FrameArena(4, 0, false);
+        arena.enter(0, 0, 0, 0, -1);
+        arena.enter(1, 30, 2, 3, 12);
+        arena.enter(2, 40, 1, 1, 33);
+
+        assertThat(arena.isReservingSlots()).isFalse();
+        assertThat(arena.getSlots()).isEmpty();
+        assertThat(arena.frameSlotCount(1)).isZero();
+        assertThat(arena.getArgCount(1)).isEqualTo(2);
+        assertThat(arena.getLocalCount(1)).isEqualTo(3);
+        assertThat(arena.getReturnAddress(2)).isEqualTo(33);
+        assertThat(arena.toStackFrame(1).getLocals()).hasSize(3).containsOnlyNulls();
+    }
+}
@@ -0,0 +1,28 @@
+package org.teachfx.antlr4.ep18r.gc;
+
+import java.util.function.IntConsumer;
+
+/**
+ * 被回收器管理的虚拟机堆
+ * 由虚拟机实现：提供堆内存（int数组，按字寻址）、可分配区域上限和根集合。
+ */
+public interface GCRoots {
+    /**
+     * 获取堆内存
+     * @return 堆数组
+     */
+    int[] getHeapWords();
+
+    /**
+     * 获取可分配区域的上限（不含）
+     * @return 字地址
+     */
+    int getHeapLimit();
+
+    /**
+     * 遍历根集合中的每个值（寄存器、栈帧、全局变量等）
+     * 值是否为对象地址由回收器判断。
+     * @param visitor 访问器
+     */
+    void scanRoots(IntConsumer visitor);
+}
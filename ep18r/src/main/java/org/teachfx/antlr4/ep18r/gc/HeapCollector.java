@@ -0,0 +1,14 @@
+package org.teachfx.antlr4.ep18r.gc;
+
+/**
+ * 直接管理虚拟机堆的垃圾回收器
+ * 与 {@link GarbageCollector} 的区别在于 {@link #allocate(int)} 返回的对象ID就是对象在堆中的字地址，
+ * 虚拟机可以把它直接放进寄存器使用。
+ */
+public interface HeapCollector extends GarbageCollector {
+    /**
+     * 重置回收器：忘记所有已分配对象
+     * @param reservedWords 堆中 [0, reservedWords) 视为已永久占用，不会被分配或回收
+     */
+    void reset(int reservedWords);
+}
@@ -0,0 +1,241 @@
+package org.teachfx.antlr4.ep18r.gc;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 保守式标记-清除垃圾回收器
+ * 直接在虚拟机堆（{@link GCRoots#getHeapWords()}）上分配对象，对象ID即对象首字地址。
+ *
+ * 寄存器VM的值没有类型标记，因此回收是保守的：根集合或存活对象中任何落在某个对象
+ * [首地址, 首地址+大小) 范围内的值都视为指向该对象的引用。这样不会误回收，
+ * 但恰好等于某个地址的整数会让对应对象多存活一轮。
+ *
+ * 分配策略：
+ * - 先在空闲链表中首次适应（First-Fit），找不到再从分配顶端向上分配
+ * - 两者都失败时执行一次回收后重试，仍失败则抛出 {@link OutOfMemoryError}
+ * - 清除阶段合并相邻空闲块，位于分配顶端的空闲块直接归还给顶端
+ * 地址0保留为null，永远不会分配出去。{@link #reset(int)} 保留的区域不参与回收，但其中的值同样作为根扫描。
+ */
+public class MarkSweepGC implements HeapCollector {
+    private final GCRoots roots;
+    private final GCStats stats;
+
+    // 已分配对象：首地址 -> 字数（按地址排序，便于由内部地址找到对象）
+    private final TreeMap<Integer, Integer> objects;
+    // 空闲链表：首地址 -> 字数
+    private final TreeMap<Integer, Integer> freeList;
+    // 分配顶端，[top, 堆上限) 尚未使用
+    private int top;
+    private int reservedWords;
+    private int usedWords;
+
+    // 标记阶段的工作状态
+    private final BitSet marked;
+    private final ArrayDeque<Integer> pending;
+
+    public MarkSweepGC(GCRoots roots) {
+        if (roots == null) {
+            throw new IllegalArgumentException("GC roots cannot be null");
+        }
+        this.roots = roots;
+        this.stats = new GCStats();
+        this.objects = new TreeMap<>();
+        this.freeList = new TreeMap<>();
+        this.marked = new BitSet();
+        this.pending = new ArrayDeque<>();
+        this.top = 1;
+    }
+
+    @Override
+    public void reset(int reservedWords) {
+        objects.clear();
+        freeList.clear();
+        usedWords = 0;
+        this.reservedWords = Math.max(0, reservedWords);
+        top = Math.max(1, reservedWords);
+    }
+
+    @Override
+    public int allocate(int size) throws OutOfMemoryError {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size must be positive");
+        }
+
+        int address = tryAllocate(size);
+        if (address < 0) {
+            collect();
+            address = tryAllocate(size);
+        }
+        if (address < 0) {
+            throw new OutOfMemoryError("Out of memory after garbage collection: cannot allocate " + size + " words");
+        }
+
+        int[] heap = roots.getHeapWords();
+        for (int i = 0; i < size; i++) {
+            heap[address + i] = 0;
+        }
+        objects.put(address, size);
+        usedWords += size;
+        stats.recordAllocation(size);
+        return address;
+    }
+
+    /**
+     * 首次适应查找空闲块，失败时从分配顶端分配
+     * @return 对象地址，空间不足返回-1
+     */
+    private int tryAllocate(int size) {
+        for (Map.Entry<Integer, Integer> entry : freeList.entrySet()) {
+            int blockSize = entry.getValue();
+            if (blockSize >= size) {
+                int address = entry.getKey();
+                freeList.remove(address);
+                if (blockSize > size) {
+                    freeList.put(address + size, blockSize - size);
+                }
+                return address;
+            }
+        }
+        if ((long) top + size <= roots.getHeapLimit()) {
+            int address = top;
+            top += size;
+            return address;
+        }
+        return -1;
+    }
+
+    /**
+     * 标记-清除回收不使用引用计数，存活性只由根集合决定
+     */
+    @Override
+    public void incrementRef(int objectId) {
+    }
+
+    @Override
+    public void decrementRef(int objectId) {
+    }
+
+    @Override
+    public void collect() {
+        long startTime = System.nanoTime();
+
+        // 标记：从根集合出发，逐字扫描可达对象的内容
+        marked.clear();
+        roots.scanRoots(this::markValue);
+        int[] heap = roots.getHeapWords();
+        for (int i = 0; i < reservedWords; i++) {
+            markValue(heap[i]);
+        }
+        while (!pending.isEmpty()) {
+            int address = pending.pop();
+            int end = address + objects.get(address);
+            for (int i = address; i < end; i++) {
+                markValue(heap[i]);
+            }
+        }
+
+        // 清除：未标记的对象归还空闲链表
+        int collectedObjects = 0;
+        long collectedMemory = 0;
+        Iterator<Map.Entry<Integer, Integer>> it = objects.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Integer> entry = it.next();
+            if (!marked.get(entry.getKey())) {
+                it.remove();
+                free(entry.getKey(), entry.getValue());
+                collectedObjects++;
+                collectedMemory += entry.getValue();
+            }
+        }
+        usedWords -= (int) collectedMemory;
+
+        long collectionTime = System.nanoTime() - startTime;
+        stats.recordCollection(collectedObjects, collectedMemory, collectionTime);
+    }
+
+    /**
+     * 若value指向某个未标记的对象，标记它并加入待扫描队列
+     */
+    private void markValue(int value) {
+        if (value <= 0 || value >= top) {
+            return;
+        }
+        Map.Entry<Integer, Integer> entry = objects.floorEntry(value);
+        if (entry == null || value >= entry.getKey() + entry.getValue()) {
+            return;
+        }
+        int address = entry.getKey();
+        if (!marked.get(address)) {
+            marked.set(address);
+            pending.push(address);
+        }
+    }
+
+    /**
+     * 释放一块内存并与相邻空闲块合并，紧邻分配顶端时直接降低顶端
+     */
+    private void free(int address, int size) {
+        Map.Entry<Integer, Integer> next = freeList.ceilingEntry(address);
+        if (next != null && next.getKey() == address + size) {
+            freeList.remove(next.getKey());
+            size += next.getValue();
+        }
+        Map.Entry<Integer, Integer> previous = freeList.floorEntry(address);
+        if (previous != null && previous.getKey() + previous.getValue() == address) {
+            freeList.remove(previous.getKey());
+            address = previous.getKey();
+            size += previous.getValue();
+        }
+        if (address + size == top) {
+            top = address;
+        } else {
+            freeList.put(address, size);
+        }
+    }
+
+    @Override
+    public boolean isObjectAlive(int objectId) {
+        return objects.containsKey(objectId);
+    }
+
+    @Override
+    public GCStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void resetStats() {
+        stats.reset();
+    }
+
+    /**
+     * 获取当前存活对象占用的字数
+     */
+    public int getHeapUsage() {
+        return usedWords;
+    }
+
+    /**
+     * 获取分配顶端，[顶端, 堆上限) 尚未被任何对象占用
+     */
+    public int getAllocationTop() {
+        return top;
+    }
+
+    /**
+     * 获取对象数量
+     */
+    public int getObjectCount() {
+        return objects.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MarkSweepGC{used=%d, top=%d, objects=%d, collections=%d, freeBlocks=%d}",
+            usedWords, top, objects.size(), stats.getTotalCollections(), freeList.size());
+    }
+}
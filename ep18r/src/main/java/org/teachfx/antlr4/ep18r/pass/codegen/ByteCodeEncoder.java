@@ -85,6 +85,12 @@ public class ByteCodeEncoder {
         OPCODE_TO_NAME.put((int) RegisterBytecodeDefinition.INSTR_NULL, "null");
         OPCODE_TO_NAME.put((int) RegisterBytecodeDefinition.INSTR_MOV, "mov");
         OPCODE_TO_NAME.put((int) RegisterBytecodeDefinition.INSTR_HALT, "halt");
+        OPCODE_TO_NAME.put((int) RegisterBytecodeDefinition.INSTR_CALLM, "callm");
+        OPCODE_TO_NAME.put((int) RegisterBytecodeDefinition.INSTR_BEQ, "beq");
+        OPCODE_TO_NAME.put((int) RegisterBytecodeDefinition.INSTR_BNE, "bne");
+        OPCODE_TO_NAME.put((int) RegisterBytecodeDefinition.INSTR_BLT, "blt");
+        OPCODE_TO_NAME.put((int) RegisterBytecodeDefinition.INSTR_BGE, "bge");
+        OPCODE_TO_NAME.put((int) RegisterBytecodeDefinition.INSTR_ADDI, "addi");
     }
 
     /**
@@ -316,17 +322,44 @@ public class ByteCodeEncoder {
             return String.format(".unknown 0x%08X", instruction);
         }
 
+        int format = instrDef.getFormat();
+        if (format == FORMAT_J) {
+            return toAssemblyString(opcode, 0, 0, 0, extractImm26(instruction));
+        }
+        // callm的保存掩码占bits 22-16，按rs1字段传入
+        int rs1 = getInstructionName(opcode).equals("callm")
+            ? (instruction >> RS1_SHIFT) & 0x7F
+            : extractRs1(instruction);
+        return toAssemblyString(opcode, extractRd(instruction), rs1, extractRs2(instruction), extractImm16(instruction));
+    }
+
+    /**
+     * 按已拆开的字段生成汇编格式（宽编码的指令没有单个32位指令字）。
+     *
+     * @param opcode 操作码
+     * @param rd 目标寄存器
+     * @param rs1 源寄存器1（callm为保存掩码，jt/jf为条件寄存器）
+     * @param rs2 源寄存器2
+     * @param imm 符号扩展后的立即数
+     * @return 汇编格式字符串
+     */
+    public String toAssemblyString(int opcode, int rd, int rs1, int rs2, int imm) {
+        RegisterBytecodeDefinition.Instruction instrDef = RegisterBytecodeDefinition.getInstruction(opcode);
+
+        if (instrDef == null) {
+            return String.format(".unknown opcode %d", opcode);
+        }
+
         int format = instrDef.getFormat();
         String name = getInstructionName(opcode);
 
         return switch (format) {
-            case FORMAT_R -> String.format("%s r%d, r%d, r%d",
-                name, extractRd(instruction), extractRs1(instruction), extractRs2(instruction));
+            case FORMAT_R -> String.format("%s r%d, r%d, r%d", name, rd, rs1, rs2);
             case FORMAT_I -> {
-                int rd = extractRd(instruction);
-                int rs1 = extractRs1(instruction);
-                int imm = extractImm16(instruction);
-
+                // 特殊处理callm指令（格式为callm mask, imm）
+                if (name.equals("callm")) {
+                    yield String.format("%s %d, %d", name, rs1, imm);
+                }
                 // 特殊处理jt/jf指令（格式为jt rs1, imm）
                 if (name.equals("jt") || name.equals("jf")) {
                     yield String.format("%s r%d, %d", name, rs1, imm);
@@ -338,8 +371,8 @@ public class ByteCodeEncoder {
                 // 标准I类型指令
                 yield String.format("%s r%d, r%d, %d", name, rd, rs1, imm);
             }
-            case FORMAT_J -> String.format("%s %d", name, extractImm26(instruction));
-            default -> String.format(".unknown_format 0x%08X", instruction);
+            case FORMAT_J -> String.format("%s %d", name, imm);
+            default -> String.format(".unknown_format opcode %d", opcode);
         };
     }
 
@@ -363,6 +363,75 @@ public class RegisterAssembler {
         return pos;
     }
 
+    /**
+     * 生成相等跳转指令: beq rs1, rs2, target
+     * 如果rs1等于rs2，跳转到target
+     *
+     * @param rs1    第一个比较寄存器（编码在rd字段）
+     * @param rs2    第二个比较寄存器（编码在rs1字段）
+     * @param target 目标标签名称
+     * @return 生成的指令在字节码中的位置索引
+     */
+    public int emitBeq(int rs1, int rs2, String target) {
+        return emitBranch(RegisterBytecodeDefinition.INSTR_BEQ, rs1, rs2, target);
+    }
+
+    /**
+     * 生成不等跳转指令: bne rs1, rs2, target
+     *
+     * @param rs1    第一个比较寄存器
+     * @param rs2    第二个比较寄存器
+     * @param target 目标标签名称
+     * @return 生成的指令在字节码中的位置索引
+     */
+    public int emitBne(int rs1, int rs2, String target) {
+        return emitBranch(RegisterBytecodeDefinition.INSTR_BNE, rs1, rs2, target);
+    }
+
+    /**
+     * 生成小于跳转指令: blt rs1, rs2, target
+     * 大于跳转交换两个操作数即可
+     *
+     * @param rs1    第一个比较寄存器
+     * @param rs2    第二个比较寄存器
+     * @param target 目标标签名称
+     * @return 生成的指令在字节码中的位置索引
+     */
+    public int emitBlt(int rs1, int rs2, String target) {
+        return emitBranch(RegisterBytecodeDefinition.INSTR_BLT, rs1, rs2, target);
+    }
+
+    /**
+     * 生成大于等于跳转指令: bge rs1, rs2, target
+     * 小于等于跳转交换两个操作数即可
+     *
+     * @param rs1    第一个比较寄存器
+     * @param rs2    第二个比较寄存器
+     * @param target 目标标签名称
+     * @return 生成的指令在字节码中的位置索引
+     */
+    public int emitBge(int rs1, int rs2, String target) {
+        return emitBranch(RegisterBytecodeDefinition.INSTR_BGE, rs1, rs2, target);
+    }
+
+    private int emitBranch(int opcode, int rs1, int rs2, String target) {
+        int pos = emitIType(opcode, rs1, rs2, 0);
+        pendingFixups.add(new LabelFixup(target, pos, FORMAT_I));
+        return pos;
+    }
+
+    /**
+     * 生成立即数加法指令: addi rd, rs, imm
+     *
+     * @param rd  目标寄存器
+     * @param rs  源寄存器
+     * @param imm 16位有符号立即数
+     * @return 生成的指令在字节码中的位置索引
+     */
+    public int emitAddi(int rd, int rs, int imm) {
+        return emitIType(RegisterBytecodeDefinition.INSTR_ADDI, rd, rs, imm);
+    }
+
     /**
      * 生成mov指令: mov rd, rs
      * 使用add rd, rs, r0实现
@@ -0,0 +1,90 @@
+package org.teachfx.antlr4.ep18r.stackvm;
+
+/**
+ * 指令编码版本
+ * 记录在目标文件头部（原保留字节），汇编文本用伪指令 {@code encoding wide} 声明。
+ *
+ * <pre>
+ * NARROW  32位指令字，16个寄存器
+ *         opcode(6) rd(5) rs1(5) rs2(5)/imm16 ；J类型 imm26
+ * WIDE    64位指令（两个大端序字），64个寄存器
+ *         字0: opcode(8) rd(8) rs1(8) rs2(8)   字1: imm32
+ * </pre>
+ *
+ * 宽编码下r0-r15的ABI含义不变；r16-r63是调用者保存的临时寄存器，CALL/RET不保存也不恢复。
+ * callm的保存掩码放在rs1字节中，跳转和调用目标直接取32位立即数。
+ */
+public enum InstructionEncoding {
+    NARROW(0, "narrow", 4, 16),
+    WIDE(1, "wide", 8, 64);
+
+    private final int id;
+    private final String name;
+    private final int instructionSize;
+    private final int registerCount;
+
+    InstructionEncoding(int id, String name, int instructionSize, int registerCount) {
+        this.id = id;
+        this.name = name;
+        this.instructionSize = instructionSize;
+        this.registerCount = registerCount;
+    }
+
+    /**
+     * 目标文件头部中的编码版本号
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * 汇编伪指令 {@code encoding} 使用的名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 每条指令的字节数，也是程序计数器的步长
+     */
+    public int getInstructionSize() {
+        return instructionSize;
+    }
+
+    /**
+     * 可寻址的寄存器个数
+     */
+    public int getRegisterCount() {
+        return registerCount;
+    }
+
+    public boolean isWide() {
+        return this == WIDE;
+    }
+
+    /**
+     * 按版本号查找编码
+     * @throws IllegalArgumentException 未知版本号
+     */
+    public static InstructionEncoding fromId(int id) {
+        for (InstructionEncoding encoding : values()) {
+            if (encoding.id == id) {
+                return encoding;
+            }
+        }
+        throw new IllegalArgumentException("Unknown instruction encoding: " + id);
+    }
+
+    /**
+     * 按名称查找编码（不区分大小写）
+     * @throws IllegalArgumentException 未知名称
+     */
+    public static InstructionEncoding fromName(String name) {
+        for (InstructionEncoding encoding : values()) {
+            if (encoding.name.equalsIgnoreCase(name)) {
+                return encoding;
+            }
+        }
+        throw new IllegalArgumentException("Unknown instruction encoding: " + name);
+    }
+}
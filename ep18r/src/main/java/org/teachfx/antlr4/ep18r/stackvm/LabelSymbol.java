@@ -11,9 +11,11 @@ public class LabelSymbol {
 
     boolean isDefined = true;
 
-    // 前向引用列表：每个元素包含 [指令地址, 是否J类型(1=J类型26位, 0=I类型16位)]
+    // 前向引用列表：每个元素包含 [指令地址, 引用类型(1=J类型26位, 0=I类型16位, 2=宽编码32位)]
     Vector<int[]> forwardRefs = new Vector<int[]>();
 
+    private static final int WIDE_REF = 2;
+
     public LabelSymbol(String name) {
         this.name = name;
     }
@@ -41,13 +43,29 @@ public class LabelSymbol {
         forwardRefs.addElement(new int[]{address, isJType ? 1 : 0});
     }
 
+    /**
+     * 添加宽编码指令的前向引用：目标地址写入指令第二个字（imm32）
+     */
+    public void addWideForwardRef(int address) {
+        forwardRefs.addElement(new int[]{address, WIDE_REF});
+    }
+
     public void resolveForwardReferences(byte[] code) {
         isForwardRef = false;
         for (int[] ref : forwardRefs) {
             int addrToPath = ref[0];
             boolean isJType = ref[1] == 1;
 
-            if (addrToPath + 3 < code.length) {
+            if (ref[1] == WIDE_REF) {
+                if (addrToPath + 7 < code.length) {
+                    code[addrToPath + 4] = (byte) ((address >> 24) & 0xFF);
+                    code[addrToPath + 5] = (byte) ((address >> 16) & 0xFF);
+                    code[addrToPath + 6] = (byte) ((address >> 8) & 0xFF);
+                    code[addrToPath + 7] = (byte) (address & 0xFF);
+                } else {
+                    System.err.println("Error: patch address out of bounds: " + addrToPath);
+                }
+            } else if (addrToPath + 3 < code.length) {
                 if (isJType) {
                     // J类型：修补低26位（bits 25-0）
                     // 保留操作码（bits 31-26），修改bits 25-0
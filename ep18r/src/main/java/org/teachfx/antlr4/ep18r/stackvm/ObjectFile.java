@@ -0,0 +1,143 @@
+package org.teachfx.antlr4.ep18r.stackvm;
+
+import org.teachfx.antlr4.common.objectfile.AbstractObjectFile;
+import org.teachfx.antlr4.common.objectfile.ObjectFileSymbols;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 寄存器VM的二进制目标文件
+ * 容器格式见 {@link AbstractObjectFile}，这里只提供目标标记、扩展名和 {@link FunctionSymbol} 的映射。
+ * 头部的编码字节记录代码段的指令编码版本（{@link InstructionEncoding}），旧文件中该字节为0，即32位编码。
+ */
+public final class ObjectFile extends AbstractObjectFile<FunctionSymbol> {
+    /** 寄存器VM目标文件的扩展名 */
+    public static final String EXTENSION = ".vmro";
+
+    private static final ObjectFileSymbols<FunctionSymbol> SYMBOLS = new ObjectFileSymbols<>() {
+        @Override
+        public Class<FunctionSymbol> symbolType() {
+            return FunctionSymbol.class;
+        }
+
+        @Override
+        public String name(FunctionSymbol symbol) {
+            return symbol.name;
+        }
+
+        @Override
+        public int nargs(FunctionSymbol symbol) {
+            return symbol.nargs;
+        }
+
+        @Override
+        public int nlocals(FunctionSymbol symbol) {
+            return symbol.nlocals;
+        }
+
+        @Override
+        public int address(FunctionSymbol symbol) {
+            return symbol.address;
+        }
+
+        @Override
+        public FunctionSymbol create(String name, int nargs, int nlocals, int address) {
+            return new FunctionSymbol(name, nargs, nlocals, address);
+        }
+    };
+
+    private final InstructionEncoding encoding;
+
+    /**
+     * 构造函数
+     * @param code 机器码
+     * @param codeSize 有效代码字节数
+     * @param constPool 常量池（函数以 {@link FunctionSymbol} 形式出现）
+     * @param mainFunction 主函数，可为null
+     * @param dataSize 全局数据区大小
+     * @param structs 结构体名到字段数的映射（按定义顺序）
+     * @param encoding 代码段的指令编码
+     */
+    public ObjectFile(byte[] code, int codeSize, Object[] constPool, FunctionSymbol mainFunction,
+                      int dataSize, Map<String, Integer> structs, InstructionEncoding encoding) {
+        super(code, codeSize, constPool, mainFunction, dataSize, structs, encodingId(encoding));
+        this.encoding = encoding;
+    }
+
+    public ObjectFile(byte[] code, int codeSize, Object[] constPool, FunctionSymbol mainFunction,
+                      int dataSize, Map<String, Integer> structs) {
+        this(code, codeSize, constPool, mainFunction, dataSize, structs, InstructionEncoding.NARROW);
+    }
+
+    public ObjectFile(byte[] code, int codeSize, Object[] constPool, FunctionSymbol mainFunction,
+                      int dataSize, InstructionEncoding encoding) {
+        this(code, codeSize, constPool, mainFunction, dataSize, Collections.emptyMap(), encoding);
+    }
+
+    public ObjectFile(byte[] code, int codeSize, Object[] constPool, FunctionSymbol mainFunction, int dataSize) {
+        this(code, codeSize, constPool, mainFunction, dataSize, Collections.emptyMap());
+    }
+
+    private static int encodingId(InstructionEncoding encoding) {
+        if (encoding == null) {
+            throw new IllegalArgumentException("Instruction encoding cannot be null");
+        }
+        return encoding.getId();
+    }
+
+    @Override
+    protected int target() {
+        return TARGET_REGISTER_VM;
+    }
+
+    @Override
+    protected ObjectFileSymbols<FunctionSymbol> symbols() {
+        return SYMBOLS;
+    }
+
+    /**
+     * 内存映射读取目标文件
+     * @param path 文件路径
+     * @return 目标文件
+     * @throws IOException 文件不是有效的寄存器VM目标文件
+     */
+    public static ObjectFile read(Path path) throws IOException {
+        return of(readSections(path, TARGET_REGISTER_VM, SYMBOLS));
+    }
+
+    /**
+     * 从缓冲区读取目标文件
+     * @param buffer 缓冲区（从当前位置开始读取）
+     * @return 目标文件
+     * @throws IOException 格式错误
+     */
+    public static ObjectFile read(ByteBuffer buffer) throws IOException {
+        return of(readSections(buffer, TARGET_REGISTER_VM, SYMBOLS));
+    }
+
+    private static ObjectFile of(Sections<FunctionSymbol> sections) throws IOException {
+        InstructionEncoding encoding;
+        try {
+            encoding = InstructionEncoding.fromId(sections.encoding);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+        return new ObjectFile(sections.code, sections.codeSize, sections.constPool, sections.mainFunction,
+                              sections.dataSize, sections.structs, encoding);
+    }
+
+    /**
+     * 判断文件名是否为目标文件
+     */
+    public static boolean isObjectFileName(String fileName) {
+        return fileName != null && fileName.endsWith(EXTENSION);
+    }
+
+    public InstructionEncoding getEncoding() {
+        return encoding;
+    }
+}
@@ -21,6 +21,8 @@ public class RegisterByteCodeAssembler extends VMAssemblerBaseListener {
     private final Logger logger = Logger.getLogger(RegisterByteCodeAssembler.class);
     
     public static final int INITIAL_CODE_SIZE = 2048;
+    /** 选择指令编码的伪指令，如 {@code encoding wide} */
+    public static final String ENCODING_DIRECTIVE = "encoding";
     private static final int INT = VMAssemblerParser.INT;
     private static final int CHAR = VMAssemblerParser.CHAR;
     private static final int FLOAT = VMAssemblerParser.FLOAT;
@@ -47,8 +49,26 @@ public class RegisterByteCodeAssembler extends VMAssemblerBaseListener {
     private int currentOperandIndex = 0;
     private RegisterBytecodeDefinition.Instruction currentInstructionDef = null;
 
+    // 指令编码；宽编码的字段分别累积，指令完成时写成两个字
+    private InstructionEncoding encoding;
+    private int currentRd = 0;
+    private int currentRs1 = 0;
+    private int currentRs2 = 0;
+    private int currentImm = 0;
+
 
     public RegisterByteCodeAssembler(RegisterBytecodeDefinition.Instruction[] instructions) {
+        this(instructions, InstructionEncoding.NARROW);
+    }
+
+    /**
+     * 使用指定的指令编码创建汇编器，汇编文本开头的 {@code encoding} 伪指令可以覆盖它
+     */
+    public RegisterByteCodeAssembler(RegisterBytecodeDefinition.Instruction[] instructions, InstructionEncoding encoding) {
+        if (encoding == null) {
+            throw new IllegalArgumentException("Instruction encoding cannot be null");
+        }
+        this.encoding = encoding;
         for (int i = 1; i < instructions.length; ++i) {
             if (instructions[i] != null) {
                 String name = instructions[i].name.toLowerCase();
@@ -92,6 +112,17 @@ public class RegisterByteCodeAssembler extends VMAssemblerBaseListener {
         return mainFunction;
     }
 
+    public InstructionEncoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * 将汇编结果打包为二进制目标文件
+     */
+    public ObjectFile toObjectFile() {
+        return new ObjectFile(getMachineCode(), ip, getConstantPool(), mainFunction, dataSize, encoding);
+    }
+
     /**
      * 开始新指令编码
      */
@@ -112,6 +143,10 @@ public class RegisterByteCodeAssembler extends VMAssemblerBaseListener {
         currentInstructionDef = RegisterBytecodeDefinition.instructions[currentOpcode];
         currentInstructionWord = 0;
         currentOperandIndex = 0;
+        currentRd = 0;
+        currentRs1 = 0;
+        currentRs2 = 0;
+        currentImm = 0;
 
         // 将操作码放入bits 31-26 (6位)
         currentInstructionWord |= (currentOpcode << 26) & 0xFC000000;
@@ -125,13 +160,21 @@ public class RegisterByteCodeAssembler extends VMAssemblerBaseListener {
             return;
         }
 
-        ensureCapacity(ip + 4);
-        // 写入32位指令字（大端序）
-        code[ip] = (byte) ((currentInstructionWord >> 24) & 0xFF);
-        code[ip + 1] = (byte) ((currentInstructionWord >> 16) & 0xFF);
-        code[ip + 2] = (byte) ((currentInstructionWord >> 8) & 0xFF);
-        code[ip + 3] = (byte) (currentInstructionWord & 0xFF);
-        ip += 4;
+        if (encoding.isWide()) {
+            // 宽编码：字0为 opcode(8) rd(8) rs1(8) rs2(8)，字1为32位立即数
+            ensureCapacity(ip + 8);
+            writeInt(code, ip, (currentOpcode << 24) | (currentRd << 16) | (currentRs1 << 8) | currentRs2);
+            writeInt(code, ip + 4, currentImm);
+            ip += 8;
+        } else {
+            ensureCapacity(ip + 4);
+            // 写入32位指令字（大端序）
+            code[ip] = (byte) ((currentInstructionWord >> 24) & 0xFF);
+            code[ip + 1] = (byte) ((currentInstructionWord >> 16) & 0xFF);
+            code[ip + 2] = (byte) ((currentInstructionWord >> 8) & 0xFF);
+            code[ip + 3] = (byte) (currentInstructionWord & 0xFF);
+            ip += 4;
+        }
 
         // 重置状态
         currentInstruction = null;
@@ -163,9 +206,13 @@ public class RegisterByteCodeAssembler extends VMAssemblerBaseListener {
         // 因为 jt/jf 没有目标寄存器 rd，只有条件寄存器和跳转目标
         boolean isConditionalJump = currentInstruction != null &&
             (currentInstruction.equals("jt") || currentInstruction.equals("jf"));
+        // callm 指令格式为 (INT, INT)：保存掩码放入 bits 22-16，调用目标放入立即数
+        boolean isMaskedCall = currentInstruction != null && currentInstruction.equals("callm");
 
         // 根据指令格式和操作数位置设置字段
-        if (format == RegisterBytecodeDefinition.FORMAT_R) {
+        if (encoding.isWide()) {
+            addWideOperand(value, format, operandType, isConditionalJump, isMaskedCall);
+        } else if (format == RegisterBytecodeDefinition.FORMAT_R) {
             // R类型: op rd, rs1, rs2
             // 字段位置: rd在bits 25-21, rs1在20-16, rs2在15-11
             if (currentOperandIndex == 0) {
@@ -181,7 +228,15 @@ public class RegisterByteCodeAssembler extends VMAssemblerBaseListener {
         } else if (format == RegisterBytecodeDefinition.FORMAT_I) {
             // I类型: op rd, rs1, imm
             // 字段位置: rd在25-21, rs1在20-16, imm在15-0
-            if (isConditionalJump) {
+            if (isMaskedCall) {
+                if (currentOperandIndex == 0) {
+                    // 保存掩码: bits 22-16
+                    currentInstructionWord |= (value & 0x7F) << 16;
+                } else if (currentOperandIndex == 1) {
+                    // 立即数: bits 15-0 (调用目标)
+                    currentInstructionWord |= (value & 0xFFFF) << 0;
+                }
+            } else if (isConditionalJump) {
                 // jt/jf 特殊处理: 第一个操作数是条件寄存器，放入 rs1 字段
                 if (currentOperandIndex == 0) {
                     // rs1: bits 20-16 (条件寄存器)
@@ -225,6 +280,41 @@ public class RegisterByteCodeAssembler extends VMAssemblerBaseListener {
         }
     }
 
+    /**
+     * 宽编码的操作数：字段位置与32位编码一一对应，只是各占一个字节，立即数不截断
+     */
+    private void addWideOperand(int value, int format, int operandType,
+                                boolean isConditionalJump, boolean isMaskedCall) {
+        if (format == RegisterBytecodeDefinition.FORMAT_R) {
+            if (currentOperandIndex == 0) {
+                currentRd = value & 0xFF;
+            } else if (currentOperandIndex == 1) {
+                currentRs1 = value & 0xFF;
+            } else if (currentOperandIndex == 2) {
+                currentRs2 = value & 0xFF;
+            }
+        } else if (format == RegisterBytecodeDefinition.FORMAT_I) {
+            if (isMaskedCall || isConditionalJump) {
+                // callm的保存掩码、jt/jf的条件寄存器放入rs1字节
+                if (currentOperandIndex == 0) {
+                    currentRs1 = value & 0xFF;
+                } else {
+                    currentImm = value;
+                }
+            } else if (currentOperandIndex == 0) {
+                currentRd = value & 0xFF;
+            } else if (currentOperandIndex == 1 && operandType == RegisterBytecodeDefinition.REG) {
+                currentRs1 = value & 0xFF;
+            } else {
+                currentImm = value;
+            }
+        } else if (format == RegisterBytecodeDefinition.FORMAT_J) {
+            if (currentOperandIndex == 0) {
+                currentImm = value;
+            }
+        }
+    }
+
     protected void gen(Token instrToken) {
         startNewInstruction(instrToken.getText(), instrToken);
         if (hasErrors) {
@@ -284,7 +374,7 @@ public class RegisterByteCodeAssembler extends VMAssemblerBaseListener {
                 break;
             case ID:
                 // If current instruction is "call", treat as function reference
-                if (currentInstruction != null && currentInstruction.equals("call")) {
+                if (currentInstruction != null && (currentInstruction.equals("call") || currentInstruction.equals("callm"))) {
                     v = getFunctionAddress(text);
                     break;
                 }
@@ -320,6 +410,11 @@ public class RegisterByteCodeAssembler extends VMAssemblerBaseListener {
             case VMAssemblerParser.T0:
             case VMAssemblerParser.T1:
                 v = getRegisterNumber(operandToken);
+                if (v >= encoding.getRegisterCount()) {
+                    logger.error("line %d: Register %s out of range for %s encoding (r0-r%d)",
+                        operandToken.getLine(), text, encoding.getName(), encoding.getRegisterCount() - 1);
+                    hasErrors = true;
+                }
                 break;
         }
         addOperand(v, operandToken);
@@ -348,7 +443,7 @@ public class RegisterByteCodeAssembler extends VMAssemblerBaseListener {
         String rs = rToken.getText().toLowerCase();
         int tokenType = rToken.getType();
 
-        // 数字寄存器：r0-r15
+        // 数字寄存器：r0-r15（宽编码r0-r63）
         if (tokenType == VMAssemblerParser.REG) {
             rs = rs.substring(1);
             return Integer.valueOf(rs);
@@ -393,11 +488,11 @@ public class RegisterByteCodeAssembler extends VMAssemblerBaseListener {
             sym.isDefined = false;
             // 修正：添加前向引用时需要传递类型信息
             sym.forwardRefs.clear(); // 清除构造函数中添加的默认引用
-            sym.addForwardRef(ip, isJType);
+            addForwardRef(sym, isJType);
             labels.put(id, sym);
         } else {
             if (sym.isForwardRef) {
-                sym.addForwardRef(ip, isJType);
+                addForwardRef(sym, isJType);
             } else {
                 return sym.address;
             }
@@ -406,6 +501,14 @@ public class RegisterByteCodeAssembler extends VMAssemblerBaseListener {
         return 0;
     }
 
+    private void addForwardRef(LabelSymbol sym, boolean isJType) {
+        if (encoding.isWide()) {
+            sym.addWideForwardRef(ip);
+        } else {
+            sym.addForwardRef(ip, isJType);
+        }
+    }
+
     protected int getFunctionIndex(String id) {
         int i = constPool.indexOf(new FunctionSymbol(id));
         if (i >= 0) return i;
@@ -487,6 +590,28 @@ public class RegisterByteCodeAssembler extends VMAssemblerBaseListener {
         checkForUnresolvedReferences();
     }
 
+    /**
+     * 伪指令 {@code encoding wide|narrow}：选择指令编码，必须出现在所有指令之前
+     */
+    private void defineEncoding(Token op, List<TempContext> temps) {
+        if (temps.size() != 1 || temps.get(0).start.getType() != ID) {
+            logger.error("line %d: usage: %s wide|narrow", op.getLine(), ENCODING_DIRECTIVE);
+            hasErrors = true;
+            return;
+        }
+        if (ip > 0) {
+            logger.error("line %d: %s must precede all instructions", op.getLine(), ENCODING_DIRECTIVE);
+            hasErrors = true;
+            return;
+        }
+        try {
+            encoding = InstructionEncoding.fromName(temps.get(0).start.getText());
+        } catch (IllegalArgumentException e) {
+            logger.error("line %d: %s", op.getLine(), e.getMessage());
+            hasErrors = true;
+        }
+    }
+
     @Override
     public void exitGlobals(GlobalsContext ctx) {
         if (ctx.intVal != null) {
@@ -511,6 +636,10 @@ public class RegisterByteCodeAssembler extends VMAssemblerBaseListener {
         if (ctx.op == null) return;
 
         List<TempContext> temps = ctx.temp();
+        if (ctx.op.getText().equalsIgnoreCase(ENCODING_DIRECTIVE)) {
+            defineEncoding(ctx.op, temps);
+            return;
+        }
         switch (temps.size()) {
             case 0:
                 gen(ctx.op);
@@ -7,19 +7,73 @@ import org.teachfx.antlr4.ep18r.stackvm.instructions.model.RegisterBytecodeDefin
 
 /**
  * 寄存器虚拟机反汇编器
- * 将寄存器字节码反汇编为可读的汇编代码
+ * 将寄存器字节码反汇编为可读的汇编代码，支持32位编码和宽编码（见 {@link InstructionEncoding}）
  */
 public class RegisterDisAssembler {
     protected Object[] constPool;
     protected byte[] code;
     protected int codeSize;
     protected RegisterBytecodeDefinition.Instruction[] instructions;
+    protected InstructionEncoding encoding;
 
     public RegisterDisAssembler(byte[] code, int codeSize, Object[] constPool) {
+        this(code, codeSize, constPool, InstructionEncoding.NARROW);
+    }
+
+    public RegisterDisAssembler(byte[] code, int codeSize, Object[] constPool, InstructionEncoding encoding) {
         this.code = code;
         this.codeSize = codeSize;
         this.constPool = constPool;
         this.instructions = RegisterBytecodeDefinition.instructions;
+        this.encoding = encoding;
+    }
+
+    /**
+     * 反汇编目标文件的代码段
+     */
+    public RegisterDisAssembler(ObjectFile objectFile) {
+        this(objectFile.getCode(), objectFile.getCodeSize(), objectFile.getConstantPool(), objectFile.getEncoding());
+    }
+
+    /**
+     * 解码ip处的指令字段
+     * 代码段末尾不足一条指令时按全0处理（与原先读取32位字的行为一致）
+     * @return {opcode, rd, rs1, rs2, imm}，立即数已符号扩展（J类型26位，其余16位；宽编码32位）
+     */
+    private int[] decodeAt(int ip) {
+        if (encoding.isWide()) {
+            if (ip + 7 >= codeSize) {
+                return new int[5];
+            }
+            int word = readWord(ip);
+            return new int[] {word >>> 24, (word >> 16) & 0xFF, (word >> 8) & 0xFF, word & 0xFF, readWord(ip + 4)};
+        }
+        int instructionWord = ip + 3 < codeSize ? readWord(ip) : 0;
+        // 从指令字中提取操作码（bits 31-26）
+        int opcode = (instructionWord >> 26) & 0x3F;
+        int imm;
+        boolean jType = opcode < instructions.length && instructions[opcode] != null
+            && instructions[opcode].getFormat() == RegisterBytecodeDefinition.FORMAT_J;
+        if (jType) {
+            imm = instructionWord & 0x3FFFFFF;
+            if ((imm & 0x2000000) != 0) {
+                imm |= 0xFC000000;
+            }
+        } else {
+            imm = instructionWord & 0xFFFF;
+            if ((imm & 0x8000) != 0) {
+                imm |= 0xFFFF0000;
+            }
+        }
+        return new int[] {opcode, (instructionWord >> 21) & 0x1F, (instructionWord >> 16) & 0x1F,
+                          (instructionWord >> 11) & 0x1F, imm};
+    }
+
+    private int readWord(int ip) {
+        return ((code[ip] & 0xFF) << 24) |
+               ((code[ip + 1] & 0xFF) << 16) |
+               ((code[ip + 2] & 0xFF) << 8) |
+               (code[ip + 3] & 0xFF);
     }
 
     /**
@@ -42,18 +96,10 @@ public class RegisterDisAssembler {
      * @return 下一条指令的指针
      */
     public int disassembleInstruction(int ip) {
-        // 读取完整的32位指令字（大端序）
-        int instructionWord = 0;
-        if (ip + 3 < codeSize) {
-            instructionWord = ((code[ip] & 0xFF) << 24) |
-                            ((code[ip + 1] & 0xFF) << 16) |
-                            ((code[ip + 2] & 0xFF) << 8) |
-                            (code[ip + 3] & 0xFF);
-        }
-        ip += 4;
-
-        // 从指令字中提取操作码（bits 31-26）
-        int opcode = (instructionWord >> 26) & 0x3F;
+        int startIp = ip;
+        int[] fields = decodeAt(ip);
+        ip += encoding.getInstructionSize();
+        int opcode = fields[0];
 
         // 获取指令信息
         RegisterBytecodeDefinition.Instruction instr = null;
@@ -62,39 +108,18 @@ public class RegisterDisAssembler {
         }
 
         if (instr == null) {
-            System.out.printf("%04d: [INVALID opcode 0x%02x]", ip - 4, opcode);
+            System.out.printf("%04d: [INVALID opcode 0x%02x]", startIp, opcode);
             return ip;
         }
 
         // 打印指令地址和名称
-        System.out.printf("%04d: %-8s", ip - 4, instr.name);
+        System.out.printf("%04d: %-8s", startIp, instr.name);
 
         if (instr.n == 0) {
             return ip;
         }
 
-        int rd = 0, rs1 = 0, rs2 = 0, imm = 0;
-        switch (instr.getFormat()) {
-            case RegisterBytecodeDefinition.FORMAT_R:
-                rd = (instructionWord >> 21) & 0x1F;
-                rs1 = (instructionWord >> 16) & 0x1F;
-                rs2 = (instructionWord >> 11) & 0x1F;
-                break;
-            case RegisterBytecodeDefinition.FORMAT_I:
-                rd = (instructionWord >> 21) & 0x1F;
-                rs1 = (instructionWord >> 16) & 0x1F;
-                imm = instructionWord & 0xFFFF;
-                if ((imm & 0x8000) != 0) {
-                    imm |= 0xFFFF0000;
-                }
-                break;
-            case RegisterBytecodeDefinition.FORMAT_J:
-                imm = instructionWord & 0x3FFFFFF;
-                if ((imm & 0x2000000) != 0) {
-                    imm |= 0xFC000000;
-                }
-                break;
-        }
+        int rd = fields[1], rs1 = fields[2], rs2 = fields[3], imm = fields[4];
 
         // 根据操作数类型生成显示字符串
         List<String> operands = new ArrayList<>();
@@ -161,17 +186,8 @@ public class RegisterDisAssembler {
      */
     public String disassembleInstructionToString(int ip) {
         int startIp = ip;
-
-        int instructionWord = 0;
-        if (ip + 3 < codeSize) {
-            instructionWord = ((code[ip] & 0xFF) << 24) |
-                            ((code[ip + 1] & 0xFF) << 16) |
-                            ((code[ip + 2] & 0xFF) << 8) |
-                            (code[ip + 3] & 0xFF);
-        }
-        ip += 4;
-
-        int opcode = (instructionWord >> 26) & 0x3F;
+        int[] fields = decodeAt(ip);
+        int opcode = fields[0];
 
         RegisterBytecodeDefinition.Instruction instr = null;
         if (opcode >= 0 && opcode < instructions.length) {
@@ -189,28 +205,7 @@ public class RegisterDisAssembler {
             return sb.toString();
         }
 
-        int rd = 0, rs1 = 0, rs2 = 0, imm = 0;
-        switch (instr.getFormat()) {
-            case RegisterBytecodeDefinition.FORMAT_R:
-                rd = (instructionWord >> 21) & 0x1F;
-                rs1 = (instructionWord >> 16) & 0x1F;
-                rs2 = (instructionWord >> 11) & 0x1F;
-                break;
-            case RegisterBytecodeDefinition.FORMAT_I:
-                rd = (instructionWord >> 21) & 0x1F;
-                rs1 = (instructionWord >> 16) & 0x1F;
-                imm = instructionWord & 0xFFFF;
-                if ((imm & 0x8000) != 0) {
-                    imm |= 0xFFFF0000;
-                }
-                break;
-            case RegisterBytecodeDefinition.FORMAT_J:
-                imm = instructionWord & 0x3FFFFFF;
-                if ((imm & 0x2000000) != 0) {
-                    imm |= 0xFC000000;
-                }
-                break;
-        }
+        int rd = fields[1], rs1 = fields[2], rs2 = fields[3], imm = fields[4];
 
         List<String> operands = new ArrayList<>();
         for (int i = 0; i < instr.n; i++) {
@@ -273,18 +268,10 @@ public class RegisterDisAssembler {
 
         int ip = 0;
         while (ip < codeSize) {
-            int instructionWord = 0;
             int startIp = ip;
-
-            if (ip + 3 < codeSize) {
-                instructionWord = ((code[ip] & 0xFF) << 24) |
-                                ((code[ip + 1] & 0xFF) << 16) |
-                                ((code[ip + 2] & 0xFF) << 8) |
-                                (code[ip + 3] & 0xFF);
-            }
-            ip += 4;
-
-            int opcode = (instructionWord >> 26) & 0x3F;
+            int[] fields = decodeAt(ip);
+            ip += encoding.getInstructionSize();
+            int opcode = fields[0];
 
             RegisterBytecodeDefinition.Instruction instr = null;
             if (opcode >= 0 && opcode < instructions.length) {
@@ -300,21 +287,12 @@ public class RegisterDisAssembler {
             sb.append(String.format("%04d: %-8s", startIp, instr.name));
 
             if (instr.n > 0) {
-                int rd = 0, rs1 = 0, rs2 = 0, imm = 0;
+                int rd = fields[1], rs1 = fields[2], rs2 = fields[3], imm = fields[4];
                 switch (instr.getFormat()) {
                     case RegisterBytecodeDefinition.FORMAT_R:
-                        rd = (instructionWord >> 21) & 0x1F;
-                        rs1 = (instructionWord >> 16) & 0x1F;
-                        rs2 = (instructionWord >> 11) & 0x1F;
                         sb.append(String.format("r%d, r%d, r%d", rd, rs1, rs2));
                         break;
                     case RegisterBytecodeDefinition.FORMAT_I:
-                        rd = (instructionWord >> 21) & 0x1F;
-                        rs1 = (instructionWord >> 16) & 0x1F;
-                        imm = instructionWord & 0xFFFF;
-                        if ((imm & 0x8000) != 0) {
-                            imm |= 0xFFFF0000;
-                        }
                         if (instr.n == 2) {
                             int type1 = instr.getOperandType(0);
                             int type2 = instr.getOperandType(1);
@@ -325,15 +303,13 @@ public class RegisterDisAssembler {
                             }
                         } else if (instr.n == 3) {
                             sb.append(String.format("r%d, r%d, %d", rd, rs1, imm));
+                        } else if (encoding.isWide()) {
+                            sb.append(String.format("0x%08x", imm));
                         } else {
                             sb.append(String.format("0x%04x", imm & 0xFFFF));
                         }
                         break;
                     case RegisterBytecodeDefinition.FORMAT_J:
-                        imm = instructionWord & 0x3FFFFFF;
-                        if ((imm & 0x2000000) != 0) {
-                            imm |= 0xFC000000;
-                        }
                         sb.append(String.format("%d", imm));
                         break;
                 }
@@ -19,6 +19,16 @@ public class StackFrame {
     public int returnAddress;
     public int frameBasePointer; // 栈帧基地址（在heap中的位置）
     public int[] savedCallerRegisters; // 保存caller-saved寄存器 a1(r3), a2(r4), a3(r5), a4(r6), a5(r7), lr(r15), ra(r1) 共7个
+    public int savedRegisterMask = ALL_CALLER_SAVED; // 第i位为1表示savedCallerRegisters[i]已保存，RET时恢复
+    public int frameSizeWords = -1; // 栈帧字数（CALL时由栈帧布局给出，-1表示未知）
+    public int callerStackTop = -1; // CALL前调用栈段的栈顶（字地址），RET时恢复以释放本帧；-1表示未知
+    public int callerStackPointer = -1; // CALL前的sp寄存器值，RET时恢复；-1表示未知
+
+    /** 保存全部7个caller-saved寄存器的掩码 */
+    public static final int ALL_CALLER_SAVED = 0x7F;
+
+    /** savedCallerRegisters各项对应的寄存器编号 */
+    public static final int[] CALLER_SAVED_REGISTERS = {3, 4, 5, 6, 7, 15, 1};
 
     public FunctionSymbol getFunctionSymbol() {
         return symbol;
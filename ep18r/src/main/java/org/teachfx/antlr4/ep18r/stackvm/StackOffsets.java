@@ -128,6 +128,22 @@ public class StackOffsets {
         return size;
     }
 
+    /**
+     * 按函数实际访问的最低FP相对槽位计算栈帧大小
+     * 新栈帧满足 fp = sp + 帧字数 - 1，而sp和sp+4字节处是调用者的s4保存位置和旧fp保存位置，
+     * 所以被调用者写入的最低槽位必须不低于 sp + 8 字节。
+     * 函数使用全部局部变量时结果与 {@code calculateFrameSize(5, numLocals, numStackArgs)} 相同；
+     * 不使用局部变量和被调用者保存寄存器的函数只需要最小的8字节栈帧。
+     * @param lowestFpOffset 函数访问的最低FP相对偏移（字节，至少包含 {@link #FP_SAVE_OFFSET}）
+     * @param numStackArgs 通过栈传递的参数数量（第7个及以后）
+     * @return 栈帧总大小（字节，8字节对齐）
+     */
+    public static int calculateFrameSizeForLowestSlot(int lowestFpOffset, int numStackArgs) {
+        int lowestWord = Math.floorDiv(Math.min(lowestFpOffset, FP_SAVE_OFFSET), 4);
+        int frameWords = Math.max(1, 3 - lowestWord);
+        return alignTo8Bytes((frameWords + numStackArgs) * 4);
+    }
+
     /**
      * 计算栈指针调整量（负数，表示需要减少sp的值）
      * @param numSavedRegs 需要保存的被调用者保存寄存器数量（0-5）
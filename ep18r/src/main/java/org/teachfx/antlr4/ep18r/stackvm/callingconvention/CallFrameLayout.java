@@ -0,0 +1,141 @@
+package org.teachfx.antlr4.ep18r.stackvm.callingconvention;
+
+import org.teachfx.antlr4.ep18r.stackvm.FunctionSymbol;
+import org.teachfx.antlr4.ep18r.stackvm.StackOffsets;
+
+/**
+ * 被调用函数的栈帧布局
+ * 由函数符号的参数个数和局部变量个数预先算出栈帧大小和SP调整量，
+ * 加载程序时为每个函数计算一次，CALL指令直接使用，不再每次调用都重新计算。
+ *
+ * 栈帧大小由函数访问的最低FP相对槽位决定（见 {@link StackOffsets#calculateFrameSizeForLowestSlot}）。
+ * 不知道函数实际使用情况时假设s0-s4全部保存、全部局部变量都被访问；
+ * 加载时扫描过函数体的布局只为实际用到的被调用者保存寄存器和局部变量留出空间。
+ */
+public final class CallFrameLayout {
+    /** 被调用者保存寄存器s0-s4的个数 */
+    public static final int NUM_CALLEE_SAVED_REGS = 5;
+    /** 寄存器传递的参数个数，第7个及以后的参数经栈传递 */
+    public static final int NUM_REGISTER_ARGS = 6;
+
+    /** 未知函数（常量池中没有对应符号）的布局 */
+    public static final CallFrameLayout UNKNOWN = new CallFrameLayout(null);
+
+    private final FunctionSymbol symbol;
+    private final int nargs;
+    private final int nlocals;
+    private final int numStackArgs;
+    private final int numSavedRegs;
+    private final int lowestFpOffset;
+    private final int frameSize;
+    private final int frameSizeWords;
+    private final int spAdjustment;
+    private final int stackBlockWords;
+
+    private CallFrameLayout(FunctionSymbol symbol) {
+        this(symbol, NUM_CALLEE_SAVED_REGS,
+            Math.min(StackOffsets.S0_SAVE_OFFSET, lowestLocalOffset(symbol != null ? symbol.nlocals : 0)));
+    }
+
+    private CallFrameLayout(FunctionSymbol symbol, int numSavedRegs, int lowestFpOffset) {
+        this.symbol = symbol;
+        this.nargs = symbol != null ? symbol.nargs : 0;
+        this.nlocals = symbol != null ? symbol.nlocals : 0;
+        this.numStackArgs = Math.max(0, nargs - NUM_REGISTER_ARGS);
+        this.numSavedRegs = numSavedRegs;
+        this.lowestFpOffset = Math.min(lowestFpOffset, StackOffsets.FP_SAVE_OFFSET);
+        this.frameSize = StackOffsets.calculateFrameSizeForLowestSlot(this.lowestFpOffset, numStackArgs);
+        this.frameSizeWords = frameSize / 4;
+        this.spAdjustment = -StackOffsets.calculateFrameSizeForLowestSlot(this.lowestFpOffset, 0);
+        // fp之上还有s4保存位置、旧fp、返回地址槽和栈参数区，一并从调用栈段分配
+        this.stackBlockWords = frameSizeWords + StackOffsets.ARG_AREA_START_OFFSET / 4 - 1 + numStackArgs;
+    }
+
+    private static int lowestLocalOffset(int nlocals) {
+        return nlocals > 0 ? StackOffsets.localVarOffset(nlocals - 1) : StackOffsets.FP_SAVE_OFFSET;
+    }
+
+    /**
+     * 计算函数的栈帧布局（假设s0-s4全部保存、全部局部变量都被访问）
+     * 结果与 {@code StackOffsets.calculateFrameSize(5, nlocals, numStackArgs)} 相同。
+     * @param symbol 函数符号，为null时返回 {@link #UNKNOWN}
+     */
+    public static CallFrameLayout of(FunctionSymbol symbol) {
+        return symbol == null ? UNKNOWN : new CallFrameLayout(symbol);
+    }
+
+    /**
+     * 按函数体实际使用情况计算栈帧布局
+     * @param symbol 函数符号，为null时返回 {@link #UNKNOWN}
+     * @param numSavedRegs 函数使用的被调用者保存寄存器个数
+     * @param lowestFpOffset 函数访问的最低FP相对偏移（字节）
+     */
+    public static CallFrameLayout of(FunctionSymbol symbol, int numSavedRegs, int lowestFpOffset) {
+        return symbol == null ? UNKNOWN : new CallFrameLayout(symbol, numSavedRegs, lowestFpOffset);
+    }
+
+    /**
+     * 获取函数符号（未知函数为null）
+     */
+    public FunctionSymbol getSymbol() {
+        return symbol;
+    }
+
+    public int getNargs() {
+        return nargs;
+    }
+
+    public int getNlocals() {
+        return nlocals;
+    }
+
+    /**
+     * 获取经栈传递的参数个数
+     */
+    public int getNumStackArgs() {
+        return numStackArgs;
+    }
+
+    /**
+     * 获取函数使用的被调用者保存寄存器个数
+     */
+    public int getNumSavedRegs() {
+        return numSavedRegs;
+    }
+
+    /**
+     * 获取栈帧需要覆盖的最低FP相对偏移（字节）
+     */
+    public int getLowestFpOffset() {
+        return lowestFpOffset;
+    }
+
+    /**
+     * 获取栈帧大小（字节，8字节对齐）
+     */
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * 获取栈帧大小（字，堆是int数组）
+     */
+    public int getFrameSizeWords() {
+        return frameSizeWords;
+    }
+
+    /**
+     * 获取CALL时从调用栈段分配的字数
+     * 包括栈帧本身以及fp之上被调用者会写入的s4保存位置、旧fp、返回地址槽和栈参数区。
+     */
+    public int getStackBlockWords() {
+        return stackBlockWords;
+    }
+
+    /**
+     * 获取SP调整量（字节，负数）
+     */
+    public int getSpAdjustment() {
+        return spAdjustment;
+    }
+}
@@ -3,6 +3,7 @@ package org.teachfx.antlr4.ep18r.stackvm.callingconvention;
 import org.teachfx.antlr4.ep18r.stackvm.FunctionSymbol;
 import org.teachfx.antlr4.ep18r.stackvm.StackFrame;
 import org.teachfx.antlr4.ep18r.stackvm.StackOffsets;
+import org.teachfx.antlr4.ep18r.stackvm.exception.VMStackOverflowException;
 import org.teachfx.antlr4.ep18r.stackvm.instructions.model.RegisterBytecodeDefinition;
 import org.teachfx.antlr4.ep18r.stackvm.interpreter.ExecutionContext;
 
@@ -20,27 +21,22 @@ public class StackFrameManager {
      * @return 新创建的栈帧
      */
     public static StackFrame createStackFrame(int target, ExecutionContext context) {
-        int returnAddr = context.getProgramCounter() + 4;
+        int returnAddr = context.getProgramCounter() + context.getInstructionSize();
 
-        FunctionSymbol func = context.getFunctionSymbol(target);
-        int nargs = (func != null) ? func.nargs : 0;
-        int nlocals = (func != null) ? func.nlocals : 0;
-
-        final int NUM_CALLEE_SAVED_REGS = 5;
-        int numStackArgs = Math.max(0, nargs - 6);
-
-        int frameSize = StackOffsets.calculateFrameSize(NUM_CALLEE_SAVED_REGS, nlocals, numStackArgs);
-        int frameSizeWords = frameSize / 4;
-        int spAdjustment = StackOffsets.calculateSpAdjustment(NUM_CALLEE_SAVED_REGS, nlocals);
+        CallFrameLayout layout = context.getCallFrameLayout(target);
+        FunctionSymbol func = layout.getSymbol();
+        int frameSize = layout.getFrameSize();
+        int frameSizeWords = layout.getFrameSizeWords();
 
         int currentSP = context.getRegister(RegisterBytecodeDefinition.R13);
-        int currentHeapPointer = context.getHeapAllocPointer();
+        int currentStackTop = context.getStackTop();
 
-        int newSP = currentHeapPointer;
+        int newSP = currentStackTop - layout.getStackBlockWords();
         int newFP = newSP + frameSizeWords - 1;
 
-        if (newSP + frameSizeWords > context.getConfig().getHeapSize()) {
-            throw new OutOfMemoryError("Not enough heap space for frame: need " + frameSize + " bytes");
+        if (newSP < context.getHeapLimit()) {
+            throw new VMStackOverflowException("Call stack segment exhausted: need " + frameSize + " bytes",
+                context.getProgramCounter(), "call");
         }
 
         int oldFP = context.getRegister(RegisterBytecodeDefinition.R14);
@@ -49,6 +45,9 @@ public class StackFrameManager {
 
         int localsBase = newFP + StackOffsets.FIRST_LOCAL_OFFSET / 4;
         StackFrame newFrame = new StackFrame(func, returnAddr, localsBase);
+        newFrame.frameSizeWords = frameSizeWords;
+        newFrame.callerStackTop = currentStackTop;
+        newFrame.callerStackPointer = currentSP;
 
         saveCallerRegisters(newFrame, context);
 
@@ -60,9 +59,9 @@ public class StackFrameManager {
         context.setRegister(RegisterBytecodeDefinition.R14, newFP);
         context.setRegister(RegisterBytecodeDefinition.R15, returnAddr);
 
-        context.setHeapAllocPointer(newSP + frameSizeWords);
+        context.setStackTop(newSP);
 
-        copyStackArguments(context, currentSP, newFP, numStackArgs);
+        copyStackArguments(context, currentSP, newFP, layout.getNumStackArgs());
 
         return newFrame;
     }
@@ -90,9 +89,12 @@ public class StackFrameManager {
             int prevFP = context.readMemory(fpSaveAddress);
             context.setRegister(RegisterBytecodeDefinition.R14, prevFP);
 
-            int frameSizeWords = calculateFrameSizeWords(frame);
-            int newSP = currentFP + 1 - frameSizeWords;
+            int newSP = frame.callerStackPointer >= 0
+                ? frame.callerStackPointer : currentFP + 1 - calculateFrameSizeWords(frame);
             context.setRegister(RegisterBytecodeDefinition.R13, newSP);
+            if (frame.callerStackTop >= 0) {
+                context.setStackTop(frame.callerStackTop);
+            }
 
             context.setFramePointer(currentFramePointer - 1);
         }
@@ -101,36 +103,34 @@ public class StackFrameManager {
     }
 
     /**
-     * 保存调用者保存寄存器到栈帧
+     * 保存调用者保存寄存器到栈帧（只保存 savedRegisterMask 选中的寄存器）
      */
     private static void saveCallerRegisters(StackFrame frame, ExecutionContext context) {
-        frame.savedCallerRegisters[0] = context.getRegister(3);
-        frame.savedCallerRegisters[1] = context.getRegister(4);
-        frame.savedCallerRegisters[2] = context.getRegister(5);
-        frame.savedCallerRegisters[3] = context.getRegister(6);
-        frame.savedCallerRegisters[4] = context.getRegister(7);
-        frame.savedCallerRegisters[5] = context.getRegister(15);
-        frame.savedCallerRegisters[6] = context.getRegister(1);
+        for (int i = 0; i < frame.savedCallerRegisters.length; i++) {
+            if ((frame.savedRegisterMask & (1 << i)) != 0) {
+                frame.savedCallerRegisters[i] = context.getRegister(StackFrame.CALLER_SAVED_REGISTERS[i]);
+            }
+        }
     }
 
     /**
-     * 从栈帧恢复调用者保存寄存器
+     * 从栈帧恢复调用者保存寄存器（只恢复 savedRegisterMask 选中的寄存器）
      */
     private static void restoreCallerRegisters(StackFrame frame, ExecutionContext context) {
-        context.setRegister(3, frame.savedCallerRegisters[0]);
-        context.setRegister(4, frame.savedCallerRegisters[1]);
-        context.setRegister(5, frame.savedCallerRegisters[2]);
-        context.setRegister(6, frame.savedCallerRegisters[3]);
-        context.setRegister(7, frame.savedCallerRegisters[4]);
-        context.setRegister(15, frame.savedCallerRegisters[5]);
-        context.setRegister(1, frame.savedCallerRegisters[6]);
+        for (int i = 0; i < frame.savedCallerRegisters.length; i++) {
+            if ((frame.savedRegisterMask & (1 << i)) != 0) {
+                context.setRegister(StackFrame.CALLER_SAVED_REGISTERS[i], frame.savedCallerRegisters[i]);
+            }
+        }
     }
 
     /**
      * 计算栈帧大小（字数）
      */
     private static int calculateFrameSizeWords(StackFrame frame) {
-        if (frame.symbol != null) {
+        if (frame.frameSizeWords > 0) {
+            return frame.frameSizeWords;
+        } else if (frame.symbol != null) {
             int nargs = frame.symbol.nargs;
             int nlocals = frame.symbol.nlocals;
             int numStackArgs = Math.max(0, nargs - 6);
@@ -6,6 +6,7 @@ public class VMConfig implements IVMConfig {
     private final int stackSize;
     private final int maxStackDepth;
     private final int maxFrameCount;
+    private final int frameStackSize;
     
     // 性能配置
     private final boolean debugMode;
@@ -17,12 +18,14 @@ public class VMConfig implements IVMConfig {
     private final int maxExecutionTime;
     private final boolean enableBoundsCheck;
     private final boolean enableTypeCheck;
+    private final boolean gcEnabled;
     
     private VMConfig(Builder builder) {
         this.heapSize = builder.heapSize;
         this.stackSize = builder.stackSize;
         this.maxStackDepth = builder.maxStackDepth;
         this.maxFrameCount = builder.maxFrameCount;
+        this.frameStackSize = builder.frameStackSize > 0 ? builder.frameStackSize : builder.heapSize / 4;
         this.debugMode = builder.debugMode;
         this.traceEnabled = builder.traceEnabled;
         this.verboseErrors = builder.verboseErrors;
@@ -30,6 +33,7 @@ public class VMConfig implements IVMConfig {
         this.maxExecutionTime = builder.maxExecutionTime;
         this.enableBoundsCheck = builder.enableBoundsCheck;
         this.enableTypeCheck = builder.enableTypeCheck;
+        this.gcEnabled = builder.gcEnabled;
     }
     
     // Getters
@@ -48,6 +52,14 @@ public class VMConfig implements IVMConfig {
     public int getMaxFrameCount() {
         return maxFrameCount;
     }
+
+    /**
+     * 获取调用栈段大小（字）
+     * 调用栈段位于堆的高地址端，栈帧从段顶向下分配、RET时释放；未设置时取堆大小的1/4。
+     */
+    public int getFrameStackSize() {
+        return frameStackSize;
+    }
     
     public boolean isDebugMode() {
         return debugMode;
@@ -77,6 +89,15 @@ public class VMConfig implements IVMConfig {
         return enableTypeCheck;
     }
 
+    /**
+     * 是否启用垃圾回收
+     * 启用后结构体分配交给标记-清除回收器，以寄存器、栈帧和全局变量为根回收不可达对象；
+     * 关闭时（默认）沿用只增不减的堆分配指针。
+     */
+    public boolean isGcEnabled() {
+        return gcEnabled;
+    }
+
     // 为RegisterVMInterpreter提供兼容的方法别名
     public int getLocalsSize() {
         return stackSize; // 使用stackSize作为localsSize
@@ -99,6 +120,7 @@ public class VMConfig implements IVMConfig {
         private int stackSize = 1024; // 1024个操作数
         private int maxStackDepth = 1000; // 最大调用深度
         private int maxFrameCount = 1000; // 最大栈帧数
+        private int frameStackSize = 0; // 调用栈段字数，0表示取堆大小的1/4
         private boolean debugMode = false;
         private boolean traceEnabled = false;
         private boolean verboseErrors = false;
@@ -106,6 +128,7 @@ public class VMConfig implements IVMConfig {
         private int maxExecutionTime = 60000; // 最大执行时间（毫秒）
         private boolean enableBoundsCheck = true;
         private boolean enableTypeCheck = true;
+        private boolean gcEnabled = false;
         
         public Builder() {}
         
@@ -141,6 +164,14 @@ public class VMConfig implements IVMConfig {
             return this;
         }
         
+        public Builder setFrameStackSize(int frameStackSize) {
+            if (frameStackSize <= 0) {
+                throw new IllegalArgumentException("Frame stack size must be positive");
+            }
+            this.frameStackSize = frameStackSize;
+            return this;
+        }
+        
         public Builder setDebugMode(boolean debugMode) {
             this.debugMode = debugMode;
             return this;
@@ -182,6 +213,11 @@ public class VMConfig implements IVMConfig {
             return this;
         }
 
+        public Builder setGcEnabled(boolean gcEnabled) {
+            this.gcEnabled = gcEnabled;
+            return this;
+        }
+
         // 为RegisterVMInterpreter提供兼容的方法别名
         public Builder heapSize(int heapSize) {
             return setHeapSize(heapSize);
@@ -202,6 +238,9 @@ public class VMConfig implements IVMConfig {
         }
 
         public VMConfig build() {
+            if (frameStackSize > heapSize) {
+                throw new IllegalArgumentException("Frame stack size cannot exceed heap size");
+            }
             return new VMConfig(this);
         }
     }
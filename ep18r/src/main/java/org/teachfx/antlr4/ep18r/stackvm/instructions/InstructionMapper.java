@@ -7,87 +7,103 @@ import org.teachfx.antlr4.ep18r.stackvm.instructions.executors.MemoryExecutors;
 import org.teachfx.antlr4.ep18r.stackvm.instructions.factory.IInstructionFactory;
 import org.teachfx.antlr4.ep18r.stackvm.instructions.model.RegisterBytecodeDefinition;
 
-import java.util.Map;
-import java.util.HashMap;
+import java.util.Arrays;
 
 /**
  * 指令映射器
  * 将操作码映射到对应的指令执行器
  * 采用策略模式，消除代码重复
+ * 执行器按操作码直接存放在64项数组中，解释器分派时只做一次数组下标访问
  */
 public class InstructionMapper implements IInstructionFactory {
-    private final Map<Integer, InstructionExecutor> executors;
+    /** 6位操作码的取值个数 */
+    public static final int OPCODE_COUNT = 64;
+
+    private final InstructionExecutor[] executors = new InstructionExecutor[OPCODE_COUNT];
+    private int registeredCount;
 
     public InstructionMapper() {
-        this.executors = new HashMap<>();
         initializeExecutors();
     }
 
+    private void put(int opcode, InstructionExecutor executor) {
+        if (executors[opcode] == null) {
+            registeredCount++;
+        }
+        executors[opcode] = executor;
+    }
+
     /**
      * 初始化所有指令执行器映射
      */
     private void initializeExecutors() {
         // ==================== 算术运算指令 ====================
-        executors.put((int) RegisterBytecodeDefinition.INSTR_ADD, ArithmeticExecutors.ADD);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_SUB, ArithmeticExecutors.SUB);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_MUL, ArithmeticExecutors.MUL);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_DIV, ArithmeticExecutors.DIV);
+        put(RegisterBytecodeDefinition.INSTR_ADD, ArithmeticExecutors.ADD);
+        put(RegisterBytecodeDefinition.INSTR_SUB, ArithmeticExecutors.SUB);
+        put(RegisterBytecodeDefinition.INSTR_MUL, ArithmeticExecutors.MUL);
+        put(RegisterBytecodeDefinition.INSTR_DIV, ArithmeticExecutors.DIV);
+        put(RegisterBytecodeDefinition.INSTR_ADDI, ArithmeticExecutors.ADDI);
 
         // ==================== 逻辑运算指令 ====================
-        executors.put((int) RegisterBytecodeDefinition.INSTR_AND, ArithmeticExecutors.AND);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_OR, ArithmeticExecutors.OR);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_XOR, ArithmeticExecutors.XOR);
+        put(RegisterBytecodeDefinition.INSTR_AND, ArithmeticExecutors.AND);
+        put(RegisterBytecodeDefinition.INSTR_OR, ArithmeticExecutors.OR);
+        put(RegisterBytecodeDefinition.INSTR_XOR, ArithmeticExecutors.XOR);
 
         // ==================== 比较运算指令 ====================
-        executors.put((int) RegisterBytecodeDefinition.INSTR_SLT, ArithmeticExecutors.SLT);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_SLE, ArithmeticExecutors.SLE);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_SGT, ArithmeticExecutors.SGT);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_SGE, ArithmeticExecutors.SGE);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_SEQ, ArithmeticExecutors.SEQ);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_SNE, ArithmeticExecutors.SNE);
+        put(RegisterBytecodeDefinition.INSTR_SLT, ArithmeticExecutors.SLT);
+        put(RegisterBytecodeDefinition.INSTR_SLE, ArithmeticExecutors.SLE);
+        put(RegisterBytecodeDefinition.INSTR_SGT, ArithmeticExecutors.SGT);
+        put(RegisterBytecodeDefinition.INSTR_SGE, ArithmeticExecutors.SGE);
+        put(RegisterBytecodeDefinition.INSTR_SEQ, ArithmeticExecutors.SEQ);
+        put(RegisterBytecodeDefinition.INSTR_SNE, ArithmeticExecutors.SNE);
 
         // ==================== 单目运算指令 ====================
-        executors.put((int) RegisterBytecodeDefinition.INSTR_NEG, ComparisonExecutors.NEG);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_NOT, ComparisonExecutors.NOT);
+        put(RegisterBytecodeDefinition.INSTR_NEG, ComparisonExecutors.NEG);
+        put(RegisterBytecodeDefinition.INSTR_NOT, ComparisonExecutors.NOT);
 
         // ==================== 浮点运算指令 ====================
-        executors.put((int) RegisterBytecodeDefinition.INSTR_FADD, ComparisonExecutors.FADD);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_FSUB, ComparisonExecutors.FSUB);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_FMUL, ComparisonExecutors.FMUL);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_FDIV, ComparisonExecutors.FDIV);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_FLT, ComparisonExecutors.FLT);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_FEQ, ComparisonExecutors.FEQ);
+        put(RegisterBytecodeDefinition.INSTR_FADD, ComparisonExecutors.FADD);
+        put(RegisterBytecodeDefinition.INSTR_FSUB, ComparisonExecutors.FSUB);
+        put(RegisterBytecodeDefinition.INSTR_FMUL, ComparisonExecutors.FMUL);
+        put(RegisterBytecodeDefinition.INSTR_FDIV, ComparisonExecutors.FDIV);
+        put(RegisterBytecodeDefinition.INSTR_FLT, ComparisonExecutors.FLT);
+        put(RegisterBytecodeDefinition.INSTR_FEQ, ComparisonExecutors.FEQ);
 
         // ==================== 类型转换指令 ====================
-        executors.put((int) RegisterBytecodeDefinition.INSTR_ITOF, ComparisonExecutors.ITOF);
+        put(RegisterBytecodeDefinition.INSTR_ITOF, ComparisonExecutors.ITOF);
 
         // ==================== 控制流指令 ====================
-        executors.put((int) RegisterBytecodeDefinition.INSTR_CALL, ControlFlowExecutors.CALL);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_RET, ControlFlowExecutors.RET);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_J, ControlFlowExecutors.J);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_JT, ControlFlowExecutors.JT);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_JF, ControlFlowExecutors.JF);
+        put(RegisterBytecodeDefinition.INSTR_CALL, ControlFlowExecutors.CALL);
+        put(RegisterBytecodeDefinition.INSTR_CALLM, ControlFlowExecutors.CALLM);
+        put(RegisterBytecodeDefinition.INSTR_RET, ControlFlowExecutors.RET);
+        put(RegisterBytecodeDefinition.INSTR_J, ControlFlowExecutors.J);
+        put(RegisterBytecodeDefinition.INSTR_JT, ControlFlowExecutors.JT);
+        put(RegisterBytecodeDefinition.INSTR_JF, ControlFlowExecutors.JF);
+        put(RegisterBytecodeDefinition.INSTR_BEQ, ControlFlowExecutors.BEQ);
+        put(RegisterBytecodeDefinition.INSTR_BNE, ControlFlowExecutors.BNE);
+        put(RegisterBytecodeDefinition.INSTR_BLT, ControlFlowExecutors.BLT);
+        put(RegisterBytecodeDefinition.INSTR_BGE, ControlFlowExecutors.BGE);
 
         // ==================== 常量加载指令 ====================
-        executors.put((int) RegisterBytecodeDefinition.INSTR_LI, MemoryExecutors.LI);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_LC, MemoryExecutors.LC);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_LF, MemoryExecutors.LF);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_LS, MemoryExecutors.LS);
+        put(RegisterBytecodeDefinition.INSTR_LI, MemoryExecutors.LI);
+        put(RegisterBytecodeDefinition.INSTR_LC, MemoryExecutors.LC);
+        put(RegisterBytecodeDefinition.INSTR_LF, MemoryExecutors.LF);
+        put(RegisterBytecodeDefinition.INSTR_LS, MemoryExecutors.LS);
 
         // ==================== 内存访问指令 ====================
-        executors.put((int) RegisterBytecodeDefinition.INSTR_LW, MemoryExecutors.LW);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_SW, MemoryExecutors.SW);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_LW_G, MemoryExecutors.LW_G);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_SW_G, MemoryExecutors.SW_G);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_LW_F, MemoryExecutors.LW_F);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_SW_F, MemoryExecutors.SW_F);
+        put(RegisterBytecodeDefinition.INSTR_LW, MemoryExecutors.LW);
+        put(RegisterBytecodeDefinition.INSTR_SW, MemoryExecutors.SW);
+        put(RegisterBytecodeDefinition.INSTR_LW_G, MemoryExecutors.LW_G);
+        put(RegisterBytecodeDefinition.INSTR_SW_G, MemoryExecutors.SW_G);
+        put(RegisterBytecodeDefinition.INSTR_LW_F, MemoryExecutors.LW_F);
+        put(RegisterBytecodeDefinition.INSTR_SW_F, MemoryExecutors.SW_F);
 
         // ==================== 其他指令 ====================
-        executors.put((int) RegisterBytecodeDefinition.INSTR_PRINT, MemoryExecutors.PRINT);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_STRUCT, MemoryExecutors.STRUCT);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_NULL, MemoryExecutors.NULL);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_MOV, MemoryExecutors.MOV);
-        executors.put((int) RegisterBytecodeDefinition.INSTR_HALT, MemoryExecutors.HALT);
+        put(RegisterBytecodeDefinition.INSTR_PRINT, MemoryExecutors.PRINT);
+        put(RegisterBytecodeDefinition.INSTR_STRUCT, MemoryExecutors.STRUCT);
+        put(RegisterBytecodeDefinition.INSTR_NULL, MemoryExecutors.NULL);
+        put(RegisterBytecodeDefinition.INSTR_MOV, MemoryExecutors.MOV);
+        put(RegisterBytecodeDefinition.INSTR_HALT, MemoryExecutors.HALT);
     }
 
     /**
@@ -96,7 +112,20 @@ public class InstructionMapper implements IInstructionFactory {
      * @return 指令执行器，如果不存在返回null
      */
     public InstructionExecutor getExecutor(int opcode) {
-        return executors.get(opcode);
+        if (opcode < 0 || opcode >= OPCODE_COUNT) {
+            return null;
+        }
+        return executors[opcode];
+    }
+
+    /**
+     * 获取分派表
+     * 返回内部数组本身（下标为操作码，未注册的项为null），
+     * 注册/注销执行器后立即可见。调用方只应读取，不应修改。
+     * @return 按操作码索引的执行器数组
+     */
+    public InstructionExecutor[] getDispatchTable() {
+        return executors;
     }
 
     /**
@@ -105,7 +134,7 @@ public class InstructionMapper implements IInstructionFactory {
      * @return 如果有效返回true，否则返回false
      */
     public boolean isValidOpcode(int opcode) {
-        return executors.containsKey(opcode);
+        return getExecutor(opcode) != null;
     }
 
     /**
@@ -113,7 +142,7 @@ public class InstructionMapper implements IInstructionFactory {
      * @return 操作码数量
      */
     public int getRegisteredOpcodeCount() {
-        return executors.size();
+        return registeredCount;
     }
 
     /**
@@ -121,10 +150,14 @@ public class InstructionMapper implements IInstructionFactory {
      * @return 操作码数组
      */
     public int[] getRegisteredOpcodes() {
-        return executors.keySet().stream()
-            .mapToInt(Integer::intValue)
-            .sorted()
-            .toArray();
+        int[] opcodes = new int[registeredCount];
+        int next = 0;
+        for (int opcode = 0; opcode < OPCODE_COUNT; opcode++) {
+            if (executors[opcode] != null) {
+                opcodes[next++] = opcode;
+            }
+        }
+        return opcodes;
     }
 
     /**
@@ -140,11 +173,11 @@ public class InstructionMapper implements IInstructionFactory {
         if (executor == null) {
             throw new IllegalArgumentException("Instruction executor cannot be null");
         }
-        if (opcode < 0 || opcode > 63) {
+        if (opcode < 0 || opcode >= OPCODE_COUNT) {
             throw new IllegalArgumentException(
                 "Invalid opcode: " + opcode + ", must be 0-63");
         }
-        executors.put(opcode, executor);
+        put(opcode, executor);
     }
 
     /**
@@ -156,7 +189,12 @@ public class InstructionMapper implements IInstructionFactory {
      * @return 被移除的执行器，如果不存在返回null
      */
     public InstructionExecutor unregisterExecutor(int opcode) {
-        return executors.remove(opcode);
+        InstructionExecutor removed = getExecutor(opcode);
+        if (removed != null) {
+            executors[opcode] = null;
+            registeredCount--;
+        }
+        return removed;
     }
 
     /**
@@ -165,7 +203,8 @@ public class InstructionMapper implements IInstructionFactory {
      * 注意：此方法会移除所有指令，包括默认指令。调用后需要手动重新注册所有指令。
      */
     public void clear() {
-        executors.clear();
+        Arrays.fill(executors, null);
+        registeredCount = 0;
     }
 
     /**
@@ -174,7 +213,7 @@ public class InstructionMapper implements IInstructionFactory {
      * 清空所有指令并重新注册默认的42条指令
      */
     public void resetToDefaults() {
-        executors.clear();
+        clear();
         initializeExecutors();
     }
 }
@@ -2,7 +2,6 @@ package org.teachfx.antlr4.ep18r.stackvm.instructions.executors;
 
 import org.teachfx.antlr4.ep18r.stackvm.instructions.InstructionExecutor;
 import org.teachfx.antlr4.ep18r.stackvm.interpreter.ExecutionContext;
-import org.teachfx.antlr4.ep18r.stackvm.registers.RegisterOperandExtractor;
 
 /**
  * 指令执行器抽象基类
@@ -24,9 +23,9 @@ public abstract class AbstractInstructionExecutor implements InstructionExecutor
      * @param binaryOp 二元运算操作
      */
     protected void executeRType(int operand, ExecutionContext context, BinaryOperator binaryOp) throws Exception {
-        int rd = RegisterOperandExtractor.extractRd(operand);
-        int rs1 = RegisterOperandExtractor.extractRs1(operand);
-        int rs2 = RegisterOperandExtractor.extractRs2(operand);
+        int rd = context.extractRd(operand);
+        int rs1 = context.extractRs1(operand);
+        int rs2 = context.extractRs2(operand);
 
         int val1 = context.getRegister(rs1);
         int val2 = context.getRegister(rs2);
@@ -43,8 +42,8 @@ public abstract class AbstractInstructionExecutor implements InstructionExecutor
      * @param unaryOp 一元运算操作（立即数运算）
      */
     protected void executeITypeImmediate(int operand, ExecutionContext context, UnaryOperator unaryOp) {
-        int rd = RegisterOperandExtractor.extractRd(operand);
-        int imm = RegisterOperandExtractor.extractImm16(operand);
+        int rd = context.extractRd(operand);
+        int imm = context.extractImm16(operand);
 
         int result = unaryOp.apply(imm);
         context.setRegister(rd, result);
@@ -58,9 +57,9 @@ public abstract class AbstractInstructionExecutor implements InstructionExecutor
      * @param binaryOp 二元运算操作
      */
     protected void executeITypeBinary(int operand, ExecutionContext context, BinaryOperator binaryOp) throws Exception {
-        int rd = RegisterOperandExtractor.extractRd(operand);
-        int rs1 = RegisterOperandExtractor.extractRs1(operand);
-        int imm = RegisterOperandExtractor.extractImm16(operand);
+        int rd = context.extractRd(operand);
+        int rs1 = context.extractRs1(operand);
+        int imm = context.extractImm16(operand);
 
         int val1 = context.getRegister(rs1);
         int val2 = imm;
@@ -76,9 +75,9 @@ public abstract class AbstractInstructionExecutor implements InstructionExecutor
      * @param context 执行上下文
      */
     protected void executeLoad(int operand, ExecutionContext context) {
-        int rd = RegisterOperandExtractor.extractRd(operand);
-        int rs1 = RegisterOperandExtractor.extractRs1(operand);
-        int offset = RegisterOperandExtractor.extractImm16(operand);
+        int rd = context.extractRd(operand);
+        int rs1 = context.extractRs1(operand);
+        int offset = context.extractImm16(operand);
 
         int baseAddr = context.getRegister(rs1);
         int address = baseAddr + offset;
@@ -94,9 +93,9 @@ public abstract class AbstractInstructionExecutor implements InstructionExecutor
      * @param context 执行上下文
      */
     protected void executeStore(int operand, ExecutionContext context) {
-        int rs = RegisterOperandExtractor.extractRd(operand);
-        int rs1 = RegisterOperandExtractor.extractRs1(operand);
-        int offset = RegisterOperandExtractor.extractImm16(operand);
+        int rs = context.extractRd(operand);
+        int rs1 = context.extractRs1(operand);
+        int offset = context.extractImm16(operand);
 
         int baseAddr = context.getRegister(rs1);
         int address = baseAddr + offset;
@@ -137,9 +136,9 @@ public abstract class AbstractInstructionExecutor implements InstructionExecutor
      * @param comparisonOp 比较运算操作
      */
     protected void executeComparison(int operand, ExecutionContext context, ComparisonOperator comparisonOp) {
-        int rd = RegisterOperandExtractor.extractRd(operand);
-        int rs1 = RegisterOperandExtractor.extractRs1(operand);
-        int rs2 = RegisterOperandExtractor.extractRs2(operand);
+        int rd = context.extractRd(operand);
+        int rs1 = context.extractRs1(operand);
+        int rs2 = context.extractRs2(operand);
 
         int val1 = context.getRegister(rs1);
         int val2 = context.getRegister(rs2);
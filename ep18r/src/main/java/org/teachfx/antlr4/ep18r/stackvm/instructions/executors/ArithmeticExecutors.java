@@ -53,6 +53,17 @@ public class ArithmeticExecutors {
         context.setRegister(rd, result);
     };
 
+    /**
+     * 立即数加法指令执行器
+     * addi rd, rs1, imm: 代替 li + add，imm为16位有符号数（减常量时取负）
+     */
+    public static final InstructionExecutor ADDI = (operand, context) -> {
+        int rd = context.extractRd(operand);
+        int rs1 = context.extractRs1(operand);
+        int imm = context.extractImm16(operand);
+        context.setRegister(rd, context.getRegister(rs1) + imm);
+    };
+
     /**
      * 减法指令执行器
      */
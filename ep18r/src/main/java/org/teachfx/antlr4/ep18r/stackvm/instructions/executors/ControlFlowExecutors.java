@@ -3,6 +3,8 @@ package org.teachfx.antlr4.ep18r.stackvm.instructions.executors;
 import org.teachfx.antlr4.ep18r.stackvm.FunctionSymbol;
 import org.teachfx.antlr4.ep18r.stackvm.StackFrame;
 import org.teachfx.antlr4.ep18r.stackvm.StackOffsets;
+import org.teachfx.antlr4.ep18r.stackvm.callingconvention.CallFrameLayout;
+import org.teachfx.antlr4.ep18r.stackvm.exception.VMStackOverflowException;
 import org.teachfx.antlr4.ep18r.stackvm.instructions.InstructionExecutor;
 import org.teachfx.antlr4.ep18r.stackvm.instructions.model.RegisterBytecodeDefinition;
 import org.teachfx.antlr4.ep18r.stackvm.interpreter.ExecutionContext;
@@ -22,7 +24,8 @@ public class ControlFlowExecutors {
      *
      * 按照ABI调用约定（第3.3节）：
      * - caller-saved寄存器：ra(r1), a1-a5(r3-r7), lr(r15)由调用者保存（共7个，不包括a0/r2）
-     * - 为被调用函数分配栈帧空间，更新SP/FP指向新栈帧（第4节）
+     * - 从调用栈段（堆高地址端，向下增长）为被调用函数分配栈帧空间，更新SP/FP指向新栈帧（第4节），
+     *   RET时释放，因此占用的内存由调用深度而不是调用次数决定
      * - callee-saved寄存器（s0-s4）由被调用函数负责保存/恢复
      *
      * 栈帧布局（根据StackOffsets定义）：
@@ -51,14 +54,27 @@ public class ControlFlowExecutors {
      * |   临时空间         |   （用于表达式求值等）
      * +-------------------+ ← sp (栈指针，低地址)
      */
-    public static final InstructionExecutor CALL = (operand, context) -> {
-        int target = context.extractImm26(operand);
+    public static final InstructionExecutor CALL = (operand, context) ->
+        invoke(context.extractImm26(operand), StackFrame.ALL_CALLER_SAVED, context);
 
+    /**
+     * 带保存掩码的函数调用指令执行器 (CALLM)
+     * callm mask, target: 与CALL相同，但只保存掩码选中的caller-saved寄存器，RET时也只恢复这些寄存器。
+     * 掩码由编译器根据调用点之后仍然活跃的寄存器计算，第i位对应
+     * {@link StackFrame#CALLER_SAVED_REGISTERS}[i]（a1-a5, lr, ra）。
+     */
+    public static final InstructionExecutor CALLM = (operand, context) ->
+        invoke(context.extractImm16(operand), context.extractSaveMask(operand) & StackFrame.ALL_CALLER_SAVED, context);
+
+    /**
+     * 执行函数调用：分配栈帧、保存掩码选中的caller-saved寄存器并跳转
+     */
+    private static void invoke(int target, int saveMask, ExecutionContext context) throws Exception {
         // 调试跟踪输出 - 仅在trace模式下显示
         if (context.isTraceEnabled()) {
             logger.callTrace("PC=%d, target=%d (0x%x), returnAddr=%d, fp=%d, sp=%d",
                 context.getProgramCounter(), target, target,
-                context.getProgramCounter() + 4,
+                context.getProgramCounter() + context.getInstructionSize(),
                 context.getRegister(RegisterBytecodeDefinition.R14),
                 context.getRegister(RegisterBytecodeDefinition.R13));
         }
@@ -67,40 +83,37 @@ public class ControlFlowExecutors {
         context.validateJumpTarget26(target);
 
         // 保存返回地址
-        int returnAddr = context.getProgramCounter() + 4;
+        int returnAddr = context.getProgramCounter() + context.getInstructionSize();
 
         // 检查调用栈溢出
         context.checkStackOverflow();
 
-        // 查找被调用函数符号，获取参数数量和局部变量数量
-        FunctionSymbol func = context.getFunctionSymbol(target);
-        int nargs = (func != null) ? func.nargs : 0;
-        int nlocals = (func != null) ? func.nlocals : 0;
-
-        // 使用StackOffsets计算标准栈帧布局
-        // 假设被调用者使用所有s0-s4寄存器（5个）
-        final int NUM_CALLEE_SAVED_REGS = 5; // s0-s4
-        int numStackArgs = Math.max(0, nargs - 6); // 第7+个参数数量
-
-        // 计算栈帧大小（字节）和字数（8字节对齐，所以是2字的倍数）
-        int frameSize = StackOffsets.calculateFrameSize(NUM_CALLEE_SAVED_REGS, nlocals, numStackArgs);
-        int frameSizeWords = frameSize / 4; // 转换为字索引（堆是int数组）
-        int spAdjustment = StackOffsets.calculateSpAdjustment(NUM_CALLEE_SAVED_REGS, nlocals);
-
-        // 获取当前SP和堆分配指针
+        // 取调用点缓存的栈帧布局：被调用函数符号、参数/局部变量数量，
+        // 以及加载时由StackOffsets算好的栈帧大小（8字节对齐）和SP调整量
+        CallFrameLayout layout = context.getCallFrameLayout(target);
+        FunctionSymbol func = layout.getSymbol();
+        int nargs = layout.getNargs();
+        int nlocals = layout.getNlocals();
+        int numStackArgs = layout.getNumStackArgs(); // 第7+个参数数量
+        int frameSize = layout.getFrameSize();
+        int frameSizeWords = layout.getFrameSizeWords(); // 转换为字索引（堆是int数组）
+
+        // 获取当前SP和调用栈段栈顶
         int currentSP = context.getRegister(RegisterBytecodeDefinition.R13);
-        int currentHeapPointer = context.getHeapAllocPointer();
+        int currentStackTop = context.getStackTop();
 
-        // 确保SP和堆分配指针同步（使用堆作为栈空间）
-        // newSP指向新栈帧的开始（低地址），堆分配指针是字索引
-        int newSP = currentHeapPointer; // 字索引
+        // 从调用栈段向下分配：新栈帧连同fp之上的旧fp、返回地址槽和栈参数区一起占用stackBlockWords个字
+        // newSP指向新栈帧的开始（低地址），均为字索引
+        int newSP = currentStackTop - layout.getStackBlockWords();
         // fp指向栈帧顶部-4字节：fp = sp + frameSize - 4 字节
         // 转换为字索引：newFP = newSP + frameSizeWords - 1
         int newFP = newSP + frameSizeWords - 1; // 字索引
 
-        // 检查堆空间是否足够（newSP和frameSizeWords都是字索引）
-        if (newSP + frameSizeWords > context.getConfig().getHeapSize()) {
-            throw new OutOfMemoryError("Not enough heap space for frame: need " + frameSize + " bytes (" + frameSizeWords + " words)");
+        // 检查调用栈段空间是否足够
+        if (newSP < context.getHeapLimit()) {
+            throw new VMStackOverflowException("Call stack segment exhausted: need " + frameSize + " bytes ("
+                + layout.getStackBlockWords() + " words) at depth " + (context.getFramePointer() + 1),
+                context.getProgramCounter(), "call");
         }
 
         // 保存旧的FP值到标准位置（fp+8字节）
@@ -114,18 +127,21 @@ public class ControlFlowExecutors {
         // StackOffsets.FIRST_LOCAL_OFFSET = -16字节，除以4得-4字
         int localsBase = newFP + StackOffsets.FIRST_LOCAL_OFFSET / 4;
         StackFrame newFrame = new StackFrame(func, returnAddr, localsBase);
+        newFrame.frameSizeWords = frameSizeWords;
+        newFrame.savedRegisterMask = saveMask;
+        newFrame.callerStackTop = currentStackTop;
+        newFrame.callerStackPointer = currentSP;
 
-        // 保存caller-saved寄存器（ABI第3.3节）
+        // 保存caller-saved寄存器（ABI第3.3节），只保存掩码选中的寄存器
         // 数组索引映射：0:a1(r3), 1:a2(r4), 2:a3(r5), 3:a4(r6), 4:a5(r7), 5:lr(r15), 6:ra(r1)
         // 注意：a0(r2)不保存，因为它是返回值寄存器，callee会直接修改它
         // 如果调用者需要在调用后保留a0的值，调用者应该在call前手动保存
-        newFrame.savedCallerRegisters[0] = context.getRegister(3); // a1
-        newFrame.savedCallerRegisters[1] = context.getRegister(4); // a2
-        newFrame.savedCallerRegisters[2] = context.getRegister(5); // a3
-        newFrame.savedCallerRegisters[3] = context.getRegister(6); // a4
-        newFrame.savedCallerRegisters[4] = context.getRegister(7); // a5
-        newFrame.savedCallerRegisters[5] = context.getRegister(15); // lr
-        newFrame.savedCallerRegisters[6] = context.getRegister(1); // ra
+        int[] savedRegisters = newFrame.savedCallerRegisters;
+        for (int i = 0; i < savedRegisters.length; i++) {
+            if ((saveMask & (1 << i)) != 0) {
+                savedRegisters[i] = context.getRegister(StackFrame.CALLER_SAVED_REGISTERS[i]);
+            }
+        }
 
         int newFramePointer = context.getFramePointer() + 1;
         context.getCallStack()[newFramePointer] = newFrame;
@@ -139,8 +155,8 @@ public class ControlFlowExecutors {
         // LR寄存器（r15）设置为返回地址
         context.setRegister(RegisterBytecodeDefinition.R15, returnAddr);
 
-        // 更新堆分配指针（跳过整个栈帧，字数）
-        context.setHeapAllocPointer(newSP + frameSizeWords);
+        // 更新调用栈段栈顶（RET时恢复为callerStackTop，释放本帧）
+        context.setStackTop(newSP);
 
         // 复制栈参数（如果有）从调用者栈帧到被调用者栈帧参数区域
         if (numStackArgs > 0) {
@@ -162,8 +178,8 @@ public class ControlFlowExecutors {
 
         // 调试跟踪输出 - 仅在trace模式下显示
         if (context.isTraceEnabled()) {
-            logger.callTrace("栈帧布局: frameSize=%d字节(%d字), newSP=%d字, newFP=%d字, localsBase=%d字, heapPtr=%d字",
-                frameSize, frameSizeWords, newSP, newFP, localsBase, newSP + frameSizeWords);
+            logger.callTrace("栈帧布局: frameSize=%d字节(%d字), newSP=%d字, newFP=%d字, localsBase=%d字, stackTop=%d字",
+                frameSize, frameSizeWords, newSP, newFP, localsBase, newSP);
             logger.callTrace("参数: nargs=%d (栈参数=%d), nlocals=%d", nargs, numStackArgs, nlocals);
             logger.callTrace("保存寄存器位置: s0@fp%d, s1@fp%d, s2@fp%d, s3@fp%d, s4@fp%d",
                 StackOffsets.S0_SAVE_OFFSET, StackOffsets.S1_SAVE_OFFSET,
@@ -181,7 +197,7 @@ public class ControlFlowExecutors {
 
         // 跳转
         context.setJumpTarget(target);
-    };
+    }
 
     /**
      * 函数返回指令执行器 (RET)
@@ -190,7 +206,7 @@ public class ControlFlowExecutors {
      * 按照ABI调用约定（第3.3节）：
      * - 恢复caller-saved寄存器（ra, a1-a5, lr）
      * - 恢复帧指针（FP）从栈帧内存读取旧值（fp+8）
-     * - 恢复栈指针（SP）：sp = fp + 4
+     * - 恢复栈指针（SP）为CALL前的值，并把调用栈段栈顶退回CALL前的位置（释放本帧）
      * - 从栈帧获取返回地址
      * - callee-saved寄存器（s0-s4）由被调用函数在尾声恢复
      */
@@ -239,13 +255,13 @@ public class ControlFlowExecutors {
                  context.getRegister(1), frame.savedCallerRegisters[6]);
             }
 
-            context.setRegister(3, frame.savedCallerRegisters[0]);  // a1
-            context.setRegister(4, frame.savedCallerRegisters[1]);  // a2
-            context.setRegister(5, frame.savedCallerRegisters[2]);  // a3
-            context.setRegister(6, frame.savedCallerRegisters[3]);  // a4
-            context.setRegister(7, frame.savedCallerRegisters[4]); // a5
-            context.setRegister(15, frame.savedCallerRegisters[5]); // lr
-            context.setRegister(1, frame.savedCallerRegisters[6]);  // ra
+            // 只恢复CALL时保存过的寄存器（CALLM的掩码未选中的寄存器保持被调用者留下的值）
+            int[] savedRegisters = frame.savedCallerRegisters;
+            for (int i = 0; i < savedRegisters.length; i++) {
+                if ((frame.savedRegisterMask & (1 << i)) != 0) {
+                    context.setRegister(StackFrame.CALLER_SAVED_REGISTERS[i], savedRegisters[i]);
+                }
+            }
 
             // 恢复FP：从当前栈帧内存读取旧FP值（存储在fp+8字节）
             int currentFP = context.getRegister(RegisterBytecodeDefinition.R14); // 字索引
@@ -254,10 +270,15 @@ public class ControlFlowExecutors {
             int prevFP = context.readMemory(fpSaveAddress);
             context.setRegister(RegisterBytecodeDefinition.R14, prevFP);
 
-            // 恢复SP：sp = fp + 1 - frameSizeWords（因为fp = sp + frameSizeWords - 1）
-            // 需要计算当前栈帧的大小
+            // 恢复SP和调用栈段栈顶：CALL时已记录调用前的值
+            // 没有记录的栈帧（如旧快照恢复的帧）按 sp = fp + 1 - frameSizeWords 计算
             int frameSizeWords = 0;
-            if (frame.symbol != null) {
+            if (frame.callerStackPointer >= 0) {
+                frameSizeWords = frame.frameSizeWords;
+            } else if (frame.frameSizeWords > 0) {
+                // CALL时按栈帧布局记录的大小
+                frameSizeWords = frame.frameSizeWords;
+            } else if (frame.symbol != null) {
                 int nargs = frame.symbol.nargs;
                 int nlocals = frame.symbol.nlocals;
                 int numStackArgs = Math.max(0, nargs - 6);
@@ -269,11 +290,14 @@ public class ControlFlowExecutors {
                 // 假设没有局部变量，只有s0-s4寄存器
                 frameSizeWords = 5; // s0-s4
             }
-            int newSP = currentFP + 1 - frameSizeWords;
+            int newSP = frame.callerStackPointer >= 0 ? frame.callerStackPointer : currentFP + 1 - frameSizeWords;
             context.setRegister(RegisterBytecodeDefinition.R13, newSP);
+            if (frame.callerStackTop >= 0) {
+                context.setStackTop(frame.callerStackTop);
+            }
 
             if (context.isTraceEnabled()) {
-                logger.retTrace("恢复FP: 从fp+8字节(字地址%d)读取旧FP=%d字, 设置SP=%d字 (fp+1-frameSizeWords, frameSizeWords=%d)",
+                logger.retTrace("恢复FP: 从fp+8字节(字地址%d)读取旧FP=%d字, 设置SP=%d字 (frameSizeWords=%d)",
                     fpSaveAddress, prevFP, newSP, frameSizeWords);
                 logger.retTrace("设置framePointer: %d->%d",
                     currentFramePointer, currentFramePointer - 1);
@@ -334,4 +358,43 @@ public class ControlFlowExecutors {
             context.setJumpTarget(target);
         }
     };
+
+    // ==================== 比较并跳转 ====================
+    // 第一个比较寄存器在rd字段，第二个在rs1字段，目标地址在imm16，代替 slt/seq 等 + jt/jf 两条指令
+
+    /**
+     * 相等跳转指令执行器 (beq rs1, rs2, target)
+     */
+    public static final InstructionExecutor BEQ = (operand, context) -> {
+        if (context.getRegister(context.extractRd(operand)) == context.getRegister(context.extractRs1(operand))) {
+            context.setJumpTarget(context.extractImm16(operand));
+        }
+    };
+
+    /**
+     * 不等跳转指令执行器 (bne rs1, rs2, target)
+     */
+    public static final InstructionExecutor BNE = (operand, context) -> {
+        if (context.getRegister(context.extractRd(operand)) != context.getRegister(context.extractRs1(operand))) {
+            context.setJumpTarget(context.extractImm16(operand));
+        }
+    };
+
+    /**
+     * 小于跳转指令执行器 (blt rs1, rs2, target)
+     */
+    public static final InstructionExecutor BLT = (operand, context) -> {
+        if (context.getRegister(context.extractRd(operand)) < context.getRegister(context.extractRs1(operand))) {
+            context.setJumpTarget(context.extractImm16(operand));
+        }
+    };
+
+    /**
+     * 大于等于跳转指令执行器 (bge rs1, rs2, target)
+     */
+    public static final InstructionExecutor BGE = (operand, context) -> {
+        if (context.getRegister(context.extractRd(operand)) >= context.getRegister(context.extractRs1(operand))) {
+            context.setJumpTarget(context.extractImm16(operand));
+        }
+    };
 }
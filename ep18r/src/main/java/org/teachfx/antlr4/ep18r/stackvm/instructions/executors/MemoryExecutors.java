@@ -1,5 +1,6 @@
 package org.teachfx.antlr4.ep18r.stackvm.instructions.executors;
 
+import org.teachfx.antlr4.ep18r.gc.HeapCollector;
 import org.teachfx.antlr4.ep18r.stackvm.instructions.InstructionExecutor;
 import org.teachfx.antlr4.ep18r.stackvm.instructions.model.RegisterBytecodeDefinition;
 import org.teachfx.antlr4.ep18r.stackvm.Logger;
@@ -198,6 +199,7 @@ public class MemoryExecutors {
      * 结构体分配指令执行器
      * struct rd, size: 在堆上分配结构体空间
      * size参数表示字段数，每个字段占4字节
+     * 启用垃圾回收时由回收器分配（空间不足时先回收不可达的结构体），否则移动堆分配指针
      */
     public static final InstructionExecutor STRUCT = (operand, context) -> {
         int rd = context.extractRd(operand);
@@ -206,6 +208,19 @@ public class MemoryExecutors {
         // 计算结构体大小（每个字段4字节，堆是int数组，每个元素4字节）
         int structSize = numFields; // 字段数，每个字段对应一个int数组元素
 
+        HeapCollector gc = context.getGarbageCollector();
+        if (gc != null) {
+            // 回收器不分配空对象，零字段结构体也占一个字，保证地址互不相同
+            int address = gc.allocate(Math.max(1, structSize));
+            // 堆分配指针记录曾用到的最高地址，快照恢复时据此保留已有对象
+            context.setHeapAllocPointer(Math.max(context.getHeapAllocPointer(), address + Math.max(1, structSize)));
+            if (context.isTraceEnabled()) {
+                logger.memoryTrace("[STRUCT] GC分配结构体: numFields=%d, address=%d", numFields, address);
+            }
+            context.setRegister(rd, address);
+            return;
+        }
+
         // 在堆上分配结构体空间
         int address = context.getHeapAllocPointer();
 
@@ -89,6 +89,16 @@ public class RegisterBytecodeDefinition {
     public static final short INSTR_NULL = 40;   // null rd (加载空指针)
     public static final short INSTR_MOV = 41;    // mov rd, rs1 (寄存器间移动)
     public static final short INSTR_HALT = 42;   // halt (停止执行)
+    public static final short INSTR_CALLM = 43;  // callm mask, target (带保存掩码的调用: mask在bits 22-16, target在imm16)
+
+    // 比较并跳转指令 (I类型: 第一个比较寄存器在rd字段, 第二个在rs1字段, 跳转目标在imm16)
+    public static final short INSTR_BEQ = 44;    // beq rs1, rs2, target (相等跳转)
+    public static final short INSTR_BNE = 45;    // bne rs1, rs2, target (不等跳转)
+    public static final short INSTR_BLT = 46;    // blt rs1, rs2, target (小于跳转)
+    public static final short INSTR_BGE = 47;    // bge rs1, rs2, target (大于等于跳转)
+
+    // 立即数算术指令 (I类型: rd, rs1, imm)
+    public static final short INSTR_ADDI = 48;   // addi rd, rs1, imm (加16位有符号立即数)
 
     // 所有指令数组
     public static Instruction[] instructions = new Instruction[]{
@@ -135,6 +145,12 @@ public class RegisterBytecodeDefinition {
             new Instruction("null", REG),           // index 40 (I类型: rd=寄存器)
             new Instruction("mov", REG, REG),       // index 41
             new Instruction("halt"),                // index 42
+            new Instruction("callm", INT, INT),     // index 43 (只保存掩码选中的caller-saved寄存器)
+            new Instruction("beq", REG, REG, INT),  // index 44
+            new Instruction("bne", REG, REG, INT),  // index 45
+            new Instruction("blt", REG, REG, INT),  // index 46
+            new Instruction("bge", REG, REG, INT),  // index 47
+            new Instruction("addi", REG, REG, INT), // index 48
     };
 
     // 静态初始化块：修正指令格式
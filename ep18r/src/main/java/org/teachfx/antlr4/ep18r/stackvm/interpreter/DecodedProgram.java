@@ -0,0 +1,114 @@
+package org.teachfx.antlr4.ep18r.stackvm.interpreter;
+
+import org.teachfx.antlr4.ep18r.stackvm.InstructionEncoding;
+import org.teachfx.antlr4.ep18r.stackvm.instructions.model.RegisterBytecodeDefinition;
+import org.teachfx.antlr4.ep18r.stackvm.registers.RegisterOperandExtractor;
+
+/**
+ * 预解码的寄存器指令序列
+ * 加载程序时把大端序字节码一次性拆成按字段分开的并行数组（下标为 pc/指令长度），
+ * 执行循环直接按下标读取操作码、寄存器编号和立即数，不再每条指令拼字节、移位和符号扩展。
+ *
+ * 立即数按指令格式预先符号扩展：J和CALL取26位，其余取16位；宽编码一律取第二个字的32位。
+ * 超出指令集范围的操作码记为 {@link #INVALID_OPCODE}，执行到时才报错。
+ * 宽编码的字段放不进一个int，传给执行器的操作数是指令下标，执行上下文据此查本对象的字段数组。
+ */
+final class DecodedProgram {
+    /** 无效操作码标记 */
+    static final int INVALID_OPCODE = -1;
+
+    /** 传给执行器的操作数：32位编码为原始指令字，宽编码为指令下标 */
+    final int[] words;
+    final int[] opcodes;
+    final int[] rd;
+    final int[] rs1;
+    final int[] rs2;
+    final int[] imm;
+    final InstructionEncoding encoding;
+    /** pc到下标的移位量：log2(指令长度) */
+    final int shift;
+
+    private final byte[] source;
+    private final int codeSize;
+
+    private DecodedProgram(byte[] source, int codeSize, int count, InstructionEncoding encoding) {
+        this.source = source;
+        this.codeSize = codeSize;
+        this.encoding = encoding;
+        this.shift = Integer.numberOfTrailingZeros(encoding.getInstructionSize());
+        this.words = new int[count];
+        this.opcodes = new int[count];
+        this.rd = new int[count];
+        this.rs1 = new int[count];
+        this.rs2 = new int[count];
+        this.imm = new int[count];
+    }
+
+    /**
+     * 解码字节码
+     * @param code 字节码
+     * @param codeSize 有效字节数，末尾不足4字节的部分不解码
+     * @return 解码结果（32位编码）
+     */
+    static DecodedProgram decode(byte[] code, int codeSize) {
+        return decode(code, codeSize, InstructionEncoding.NARROW);
+    }
+
+    /**
+     * 按指定编码解码字节码
+     * @param code 字节码
+     * @param codeSize 有效字节数，末尾不足一条指令的部分不解码
+     * @param encoding 指令编码
+     * @return 解码结果
+     */
+    static DecodedProgram decode(byte[] code, int codeSize, InstructionEncoding encoding) {
+        int size = encoding.getInstructionSize();
+        int count = code == null ? 0 : Math.max(0, Math.min(codeSize, code.length)) / size;
+        DecodedProgram program = new DecodedProgram(code, codeSize, count, encoding);
+        for (int i = 0; i < count; i++) {
+            int pc = i * size;
+            int word = readWord(code, pc);
+            if (encoding.isWide()) {
+                int opcode = word >>> 24;
+                program.words[i] = i;
+                program.opcodes[i] = opcode < RegisterBytecodeDefinition.instructions.length ? opcode : INVALID_OPCODE;
+                program.rd[i] = (word >> 16) & 0xFF;
+                program.rs1[i] = (word >> 8) & 0xFF;
+                program.rs2[i] = word & 0xFF;
+                program.imm[i] = readWord(code, pc + 4);
+                continue;
+            }
+            int opcode = (word >> 26) & 0x3F;
+            program.words[i] = word;
+            program.opcodes[i] = opcode < RegisterBytecodeDefinition.instructions.length ? opcode : INVALID_OPCODE;
+            program.rd[i] = RegisterOperandExtractor.extractRd(word);
+            program.rs1[i] = RegisterOperandExtractor.extractRs1(word);
+            program.rs2[i] = RegisterOperandExtractor.extractRs2(word);
+            program.imm[i] = opcode == RegisterBytecodeDefinition.INSTR_J || opcode == RegisterBytecodeDefinition.INSTR_CALL
+                ? RegisterOperandExtractor.extractImm26(word)
+                : RegisterOperandExtractor.extractImm16(word);
+        }
+        return program;
+    }
+
+    private static int readWord(byte[] code, int pc) {
+        return ((code[pc] & 0xFF) << 24) |
+               ((code[pc + 1] & 0xFF) << 16) |
+               ((code[pc + 2] & 0xFF) << 8) |
+               (code[pc + 3] & 0xFF);
+    }
+
+    /**
+     * 已解码的指令条数
+     */
+    int size() {
+        return words.length;
+    }
+
+    /**
+     * 是否由给定的字节码解码而来
+     */
+    boolean isDecodedFrom(byte[] code, int codeSize) {
+        return source == code && this.codeSize == codeSize;
+    }
+}
@@ -1,8 +1,10 @@
 package org.teachfx.antlr4.ep18r.stackvm.interpreter;
 
+import org.teachfx.antlr4.ep18r.gc.HeapCollector;
 import org.teachfx.antlr4.ep18r.stackvm.ErrorCode;
 import org.teachfx.antlr4.ep18r.stackvm.FunctionSymbol;
 import org.teachfx.antlr4.ep18r.stackvm.StackFrame;
+import org.teachfx.antlr4.ep18r.stackvm.callingconvention.CallFrameLayout;
 import org.teachfx.antlr4.ep18r.stackvm.config.VMConfig;
 import org.teachfx.antlr4.ep18r.stackvm.exception.VMStackOverflowException;
 import org.teachfx.antlr4.ep18r.stackvm.instructions.model.RegisterBytecodeDefinition;
@@ -11,11 +13,17 @@ import org.teachfx.antlr4.ep18r.stackvm.instructions.model.RegisterBytecodeDefin
  * 执行上下文
  * 封装寄存器、内存等执行环境
  * 提供统一的访问接口，消除重复代码
+ * 解释器为每个VM只创建一个上下文，执行每条指令前更新其程序计数器
+ * 宽编码程序的操作数是指令下标，字段从预解码数组中读取（见 {@link DecodedProgram}）
  */
 public class ExecutionContext {
     private final RegisterVMInterpreter vm;
     private final int[] registers;
-    private final int programCounter;
+    private int programCounter;
+    // 宽编码程序的预解码指令，32位编码时为null
+    private DecodedProgram wideProgram;
+    private int instructionSize = 4;
+    private int registerCount = RegisterBytecodeDefinition.NUM_REGISTERS;
 
     public ExecutionContext(RegisterVMInterpreter vm, int programCounter) {
         this.vm = vm;
@@ -47,40 +55,60 @@ public class ExecutionContext {
      * 验证寄存器编号
      */
     private void validateRegister(int regNum) {
-        if (regNum < 0 || regNum >= RegisterBytecodeDefinition.NUM_REGISTERS) {
+        if (regNum < 0 || regNum >= registerCount) {
             throw new IllegalArgumentException(
                 "Invalid register number: " + regNum + ", must be 0-" +
-                (RegisterBytecodeDefinition.NUM_REGISTERS - 1));
+                (registerCount - 1));
         }
     }
 
     // ==================== 操作数提取 ====================
 
+    /**
+     * 切换到程序的指令编码（解释器安装字节码后调用）
+     */
+    void setProgram(DecodedProgram program) {
+        this.wideProgram = program.encoding.isWide() ? program : null;
+        this.instructionSize = program.encoding.getInstructionSize();
+        this.registerCount = program.encoding.getRegisterCount();
+    }
+
     /**
      * 从操作数中提取rd字段（目标寄存器）
      */
     public int extractRd(int operand) {
-        return (operand >> 21) & 0x1F;
+        return wideProgram != null ? wideProgram.rd[operand] : (operand >> 21) & 0x1F;
     }
 
     /**
      * 从操作数中提取rs1字段（源寄存器1）
      */
     public int extractRs1(int operand) {
-        return (operand >> 16) & 0x1F;
+        return wideProgram != null ? wideProgram.rs1[operand] : (operand >> 16) & 0x1F;
     }
 
     /**
      * 从操作数中提取rs2字段（源寄存器2）
      */
     public int extractRs2(int operand) {
-        return (operand >> 11) & 0x1F;
+        return wideProgram != null ? wideProgram.rs2[operand] : (operand >> 11) & 0x1F;
+    }
+
+    /**
+     * 从操作数中提取callm的保存掩码（32位编码bits 22-16，宽编码rs1字节）
+     */
+    public int extractSaveMask(int operand) {
+        return wideProgram != null ? wideProgram.rs1[operand] & 0x7F : (operand >> 16) & 0x7F;
     }
 
     /**
      * 从操作数中提取16位立即数（符号扩展）
+     * 宽编码返回完整的32位立即数
      */
     public int extractImm16(int operand) {
+        if (wideProgram != null) {
+            return wideProgram.imm[operand];
+        }
         int imm = operand & 0xFFFF;
         if ((imm & 0x8000) != 0) {
             imm |= 0xFFFF0000;
@@ -90,8 +118,12 @@ public class ExecutionContext {
 
     /**
      * 从操作数中提取26位立即数（符号扩展）
+     * 宽编码返回完整的32位立即数
      */
     public int extractImm26(int operand) {
+        if (wideProgram != null) {
+            return wideProgram.imm[operand];
+        }
         int imm = operand & 0x3FFFFFF;
         if ((imm & 0x2000000) != 0) {
             imm |= 0xFC000000;
@@ -163,6 +195,13 @@ public class ExecutionContext {
         return vm.getConfig();
     }
 
+    /**
+     * 获取每条指令的字节数（32位编码为4，宽编码为8），CALL据此计算返回地址
+     */
+    public int getInstructionSize() {
+        return instructionSize;
+    }
+
     /**
      * 获取程序计数器
      */
@@ -170,6 +209,13 @@ public class ExecutionContext {
         return programCounter;
     }
 
+    /**
+     * 更新程序计数器（解释器复用上下文时在分派前调用）
+     */
+    void setProgramCounter(int programCounter) {
+        this.programCounter = programCounter;
+    }
+
     /**
      * 检查trace模式是否启用
      */
@@ -200,6 +246,14 @@ public class ExecutionContext {
         vm.setHeapAllocPointer(pointer);
     }
 
+    /**
+     * 获取结构体分配使用的垃圾回收器
+     * @return 回收器，未启用时为null
+     */
+    public HeapCollector getGarbageCollector() {
+        return vm.getGarbageCollector();
+    }
+
     /**
      * 获取调用栈数组
      */
@@ -222,10 +276,10 @@ public class ExecutionContext {
     }
 
     /**
-     * 验证26位跳转目标地址（需要4字节对齐）
+     * 验证26位跳转目标地址（需要按指令长度对齐）
      */
     public void validateJumpTarget26(int target) {
-        if (target < 0 || target >= vm.getCodeSize() || target % 4 != 0) {
+        if (target < 0 || target >= vm.getCodeSize() || target % instructionSize != 0) {
             throw new IllegalArgumentException(
                 "Invalid 26-bit jump target: " + target + " at PC=" + getProgramCounter());
         }
@@ -240,11 +294,32 @@ public class ExecutionContext {
         }
     }
 
+    /**
+     * 获取可分配堆内存的上限（不含），即调用栈段的下界
+     */
+    public int getHeapLimit() {
+        return vm.getStackLimit();
+    }
+
+    /**
+     * 获取调用栈段当前栈顶
+     */
+    public int getStackTop() {
+        return vm.getStackTop();
+    }
+
+    /**
+     * 设置调用栈段栈顶
+     */
+    public void setStackTop(int stackTop) {
+        vm.setStackTop(stackTop);
+    }
+
     /**
      * 验证堆内存边界
      */
     public void validateHeapBounds(int address, int size) {
-        if (address < 0 || address + size > getConfig().getHeapSize()) {
+        if (address < 0 || address + size > getHeapLimit()) {
             throw new IndexOutOfBoundsException(
                 "Heap address out of bounds: " + address + " with size " + size);
         }
@@ -268,6 +343,15 @@ public class ExecutionContext {
         return vm.findFunctionByAddress(address);
     }
 
+    /**
+     * 获取当前CALL指令调用目标的栈帧布局（加载时按调用点预先计算）
+     * @param target 调用目标地址
+     * @return 栈帧布局，目标不是已知函数时返回 {@link CallFrameLayout#UNKNOWN}
+     */
+    public CallFrameLayout getCallFrameLayout(int target) {
+        return vm.getCallFrameLayout(programCounter, target);
+    }
+
     /**
      * 访问栈帧局部变量（通过偏移量）
      * 使用FP相对寻址：地址 = frameBasePointer + offset
@@ -0,0 +1,161 @@
+package org.teachfx.antlr4.ep18r.stackvm.interpreter;
+
+import org.teachfx.antlr4.ep18r.stackvm.FunctionSymbol;
+import org.teachfx.antlr4.ep18r.stackvm.StackOffsets;
+import org.teachfx.antlr4.ep18r.stackvm.callingconvention.CallFrameLayout;
+import org.teachfx.antlr4.ep18r.stackvm.instructions.model.RegisterBytecodeDefinition;
+
+import java.util.Arrays;
+
+/**
+ * 按入口地址索引的函数表
+ * 加载程序时扫描一次常量池，把函数符号及其栈帧布局放到下标为 address/指令长度 的数组中，
+ * 并为每条CALL/CALLM指令（调用点）记下目标函数的布局。CALL执行时按调用点下标直接取布局，
+ * 查找开销与常量池大小无关。
+ *
+ * 栈帧布局按函数体实际使用情况计算：扫描从入口到下一个函数入口之间的指令，
+ * 取以fp为基址的lw/sw访问到的最低偏移，以及用到的s0-s4寄存器的保存槽位。
+ * 函数体以其他方式使用sp/fp（如把fp复制到别的寄存器）时无法确定访问范围，退回到保守布局；
+ * 有栈传递参数的函数也使用保守布局。
+ */
+final class FunctionTable {
+    private final byte[] code;
+    private final Object[] constPool;
+    private final FunctionSymbol[] functions;
+    private final CallFrameLayout[] layouts;
+    private final CallFrameLayout[] callSites;
+    private final int shift;
+
+    private FunctionTable(byte[] code, Object[] constPool, int slots, int shift) {
+        this.code = code;
+        this.shift = shift;
+        this.constPool = constPool;
+        this.functions = new FunctionSymbol[slots];
+        this.layouts = new CallFrameLayout[slots];
+        this.callSites = new CallFrameLayout[slots];
+    }
+
+    /**
+     * 建立函数表
+     * @param code 字节码（用于判断函数表是否过期）
+     * @param constPool 常量池，其中的 {@link FunctionSymbol} 按入口地址登记，地址相同时先出现的优先
+     * @param program 预解码的指令，其中的CALL/CALLM指令登记为调用点
+     */
+    static FunctionTable build(byte[] code, Object[] constPool, DecodedProgram program) {
+        FunctionTable table = new FunctionTable(code, constPool, program.size(), program.shift);
+        int entryCount = 0;
+        int[] entries = new int[program.size()];
+        if (constPool != null) {
+            for (Object constant : constPool) {
+                if (constant instanceof FunctionSymbol function) {
+                    int address = function.address;
+                    if (table.isEntry(address) && table.functions[address >> table.shift] == null) {
+                        table.functions[address >> table.shift] = function;
+                        entries[entryCount++] = address >> table.shift;
+                    }
+                }
+            }
+        }
+        entries = Arrays.copyOf(entries, entryCount);
+        Arrays.sort(entries);
+        for (int k = 0; k < entryCount; k++) {
+            int end = k + 1 < entryCount ? entries[k + 1] : program.size();
+            table.layouts[entries[k]] = scanLayout(table.functions[entries[k]], program, entries[k], end);
+        }
+        for (int i = 0; i < program.size(); i++) {
+            int opcode = program.opcodes[i];
+            if (opcode == RegisterBytecodeDefinition.INSTR_CALL || opcode == RegisterBytecodeDefinition.INSTR_CALLM) {
+                table.callSites[i] = table.layoutOf(program.imm[i]);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * 扫描函数体 [start, end) 计算栈帧布局
+     */
+    private static CallFrameLayout scanLayout(FunctionSymbol function, DecodedProgram program, int start, int end) {
+        int lowest = StackOffsets.FP_SAVE_OFFSET;
+        int savedRegs = 0;
+        boolean escapes = false;
+        for (int i = start; i < end; i++) {
+            int opcode = program.opcodes[i];
+            RegisterBytecodeDefinition.Instruction instr = opcode > 0 ? RegisterBytecodeDefinition.instructions[opcode] : null;
+            if (instr == null || opcode == RegisterBytecodeDefinition.INSTR_CALLM) {
+                continue;
+            }
+            boolean fpRelative = (opcode == RegisterBytecodeDefinition.INSTR_LW || opcode == RegisterBytecodeDefinition.INSTR_SW)
+                && program.rs1[i] == RegisterBytecodeDefinition.R14;
+            if (fpRelative) {
+                lowest = Math.min(lowest, program.imm[i]);
+            }
+            boolean conditionalJump = opcode == RegisterBytecodeDefinition.INSTR_JT || opcode == RegisterBytecodeDefinition.INSTR_JF;
+            for (int k = 0; k < instr.n; k++) {
+                if (instr.getOperandType(k) != RegisterBytecodeDefinition.REG) {
+                    continue;
+                }
+                int reg = conditionalJump || k == 1 ? program.rs1[i] : k == 0 ? program.rd[i] : program.rs2[i];
+                if (fpRelative && k == 1) {
+                    continue;
+                }
+                if (reg == RegisterBytecodeDefinition.R13 || reg == RegisterBytecodeDefinition.R14) {
+                    escapes = true;
+                } else if (reg >= RegisterBytecodeDefinition.R8 && reg <= RegisterBytecodeDefinition.R12) {
+                    int index = reg - RegisterBytecodeDefinition.R8;
+                    savedRegs |= 1 << index;
+                    lowest = Math.min(lowest, StackOffsets.S0_SAVE_OFFSET + 4 * index);
+                }
+            }
+        }
+        // 经栈传参的函数：调用者把参数写在自己sp之上，新栈帧过小时旧fp保存位置会覆盖尚未复制的参数
+        if (escapes || function.nargs > CallFrameLayout.NUM_REGISTER_ARGS) {
+            CallFrameLayout conservative = CallFrameLayout.of(function);
+            return CallFrameLayout.of(function, CallFrameLayout.NUM_CALLEE_SAVED_REGS,
+                Math.min(lowest, conservative.getLowestFpOffset()));
+        }
+        return CallFrameLayout.of(function, Integer.bitCount(savedRegs), lowest);
+    }
+
+    private boolean isEntry(int address) {
+        return address >= 0 && (address & ((1 << shift) - 1)) == 0 && (address >> shift) < functions.length;
+    }
+
+    /**
+     * 是否由给定的字节码和常量池建立
+     */
+    boolean isBuiltFrom(byte[] code, Object[] constPool) {
+        return this.code == code && this.constPool == constPool;
+    }
+
+    /**
+     * 按入口地址查找函数符号
+     * @return 函数符号，如果找不到返回null
+     */
+    FunctionSymbol find(int address) {
+        return isEntry(address) ? functions[address >> shift] : null;
+    }
+
+    /**
+     * 获取入口地址处函数的栈帧布局，未知函数返回 {@link CallFrameLayout#UNKNOWN}
+     */
+    CallFrameLayout layoutOf(int address) {
+        CallFrameLayout layout = isEntry(address) ? layouts[address >> shift] : null;
+        return layout != null ? layout : CallFrameLayout.UNKNOWN;
+    }
+
+    /**
+     * 获取调用点的栈帧布局
+     * 加载时已登记的调用点直接返回缓存的布局，否则按目标地址查表
+     * @param callSite CALL指令地址
+     * @param target 调用目标地址
+     */
+    CallFrameLayout layoutAt(int callSite, int target) {
+        if (isEntry(callSite)) {
+            CallFrameLayout layout = callSites[callSite >> shift];
+            if (layout != null && (layout.getSymbol() == null || layout.getSymbol().address == target)) {
+                return layout;
+            }
+        }
+        return layoutOf(target);
+    }
+}
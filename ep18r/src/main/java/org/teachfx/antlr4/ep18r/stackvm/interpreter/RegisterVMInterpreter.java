@@ -4,21 +4,30 @@ import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.teachfx.antlr4.ep18r.gc.GCRoots;
+import org.teachfx.antlr4.ep18r.gc.HeapCollector;
+import org.teachfx.antlr4.ep18r.gc.MarkSweepGC;
 import org.teachfx.antlr4.ep18r.parser.VMAssemblerLexer;
 import org.teachfx.antlr4.ep18r.parser.VMAssemblerParser;
 import org.teachfx.antlr4.ep18r.stackvm.FunctionSymbol;
+import org.teachfx.antlr4.ep18r.stackvm.InstructionEncoding;
+import org.teachfx.antlr4.ep18r.stackvm.ObjectFile;
 import org.teachfx.antlr4.ep18r.stackvm.RegisterByteCodeAssembler;
 import org.teachfx.antlr4.ep18r.stackvm.StackFrame;
+import org.teachfx.antlr4.ep18r.stackvm.StackOffsets;
+import org.teachfx.antlr4.ep18r.stackvm.callingconvention.CallFrameLayout;
 import org.teachfx.antlr4.ep18r.stackvm.config.VMConfig;
+import org.teachfx.antlr4.ep18r.stackvm.exception.VMStackOverflowException;
 import org.teachfx.antlr4.ep18r.stackvm.instructions.InstructionExecutor;
 import org.teachfx.antlr4.ep18r.stackvm.instructions.InstructionMapper;
 import org.teachfx.antlr4.ep18r.stackvm.instructions.model.RegisterBytecodeDefinition;
 import org.teachfx.antlr4.ep18r.stackvm.memory.IMemoryManager;
-import org.teachfx.antlr4.ep18r.stackvm.registers.RegisterOperandExtractor;
 import org.teachfx.antlr4.ep18r.stackvm.Logger;
 import org.teachfx.antlr4.ep18r.pass.codegen.ByteCodeEncoder;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 
 /**
  * 可视化监听器接口 - 已移动到单独文件 VisualizationListener.java
@@ -28,8 +37,10 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
     // 虚拟机配置
     private final VMConfig config;
 
-    // 寄存器文件：16个寄存器，r0-r15
-    private final int[] registers = new int[RegisterBytecodeDefinition.NUM_REGISTERS];
+    // 寄存器文件：按宽编码的64个寄存器分配，32位编码的程序只能访问r0-r15
+    private final int[] registers = new int[InstructionEncoding.WIDE.getRegisterCount()];
+    private InstructionEncoding encoding = InstructionEncoding.NARROW;
+    private int registerCount = InstructionEncoding.NARROW.getRegisterCount();
 
     // 内存和运行时数据结构
     private Object[] constPool;
@@ -39,6 +50,12 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
     private final int[] heap; // 现在由配置控制
     private final int[] locals; // 现在由配置控制
     private int heapAllocPointer = 0;          // 堆分配指针
+    private int stringSegmentBase;             // 只读字符串段起始地址（位于堆顶，之上的堆内存不可写）
+    private int[] stringAddresses = new int[0]; // 常量池下标 -> 字符串在字符串段中的地址，非字符串常量为-1
+    private Object[] internedPool;             // 字符串段对应的常量池
+    private int stackLimit;                    // 调用栈段起始地址（栈底之下的界限，也是堆分配的上限）
+    private int stackTop;                      // 调用栈段当前栈顶，栈帧从字符串段之下向低地址分配
+    private HeapCollector garbageCollector;    // 结构体分配使用的回收器，null表示只用堆分配指针
     private final StackFrame[] callStack; // 现在由配置控制
     private int framePointer = -1;
     private FunctionSymbol mainFunction;
@@ -58,6 +75,12 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
     // 指令映射器（策略模式）
     private final InstructionMapper instructionMapper = new InstructionMapper();
 
+    // 加载时预解码的指令字段；所有执行器共用一个执行上下文
+    private DecodedProgram decoded;
+    // 按入口地址索引的函数表，含各调用点的栈帧布局
+    private FunctionTable functionTable;
+    private final ExecutionContext context = new ExecutionContext(this, 0);
+
     // 特殊用途寄存器别名
     private static final int SP = RegisterBytecodeDefinition.R13; // 栈指针
     private static final int FP = RegisterBytecodeDefinition.R14; // 帧指针
@@ -69,8 +92,11 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
     private volatile boolean autoStepMode = false;
     private volatile int autoStepDelay = 200;
     private final java.util.Set<Integer> breakpoints = new java.util.HashSet<>();
-    private final java.util.List<VisualizationListener> visualizationListeners = new java.util.ArrayList<>();
+    // 写时复制：调试器可在执行过程中（包括在回调中）接入或移除监听器
+    private final java.util.List<VisualizationListener> visualizationListeners = new java.util.concurrent.CopyOnWriteArrayList<>();
     private final ByteCodeEncoder byteCodeEncoder = new ByteCodeEncoder();
+    // 存在监听器、断点、暂停、步进或跟踪时为true，执行循环据此选择插桩循环或无插桩循环
+    private volatile boolean instrumented = false;
     
     // 日志记录器
     private final Logger logger = Logger.getLogger(RegisterVMInterpreter.class);
@@ -94,11 +120,16 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
         }
         this.config = config;
         this.heap = new int[config.getHeapSize()];
+        this.stringSegmentBase = heap.length;
+        resetStackSegment();
         this.locals = new int[config.getLocalsSize()];
         this.callStack = new StackFrame[config.getMaxCallStackDepth()];
         this.maxExecutionSteps = config.getMaxExecutionSteps();
         this.programCounter = 0;
         this.running = false;
+        if (config.isGcEnabled()) {
+            this.garbageCollector = new MarkSweepGC(new InterpreterRoots());
+        }
     }
 
     // ==================== 可视化支持方法 ====================
@@ -109,6 +140,7 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
     public synchronized void addVisualizationListener(VisualizationListener listener) {
         if (listener != null && !visualizationListeners.contains(listener)) {
             visualizationListeners.add(listener);
+            updateInstrumentation();
         }
     }
     
@@ -118,6 +150,7 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
     public synchronized void removeVisualizationListener(VisualizationListener listener) {
         if (listener != null) {
             visualizationListeners.remove(listener);
+            updateInstrumentation();
         }
     }
     
@@ -126,6 +159,7 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
      */
     public synchronized void setPaused(boolean paused) {
         this.paused = paused;
+        updateInstrumentation();
         if (paused) {
             notifyPause(programCounter);
         } else {
@@ -145,6 +179,7 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
      */
     public synchronized void setStepMode(boolean stepMode) {
         this.stepMode = stepMode;
+        updateInstrumentation();
     }
 
     /**
@@ -159,6 +194,7 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
      */
     public synchronized void setAutoStepMode(boolean autoStepMode) {
         this.autoStepMode = autoStepMode;
+        updateInstrumentation();
     }
 
     /**
@@ -187,6 +223,7 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
      */
     public synchronized void addBreakpoint(int pc) {
         breakpoints.add(pc);
+        updateInstrumentation();
     }
     
     /**
@@ -194,6 +231,7 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
      */
     public synchronized void removeBreakpoint(int pc) {
         breakpoints.remove(pc);
+        updateInstrumentation();
     }
     
     /**
@@ -213,6 +251,22 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
     public boolean hasBreakpoints() {
         return !breakpoints.isEmpty();
     }
+
+    /**
+     * 重新计算是否需要插桩执行
+     * 调试器在执行过程中接入时，无插桩循环在下一条指令边界让位给插桩循环
+     */
+    private synchronized void updateInstrumentation() {
+        instrumented = trace || paused || stepMode || autoStepMode
+            || !breakpoints.isEmpty() || !visualizationListeners.isEmpty();
+    }
+
+    /**
+     * 检查当前是否使用插桩执行循环
+     */
+    public boolean isInstrumented() {
+        return instrumented;
+    }
     
     /**
      * 通知监听器：指令执行前
@@ -291,10 +345,11 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
             RegisterByteCodeAssembler assembler = new RegisterByteCodeAssembler(RegisterBytecodeDefinition.instructions);
             walker.walk(assembler, parseTree);
 
-            interp.code = assembler.getMachineCode();
-            interp.codeSize = assembler.getCodeMemorySize();
+            interp.installCode(assembler.getMachineCode(), assembler.getCodeMemorySize(), assembler.getEncoding());
             interp.constPool = assembler.getConstantPool();
             interp.mainFunction = assembler.getMainFunction();
+            interp.linkFunctions();
+            interp.internStrings();
             interp.globals = new Object[assembler.getDataSize()];
 
             // 诊断日志：输出加载的字节码信息（仅在trace模式下显示）
@@ -312,6 +367,26 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
         return hasErrors;
     }
 
+    /**
+     * 从二进制目标文件加载，不经过词法/语法分析
+     */
+    public static void loadObjectFile(RegisterVMInterpreter interp, Path path) throws IOException {
+        load(interp, ObjectFile.read(path));
+    }
+
+    /**
+     * 从已读取的目标文件加载
+     */
+    public static void load(RegisterVMInterpreter interp, ObjectFile objectFile) {
+        interp.installCode(objectFile.getCode(), objectFile.getCodeSize(), objectFile.getEncoding());
+        interp.constPool = objectFile.getConstantPool();
+        interp.mainFunction = objectFile.getMainFunction();
+        interp.linkFunctions();
+        interp.internStrings();
+        interp.globals = new Object[objectFile.getDataSize()];
+        interp.logger.diagnostic("Loaded object file code size: %d bytes", interp.codeSize);
+    }
+
     /**
      * 执行加载的字节码
      */
@@ -321,34 +396,289 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
         }
 
         // 初始化寄存器：r0恒为0，其他寄存器初始化为0
-        // FP (R14) 初始化为0，作为main函数的栈帧基址
         for (int i = 1; i < registers.length; i++) {
             registers[i] = 0;
         }
+        resetStackSegment();
+        if (garbageCollector != null) {
+            garbageCollector.reset(heapAllocPointer);
+        }
 
         // 设置初始栈帧（main函数）
-        // frameBasePointer = 0，表示main函数的局部变量从heap[0]开始
-        StackFrame frame = new StackFrame(mainFunction, -1, 0);
+        // 与普通调用一样从调用栈段顶部分配，局部变量不会与堆上分配的对象重叠
+        CallFrameLayout layout = getCallFrameLayout(-1, mainFunction.address);
+        if (layout.getSymbol() != mainFunction) {
+            layout = CallFrameLayout.of(mainFunction);
+        }
+        int sp = stackTop - layout.getStackBlockWords();
+        if (sp < stackLimit) {
+            throw new VMStackOverflowException("Call stack segment exhausted: need "
+                + layout.getFrameSize() + " bytes", mainFunction.address, "main");
+        }
+        int fp = sp + layout.getFrameSizeWords() - 1;
+        StackFrame frame = new StackFrame(mainFunction, -1, fp + StackOffsets.FIRST_LOCAL_OFFSET / 4);
+        frame.frameSizeWords = layout.getFrameSizeWords();
+        frame.callerStackTop = stackTop;
+        frame.callerStackPointer = 0;
         callStack[++framePointer] = frame;
+        registers[SP] = sp;
+        registers[FP] = fp;
+        stackTop = sp;
         programCounter = mainFunction.address;
         running = true;
         
         // 重置可视化状态
         paused = false;
         stepMode = false;
+        updateInstrumentation();
 
         // 执行循环
         cpu();
     }
 
+    // ==================== 快照 ====================
+
+    /**
+     * 拍下当前状态的快照
+     * 应在停机后调用（通常是初始化代码末尾的HALT），此后可通过 {@link #restore(VMSnapshot)}
+     * 和 {@link #resume()} 在同一或另一个同配置的VM上反复从该点继续执行。
+     * @return 快照
+     * @throws IllegalStateException VM正在运行或尚未加载程序
+     */
+    public VMSnapshot snapshot() {
+        if (running) {
+            throw new IllegalStateException("Cannot snapshot a running VM");
+        }
+        if (code == null) {
+            throw new IllegalStateException("No program loaded");
+        }
+        int frameCount = framePointer + 1;
+        int[] frames = new int[frameCount * VMSnapshot.FRAME_WORDS];
+        for (int i = 0; i < frameCount; i++) {
+            StackFrame frame = callStack[i];
+            int base = i * VMSnapshot.FRAME_WORDS;
+            frames[base] = frame.symbol != null ? frame.symbol.address : -1;
+            frames[base + 1] = frame.symbol != null ? frame.symbol.nargs : 0;
+            frames[base + 2] = frame.symbol != null ? frame.symbol.nlocals : 0;
+            frames[base + 3] = frame.returnAddress;
+            frames[base + 4] = frame.frameBasePointer;
+            frames[base + 5] = frame.frameSizeWords;
+            frames[base + 6] = frame.savedRegisterMask;
+            frames[base + 7] = frame.callerStackTop;
+            frames[base + 8] = frame.callerStackPointer;
+            System.arraycopy(frame.savedCallerRegisters, 0, frames, base + 9, frame.savedCallerRegisters.length);
+        }
+        ObjectFile program = new ObjectFile(code, codeSize, constPool != null ? constPool : new Object[0],
+                                            mainFunction, globals != null ? globals.length : 0, encoding);
+        return new VMSnapshot(
+            program,
+            programCounter,
+            heapAllocPointer,
+            heap.length,
+            registers.clone(),
+            java.util.Arrays.copyOf(heap, VMSnapshot.trimmedLength(heap, stackLimit)),
+            java.util.Arrays.copyOf(locals, VMSnapshot.trimmedLength(locals)),
+            frames,
+            java.util.Arrays.copyOfRange(heap, stackTop, stringSegmentBase),
+            globals != null ? globals.clone() : new Object[0]);
+    }
+
+    /**
+     * 从快照恢复程序和运行状态，之后调用 {@link #resume()} 继续执行
+     * 快照本身不被修改，可以反复恢复。栈帧的函数符号按入口地址在常量池中查找。
+     * @param snapshot 快照
+     * @throws IllegalStateException VM正在运行
+     * @throws IllegalArgumentException 快照的堆大小与本VM不同，或超出本VM配置的容量
+     */
+    public void restore(VMSnapshot snapshot) {
+        if (snapshot == null) {
+            throw new IllegalArgumentException("Snapshot cannot be null");
+        }
+        if (running) {
+            throw new IllegalStateException("Cannot restore a running VM");
+        }
+        int[] savedHeap = snapshot.getHeap();
+        int[] savedLocals = snapshot.getLocals();
+        int frameCount = snapshot.getFrameCount();
+        if (snapshot.getHeapSize() != heap.length || savedLocals.length > locals.length || frameCount > callStack.length) {
+            throw new IllegalArgumentException("Snapshot does not fit VM configuration: " + config);
+        }
+
+        load(this, snapshot.getProgram());
+        int[] savedStack = snapshot.getStack();
+        if (savedHeap.length > stackLimit || savedStack.length > stringSegmentBase - stackLimit) {
+            throw new IllegalArgumentException("Snapshot does not fit VM configuration: " + config);
+        }
+        globals = snapshot.getGlobals().clone();
+        int[] savedRegisters = snapshot.getRegisters();
+        int restoredCount = Math.min(savedRegisters.length, registers.length);
+        System.arraycopy(savedRegisters, 0, registers, 0, restoredCount);
+        java.util.Arrays.fill(registers, restoredCount, registers.length, 0);
+        System.arraycopy(savedHeap, 0, heap, 0, savedHeap.length);
+        stackTop = stringSegmentBase - savedStack.length;
+        java.util.Arrays.fill(heap, savedHeap.length, stackTop, 0);
+        System.arraycopy(savedStack, 0, heap, stackTop, savedStack.length);
+        System.arraycopy(savedLocals, 0, locals, 0, savedLocals.length);
+        java.util.Arrays.fill(locals, savedLocals.length, locals.length, 0);
+        heapAllocPointer = snapshot.getHeapAllocPointer();
+        if (garbageCollector != null) {
+            // 回收器状态不在快照中，快照里已分配的对象全部视为永久占用
+            garbageCollector.reset(heapAllocPointer);
+        }
+
+        int[] frames = snapshot.getFrames();
+        java.util.Arrays.fill(callStack, null);
+        for (int i = 0; i < frameCount; i++) {
+            int base = i * VMSnapshot.FRAME_WORDS;
+            int address = frames[base];
+            FunctionSymbol symbol = null;
+            if (address >= 0) {
+                symbol = mainFunction != null && mainFunction.address == address
+                    ? mainFunction : findFunctionByAddress(address);
+                if (symbol == null) {
+                    symbol = new FunctionSymbol("func_" + address, frames[base + 1], frames[base + 2], address);
+                }
+            }
+            StackFrame frame = new StackFrame(symbol, frames[base + 3], frames[base + 4]);
+            frame.frameSizeWords = frames[base + 5];
+            frame.savedRegisterMask = frames[base + 6];
+            frame.callerStackTop = frames[base + 7];
+            frame.callerStackPointer = frames[base + 8];
+            System.arraycopy(frames, base + 9, frame.savedCallerRegisters, 0, frame.savedCallerRegisters.length);
+            callStack[i] = frame;
+        }
+        framePointer = frameCount - 1;
+        programCounter = snapshot.getProgramCounter();
+        didJump = false;
+    }
+
+    /**
+     * 从当前状态继续执行到停机
+     * 通常在 {@link #restore(VMSnapshot)} 之后调用：快照在HALT处拍下，
+     * 恢复后从HALT的下一条指令继续，初始化阶段无需重新执行。
+     * @throws IllegalStateException 没有已加载的程序或活动栈帧
+     */
+    public void resume() throws Exception {
+        if (code == null || framePointer < 0) {
+            throw new IllegalStateException("No program state to resume");
+        }
+        running = true;
+        paused = false;
+        stepMode = false;
+        updateInstrumentation();
+        cpu();
+    }
+
     /**
      * 主执行循环 - 解码并执行寄存器指令
-     * 集成可视化支持：暂停检查、断点、事件通知
+     * 没有任何调试/可视化需求时使用无插桩循环；两个循环都在指令边界检查插桩标志，
+     * 标志变化时返回这里切换到另一个循环，从同一条指令继续执行。
      */
     private void cpu() throws Exception {
         executionSteps = 0; // 重置执行步数计数器
-        
+        if (decoded == null || !decoded.isDecodedFrom(code, codeSize) || decoded.encoding != encoding) {
+            decoded = DecodedProgram.decode(code, codeSize, encoding);
+            context.setProgram(decoded);
+            linkFunctions();
+        } else if (functionTable == null || !functionTable.isBuiltFrom(code, constPool)) {
+            linkFunctions();
+        }
+        if (internedPool != constPool) {
+            internStrings();
+        }
+
+        while (running && programCounter < codeSize) {
+            if (instrumented) {
+                runInstrumentedLoop();
+            } else {
+                runHeadlessLoop();
+            }
+        }
+    }
+
+    /**
+     * 无插桩执行循环
+     * 不进入同步块、不查断点表、不反汇编、不复制寄存器也不通知监听器，
+     * 每条指令只多读一次插桩标志。
+     * 指令字段取自加载时的预解码数组，执行器按操作码从数组分派表中取出，
+     * 并复用同一个执行上下文，稳态下每条指令不分配对象。
+     * 程序计数器按指令长度步进：32位编码4字节，宽编码8字节。
+     */
+    private void runHeadlessLoop() throws Exception {
+        DecodedProgram program = decoded;
+        int shift = program.shift;
+        int step = 1 << shift;
+        int[] words = program.words;
+        int[] opcodes = program.opcodes;
+        int[] rd = program.rd;
+        int[] rs1 = program.rs1;
+        int[] imm = program.imm;
+        int count = program.size();
+        InstructionExecutor[] dispatchTable = instructionMapper.getDispatchTable();
+
         while (running && programCounter < codeSize) {
+            if (instrumented) {
+                return;
+            }
+            if (executionSteps++ > maxExecutionSteps) {
+                throw new RuntimeException("Maximum execution steps exceeded. Possible infinite loop detected at PC=" + programCounter);
+            }
+            int index = programCounter >> shift;
+            if ((programCounter & (step - 1)) != 0 || index >= count) {
+                // 未对齐或越界的PC走原始取指路径，给出相同的错误
+                int instructionWord = fetchInstruction();
+                executeInstruction(decodeOpcode(instructionWord), instructionWord);
+            } else {
+                int opcode = opcodes[index];
+                switch (opcode) {
+                    case RegisterBytecodeDefinition.INSTR_J:
+                        jumpTo(imm[index]);
+                        break;
+                    case RegisterBytecodeDefinition.INSTR_JT:
+                        if (getRegister(rs1[index]) != 0) {
+                            jumpTo(imm[index]);
+                        }
+                        break;
+                    case RegisterBytecodeDefinition.INSTR_JF:
+                        if (getRegister(rs1[index]) == 0) {
+                            jumpTo(imm[index]);
+                        }
+                        break;
+                    case RegisterBytecodeDefinition.INSTR_BEQ:
+                    case RegisterBytecodeDefinition.INSTR_BNE:
+                    case RegisterBytecodeDefinition.INSTR_BLT:
+                    case RegisterBytecodeDefinition.INSTR_BGE:
+                        if (branchTaken(opcode, getRegister(rd[index]), getRegister(rs1[index]))) {
+                            jumpTo(imm[index]);
+                        }
+                        break;
+                    case RegisterBytecodeDefinition.INSTR_HALT:
+                        running = false;
+                        break;
+                    case DecodedProgram.INVALID_OPCODE:
+                        decodeOpcode(fetchInstruction());
+                        break;
+                    default:
+                        dispatch(dispatchTable, opcode, words[index]);
+                        break;
+                }
+            }
+            if (!didJump) {
+                programCounter += step;
+            }
+            didJump = false;
+        }
+    }
+
+    /**
+     * 插桩执行循环
+     * 集成可视化支持：暂停检查、断点、事件通知
+     */
+    private void runInstrumentedLoop() throws Exception {
+        while (running && programCounter < codeSize) {
+            if (!instrumented) {
+                return;
+            }
             // 循环检测 - 防止无限循环
             if (executionSteps++ > maxExecutionSteps) {
                 throw new RuntimeException("Maximum execution steps exceeded. Possible infinite loop detected at PC=" + programCounter);
@@ -374,29 +704,12 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
                 break;
             }
 
-            // 提取32位固定长度指令
-            if (programCounter < 0 || programCounter + 4 > codeSize) {
-                throw new Exception("Instruction access out of bounds at PC=" + programCounter + ", codeSize=" + codeSize);
-            }
+            // 提取指令（宽编码为第一个字）及操作码
+            int instructionWord = fetchInstruction();
+            int opcode = decodeOpcode(instructionWord);
 
-            // 读取32位指令字（大端序）
-            int instructionWord = ((code[programCounter] & 0xFF) << 24) |
-                                  ((code[programCounter + 1] & 0xFF) << 16) |
-                                  ((code[programCounter + 2] & 0xFF) << 8) |
-                                  (code[programCounter + 3] & 0xFF);
-
-            // 提取操作码（bits 31-26）
-            int opcode = (instructionWord >> 26) & 0x3F;
-            
-            // 验证操作码范围
-            if (opcode < 0 || opcode >= RegisterBytecodeDefinition.instructions.length) {
-                logger.error("Invalid opcode detected at PC=%d: opcode=%d (max=%d)", 
-                    programCounter, opcode, RegisterBytecodeDefinition.instructions.length);
-                throw new IllegalArgumentException("Invalid opcode: " + opcode + " at PC=" + programCounter);
-            }
-            
-            // 整个指令字作为操作数传递给执行逻辑
-            int operand = instructionWord;
+            // 32位编码把整个指令字作为操作数传递给执行逻辑，宽编码传递指令下标
+            int operand = encoding.isWide() ? decoded.words[programCounter >> decoded.shift] : instructionWord;
 
             // ==================== 可视化支持：断点检查 ====================
             // 检查当前PC是否有断点
@@ -412,7 +725,10 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
             }
 
             // ==================== 可视化支持：指令反汇编 ====================
-            String instructionText = byteCodeEncoder.toAssemblyString(instructionWord);
+            String instructionText = encoding.isWide()
+                ? byteCodeEncoder.toAssemblyString(opcode, context.extractRd(operand), context.extractRs1(operand),
+                                                   context.extractRs2(operand), context.extractImm16(operand))
+                : byteCodeEncoder.toAssemblyString(instructionWord);
 
             // ==================== 可视化支持：指令执行前事件 ====================
             notifyBeforeInstructionExecute(programCounter, opcode, instructionText);
@@ -429,8 +745,8 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
 
             // ==================== 可视化支持：指令执行后事件 ====================
             // 复制寄存器状态用于事件通知（避免引用被后续修改）
-            int[] registersCopy = new int[registers.length];
-            System.arraycopy(registers, 0, registersCopy, 0, registers.length);
+            int[] registersCopy = new int[registerCount];
+            System.arraycopy(registers, 0, registersCopy, 0, registerCount);
             notifyAfterInstructionExecute(programCounter, opcode, instructionText, registersCopy);
 
             // ==================== 可视化支持：自动步进延迟 ====================
@@ -453,11 +769,11 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
                 }
             }
 
-            // 更新程序计数器（每条指令4字节）
+            // 更新程序计数器（每条指令4字节，宽编码8字节）
             // 注意：只有在没有跳转的情况下才自动增加PC
             // 跳转指令会在executeInstruction中直接设置PC
             if (!didJump) {
-                programCounter += 4;
+                programCounter += encoding.getInstructionSize();
             } else if (isTraceEnabled() && (programCounter == 16 || programCounter == 20 || programCounter == 24)) {
                 logger.cpuTrace("跳转后PC=%d, didJump重置前=%b", programCounter, didJump);
             }
@@ -466,27 +782,53 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
     }
 
     /**
-     * 从操作数中提取寄存器编号（5位字段）
-     * 委托给RegisterOperandExtractor工具类处理
+     * 读取程序计数器处的32位指令字（大端序），宽编码为指令的第一个字
+     */
+    private int fetchInstruction() throws Exception {
+        if (programCounter < 0 || programCounter + encoding.getInstructionSize() > codeSize) {
+            throw new Exception("Instruction access out of bounds at PC=" + programCounter + ", codeSize=" + codeSize);
+        }
+        return ((code[programCounter] & 0xFF) << 24) |
+               ((code[programCounter + 1] & 0xFF) << 16) |
+               ((code[programCounter + 2] & 0xFF) << 8) |
+               (code[programCounter + 3] & 0xFF);
+    }
+
+    /**
+     * 提取并验证操作码（bits 31-26，宽编码bits 31-24）
+     */
+    private int decodeOpcode(int instructionWord) {
+        int opcode = encoding.isWide() ? instructionWord >>> 24 : (instructionWord >> 26) & 0x3F;
+        if (opcode >= RegisterBytecodeDefinition.instructions.length) {
+            logger.error("Invalid opcode detected at PC=%d: opcode=%d (max=%d)",
+                programCounter, opcode, RegisterBytecodeDefinition.instructions.length);
+            throw new IllegalArgumentException("Invalid opcode: " + opcode + " at PC=" + programCounter);
+        }
+        return opcode;
+    }
+
+    /**
+     * 从操作数中提取寄存器编号和立即数
+     * 委托给执行上下文，按当前程序的指令编码解码
      */
     private int extractRd(int operand) {
-        return RegisterOperandExtractor.extractRd(operand);
+        return context.extractRd(operand);
     }
 
     private int extractRs1(int operand) {
-        return RegisterOperandExtractor.extractRs1(operand);
+        return context.extractRs1(operand);
     }
 
     private int extractRs2(int operand) {
-        return RegisterOperandExtractor.extractRs2(operand);
+        return context.extractRs2(operand);
     }
 
     private int extractImm16(int operand) {
-        return RegisterOperandExtractor.extractImm16(operand);
+        return context.extractImm16(operand);
     }
 
     private int extractImm26(int operand) {
-        return RegisterOperandExtractor.extractImm26(operand);
+        return context.extractImm26(operand);
     }
 
     /**
@@ -506,60 +848,83 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
             case RegisterBytecodeDefinition.INSTR_JF:
                 executeJumpIfFalse(operand);
                 return;
+            case RegisterBytecodeDefinition.INSTR_BEQ:
+            case RegisterBytecodeDefinition.INSTR_BNE:
+            case RegisterBytecodeDefinition.INSTR_BLT:
+            case RegisterBytecodeDefinition.INSTR_BGE:
+                if (branchTaken(opcode, getRegister(extractRd(operand)), getRegister(extractRs1(operand)))) {
+                    jumpTo(extractImm16(operand));
+                }
+                return;
             case RegisterBytecodeDefinition.INSTR_HALT:
                 running = false;
                 return;
-            case RegisterBytecodeDefinition.INSTR_LF:
-                executeLoadFloat(operand);
-                return;
-            case RegisterBytecodeDefinition.INSTR_LS:
-                executeLoadString(operand);
-                return;
         }
 
         // 使用策略模式执行其他指令
-        ExecutionContext context = new ExecutionContext(this, programCounter);
-        InstructionExecutor executor = instructionMapper.getExecutor(opcode);
+        dispatch(instructionMapper.getDispatchTable(), opcode, operand);
+    }
 
-        if (executor != null) {
-            executor.execute(operand, context);
-        } else {
+    /**
+     * 按操作码从分派表取出执行器，在共用的执行上下文上执行
+     * LF/LS需要访问常量池和堆分配指针，仍由解释器直接处理。
+     */
+    private void dispatch(InstructionExecutor[] dispatchTable, int opcode, int operand) throws Exception {
+        if (opcode == RegisterBytecodeDefinition.INSTR_LF) {
+            executeLoadFloat(operand);
+            return;
+        }
+        if (opcode == RegisterBytecodeDefinition.INSTR_LS) {
+            executeLoadString(operand);
+            return;
+        }
+        InstructionExecutor executor = dispatchTable[opcode];
+        if (executor == null) {
             logger.error("No executor found for opcode=%d at PC=%d, registered opcodes=%d", 
                 opcode, programCounter, instructionMapper.getRegisteredOpcodeCount());
             throw new org.teachfx.antlr4.ep18r.stackvm.exception.VMInvalidOpcodeException(
                 programCounter, "opcode=" + opcode);
         }
+        context.setProgramCounter(programCounter);
+        executor.execute(operand, context);
     }
 
     private void executeJump(int operand) throws Exception {
-        int target = extractImm26(operand);
-        validateJumpTarget(target);
-        programCounter = target;
-        didJump = true;
+        jumpTo(extractImm26(operand));
     }
 
     private void executeJumpIfTrue(int operand) throws Exception {
-        int rs1 = extractRs1(operand);
-        int target = extractImm16(operand);
-        if (getRegister(rs1) != 0) {
-            validateJumpTarget(target);
-            programCounter = target;
-            didJump = true;
+        if (getRegister(extractRs1(operand)) != 0) {
+            jumpTo(extractImm16(operand));
         }
     }
 
     private void executeJumpIfFalse(int operand) throws Exception {
-        int rs1 = extractRs1(operand);
-        int target = extractImm16(operand);
-        if (getRegister(rs1) == 0) {
-            validateJumpTarget(target);
-            programCounter = target;
-            didJump = true;
+        if (getRegister(extractRs1(operand)) == 0) {
+            jumpTo(extractImm16(operand));
         }
     }
 
+    /**
+     * 比较并跳转指令是否跳转：a为rd字段寄存器的值，b为rs1字段寄存器的值
+     */
+    private static boolean branchTaken(int opcode, int a, int b) {
+        return switch (opcode) {
+            case RegisterBytecodeDefinition.INSTR_BEQ -> a == b;
+            case RegisterBytecodeDefinition.INSTR_BNE -> a != b;
+            case RegisterBytecodeDefinition.INSTR_BLT -> a < b;
+            default -> a >= b;
+        };
+    }
+
+    private void jumpTo(int target) throws Exception {
+        validateJumpTarget(target);
+        programCounter = target;
+        didJump = true;
+    }
+
     private void validateJumpTarget(int target) throws Exception {
-        if (target < 0 || target >= codeSize || target % 4 != 0) {
+        if (target < 0 || target >= codeSize || target % encoding.getInstructionSize() != 0) {
             throw new IllegalArgumentException("Invalid jump target: " + target + " at PC=" + programCounter);
         }
     }
@@ -584,21 +949,12 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
         if (poolIndex < 0 || poolIndex >= constPool.length) {
             throw new IndexOutOfBoundsException("Constant pool index out of bounds: " + poolIndex);
         }
-        Object constant = constPool[poolIndex];
-        if (constant instanceof String) {
-            String str = (String) constant;
-            int address = heapAllocPointer;
-            if (address + str.length() > heap.length) {
-                throw new OutOfMemoryError("Not enough heap space for string");
-            }
-            for (int i = 0; i < str.length(); i++) {
-                heap[address + i] = str.charAt(i);
-            }
-            heapAllocPointer += str.length();
-            setRegister(rd, address);
-        } else {
+        // 字符串已在加载时写入只读字符串段，这里只取地址
+        int address = poolIndex < stringAddresses.length ? stringAddresses[poolIndex] : -1;
+        if (address < 0) {
             throw new ClassCastException("Expected String constant at pool index " + poolIndex);
         }
+        setRegister(rd, address);
     }
 
     /**
@@ -615,7 +971,7 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
      * 获取寄存器值
      */
     public int getRegister(int regNum) {
-        if (regNum < 0 || regNum >= registers.length) {
+        if (regNum < 0 || regNum >= registerCount) {
             throw new IllegalArgumentException("Invalid register number: " + regNum);
         }
         return registers[regNum];
@@ -625,7 +981,7 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
      * 设置寄存器值
      */
     public void setRegister(int regNum, int value) {
-        if (regNum < 0 || regNum >= registers.length) {
+        if (regNum < 0 || regNum >= registerCount) {
             throw new IllegalArgumentException("Invalid register number: " + regNum);
         }
         if (regNum == 0) {
@@ -643,6 +999,7 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
     public void setTrace(boolean trace) {
         this.trace = trace;
         org.teachfx.antlr4.ep18r.stackvm.StackFrame.setTrace(trace);
+        updateInstrumentation();
     }
 
     /**
@@ -740,6 +1097,13 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
         return codeSize;
     }
 
+    /**
+     * 获取当前程序的指令编码
+     */
+    public InstructionEncoding getEncoding() {
+        return encoding;
+    }
+
     /**
      * 获取寄存器数组（仅供内部使用）
      */
@@ -776,7 +1140,10 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
      * 写入堆内存（内部使用）
      */
     public void writeHeap(int address, int value) {
-        if (address < 0 || address >= heap.length) {
+        if (address < 0 || address >= stringSegmentBase) {
+            if (address >= stringSegmentBase && address < heap.length) {
+                throw new IllegalStateException("Cannot write to read-only string segment: " + address);
+            }
             throw new IndexOutOfBoundsException("Heap address out of bounds: " + address);
         }
         int oldValue = heap[address];
@@ -832,8 +1199,181 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
      * 直接加载字节码（测试用）
      */
     public void loadCode(byte[] bytecode) {
+        loadCode(bytecode, InstructionEncoding.NARROW);
+    }
+
+    /**
+     * 按指定指令编码直接加载字节码（测试用）
+     */
+    public void loadCode(byte[] bytecode, InstructionEncoding encoding) {
+        installCode(bytecode, bytecode.length, encoding);
+        linkFunctions();
+        internStrings();
+    }
+
+    /**
+     * 安装字节码并预解码为按字段分开的指令数组
+     */
+    private void installCode(byte[] bytecode, int size, InstructionEncoding encoding) {
         this.code = bytecode;
-        this.codeSize = bytecode.length;
+        this.codeSize = size;
+        this.encoding = encoding;
+        this.registerCount = encoding.getRegisterCount();
+        this.decoded = DecodedProgram.decode(bytecode, size, encoding);
+        context.setProgram(decoded);
+    }
+
+    /**
+     * 由常量池中的函数符号建立函数表，需在安装字节码之后调用
+     */
+    private void linkFunctions() {
+        this.functionTable = FunctionTable.build(code, constPool, decoded);
+    }
+
+    /**
+     * 把常量池中的字符串一次性写入堆顶的只读字符串段，需在设置常量池之后调用
+     * 每个字符串按字符逐字存放（与原先LS在堆上分配的布局相同），LS只需按常量池下标取地址。
+     * 字符串段之上的堆内存不可写；调用栈段紧挨在字符串段之下，随之重新定位。
+     */
+    private void internStrings() {
+        int total = 0;
+        int poolSize = constPool != null ? constPool.length : 0;
+        for (int i = 0; i < poolSize; i++) {
+            if (constPool[i] instanceof String str) {
+                total += str.length();
+            }
+        }
+        if (total > heap.length) {
+            throw new OutOfMemoryError("Not enough heap space for string constants: need " + total + " words");
+        }
+        internedPool = constPool;
+        stringSegmentBase = heap.length - total;
+        stringAddresses = new int[poolSize];
+        int address = stringSegmentBase;
+        for (int i = 0; i < poolSize; i++) {
+            if (constPool[i] instanceof String str) {
+                stringAddresses[i] = address;
+                for (int k = 0; k < str.length(); k++) {
+                    heap[address++] = str.charAt(k);
+                }
+            } else {
+                stringAddresses[i] = -1;
+            }
+        }
+        resetStackSegment();
+    }
+
+    /**
+     * 把调用栈段放在字符串段之下并清空
+     * 段大小由 {@link VMConfig#getFrameStackSize()} 给出，堆分配（结构体等）不能越过段底。
+     */
+    private void resetStackSegment() {
+        stackTop = stringSegmentBase;
+        stackLimit = Math.max(0, stringSegmentBase - config.getFrameStackSize());
+    }
+
+    /**
+     * 获取结构体分配使用的垃圾回收器
+     * @return 回收器，未启用时为null
+     */
+    public HeapCollector getGarbageCollector() {
+        return garbageCollector;
+    }
+
+    /**
+     * 替换结构体分配使用的垃圾回收器
+     * 自定义回收器可通过 {@link #getGcRoots()} 取得本VM的堆和根集合。
+     * @param garbageCollector 回收器，null表示不回收、只使用堆分配指针
+     */
+    public void setGarbageCollector(HeapCollector garbageCollector) {
+        if (running) {
+            throw new IllegalStateException("Cannot replace garbage collector while running");
+        }
+        this.garbageCollector = garbageCollector;
+        if (garbageCollector != null) {
+            garbageCollector.reset(heapAllocPointer);
+        }
+    }
+
+    /**
+     * 获取本VM的回收根集合：寄存器、调用栈段中的栈帧、栈帧保存的调用者寄存器、局部变量和全局变量
+     */
+    public GCRoots getGcRoots() {
+        return new InterpreterRoots();
+    }
+
+    /**
+     * 回收器看到的VM堆：可分配区域为调用栈段之下的部分
+     */
+    private final class InterpreterRoots implements GCRoots {
+        @Override
+        public int[] getHeapWords() {
+            return heap;
+        }
+
+        @Override
+        public int getHeapLimit() {
+            return stackLimit;
+        }
+
+        @Override
+        public void scanRoots(java.util.function.IntConsumer visitor) {
+            for (int i = 1; i < registers.length; i++) {
+                visitor.accept(registers[i]);
+            }
+            for (int i = stackTop; i < stringSegmentBase; i++) {
+                visitor.accept(heap[i]);
+            }
+            for (int f = 0; f <= framePointer; f++) {
+                StackFrame frame = callStack[f];
+                for (int i = 0; i < frame.savedCallerRegisters.length; i++) {
+                    if ((frame.savedRegisterMask & (1 << i)) != 0) {
+                        visitor.accept(frame.savedCallerRegisters[i]);
+                    }
+                }
+            }
+            for (int value : locals) {
+                visitor.accept(value);
+            }
+            if (globals != null) {
+                for (Object value : globals) {
+                    if (value instanceof Integer intValue) {
+                        visitor.accept(intValue);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取调用栈段的下界，也是堆分配的上限（不含）
+     */
+    public int getStackLimit() {
+        return stackLimit;
+    }
+
+    /**
+     * 获取调用栈段当前栈顶（字地址，栈为空时等于字符串段起始地址）
+     */
+    public int getStackTop() {
+        return stackTop;
+    }
+
+    /**
+     * 设置调用栈段栈顶（CALL分配栈帧、RET释放栈帧时使用）
+     */
+    public void setStackTop(int stackTop) {
+        if (stackTop < stackLimit || stackTop > stringSegmentBase) {
+            throw new IllegalArgumentException("Stack top out of stack segment: " + stackTop);
+        }
+        this.stackTop = stackTop;
+    }
+
+    /**
+     * 获取只读字符串段的起始地址，即可分配堆内存的上限（不含）
+     */
+    public int getStringSegmentBase() {
+        return stringSegmentBase;
     }
 
     /**
@@ -851,12 +1391,27 @@ public class RegisterVMInterpreter implements IVirtualMachine, IMemoryManager {
         return constPool;
     }
 
+    /**
+     * 获取调用点处被调用函数的栈帧布局
+     * @param callSite CALL指令地址
+     * @param target 调用目标地址
+     */
+    CallFrameLayout getCallFrameLayout(int callSite, int target) {
+        if (functionTable == null || !functionTable.isBuiltFrom(code, constPool)) {
+            linkFunctions();
+        }
+        return functionTable.layoutAt(callSite, target);
+    }
+
     /**
      * 根据代码地址查找函数符号
      * @param address 函数入口地址
      * @return 函数符号，如果找不到返回null
      */
     FunctionSymbol findFunctionByAddress(int address) {
+        if (functionTable != null && functionTable.isBuiltFrom(code, constPool)) {
+            return functionTable.find(address);
+        }
         if (constPool == null) {
             return null;
         }
@@ -0,0 +1,296 @@
+package org.teachfx.antlr4.ep18r.stackvm.interpreter;
+
+import org.teachfx.antlr4.ep18r.stackvm.ObjectFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 寄存器VM状态快照
+ * 保存 {@link RegisterVMInterpreter} 停机后的完整运行状态：已加载程序（以目标文件形式内嵌）、
+ * 程序计数器、寄存器、堆、调用栈段中的栈帧、局部变量、全局变量表和调用栈。
+ * 完成初始化阶段后拍一次快照，之后每次运行都从快照恢复，不再重复执行初始化代码。
+ *
+ * 文件布局（大端序）：
+ * <pre>
+ * 头部   magic(4) version(2) target(1) reserved(1) pc(4) heapAllocPointer(4) heapSize(4)
+ * 程序   objectFileSize(4) 目标文件字节
+ * 各段   registers heap locals frames stack（4字节长度前缀的int数组，heap和locals去掉末尾的零）
+ *        heap只含调用栈段之下的部分；stack是调用栈段中已分配的部分（栈顶到段顶）；
+ *        堆顶的只读字符串段不保存，恢复时由常量池重新生成，因此须恢复到堆和调用栈段大小相同的VM
+ * 全局   count(4) 每项 tag(1) value
+ * </pre>
+ * frames每帧16个字：函数入口（匿名帧为-1）、参数个数、局部变量个数、返回地址、帧基址、
+ * 栈帧字数、调用者寄存器保存掩码、CALL前的栈顶、CALL前的sp、7个保存的调用者寄存器。
+ */
+public final class VMSnapshot {
+    /** 文件魔数 "CYMS" */
+    public static final int MAGIC = 0x43594D53;
+    /** 当前格式版本 */
+    public static final int VERSION = 3;
+    /** 快照文件扩展名 */
+    public static final String EXTENSION = ".vmrs";
+
+    /** 每个栈帧在frames段中占用的字数 */
+    static final int FRAME_WORDS = 16;
+
+    private static final byte GLOBAL_NULL = 0;
+    private static final byte GLOBAL_INT = 1;
+    private static final byte GLOBAL_FLOAT = 2;
+    private static final byte GLOBAL_STRING = 3;
+
+    private final ObjectFile program;
+    private final int programCounter;
+    private final int heapAllocPointer;
+    private final int heapSize;
+    private final int[] registers;
+    private final int[] heap;
+    private final int[] locals;
+    private final int[] frames;
+    private final int[] stack;
+    private final Object[] globals;
+
+    VMSnapshot(ObjectFile program, int programCounter, int heapAllocPointer, int heapSize,
+               int[] registers, int[] heap, int[] locals, int[] frames, int[] stack, Object[] globals) {
+        this.program = program;
+        this.programCounter = programCounter;
+        this.heapAllocPointer = heapAllocPointer;
+        this.heapSize = heapSize;
+        this.registers = registers;
+        this.heap = heap;
+        this.locals = locals;
+        this.frames = frames;
+        this.stack = stack;
+        this.globals = globals;
+    }
+
+    // ==================== 写出 ====================
+
+    /**
+     * 写出快照
+     * @param out 输出流（调用方负责关闭）
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeByte(ObjectFile.TARGET_REGISTER_VM);
+        data.writeByte(0);
+        data.writeInt(programCounter);
+        data.writeInt(heapAllocPointer);
+        data.writeInt(heapSize);
+        byte[] programBytes = program.toByteArray();
+        data.writeInt(programBytes.length);
+        data.write(programBytes);
+        for (int[] section : new int[][] {registers, heap, locals, frames, stack}) {
+            data.writeInt(section.length);
+            for (int value : section) {
+                data.writeInt(value);
+            }
+        }
+        data.writeInt(globals.length);
+        for (Object value : globals) {
+            if (value == null) {
+                data.writeByte(GLOBAL_NULL);
+            } else if (value instanceof Integer intValue) {
+                data.writeByte(GLOBAL_INT);
+                data.writeInt(intValue);
+            } else if (value instanceof Float floatValue) {
+                data.writeByte(GLOBAL_FLOAT);
+                data.writeFloat(floatValue);
+            } else if (value instanceof String stringValue) {
+                byte[] bytes = stringValue.getBytes(StandardCharsets.UTF_8);
+                data.writeByte(GLOBAL_STRING);
+                data.writeInt(bytes.length);
+                data.write(bytes);
+            } else {
+                throw new IllegalArgumentException("Unsupported global value: " + value);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * 写出快照到路径
+     */
+    public void write(Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(out);
+        }
+    }
+
+    /**
+     * 序列化为字节数组
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4 * (heap.length + locals.length + frames.length) + 256);
+        try {
+            write(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // ==================== 读取 ====================
+
+    /**
+     * 内存映射读取快照文件
+     * @param path 文件路径
+     * @return 快照
+     * @throws IOException 文件不是有效的寄存器VM快照
+     */
+    public static VMSnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * 从缓冲区读取快照
+     * @param buffer 缓冲区（从当前位置开始读取）
+     * @return 快照
+     * @throws IOException 格式错误
+     */
+    public static VMSnapshot read(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a Cymbol VM snapshot");
+            }
+            int version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version: " + version);
+            }
+            int target = buffer.get();
+            if (target != ObjectFile.TARGET_REGISTER_VM) {
+                throw new IOException("Snapshot targets another VM: " + target);
+            }
+            buffer.get();
+            int programCounter = buffer.getInt();
+            int heapAllocPointer = buffer.getInt();
+            int heapSize = buffer.getInt();
+            int programSize = buffer.getInt();
+            ByteBuffer programBuffer = buffer.slice();
+            programBuffer.limit(programSize);
+            ObjectFile program = ObjectFile.read(programBuffer);
+            buffer.position(buffer.position() + programSize);
+
+            int[] registers = readInts(buffer);
+            int[] heap = readInts(buffer);
+            int[] locals = readInts(buffer);
+            int[] frames = readInts(buffer);
+            if (frames.length % FRAME_WORDS != 0) {
+                throw new IOException("Truncated or corrupt snapshot");
+            }
+            int[] stack = readInts(buffer);
+            Object[] globals = new Object[buffer.getInt()];
+            for (int i = 0; i < globals.length; i++) {
+                byte tag = buffer.get();
+                globals[i] = switch (tag) {
+                    case GLOBAL_NULL -> null;
+                    case GLOBAL_INT -> buffer.getInt();
+                    case GLOBAL_FLOAT -> buffer.getFloat();
+                    case GLOBAL_STRING -> {
+                        byte[] bytes = new byte[buffer.getInt()];
+                        buffer.get(bytes);
+                        yield new String(bytes, StandardCharsets.UTF_8);
+                    }
+                    default -> throw new IOException("Unknown global value tag: " + tag);
+                };
+            }
+            return new VMSnapshot(program, programCounter, heapAllocPointer, heapSize, registers, heap, locals, frames, stack, globals);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException
+                 | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("Truncated or corrupt snapshot", e);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer) {
+        int[] values = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * 4);
+        return values;
+    }
+
+    /**
+     * 去掉末尾零值后的有效长度
+     */
+    static int trimmedLength(int[] values) {
+        return trimmedLength(values, values.length);
+    }
+
+    /**
+     * 计算 values[0, end) 去掉末尾零之后的长度
+     */
+    static int trimmedLength(int[] values, int end) {
+        int length = end;
+        while (length > 0 && values[length - 1] == 0) {
+            length--;
+        }
+        return length;
+    }
+
+    // ==================== 访问器 ====================
+
+    /**
+     * 获取停机时的程序计数器（字节地址）
+     */
+    public int getProgramCounter() {
+        return programCounter;
+    }
+
+    /**
+     * 获取活动栈帧数
+     */
+    public int getFrameCount() {
+        return frames.length / FRAME_WORDS;
+    }
+
+    /**
+     * 获取快照内嵌的程序
+     */
+    public ObjectFile getProgram() {
+        return program;
+    }
+
+    int getHeapAllocPointer() {
+        return heapAllocPointer;
+    }
+
+    int getHeapSize() {
+        return heapSize;
+    }
+
+    int[] getRegisters() {
+        return registers;
+    }
+
+    int[] getHeap() {
+        return heap;
+    }
+
+    int[] getStack() {
+        return stack;
+    }
+
+    int[] getLocals() {
+        return locals;
+    }
+
+    int[] getFrames() {
+        return frames;
+    }
+
+    Object[] getGlobals() {
+        return globals;
+    }
+}
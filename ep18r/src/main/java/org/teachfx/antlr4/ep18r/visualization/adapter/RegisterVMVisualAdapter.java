@@ -161,7 +161,7 @@ public class RegisterVMVisualAdapter implements IVirtualMachineVisualization, Ev
             int codeSize = vm.getCodeSize();
             Object[] constPool = vm.getConstantPool();
             if (code != null && codeSize > 0) {
-                return new RegisterDisAssembler(code, codeSize, constPool);
+                return new RegisterDisAssembler(code, codeSize, constPool, vm.getEncoding());
             }
         } catch (Exception e) {
             // 如果无法创建反汇编器，返回null（某些方法将回退到基本反汇编）
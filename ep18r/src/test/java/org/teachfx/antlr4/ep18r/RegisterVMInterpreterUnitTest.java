@@ -856,8 +856,8 @@ public class RegisterVMInterpreterUnitTest {
             String program = String.format("""
                 .def main: args=0, locals=0
                     li r1, 42
-                    sw r1, r14, %d
-                    lw r2, r14, %d
+                    sw r1, r0, %d
+                    lw r2, r0, %d
                     halt
                 """, offset, offset);
 
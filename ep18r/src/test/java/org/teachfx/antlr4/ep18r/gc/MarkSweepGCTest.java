@@ -0,0 +1,116 @@
+package org.teachfx.antlr4.ep18r.gc;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18r.stackvm.config.VMConfig;
+import org.teachfx.antlr4.ep18r.stackvm.interpreter.RegisterVMInterpreter;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 标记-清除垃圾回收器测试
+ */
+@DisplayName("标记-清除垃圾回收器测试")
+public class MarkSweepGCTest {
+
+    private final int[] heap = new int[64];
+    private final List<Integer> rootValues = new ArrayList<>();
+    private MarkSweepGC gc;
+
+    @BeforeEach
+    void setUp() {
+        gc = new MarkSweepGC(new GCRoots() {
+            @Override
+            public int[] getHeapWords() {
+                return heap;
+            }
+
+            @Override
+            public int getHeapLimit() {
+                return heap.length;
+            }
+
+            @Override
+            public void scanRoots(IntConsumer visitor) {
+                rootValues.forEach(visitor::accept);
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("从根可达的对象（含经由对象字段可达的）在回收后存活，其余被回收并复用")
+    void testCollectsUnreachableObjects() {
+        int head = gc.allocate(2);
+        int tail = gc.allocate(2);
+        int garbage = gc.allocate(4);
+        heap[head + 1] = tail;
+        rootValues.add(head);
+
+        gc.collect();
+
+        assertThat(gc.isObjectAlive(head)).isTrue();
+        assertThat(gc.isObjectAlive(tail)).isTrue();
+        assertThat(gc.isObjectAlive(garbage)).isFalse();
+        assertThat(gc.getHeapUsage()).isEqualTo(4);
+        assertThat(gc.allocate(4)).isEqualTo(garbage);
+        assertThat(gc.getStats().getTotalCollectedObjects()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("空间不足时自动回收，全部可达时抛出OutOfMemoryError")
+    void testAllocationTriggersCollection() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(gc.allocate(8)).isGreaterThan(0);
+        }
+        assertThat(gc.getStats().getTotalCollections()).isGreaterThan(0);
+
+        gc.reset(0);
+        for (int i = 0; i < 7; i++) {
+            rootValues.add(gc.allocate(8));
+        }
+        assertThatThrownBy(() -> gc.allocate(8)).isInstanceOf(OutOfMemoryError.class);
+    }
+
+    @Test
+    @DisplayName("寄存器VM启用GC后，分配量远超堆大小的循环在有界内存中运行完毕")
+    void testRegisterVMRunsAllocationLoopInBoundedHeap() throws Exception {
+        String program = """
+            .def main: args=0, locals=0
+                struct r12, 2
+                li r9, 42
+                sw_f r9, r12, 0
+                li r8, 0
+                li r9, 10000
+                li r10, 1
+            loop:
+                slt r11, r8, r9
+                jf r11, done
+                struct r3, 4
+                sw_f r8, r3, 0
+                add r8, r8, r10
+                j loop
+            done:
+                lw_f r2, r12, 0
+                halt
+            """;
+        RegisterVMInterpreter vm = new RegisterVMInterpreter(new VMConfig.Builder()
+            .setHeapSize(4096).setFrameStackSize(256).setGcEnabled(true).build());
+        boolean hasErrors = RegisterVMInterpreter.load(vm,
+            new ByteArrayInputStream(program.getBytes(StandardCharsets.UTF_8)));
+        assertThat(hasErrors).isFalse();
+
+        vm.exec();
+
+        assertThat(vm.getRegister(2)).isEqualTo(42);
+        assertThat(vm.getGarbageCollector().getStats().getTotalCollections()).isGreaterThan(0);
+        assertThat(vm.getHeapAllocPointer()).isLessThan(vm.getStackLimit());
+    }
+}
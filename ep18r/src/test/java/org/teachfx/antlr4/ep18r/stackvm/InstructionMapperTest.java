@@ -181,15 +181,18 @@ class InstructionMapperTest {
     }
 
     @Test
-    @DisplayName("默认情况下应该注册所有42条指令")
+    @DisplayName("默认情况下应该注册所有48条指令")
     void testDefaultInstructionsRegistered() {
         InstructionMapper mapper = new InstructionMapper();
 
-        assertThat(mapper.getRegisteredOpcodeCount()).isEqualTo(42);
+        assertThat(mapper.getRegisteredOpcodeCount()).isEqualTo(48);
 
         assertThat(mapper.isValidOpcode(RegisterBytecodeDefinition.INSTR_ADD)).isTrue();
         assertThat(mapper.isValidOpcode(RegisterBytecodeDefinition.INSTR_SUB)).isTrue();
         assertThat(mapper.isValidOpcode(RegisterBytecodeDefinition.INSTR_CALL)).isTrue();
+        assertThat(mapper.isValidOpcode(RegisterBytecodeDefinition.INSTR_CALLM)).isTrue();
+        assertThat(mapper.isValidOpcode(RegisterBytecodeDefinition.INSTR_BLT)).isTrue();
+        assertThat(mapper.isValidOpcode(RegisterBytecodeDefinition.INSTR_ADDI)).isTrue();
         assertThat(mapper.isValidOpcode(RegisterBytecodeDefinition.INSTR_RET)).isTrue();
         assertThat(mapper.isValidOpcode(RegisterBytecodeDefinition.INSTR_HALT)).isTrue();
     }
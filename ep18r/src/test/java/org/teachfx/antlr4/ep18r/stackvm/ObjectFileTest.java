@@ -0,0 +1,82 @@
+package org.teachfx.antlr4.ep18r.stackvm;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18r.parser.VMAssemblerLexer;
+import org.teachfx.antlr4.ep18r.parser.VMAssemblerParser;
+import org.teachfx.antlr4.ep18r.stackvm.instructions.model.RegisterBytecodeDefinition;
+import org.teachfx.antlr4.ep18r.stackvm.interpreter.RegisterVMInterpreter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 寄存器VM二进制目标文件测试
+ */
+@DisplayName("寄存器VM二进制目标文件测试")
+public class ObjectFileTest {
+
+    @Test
+    @DisplayName("从目标文件加载fib.vmr应无需汇编并得到相同结果")
+    void testFibFromObjectFile() throws Exception {
+        RegisterByteCodeAssembler assembler = new RegisterByteCodeAssembler(RegisterBytecodeDefinition.instructions);
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream("fib.vmr")) {
+            assertThat(input).isNotNull();
+            VMAssemblerParser parser = new VMAssemblerParser(new CommonTokenStream(new VMAssemblerLexer(CharStreams.fromStream(input))));
+            new ParseTreeWalker().walk(assembler, parser.program());
+        }
+        assertThat(assembler.hasErrors()).isFalse();
+
+        Path path = Files.createTempFile("fib", ObjectFile.EXTENSION);
+        try {
+            assembler.toObjectFile().write(path);
+            ObjectFile loaded = ObjectFile.read(path);
+            assertThat(loaded.getCode()).isEqualTo(assembler.getMachineCode());
+            assertThat(loaded.getMainFunction().address).isEqualTo(assembler.getMainFunction().address);
+
+            RegisterVMInterpreter interpreter = new RegisterVMInterpreter();
+            RegisterVMInterpreter.loadObjectFile(interpreter, path);
+            interpreter.exec();
+
+            assertThat(interpreter.getRegister(2)).isEqualTo(55);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    @DisplayName("头部计数或字符串长度超出文件剩余长度时应抛出IOException而不是分配巨大数组")
+    void testRejectsOversizedCounts() {
+        RegisterByteCodeAssembler assembler = new RegisterByteCodeAssembler(RegisterBytecodeDefinition.instructions);
+        VMAssemblerParser parser = new VMAssemblerParser(new CommonTokenStream(new VMAssemblerLexer(CharStreams.fromString("""
+            .def main: args=0, locals=0
+                li r2, 1
+                halt
+            """))));
+        new ParseTreeWalker().walk(assembler, parser.program());
+        byte[] bytes = assembler.toObjectFile().toByteArray();
+
+        byte[] hugeFunctionCount = bytes.clone();
+        ByteBuffer.wrap(hugeFunctionCount).putInt(16, Integer.MAX_VALUE);
+        byte[] hugeCodeSize = bytes.clone();
+        ByteBuffer.wrap(hugeCodeSize).putInt(28, Integer.MAX_VALUE);
+        byte[] hugeName = bytes.clone();
+        ByteBuffer.wrap(hugeName).putInt(32, Integer.MAX_VALUE);
+
+        assertThatThrownBy(() -> ObjectFile.read(ByteBuffer.wrap(hugeFunctionCount)))
+            .isInstanceOf(IOException.class).hasMessageContaining("Truncated");
+        assertThatThrownBy(() -> ObjectFile.read(ByteBuffer.wrap(hugeCodeSize)))
+            .isInstanceOf(IOException.class).hasMessageContaining("Truncated");
+        assertThatThrownBy(() -> ObjectFile.read(ByteBuffer.wrap(hugeName)))
+            .isInstanceOf(IOException.class).hasMessageContaining("string length");
+    }
+}
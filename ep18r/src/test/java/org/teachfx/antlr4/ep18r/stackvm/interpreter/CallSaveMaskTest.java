@@ -0,0 +1,79 @@
+package org.teachfx.antlr4.ep18r.stackvm.interpreter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18r.stackvm.callingconvention.CallFrameLayout;
+import org.teachfx.antlr4.ep18r.stackvm.config.VMConfig;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 带保存掩码的调用（callm）与按需分配栈帧测试
+ */
+@DisplayName("调用保存掩码测试")
+public class CallSaveMaskTest {
+
+    private static RegisterVMInterpreter run(String program) throws Exception {
+        RegisterVMInterpreter vm = new RegisterVMInterpreter(new VMConfig.Builder().build());
+        boolean hasErrors = RegisterVMInterpreter.load(vm,
+            new ByteArrayInputStream(program.getBytes(StandardCharsets.UTF_8)));
+        assertThat(hasErrors).isFalse();
+        vm.exec();
+        return vm;
+    }
+
+    private static String clobber(String call) {
+        return """
+            .def main: args=0, locals=0
+                li r3, 7
+                li r4, 9
+                %s
+                halt
+            .def f: args=0, locals=0
+                li r3, 100
+                li r4, 200
+                ret
+            """.formatted(call);
+    }
+
+    @Test
+    @DisplayName("callm只恢复掩码选中的寄存器，未选中的寄存器保留被调用者写入的值")
+    void testMaskedCallRestoresOnlySelectedRegisters() throws Exception {
+        RegisterVMInterpreter masked = run(clobber("callm 1, f"));
+        assertThat(masked.getRegister(3)).isEqualTo(7);
+        assertThat(masked.getRegister(4)).isEqualTo(200);
+
+        RegisterVMInterpreter full = run(clobber("call f"));
+        assertThat(full.getRegister(3)).isEqualTo(7);
+        assertThat(full.getRegister(4)).isEqualTo(9);
+    }
+
+    @Test
+    @DisplayName("栈帧按函数体访问的最低FP槽位分配，不用局部变量的函数只占8字节")
+    void testFrameSizedByAccessedSlots() throws Exception {
+        RegisterVMInterpreter vm = run("""
+            .def main: args=0, locals=0
+                call leaf
+                call local
+                halt
+            .def leaf: args=0, locals=4
+                li r2, 1
+                ret
+            .def local: args=0, locals=4
+                li r2, 5
+                sw r2, fp, -16
+                lw r2, fp, -16
+                ret
+            """);
+
+        assertThat(vm.getRegister(2)).isEqualTo(5);
+        CallFrameLayout leaf = vm.getCallFrameLayout(0, 12);
+        assertThat(leaf.getFrameSize()).isEqualTo(8);
+        CallFrameLayout local = vm.getCallFrameLayout(4, 20);
+        assertThat(local.getLowestFpOffset()).isEqualTo(-16);
+        assertThat(local.getFrameSize()).isLessThan(CallFrameLayout.of(local.getSymbol()).getFrameSize());
+    }
+}
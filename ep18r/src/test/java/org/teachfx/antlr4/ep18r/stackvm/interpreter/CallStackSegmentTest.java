@@ -0,0 +1,114 @@
+package org.teachfx.antlr4.ep18r.stackvm.interpreter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18r.stackvm.config.VMConfig;
+import org.teachfx.antlr4.ep18r.stackvm.exception.VMStackOverflowException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 调用栈段测试
+ */
+@DisplayName("调用栈段测试")
+public class CallStackSegmentTest {
+
+    /** 递归求和 1..n，每层使用一个局部变量 */
+    private static final String SUM = """
+        .def main: args=0, locals=0
+            li r8, 0
+            li r9, 20000
+            li r10, 1
+        loop:
+            slt r11, r8, r9
+            jf r11, done
+            li r2, %d
+            call sum
+            add r8, r8, r10
+            j loop
+        done:
+            halt
+        .def sum: args=1, locals=1
+            sw r2, fp, -16
+            li r3, 0
+            sle r4, r2, r3
+            jt r4, base
+            li r5, 1
+            sub r2, r2, r5
+            call sum
+            lw r3, fp, -16
+            add r2, r2, r3
+            ret
+        base:
+            li r2, 0
+            ret
+        """;
+
+    private static RegisterVMInterpreter load(int depth) throws Exception {
+        RegisterVMInterpreter vm = new RegisterVMInterpreter(
+            new VMConfig.Builder().setHeapSize(4096).setFrameStackSize(256).build());
+        boolean hasErrors = RegisterVMInterpreter.load(vm,
+            new ByteArrayInputStream(SUM.formatted(depth).getBytes(StandardCharsets.UTF_8)));
+        assertThat(hasErrors).isFalse();
+        return vm;
+    }
+
+    @Test
+    @DisplayName("RET释放栈帧：反复调用不消耗堆，结束后栈顶回到main的栈帧")
+    void testFramesAreReclaimedOnReturn() throws Exception {
+        RegisterVMInterpreter vm = load(10);
+
+        vm.exec();
+
+        assertThat(vm.getRegister(2)).isEqualTo(55);
+        assertThat(vm.getHeapAllocPointer()).isZero();
+        assertThat(vm.getStackTop()).isEqualTo(vm.getRegister(13));
+        assertThat(vm.getStackTop()).isBetween(vm.getStackLimit(), vm.getStringSegmentBase() - 1);
+        assertThat(vm.getStackLimit()).isEqualTo(vm.getStringSegmentBase() - 256);
+    }
+
+    @Test
+    @DisplayName("递归深度超过调用栈段容量时抛出栈溢出异常")
+    void testDeepRecursionOverflowsSegment() throws Exception {
+        RegisterVMInterpreter vm = load(100);
+
+        assertThatThrownBy(vm::exec).isInstanceOf(VMStackOverflowException.class);
+    }
+
+    @Test
+    @DisplayName("main的栈帧同样从调用栈段分配，局部变量不与堆上的结构体重叠")
+    void testMainFrameAllocatedFromSegment() throws Exception {
+        String program = """
+            .def main: args=0, locals=2
+                li r8, 7
+                sw r8, fp, -16
+                li r9, 9
+                sw r9, fp, -20
+                struct r10, 4
+                li r11, 100
+                sw_f r11, r10, 0
+                sw_f r11, r10, 4
+                sw_f r11, r10, 8
+                sw_f r11, r10, 12
+                lw r2, fp, -16
+                lw r3, fp, -20
+                add r2, r2, r3
+                halt
+            """;
+        RegisterVMInterpreter vm = new RegisterVMInterpreter(
+            new VMConfig.Builder().setHeapSize(4096).setFrameStackSize(256).build());
+        assertThat(RegisterVMInterpreter.load(vm,
+            new ByteArrayInputStream(program.getBytes(StandardCharsets.UTF_8)))).isFalse();
+
+        vm.exec();
+
+        assertThat(vm.getRegister(2)).isEqualTo(16);
+        assertThat(vm.getRegister(13)).isEqualTo(vm.getStackTop());
+        assertThat(vm.getStackTop()).isBetween(vm.getStackLimit(), vm.getStringSegmentBase() - 1);
+        assertThat(vm.getRegister(14)).isLessThan(vm.getStringSegmentBase());
+    }
+}
@@ -0,0 +1,100 @@
+package org.teachfx.antlr4.ep18r.stackvm.interpreter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18r.pass.codegen.ByteCodeEncoder;
+import org.teachfx.antlr4.ep18r.stackvm.config.VMConfig;
+import org.teachfx.antlr4.ep18r.stackvm.instructions.model.RegisterBytecodeDefinition;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 比较并跳转与立即数加法指令测试
+ */
+@DisplayName("比较并跳转与立即数加法指令测试")
+public class CompareBranchTest {
+
+    private static RegisterVMInterpreter run(String program) throws Exception {
+        RegisterVMInterpreter vm = new RegisterVMInterpreter(new VMConfig.Builder().build());
+        boolean hasErrors = RegisterVMInterpreter.load(vm,
+            new ByteArrayInputStream(program.getBytes(StandardCharsets.UTF_8)));
+        assertThat(hasErrors).isFalse();
+        vm.exec();
+        return vm;
+    }
+
+    @Test
+    @DisplayName("blt + addi 组成的循环：循环头一条指令，计数器自增一条指令")
+    void testLoopWithFusedInstructions() throws Exception {
+        RegisterVMInterpreter vm = run("""
+            .def main: args=0, locals=0
+                li r8, 0
+                li r9, 100
+                li r2, 0
+            loop:
+                bge r8, r9, done
+                addi r8, r8, 1
+                add r2, r2, r8
+                j loop
+            done:
+                addi r3, r2, -50
+                halt
+            """);
+
+        assertThat(vm.getRegister(2)).isEqualTo(5050);
+        assertThat(vm.getRegister(3)).isEqualTo(5000);
+    }
+
+    @Test
+    @DisplayName("四种比较跳转在相等、小于、大于时的跳转行为与 seq/slt + jt 一致")
+    void testBranchConditions() throws Exception {
+        // r2 的每一位记录一次跳转：beq 1==1、bne 1!=2、blt 1<2、bge 2>=1、bge 1>=1，其余不应跳转
+        RegisterVMInterpreter vm = run("""
+            .def main: args=0, locals=0
+                li r3, 1
+                li r4, 2
+                li r2, 0
+                beq r3, r3, taken1
+                j next1
+            taken1:
+                addi r2, r2, 1
+            next1:
+                bne r3, r4, taken2
+                j next2
+            taken2:
+                addi r2, r2, 2
+            next2:
+                blt r3, r4, taken3
+                j next3
+            taken3:
+                addi r2, r2, 4
+            next3:
+                bge r4, r3, taken4
+                j next4
+            taken4:
+                addi r2, r2, 8
+            next4:
+                bge r3, r3, taken5
+                j next5
+            taken5:
+                addi r2, r2, 16
+            next5:
+                beq r3, r4, bad
+                bne r3, r3, bad
+                blt r4, r3, bad
+                bge r3, r4, bad
+                halt
+            bad:
+                li r2, -1
+                halt
+            """);
+
+        assertThat(vm.getRegister(2)).isEqualTo(31);
+        ByteCodeEncoder encoder = new ByteCodeEncoder();
+        assertThat(encoder.toAssemblyString(encoder.encodeIType(RegisterBytecodeDefinition.INSTR_BLT, 3, 4, 16)))
+            .isEqualTo("blt r3, r4, 16");
+    }
+}
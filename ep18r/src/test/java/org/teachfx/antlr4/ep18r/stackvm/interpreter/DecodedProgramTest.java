@@ -0,0 +1,91 @@
+package org.teachfx.antlr4.ep18r.stackvm.interpreter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18r.stackvm.config.VMConfig;
+import org.teachfx.antlr4.ep18r.stackvm.instructions.model.RegisterBytecodeDefinition;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 预解码指令与数组分派测试
+ */
+@DisplayName("预解码指令测试")
+public class DecodedProgramTest {
+
+    /** 循环累加1..10，循环体使用jf/j跳转 */
+    private static final String LOOP = """
+        .def main: args=0, locals=0
+            li r2, 0
+            li r3, 1
+            li r4, 10
+            li r6, 1
+        loop:
+            sle r5, r3, r4
+            jf r5, done
+            add r2, r2, r3
+            add r3, r3, r6
+            j loop
+        done:
+            halt
+        """;
+
+    private static byte[] word(int value) {
+        return new byte[] {(byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8), (byte) value};
+    }
+
+    @Test
+    @DisplayName("按字段解码指令字并对立即数做符号扩展，越界操作码记为无效")
+    void testDecodesFieldsIntoParallelArrays() {
+        int add = (RegisterBytecodeDefinition.INSTR_ADD << 26) | (2 << 21) | (3 << 16) | (4 << 11);
+        int li = (RegisterBytecodeDefinition.INSTR_LI << 26) | (5 << 21) | 0xFFFE;
+        int jump = (RegisterBytecodeDefinition.INSTR_J << 26) | 0x3FFFFFC;
+        int invalid = 63 << 26;
+        byte[] code = new byte[18];
+        System.arraycopy(word(add), 0, code, 0, 4);
+        System.arraycopy(word(li), 0, code, 4, 4);
+        System.arraycopy(word(jump), 0, code, 8, 4);
+        System.arraycopy(word(invalid), 0, code, 12, 4);
+
+        DecodedProgram program = DecodedProgram.decode(code, code.length);
+
+        assertThat(program.size()).isEqualTo(4);
+        assertThat(program.opcodes[0]).isEqualTo((int) RegisterBytecodeDefinition.INSTR_ADD);
+        assertThat(program.rd[0]).isEqualTo(2);
+        assertThat(program.rs1[0]).isEqualTo(3);
+        assertThat(program.rs2[0]).isEqualTo(4);
+        assertThat(program.words[1]).isEqualTo(li);
+        assertThat(program.imm[1]).isEqualTo(-2);
+        assertThat(program.imm[2]).isEqualTo(-4);
+        assertThat(program.opcodes[3]).isEqualTo(DecodedProgram.INVALID_OPCODE);
+        assertThat(program.isDecodedFrom(code, code.length)).isTrue();
+        assertThat(program.isDecodedFrom(code.clone(), code.length)).isFalse();
+    }
+
+    @Test
+    @DisplayName("无插桩循环使用预解码数组执行跳转，结果与插桩循环一致；执行到无效操作码时报错")
+    void testHeadlessLoopMatchesInstrumentedLoop() throws Exception {
+        RegisterVMInterpreter headless = new RegisterVMInterpreter(new VMConfig.Builder().build());
+        RegisterVMInterpreter.load(headless, new ByteArrayInputStream(LOOP.getBytes(StandardCharsets.UTF_8)));
+        headless.exec();
+        assertThat(headless.isInstrumented()).isFalse();
+
+        RegisterVMInterpreter traced = new RegisterVMInterpreter(new VMConfig.Builder().build());
+        RegisterVMInterpreter.load(traced, new ByteArrayInputStream(LOOP.getBytes(StandardCharsets.UTF_8)));
+        traced.setTrace(true);
+        traced.exec();
+
+        assertThat(headless.getRegister(2)).isEqualTo(55);
+        assertThat(traced.getRegister(2)).isEqualTo(55);
+
+        RegisterVMInterpreter broken = new RegisterVMInterpreter(new VMConfig.Builder().build());
+        broken.loadCode(word(63 << 26));
+        assertThatThrownBy(broken::exec)
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Invalid opcode");
+    }
+}
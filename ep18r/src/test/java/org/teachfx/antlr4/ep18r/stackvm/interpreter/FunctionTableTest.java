@@ -0,0 +1,98 @@
+package org.teachfx.antlr4.ep18r.stackvm.interpreter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18r.stackvm.FunctionSymbol;
+import org.teachfx.antlr4.ep18r.stackvm.StackOffsets;
+import org.teachfx.antlr4.ep18r.stackvm.callingconvention.CallFrameLayout;
+import org.teachfx.antlr4.ep18r.stackvm.config.VMConfig;
+import org.teachfx.antlr4.ep18r.stackvm.instructions.model.RegisterBytecodeDefinition;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 函数表与调用点栈帧布局测试
+ */
+@DisplayName("函数表测试")
+public class FunctionTableTest {
+
+    private static final String FIB = """
+        .def main: args=0, locals=0
+            li r2, 12
+            call fib
+            halt
+        .def fib: args=1, locals=2
+            sw r2, fp, -16
+            li r3, 2
+            sge r4, r2, r3
+            jf r4, base_case
+            lw r2, fp, -16
+            li r5, 1
+            sub r2, r2, r5
+            call fib
+            sw r2, fp, -20
+            lw r2, fp, -16
+            li r5, 2
+            sub r2, r2, r5
+            call fib
+            lw r3, fp, -20
+            add r2, r3, r2
+            ret
+        base_case:
+            lw r2, fp, -16
+            ret
+        """;
+
+    private static byte[] call(int target) {
+        int word = (RegisterBytecodeDefinition.INSTR_CALL << 26) | target;
+        return new byte[] {(byte) (word >> 24), (byte) (word >> 16), (byte) (word >> 8), (byte) word};
+    }
+
+    @Test
+    @DisplayName("按入口地址登记函数并为调用点预先计算栈帧布局，未知目标返回UNKNOWN")
+    void testIndexesFunctionsAndCallSites() {
+        byte[] code = new byte[16];
+        System.arraycopy(call(8), 0, code, 0, 4);
+        System.arraycopy(call(12), 0, code, 4, 4);
+        FunctionSymbol callee = new FunctionSymbol("callee", 8, 3, 8);
+        Object[] pool = {"padding", 1.5f, callee, new FunctionSymbol("shadowed", 0, 0, 8)};
+
+        FunctionTable table = FunctionTable.build(code, pool, DecodedProgram.decode(code, code.length));
+
+        assertThat(table.find(8)).isSameAs(callee);
+        assertThat(table.find(12)).isNull();
+        assertThat(table.find(-4)).isNull();
+
+        CallFrameLayout layout = table.layoutAt(0, 8);
+        assertThat(layout).isSameAs(table.layoutOf(8));
+        assertThat(layout.getSymbol()).isSameAs(callee);
+        assertThat(layout.getNumStackArgs()).isEqualTo(2);
+        // 有栈传递参数的函数使用保守布局
+        assertThat(layout.getFrameSize()).isEqualTo(StackOffsets.calculateFrameSize(5, 3, 2));
+        assertThat(layout.getFrameSizeWords()).isEqualTo(layout.getFrameSize() / 4);
+        assertThat(layout.getSpAdjustment()).isEqualTo(StackOffsets.calculateSpAdjustment(5, 3));
+        assertThat(table.layoutAt(4, 12)).isSameAs(CallFrameLayout.UNKNOWN);
+        assertThat(table.isBuiltFrom(code, pool)).isTrue();
+        assertThat(table.isBuiltFrom(code, pool.clone())).isFalse();
+    }
+
+    @Test
+    @DisplayName("递归调用通过函数表解析被调用函数，栈帧记录正确的函数符号")
+    void testRecursiveCallsResolveThroughTable() throws Exception {
+        RegisterVMInterpreter vm = new RegisterVMInterpreter(new VMConfig.Builder().build());
+        boolean hasErrors = RegisterVMInterpreter.load(vm,
+            new ByteArrayInputStream(FIB.getBytes(StandardCharsets.UTF_8)));
+        assertThat(hasErrors).isFalse();
+
+        vm.exec();
+
+        assertThat(vm.getRegister(2)).isEqualTo(144);
+        FunctionSymbol fib = vm.findFunctionByAddress(12);
+        assertThat(fib).isNotNull();
+        assertThat(fib.name).isEqualTo("fib");
+        assertThat(vm.findFunctionByAddress(16)).isNull();
+    }
+}
@@ -0,0 +1,98 @@
+package org.teachfx.antlr4.ep18r.stackvm.interpreter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18r.stackvm.config.VMConfig;
+
+import java.io.InputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 无插桩执行循环测试
+ */
+@DisplayName("无插桩执行循环测试")
+public class HeadlessExecutionTest {
+
+    private static RegisterVMInterpreter loadFib() throws Exception {
+        RegisterVMInterpreter interpreter = new RegisterVMInterpreter(new VMConfig.Builder().build());
+        try (InputStream input = HeadlessExecutionTest.class.getClassLoader().getResourceAsStream("fib.vmr")) {
+            assertThat(input).isNotNull();
+            assertThat(RegisterVMInterpreter.load(interpreter, input)).isFalse();
+        }
+        return interpreter;
+    }
+
+    /** 统计指令事件，第limit条指令执行后把自己移除 */
+    private static final class DetachingListener implements VisualizationListener {
+        private final RegisterVMInterpreter interpreter;
+        private final int limit;
+        private int executed;
+
+        DetachingListener(RegisterVMInterpreter interpreter, int limit) {
+            this.interpreter = interpreter;
+            this.limit = limit;
+        }
+
+        @Override
+        public void beforeInstructionExecute(int pc, int opcode, String instruction) {
+        }
+
+        @Override
+        public void afterInstructionExecute(int pc, int opcode, String instruction, int[] registers) {
+            if (++executed == limit) {
+                interpreter.removeVisualizationListener(this);
+            }
+        }
+
+        @Override
+        public void onPause(int pc) {
+        }
+
+        @Override
+        public void onResume(int pc) {
+        }
+
+        @Override
+        public void onBreakpointHit(int pc) {
+        }
+
+        @Override
+        public void onRegisterChange(int regNum, int oldValue, int newValue) {
+        }
+
+        @Override
+        public void onMemoryChange(int address, int oldValue, int newValue) {
+        }
+    }
+
+    @Test
+    @DisplayName("没有监听器和断点时应使用无插桩循环并得到相同结果")
+    void testHeadlessByDefault() throws Exception {
+        RegisterVMInterpreter interpreter = loadFib();
+        assertThat(interpreter.isInstrumented()).isFalse();
+
+        interpreter.exec();
+
+        assertThat(interpreter.getRegister(2)).isEqualTo(55);
+        interpreter.addBreakpoint(1000);
+        assertThat(interpreter.isInstrumented()).isTrue();
+        interpreter.removeBreakpoint(1000);
+        assertThat(interpreter.isInstrumented()).isFalse();
+    }
+
+    @Test
+    @DisplayName("监听器在执行中移除后应在下一条指令边界切换到无插桩循环")
+    void testSwitchesLoopsAtInstructionBoundary() throws Exception {
+        RegisterVMInterpreter interpreter = loadFib();
+        DetachingListener listener = new DetachingListener(interpreter, 10);
+        interpreter.addVisualizationListener(listener);
+        assertThat(interpreter.isInstrumented()).isTrue();
+
+        interpreter.exec();
+
+        assertThat(listener.executed).isEqualTo(10);
+        assertThat(interpreter.isInstrumented()).isFalse();
+        assertThat(interpreter.getRegister(2)).isEqualTo(55);
+    }
+}
@@ -0,0 +1,73 @@
+package org.teachfx.antlr4.ep18r.stackvm.interpreter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18r.stackvm.config.VMConfig;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 只读字符串段测试
+ */
+@DisplayName("字符串段测试")
+public class StringSegmentTest {
+
+    private static RegisterVMInterpreter load(String program, int heapSize) throws Exception {
+        RegisterVMInterpreter vm = new RegisterVMInterpreter(new VMConfig.Builder().setHeapSize(heapSize).build());
+        boolean hasErrors = RegisterVMInterpreter.load(vm,
+            new ByteArrayInputStream(program.getBytes(StandardCharsets.UTF_8)));
+        assertThat(hasErrors).isFalse();
+        return vm;
+    }
+
+    @Test
+    @DisplayName("循环中反复执行ls只返回加载时写入的字符串地址，不再占用堆空间")
+    void testLoadStringInLoopDoesNotAllocate() throws Exception {
+        RegisterVMInterpreter vm = load("""
+            .def main: args=0, locals=0
+                li r3, 0
+                li r4, 5000
+                li r6, 1
+            loop:
+                slt r7, r3, r4
+                jf r7, done
+                ls r2, "hello"
+                ls r5, "ok"
+                add r3, r3, r6
+                j loop
+            done:
+                halt
+            """, 1024);
+
+        vm.exec();
+
+        int base = vm.getStringSegmentBase();
+        assertThat(base).isEqualTo(1024 - "hello".length() - "ok".length());
+        assertThat(vm.getRegister(2)).isEqualTo(base);
+        assertThat(vm.getRegister(5)).isEqualTo(base + "hello".length());
+        assertThat(vm.readHeap(base)).isEqualTo((int) 'h');
+        assertThat(vm.readHeap(base + 5)).isEqualTo((int) 'o');
+        assertThat(vm.getHeapAllocPointer()).isZero();
+    }
+
+    @Test
+    @DisplayName("字符串段只读，写入时报错")
+    void testStringSegmentIsReadOnly() throws Exception {
+        RegisterVMInterpreter vm = load("""
+            .def main: args=0, locals=0
+                ls r2, "abc"
+                li r3, 0
+                sw r3, r2, 0
+                halt
+            """, 1024);
+
+        assertThatThrownBy(vm::exec)
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("read-only");
+        assertThat(vm.readHeap(vm.getStringSegmentBase())).isEqualTo((int) 'a');
+    }
+}
@@ -0,0 +1,98 @@
+package org.teachfx.antlr4.ep18r.stackvm.interpreter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18r.stackvm.config.VMConfig;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 寄存器VM状态快照测试
+ */
+@DisplayName("寄存器VM快照测试")
+public class VMSnapshotTest {
+
+    /** 初始化阶段计算fib(10)后停机，主阶段在结果上加一 */
+    private static final String PROGRAM = """
+        .def main: args=0, locals=1
+            li r2, 10
+            call fib
+            halt
+            li r3, 1
+            add r2, r2, r3
+            halt
+        .def fib: args=1, locals=2
+            sw r2, fp, -16
+            li r3, 2
+            sge r4, r2, r3
+            jf r4, base_case
+            lw r2, fp, -16
+            li r5, 1
+            sub r2, r2, r5
+            call fib
+            sw r2, fp, -20
+            lw r2, fp, -16
+            li r5, 2
+            sub r2, r2, r5
+            call fib
+            lw r3, fp, -20
+            add r2, r3, r2
+            ret
+        base_case:
+            lw r2, fp, -16
+            ret
+        """;
+
+    @Test
+    @DisplayName("快照写入文件后内存映射恢复，可在新的解释器上反复从检查点继续执行")
+    void testRestoreFromFileAndResumeRepeatedly() throws Exception {
+        RegisterVMInterpreter warm = new RegisterVMInterpreter(new VMConfig.Builder().build());
+        boolean hasErrors = RegisterVMInterpreter.load(warm,
+            new ByteArrayInputStream(PROGRAM.getBytes(StandardCharsets.UTF_8)));
+        assertThat(hasErrors).isFalse();
+        warm.exec();
+        assertThat(warm.getRegister(2)).isEqualTo(55);
+
+        Path path = Files.createTempFile("fib", VMSnapshot.EXTENSION);
+        VMSnapshot snapshot;
+        try {
+            warm.snapshot().write(path);
+            snapshot = VMSnapshot.read(path);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+        assertThat(snapshot.getProgramCounter()).isEqualTo(12);
+        assertThat(snapshot.getFrameCount()).isEqualTo(1);
+
+        RegisterVMInterpreter interpreter = new RegisterVMInterpreter(new VMConfig.Builder().build());
+        for (int run = 0; run < 3; run++) {
+            interpreter.restore(snapshot);
+            interpreter.resume();
+            assertThat(interpreter.getRegister(2)).isEqualTo(56);
+        }
+    }
+
+    @Test
+    @DisplayName("超出配置容量的快照和未加载程序时的快照应被拒绝")
+    void testRejectsInvalidSnapshots() throws Exception {
+        RegisterVMInterpreter vm = new RegisterVMInterpreter(new VMConfig.Builder().build());
+        assertThatThrownBy(vm::snapshot)
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("No program loaded");
+
+        RegisterVMInterpreter.load(vm, new ByteArrayInputStream(PROGRAM.getBytes(StandardCharsets.UTF_8)));
+        vm.exec();
+        VMSnapshot snapshot = vm.snapshot();
+
+        RegisterVMInterpreter small = new RegisterVMInterpreter(new VMConfig.Builder().setHeapSize(64).build());
+        assertThatThrownBy(() -> small.restore(snapshot))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Snapshot does not fit VM configuration");
+    }
+}
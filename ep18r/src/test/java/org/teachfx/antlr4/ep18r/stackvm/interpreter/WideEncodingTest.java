@@ -0,0 +1,117 @@
+package org.teachfx.antlr4.ep18r.stackvm.interpreter;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18r.parser.VMAssemblerLexer;
+import org.teachfx.antlr4.ep18r.parser.VMAssemblerParser;
+import org.teachfx.antlr4.ep18r.stackvm.InstructionEncoding;
+import org.teachfx.antlr4.ep18r.stackvm.ObjectFile;
+import org.teachfx.antlr4.ep18r.stackvm.RegisterByteCodeAssembler;
+import org.teachfx.antlr4.ep18r.stackvm.RegisterDisAssembler;
+import org.teachfx.antlr4.ep18r.stackvm.config.VMConfig;
+import org.teachfx.antlr4.ep18r.stackvm.instructions.model.RegisterBytecodeDefinition;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 宽指令编码测试：64个寄存器、64位指令、32位立即数
+ */
+@DisplayName("宽指令编码测试")
+public class WideEncodingTest {
+
+    private static final String PROGRAM = """
+        encoding wide
+        .def main: args=0, locals=0
+            li r16, 1000
+            li r40, 0
+            li r41, 0
+        loop:
+            bge r40, r16, done
+            addi r40, r40, 1
+            add r41, r41, r40
+            j loop
+        done:
+            li r63, 123456789
+            mov a0, r41
+            call twice
+            halt
+        .def twice: args=1, locals=0
+            add a0, a0, a0
+            ret
+        """;
+
+    private static RegisterByteCodeAssembler assemble(String program) {
+        VMAssemblerParser parser = new VMAssemblerParser(
+            new CommonTokenStream(new VMAssemblerLexer(CharStreams.fromString(program))));
+        RegisterByteCodeAssembler assembler = new RegisterByteCodeAssembler(RegisterBytecodeDefinition.instructions);
+        new ParseTreeWalker().walk(assembler, parser.program());
+        assertThat(parser.getNumberOfSyntaxErrors()).isZero();
+        return assembler;
+    }
+
+    @Test
+    @DisplayName("r16以上的寄存器和超过16位的立即数在宽编码下直接可用")
+    void testWideRegistersAndImmediates() throws Exception {
+        RegisterByteCodeAssembler assembler = assemble(PROGRAM);
+        assertThat(assembler.hasErrors()).isFalse();
+        assertThat(assembler.getEncoding()).isEqualTo(InstructionEncoding.WIDE);
+        // 13条指令，每条8字节
+        assertThat(assembler.getCodeMemorySize()).isEqualTo(13 * 8);
+
+        RegisterVMInterpreter vm = new RegisterVMInterpreter(new VMConfig.Builder().build());
+        RegisterVMInterpreter.load(vm, assembler.toObjectFile());
+        vm.exec();
+
+        assertThat(vm.getEncoding()).isEqualTo(InstructionEncoding.WIDE);
+        assertThat(vm.getRegister(40)).isEqualTo(1000);
+        assertThat(vm.getRegister(63)).isEqualTo(123456789);
+        assertThat(vm.getRegister(2)).isEqualTo(2 * 500500);
+    }
+
+    @Test
+    @DisplayName("编码版本记录在目标文件头部，读回后可执行和反汇编")
+    void testObjectFileRoundTrip() throws Exception {
+        byte[] bytes = assemble(PROGRAM).toObjectFile().toByteArray();
+        ObjectFile objectFile = ObjectFile.read(ByteBuffer.wrap(bytes));
+        assertThat(objectFile.getEncoding()).isEqualTo(InstructionEncoding.WIDE);
+
+        String listing = new RegisterDisAssembler(objectFile).disassembleToString();
+        assertThat(listing).contains("0000: li      r16, 1000");
+        assertThat(listing).contains("r63, 123456789");
+        assertThat(listing).contains("0040: add     r41, r41, r40");
+
+        // 插桩循环（跟踪模式）与无插桩循环结果相同
+        RegisterVMInterpreter vm = new RegisterVMInterpreter(new VMConfig.Builder().build());
+        RegisterVMInterpreter.load(vm, objectFile);
+        vm.addBreakpoint(-1);
+        vm.exec();
+        assertThat(vm.getRegister(2)).isEqualTo(2 * 500500);
+    }
+
+    @Test
+    @DisplayName("32位编码拒绝r16以上的寄存器，旧目标文件按32位编码读取")
+    void testNarrowEncodingLimits() throws Exception {
+        RegisterByteCodeAssembler assembler = assemble("""
+            .def main: args=0, locals=0
+                li r16, 1
+                halt
+            """);
+        assertThat(assembler.hasErrors()).isTrue();
+
+        RegisterByteCodeAssembler narrow = assemble("""
+            .def main: args=0, locals=0
+                li r15, 1
+                halt
+            """);
+        assertThat(narrow.hasErrors()).isFalse();
+        byte[] bytes = narrow.toObjectFile().toByteArray();
+        // 头部第7字节为编码版本，旧文件中为0
+        assertThat(bytes[7]).isZero();
+        assertThat(ObjectFile.read(ByteBuffer.wrap(bytes)).getEncoding()).isEqualTo(InstructionEncoding.NARROW);
+    }
+}
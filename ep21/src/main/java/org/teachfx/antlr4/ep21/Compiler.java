@@ -27,6 +27,7 @@ import org.teachfx.antlr4.ep21.pass.cfg.StrengthReductionOptimizer;
 import org.teachfx.antlr4.ep21.pass.codegen.CodeGenerationResult;
 import org.teachfx.antlr4.ep21.pass.codegen.GeneratorFactory;
 import org.teachfx.antlr4.ep21.pass.codegen.ICodeGenerator;
+import org.teachfx.antlr4.ep21.pass.codegen.ObjectFileWriter;
 import org.teachfx.antlr4.ep21.pass.codegen.StackVMGenerator;
 import org.teachfx.antlr4.ep21.pass.codegen.VMTargetType;
 import org.teachfx.antlr4.ep21.pass.codegen.RegisterVMGenerator;
@@ -380,8 +381,9 @@ public class Compiler {
                         logger.info("生成指令数: {}", result.getInstructionCount());
                         logger.info("生成耗时: {}ms", result.getGenerationTimeMs());
 
-                        // 保存生成的字节码
-                        saveVMCode(result.getOutput());
+                        // 保存生成的字节码，同时输出可直接加载的二进制目标文件
+                        long timestamp = saveVMCode(result.getOutput());
+                        saveObjectFile(result.getOutput(), targetType, timestamp);
                     } else {
                         logger.error("字节码生成失败");
                         for (String error : result.getErrors()) {
@@ -396,10 +398,11 @@ public class Compiler {
      * 文件名格式为 output_<timestamp>_<index>.vm，避免文件覆盖问题
      *
      * @param buffer 要保存的汇编代码内容，不能为null或空
+     * @return 文件名中使用的时间戳，供同一次编译的其他输出文件共用
      * @throws IllegalArgumentException 如果buffer为null或空
      * @throws RuntimeException 如果文件保存失败
      */
-    protected static void saveVMCode(String buffer) {
+    protected static long saveVMCode(String buffer) {
         // 输入验证
         if (buffer == null || buffer.trim().isEmpty()) {
             logger.warn("尝试保存空的汇编代码内容");
@@ -421,6 +424,7 @@ public class Compiler {
             Files.writeString(filePath, buffer);
             
             logger.info("成功保存虚拟机汇编代码到: {}", filePath.toAbsolutePath());
+            return timestamp;
             
         } catch (IOException e) {
             logger.error("保存虚拟机汇编代码失败 - I/O错误: {}", e.getMessage(), e);
@@ -434,6 +438,31 @@ public class Compiler {
         }
     }
 
+    /**
+     * 汇编生成的代码并保存为二进制目标文件
+     * 文件名格式为 output_<timestamp>.vmo（栈式VM）或 .vmro（寄存器VM），与对应的.vm文件同名
+     * 汇编失败只记录警告，不影响文本汇编代码的输出
+     *
+     * @param buffer 生成的汇编代码
+     * @param targetType 目标虚拟机
+     * @param timestamp 对应.vm文件名中的时间戳
+     */
+    protected static void saveObjectFile(String buffer, VMTargetType targetType, long timestamp) {
+        try {
+            byte[] objectFile = ObjectFileWriter.assemble(buffer, targetType);
+            var outputDir = ensureOutputDirectory();
+            var fileName = "output_%d%s".formatted(timestamp, ObjectFileWriter.extension(targetType));
+            var filePath = outputDir.resolve(fileName);
+            Files.write(filePath, objectFile);
+            logger.info("成功保存目标文件到: {}", filePath.toAbsolutePath());
+        } catch (IllegalArgumentException e) {
+            logger.warn("汇编生成代码失败，未输出目标文件: {}", e.getMessage());
+        } catch (IOException e) {
+            logger.error("保存目标文件失败 - I/O错误: {}", e.getMessage(), e);
+            throw new RuntimeException("保存目标文件失败: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * 将Mermaid格式的控制流图保存到Markdown文件
      *
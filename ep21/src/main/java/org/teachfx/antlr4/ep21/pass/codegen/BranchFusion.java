@@ -0,0 +1,196 @@
+package org.teachfx.antlr4.ep21.pass.codegen;
+
+import org.teachfx.antlr4.ep18r.stackvm.InstructionEncoding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Selects EP18R compare-and-branch and add-immediate instructions in assembly text.
+ * <p>
+ * The register generator emits every conditional as a set instruction followed by
+ * {@code jt}/{@code jf}, and every constant operand through a separate {@code li}.
+ * This pass fuses adjacent pairs whose intermediate register is dead afterwards:
+ * </p>
+ * <ul>
+ *   <li>{@code slt/sle/sgt/sge/seq/sne rt, a, b} + {@code jt/jf rt, L} becomes
+ *       {@code blt/bge/beq/bne} (operands swapped for {@code sgt}/{@code sle})</li>
+ *   <li>{@code li rt, c} + {@code add rd, a, rt} (either operand order) or
+ *       {@code sub rd, a, rt} becomes {@code addi rd, a, c} (or {@code -c})</li>
+ * </ul>
+ * <p>
+ * The addi immediate must fit the target encoding: 16 bits for the narrow
+ * encoding, 32 bits for the wide one.
+ * </p>
+ * <p>
+ * 只在第二条指令前没有标签（不是跳转目标）、中间寄存器在其后不再活跃时才合并，
+ * 活跃性由 {@link RegisterLiveness} 计算。
+ * </p>
+ */
+final class BranchFusion {
+
+    private BranchFusion() {
+    }
+
+    /**
+     * Fuses compare/branch and load-immediate/add pairs in the assembly text.
+     *
+     * @param assembly EP18R assembly as produced by {@link RegisterVMGenerator}
+     * @return the rewritten assembly (fused pairs take one line)
+     */
+    static String apply(String assembly) {
+        return apply(assembly, InstructionEncoding.NARROW);
+    }
+
+    /**
+     * Fuses compare/branch and load-immediate/add pairs for the given instruction encoding.
+     *
+     * @param assembly EP18R assembly as produced by {@link RegisterVMGenerator}
+     * @param encoding target encoding, which bounds the addi immediate
+     * @return the rewritten assembly (fused pairs take one line)
+     */
+    static String apply(String assembly, InstructionEncoding encoding) {
+        if (assembly == null || assembly.isEmpty()) {
+            return assembly;
+        }
+        boolean trailingNewline = assembly.endsWith("\n");
+        List<String> lines = new ArrayList<>(List.of(assembly.split("\n", -1)));
+        if (trailingNewline) {
+            lines.remove(lines.size() - 1);
+        }
+
+        Map<String, Integer> argCounts = RegisterLiveness.argCounts(lines);
+        for (int[] function : RegisterLiveness.functions(lines)) {
+            fuseFunction(lines, function[0], function[1], argCounts, encoding);
+        }
+        lines.removeIf(line -> line == null);
+
+        String result = String.join("\n", lines);
+        return trailingNewline ? result + "\n" : result;
+    }
+
+    private static void fuseFunction(List<String> lines, int from, int to, Map<String, Integer> argCounts,
+                                     InstructionEncoding encoding) {
+        RegisterLiveness liveness = RegisterLiveness.analyze(lines, from, to, argCounts);
+        if (liveness == null) {
+            return;
+        }
+        for (int k = 0; k + 1 < liveness.size(); k++) {
+            RegisterLiveness.Insn first = liveness.insn(k);
+            RegisterLiveness.Insn second = liveness.insn(k + 1);
+            if (second.labelled) {
+                continue;
+            }
+            String fused = fuseBranch(first, second, liveness.liveOut(k + 1));
+            if (fused == null) {
+                fused = fuseAddImmediate(first, second, liveness.liveOut(k + 1), encoding);
+            }
+            if (fused != null) {
+                String line = lines.get(second.line);
+                String indent = line.substring(0, line.indexOf(second.mnemonic));
+                lines.set(second.line, indent + fused);
+                lines.set(first.line, null);
+                k++;
+            }
+        }
+    }
+
+    /**
+     * {@code sCC rt, a, b} + {@code jt/jf rt, L} → {@code bCC a, b, L}.
+     */
+    private static String fuseBranch(RegisterLiveness.Insn set, RegisterLiveness.Insn jump, long liveOut) {
+        boolean onTrue = jump.mnemonic.equals("jt");
+        if (!onTrue && !jump.mnemonic.equals("jf")) {
+            return null;
+        }
+        if (set.operands.length != 3 || jump.operands.length != 2) {
+            return null;
+        }
+        Integer rt = RegisterLiveness.register(set.operands[0]);
+        if (rt == null || rt == 0 || !rt.equals(RegisterLiveness.register(jump.operands[0])) || (liveOut & (1L << rt)) != 0) {
+            return null;
+        }
+        if (RegisterLiveness.register(set.operands[1]) == null || RegisterLiveness.register(set.operands[2]) == null) {
+            return null;
+        }
+        String a = set.operands[1];
+        String b = set.operands[2];
+        String target = jump.operands[1];
+        // 按跳转条件选择指令：jf跳转条件取反；大于、小于等于交换操作数
+        String condition = onTrue ? set.mnemonic : negate(set.mnemonic);
+        if (condition == null) {
+            return null;
+        }
+        return switch (condition) {
+            case "slt" -> "blt " + a + ", " + b + ", " + target;
+            case "sge" -> "bge " + a + ", " + b + ", " + target;
+            case "sgt" -> "blt " + b + ", " + a + ", " + target;
+            case "sle" -> "bge " + b + ", " + a + ", " + target;
+            case "seq" -> "beq " + a + ", " + b + ", " + target;
+            case "sne" -> "bne " + a + ", " + b + ", " + target;
+            default -> null;
+        };
+    }
+
+    private static String negate(String set) {
+        return switch (set) {
+            case "slt" -> "sge";
+            case "sge" -> "slt";
+            case "sgt" -> "sle";
+            case "sle" -> "sgt";
+            case "seq" -> "sne";
+            case "sne" -> "seq";
+            default -> null;
+        };
+    }
+
+    /**
+     * {@code li rt, c} + {@code add rd, a, rt} / {@code sub rd, a, rt} → {@code addi rd, a, ±c}.
+     */
+    private static String fuseAddImmediate(RegisterLiveness.Insn li, RegisterLiveness.Insn op, long liveOut,
+                                           InstructionEncoding encoding) {
+        if (!li.mnemonic.equals("li") || li.operands.length != 2 || op.operands.length != 3) {
+            return null;
+        }
+        boolean add = op.mnemonic.equals("add");
+        if (!add && !op.mnemonic.equals("sub")) {
+            return null;
+        }
+        Integer rt = RegisterLiveness.register(li.operands[0]);
+        Integer rd = RegisterLiveness.register(op.operands[0]);
+        if (rt == null || rt == 0 || rd == null) {
+            return null;
+        }
+        // rt在合并后不再被写入，因此之后仍需读它时不能合并（除非op本身重新定义了rt）
+        if (!rd.equals(rt) && (liveOut & (1L << rt)) != 0) {
+            return null;
+        }
+        Integer lhs = RegisterLiveness.register(op.operands[1]);
+        Integer rhs = RegisterLiveness.register(op.operands[2]);
+        if (lhs == null || rhs == null || lhs.equals(rhs)) {
+            return null;
+        }
+        String source;
+        if (rhs.equals(rt)) {
+            source = op.operands[1];
+        } else if (add && lhs.equals(rt)) {
+            source = op.operands[2];
+        } else {
+            return null;
+        }
+        long value;
+        try {
+            value = Long.parseLong(li.operands[1]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        long imm = add ? value : -value;
+        long min = encoding.isWide() ? Integer.MIN_VALUE : Short.MIN_VALUE;
+        long max = encoding.isWide() ? Integer.MAX_VALUE : Short.MAX_VALUE;
+        if (imm < min || imm > max) {
+            return null;
+        }
+        return "addi " + op.operands[0] + ", " + source + ", " + imm;
+    }
+}
@@ -0,0 +1,89 @@
+package org.teachfx.antlr4.ep21.pass.codegen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites {@code call} instructions in EP18R assembly into {@code callm} with a save mask.
+ * <p>
+ * EP18R's {@code call} saves and restores all seven caller-saved registers
+ * (a1-a5, lr, ra) on every call. This pass runs a backward register liveness
+ * analysis over each function's assembly and keeps only the registers that are
+ * still live after the call site: {@code call f} becomes {@code callm mask, f},
+ * where bit i of the mask selects the i-th register of {@link #CALLER_SAVED}.
+ * Calls whose live-out set covers every caller-saved register are left unchanged.
+ * </p>
+ * <p>
+ * 活跃性由 {@link RegisterLiveness} 保守地计算：halt和无法识别的指令视为读取所有寄存器，
+ * 因此停机时可观察到的寄存器值不受影响。
+ * </p>
+ */
+final class CallSaveMasks {
+
+    /** Caller-saved registers in save-mask bit order: a1-a5, lr, ra (same order as EP18R StackFrame). */
+    static final int[] CALLER_SAVED = {3, 4, 5, 6, 7, 15, 1};
+
+    /** Mask selecting every caller-saved register (equivalent to a plain call). */
+    static final int ALL_SAVED = 0x7F;
+
+    private CallSaveMasks() {
+    }
+
+    /**
+     * Applies save masks to every {@code call} in the assembly text.
+     *
+     * @param assembly EP18R assembly as produced by {@link RegisterVMGenerator}
+     * @return the rewritten assembly (same line structure)
+     */
+    static String apply(String assembly) {
+        if (assembly == null || !assembly.contains("call ")) {
+            return assembly;
+        }
+        boolean trailingNewline = assembly.endsWith("\n");
+        List<String> lines = new ArrayList<>(List.of(assembly.split("\n", -1)));
+        if (trailingNewline) {
+            lines.remove(lines.size() - 1);
+        }
+
+        Map<String, Integer> argCounts = RegisterLiveness.argCounts(lines);
+        for (int[] function : RegisterLiveness.functions(lines)) {
+            rewriteFunction(lines, function[0], function[1], argCounts);
+        }
+
+        String result = String.join("\n", lines);
+        return trailingNewline ? result + "\n" : result;
+    }
+
+    /**
+     * Computes the save mask for a call site from its live-out register set.
+     */
+    static int maskFor(long liveOut) {
+        int mask = 0;
+        for (int i = 0; i < CALLER_SAVED.length; i++) {
+            if ((liveOut & (1L << CALLER_SAVED[i])) != 0) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    private static void rewriteFunction(List<String> lines, int from, int to, Map<String, Integer> argCounts) {
+        RegisterLiveness liveness = RegisterLiveness.analyze(lines, from, to, argCounts);
+        if (liveness == null) {
+            return;
+        }
+        for (int k = 0; k < liveness.size(); k++) {
+            RegisterLiveness.Insn insn = liveness.insn(k);
+            if (!insn.mnemonic.equals("call") || insn.operands.length != 1) {
+                continue;
+            }
+            int mask = maskFor(liveness.liveOut(k));
+            if (mask != ALL_SAVED) {
+                String line = lines.get(insn.line);
+                String indent = line.substring(0, line.indexOf("call"));
+                lines.set(insn.line, indent + "callm " + mask + ", " + insn.operands[0]);
+            }
+        }
+    }
+}
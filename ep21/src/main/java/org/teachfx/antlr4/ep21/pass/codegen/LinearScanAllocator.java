@@ -1,5 +1,6 @@
 package org.teachfx.antlr4.ep21.pass.codegen;
 
+import org.teachfx.antlr4.ep18r.stackvm.InstructionEncoding;
 import org.teachfx.antlr4.ep18r.stackvm.StackOffsets;
 
 import java.util.ArrayList;
@@ -38,6 +39,8 @@ import java.util.Set;
  *
  * <p>可分配寄存器：R1-R12, R15（共13个，不包括R0, R13, R14）</p>
  * <p>推荐优先使用被调用者保存寄存器：R8-R12（s0-s4）</p>
+ * <p>宽指令编码下可指定更大的寄存器文件（最多64个）：R16及以上作为额外的临时寄存器，
+ * 在低16个寄存器用尽之后、溢出到栈之前分配。CALL不保存它们，只适合不跨调用存活的值。</p>
  *
  * @author EP18R Register VM Team
  * @version 1.0
@@ -46,8 +49,8 @@ public class LinearScanAllocator implements org.teachfx.antlr4.ep18r.stackvm.cod
 
     // ==================== 寄存器常量 ====================
 
-    /** 寄存器总数 */
-    private static final int NUM_REGISTERS = 16;
+    /** ABI定义的寄存器数（窄编码的寄存器总数） */
+    private static final int NUM_REGISTERS = InstructionEncoding.NARROW.getRegisterCount();
 
     /** 零寄存器（不可分配） */
     private static final int R0 = 0;
@@ -96,6 +99,9 @@ public class LinearScanAllocator implements org.teachfx.antlr4.ep18r.stackvm.cod
     /** 分配策略：优先使用被调用者保存寄存器 */
     private final boolean preferCalleeSaved;
 
+    /** 寄存器文件大小（16或宽编码的64） */
+    private final int numRegisters;
+
     // ==================== 构造函数 ====================
 
     /**
@@ -112,7 +118,22 @@ public class LinearScanAllocator implements org.teachfx.antlr4.ep18r.stackvm.cod
      * @param preferCalleeSaved 是否优先使用被调用者保存寄存器
      */
     public LinearScanAllocator(boolean preferCalleeSaved) {
-        this.physicalRegs = new int[NUM_REGISTERS];
+        this(preferCalleeSaved, NUM_REGISTERS);
+    }
+
+    /**
+     * 创建指定寄存器文件大小的线性扫描寄存器分配器
+     *
+     * @param preferCalleeSaved 是否优先使用被调用者保存寄存器
+     * @param numRegisters 寄存器个数（16到64）
+     * @throws IllegalArgumentException 如果寄存器个数超出范围
+     */
+    public LinearScanAllocator(boolean preferCalleeSaved, int numRegisters) {
+        if (numRegisters < NUM_REGISTERS || numRegisters > InstructionEncoding.WIDE.getRegisterCount()) {
+            throw new IllegalArgumentException("Invalid register count: " + numRegisters);
+        }
+        this.numRegisters = numRegisters;
+        this.physicalRegs = new int[numRegisters];
         this.varToReg = new HashMap<>();
         this.spillSlots = new HashMap<>();
         this.regToVar = new HashMap<>();
@@ -195,7 +216,7 @@ public class LinearScanAllocator implements org.teachfx.antlr4.ep18r.stackvm.cod
     @Override
     public void reset() {
         // 重置所有寄存器为空闲
-        for (int i = 0; i < NUM_REGISTERS; i++) {
+        for (int i = 0; i < numRegisters; i++) {
             physicalRegs[i] = 0;
         }
 
@@ -254,7 +275,7 @@ public class LinearScanAllocator implements org.teachfx.antlr4.ep18r.stackvm.cod
     @Override
     public int getAvailableRegisterCount() {
         int count = 0;
-        for (int i = 0; i < NUM_REGISTERS; i++) {
+        for (int i = 0; i < numRegisters; i++) {
             if (!isReserved(i) && physicalRegs[i] == 0) {
                 count++;
             }
@@ -288,9 +309,15 @@ public class LinearScanAllocator implements org.teachfx.antlr4.ep18r.stackvm.cod
                     return reg;
                 }
             }
+            // 最后使用宽编码的额外寄存器（R16及以上）
+            for (int reg = NUM_REGISTERS; reg < numRegisters; reg++) {
+                if (physicalRegs[reg] == 0) {
+                    return reg;
+                }
+            }
         } else {
-            // 简单线性扫描，从R1到R15（跳过保留寄存器）
-            for (int reg = 1; reg < NUM_REGISTERS; reg++) {
+            // 简单线性扫描，从R1到最后一个寄存器（跳过保留寄存器）
+            for (int reg = 1; reg < numRegisters; reg++) {
                 if (!isReserved(reg) && physicalRegs[reg] == 0) {
                     return reg;
                 }
@@ -326,7 +353,7 @@ public class LinearScanAllocator implements org.teachfx.antlr4.ep18r.stackvm.cod
      * @throws IllegalArgumentException 如果寄存器无效或已被占用
      */
     public void forceAllocate(String varName, int regNum) {
-        if (regNum < 0 || regNum >= NUM_REGISTERS) {
+        if (regNum < 0 || regNum >= numRegisters) {
             throw new IllegalArgumentException("Invalid register number: " + regNum);
         }
         if (isReserved(regNum)) {
@@ -391,6 +418,9 @@ public class LinearScanAllocator implements org.teachfx.antlr4.ep18r.stackvm.cod
      * @return true如果是调用者保存寄存器
      */
     public boolean isCallerSaved(int regNum) {
+        if (regNum >= NUM_REGISTERS && regNum < numRegisters) {
+            return true;
+        }
         for (int reg : CALLER_SAVED_REGS) {
             if (regNum == reg) {
                 return true;
@@ -474,7 +504,7 @@ public class LinearScanAllocator implements org.teachfx.antlr4.ep18r.stackvm.cod
         }
 
         sb.append("Register Status:\n");
-        for (int i = 0; i < NUM_REGISTERS; i++) {
+        for (int i = 0; i < numRegisters; i++) {
             String status = isReserved(i) ? "RESERVED" :
                            physicalRegs[i] == 0 ? "FREE" : "USED";
             String var = physicalRegs[i] != 0 ? regToVar.get(i) : "";
@@ -0,0 +1,71 @@
+package org.teachfx.antlr4.ep21.pass.codegen;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.teachfx.antlr4.ep18.stackvm.BytecodeDefinition;
+import org.teachfx.antlr4.ep18.stackvm.ByteCodeAssembler;
+import org.teachfx.antlr4.ep18r.stackvm.RegisterByteCodeAssembler;
+import org.teachfx.antlr4.ep18r.stackvm.instructions.model.RegisterBytecodeDefinition;
+
+/**
+ * 目标文件输出
+ * 用目标虚拟机的汇编器汇编生成的汇编文本，并打包为二进制目标文件，
+ * 虚拟机加载目标文件时无需再解析汇编文本。
+ */
+public final class ObjectFileWriter {
+
+    private ObjectFileWriter() {
+    }
+
+    /**
+     * 汇编并序列化为目标文件
+     *
+     * @param assembly 代码生成器输出的汇编文本
+     * @param targetType 目标虚拟机
+     * @return 目标文件内容
+     * @throws IllegalArgumentException 汇编文本存在语法错误或未解析的引用
+     */
+    public static byte[] assemble(String assembly, VMTargetType targetType) {
+        if (targetType == null) {
+            throw new IllegalArgumentException("VM target type cannot be null");
+        }
+        return switch (targetType) {
+            case STACK_VM -> assembleStack(assembly);
+            case REGISTER_VM -> assembleRegister(assembly);
+        };
+    }
+
+    /**
+     * 获取目标虚拟机的目标文件扩展名
+     */
+    public static String extension(VMTargetType targetType) {
+        return targetType == VMTargetType.STACK_VM
+            ? org.teachfx.antlr4.ep18.stackvm.ObjectFile.EXTENSION
+            : org.teachfx.antlr4.ep18r.stackvm.ObjectFile.EXTENSION;
+    }
+
+    private static byte[] assembleStack(String assembly) {
+        var lexer = new org.teachfx.antlr4.ep18.parser.VMAssemblerLexer(CharStreams.fromString(assembly));
+        var parser = new org.teachfx.antlr4.ep18.parser.VMAssemblerParser(new CommonTokenStream(lexer));
+        var tree = parser.program();
+        ByteCodeAssembler assembler = new ByteCodeAssembler(BytecodeDefinition.instructions);
+        new ParseTreeWalker().walk(assembler, tree);
+        if (parser.getNumberOfSyntaxErrors() > 0 || assembler.hasErrors()) {
+            throw new IllegalArgumentException("Failed to assemble EP18 code");
+        }
+        return assembler.toObjectFile().toByteArray();
+    }
+
+    private static byte[] assembleRegister(String assembly) {
+        var lexer = new org.teachfx.antlr4.ep18r.parser.VMAssemblerLexer(CharStreams.fromString(assembly));
+        var parser = new org.teachfx.antlr4.ep18r.parser.VMAssemblerParser(new CommonTokenStream(lexer));
+        var tree = parser.program();
+        RegisterByteCodeAssembler assembler = new RegisterByteCodeAssembler(RegisterBytecodeDefinition.instructions);
+        new ParseTreeWalker().walk(assembler, tree);
+        if (parser.getNumberOfSyntaxErrors() > 0 || assembler.hasErrors()) {
+            throw new IllegalArgumentException("Failed to assemble EP18R code");
+        }
+        return assembler.toObjectFile().toByteArray();
+    }
+}
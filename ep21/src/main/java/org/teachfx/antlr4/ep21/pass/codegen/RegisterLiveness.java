@@ -0,0 +1,281 @@
+package org.teachfx.antlr4.ep21.pass.codegen;
+
+import org.teachfx.antlr4.ep18r.stackvm.InstructionEncoding;
+import org.teachfx.antlr4.ep18r.stackvm.StackOffsets;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Backward register liveness over one function of EP18R assembly text.
+ * <p>
+ * Shared by the assembly-level passes ({@link CallSaveMasks}, {@link BranchFusion}).
+ * Register sets are 64-bit masks (bit i = register ri), wide enough for the
+ * r0-r63 file of the wide encoding. A function is the range of lines between two
+ * {@code .def} directives.
+ * </p>
+ * <p>
+ * 分析是保守的：调用视为读取被调用函数 {@code .def} 声明的参数寄存器（未知函数为a0-a5）并定义a0；
+ * ret读取a0；halt、无法识别的指令以及跳出本函数的跳转视为读取所有寄存器。
+ * </p>
+ */
+final class RegisterLiveness {
+
+    static final long ALL_REGISTERS = -1L;
+    static final long RETURN_VALUE = 1L << 2;
+    /** a0-a5 (r2-r7): argument registers read by a call. */
+    static final long ARGUMENTS = 0xFCL;
+
+    /** Instructions whose first operand is the destination register. */
+    private static final Set<String> DEFINES_FIRST = Set.of(
+            "add", "sub", "mul", "div", "slt", "sle", "sgt", "sge", "seq", "sne", "neg", "not",
+            "and", "or", "xor", "fadd", "fsub", "fmul", "fdiv", "flt", "feq", "itof",
+            "li", "lc", "lf", "ls", "lw", "lw_g", "lw_f", "mov", "addi");
+
+    /** Instructions that only read their register operands. */
+    private static final Set<String> USES_ONLY = Set.of(
+            "sw", "sw_g", "sw_f", "print", "jt", "jf", "beq", "bne", "blt", "bge");
+
+    /** Conditional jumps and the operand index of their target label. */
+    private static final Map<String, Integer> CONDITIONAL_TARGET = Map.of(
+            "jt", 1, "jf", 1, "beq", 2, "bne", 2, "blt", 2, "bge", 2);
+
+    private static final Pattern DEF = Pattern.compile("^\\s*\\.def\\s+(\\w+)\\s*:.*\\bargs\\s*=\\s*(\\d+)");
+
+    private static final Map<String, Integer> REGISTER_NAMES = new HashMap<>();
+
+    static {
+        for (int reg = 0; reg < InstructionEncoding.WIDE.getRegisterCount(); reg++) {
+            REGISTER_NAMES.put("r" + reg, reg);
+        }
+        for (int reg = 0; reg < InstructionEncoding.NARROW.getRegisterCount(); reg++) {
+            REGISTER_NAMES.put(StackOffsets.getAbiName(reg), reg);
+        }
+    }
+
+    private final List<Insn> insns;
+    private final int[][] successors;
+    private final long[] liveIn;
+
+    private RegisterLiveness(List<Insn> insns, int[][] successors, long[] liveIn) {
+        this.insns = insns;
+        this.successors = successors;
+        this.liveIn = liveIn;
+    }
+
+    /**
+     * Collects the declared argument count of every {@code .def} in the text.
+     */
+    static Map<String, Integer> argCounts(List<String> lines) {
+        Map<String, Integer> argCounts = new HashMap<>();
+        for (String line : lines) {
+            Matcher def = DEF.matcher(line);
+            if (def.find()) {
+                argCounts.put(def.group(1), Integer.parseInt(def.group(2)));
+            }
+        }
+        return argCounts;
+    }
+
+    /**
+     * Splits the text into function ranges {@code [from, to)} at each {@code .def}.
+     */
+    static List<int[]> functions(List<String> lines) {
+        List<int[]> ranges = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= lines.size(); i++) {
+            if (i == lines.size() || lines.get(i).trim().startsWith(".def")) {
+                ranges.add(new int[] {start, i});
+                start = i;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Analyzes one function.
+     *
+     * @return the liveness result, or {@code null} when the range holds no instruction
+     */
+    static RegisterLiveness analyze(List<String> lines, int from, int to, Map<String, Integer> argCounts) {
+        List<Insn> insns = new ArrayList<>();
+        Map<String, Integer> labels = new HashMap<>();
+        boolean labelled = false;
+        for (int i = from; i < to; i++) {
+            String text = stripComment(lines.get(i)).trim();
+            if (text.isEmpty() || text.startsWith(".")) {
+                continue;
+            }
+            if (text.endsWith(":") && !text.contains(" ")) {
+                labels.put(text.substring(0, text.length() - 1), insns.size());
+                labelled = true;
+                continue;
+            }
+            insns.add(new Insn(i, text, labelled, argCounts));
+            labelled = false;
+        }
+        if (insns.isEmpty()) {
+            return null;
+        }
+
+        int n = insns.size();
+        int[][] successors = new int[n][];
+        for (int k = 0; k < n; k++) {
+            successors[k] = insns.get(k).successors(k, n, labels);
+        }
+
+        long[] liveIn = new long[n];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int k = n - 1; k >= 0; k--) {
+                Insn insn = insns.get(k);
+                long out = liveOut(insn, successors[k], liveIn);
+                long in = (out & ~insn.defs) | insn.uses;
+                if (in != liveIn[k]) {
+                    liveIn[k] = in;
+                    changed = true;
+                }
+            }
+        }
+        return new RegisterLiveness(insns, successors, liveIn);
+    }
+
+    int size() {
+        return insns.size();
+    }
+
+    Insn insn(int k) {
+        return insns.get(k);
+    }
+
+    /**
+     * Registers live after instruction {@code k}.
+     */
+    long liveOut(int k) {
+        return liveOut(insns.get(k), successors[k], liveIn);
+    }
+
+    private static long liveOut(Insn insn, int[] successors, long[] liveIn) {
+        long out = insn.exitUses;
+        for (int s : successors) {
+            out |= liveIn[s];
+        }
+        return out;
+    }
+
+    static String stripComment(String line) {
+        int cut = line.length();
+        int hash = line.indexOf('#');
+        int semi = line.indexOf(';');
+        if (hash >= 0) {
+            cut = Math.min(cut, hash);
+        }
+        if (semi >= 0) {
+            cut = Math.min(cut, semi);
+        }
+        return line.substring(0, cut);
+    }
+
+    /**
+     * Register number of an operand ({@code r5}, {@code a0}, ...), or {@code null}.
+     */
+    static Integer register(String token) {
+        return REGISTER_NAMES.get(token);
+    }
+
+    /**
+     * One parsed instruction with its register def/use sets (bit i = register ri).
+     */
+    static final class Insn {
+        final int line;
+        final String mnemonic;
+        final String[] operands;
+        /** Whether a label sits directly before this instruction (it may be a jump target). */
+        final boolean labelled;
+        long defs;
+        long uses;
+        /** Registers read when control leaves the function here (ret/halt). */
+        long exitUses;
+
+        Insn(int line, String text, boolean labelled, Map<String, Integer> argCounts) {
+            this.line = line;
+            this.labelled = labelled;
+            int space = text.indexOf(' ');
+            this.mnemonic = space < 0 ? text : text.substring(0, space);
+            this.operands = space < 0 ? new String[0] : text.substring(space + 1).trim().split("\\s*,\\s*");
+            classify(argCounts);
+        }
+
+        private void classify(Map<String, Integer> argCounts) {
+            switch (mnemonic) {
+                case "call":
+                    Integer nargs = operands.length == 1 ? argCounts.get(operands[0]) : null;
+                    uses = nargs == null ? ARGUMENTS : ARGUMENTS & ((1L << (2 + Math.min(nargs, 6))) - 1);
+                    defs = RETURN_VALUE;
+                    return;
+                case "ret":
+                    exitUses = RETURN_VALUE;
+                    return;
+                case "halt":
+                    exitUses = ALL_REGISTERS;
+                    return;
+                case "j":
+                    return;
+                default:
+                    break;
+            }
+            boolean definesFirst = DEFINES_FIRST.contains(mnemonic);
+            if (!definesFirst && !USES_ONLY.contains(mnemonic)) {
+                uses = ALL_REGISTERS;
+                return;
+            }
+            for (int i = 0; i < operands.length; i++) {
+                Integer reg = register(operands[i]);
+                if (reg == null) {
+                    continue;
+                }
+                if (definesFirst && i == 0) {
+                    defs |= 1L << reg;
+                } else {
+                    uses |= 1L << reg;
+                }
+            }
+            // r0恒为0，写入无效
+            defs &= ~1L;
+        }
+
+        int[] successors(int index, int count, Map<String, Integer> labels) {
+            boolean fallsThrough = index + 1 < count;
+            Integer conditionalTarget = CONDITIONAL_TARGET.get(mnemonic);
+            if (conditionalTarget != null) {
+                return target(labels, operands.length > conditionalTarget ? operands[conditionalTarget] : null,
+                        fallsThrough ? index + 1 : null, count);
+            }
+            switch (mnemonic) {
+                case "ret":
+                case "halt":
+                    return new int[0];
+                case "j":
+                    return target(labels, operands.length > 0 ? operands[0] : null, null, count);
+                default:
+                    return fallsThrough ? new int[] {index + 1} : new int[0];
+            }
+        }
+
+        private int[] target(Map<String, Integer> labels, String label, Integer next, int count) {
+            Integer dest = label != null ? labels.get(label) : null;
+            if (dest == null || dest >= count) {
+                // 未知跳转目标（如跳出本函数）：保守地视为所有寄存器活跃
+                exitUses = ALL_REGISTERS;
+                return next != null ? new int[] {next} : new int[0];
+            }
+            return next != null ? new int[] {dest, next} : new int[] {dest};
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.teachfx.antlr4.ep21.pass.codegen;
 
+import org.teachfx.antlr4.ep18r.stackvm.InstructionEncoding;
+import org.teachfx.antlr4.ep18r.stackvm.RegisterByteCodeAssembler;
 import org.teachfx.antlr4.ep21.ir.IRNode;
 import org.teachfx.antlr4.ep21.ir.IRVisitor;
 import org.teachfx.antlr4.ep21.ir.Prog;
@@ -49,6 +51,11 @@ import java.util.HashMap;
  *   <li>r15: 链接寄存器 (lr)</li>
  * </ul>
  * </p>
+ * <p>
+ * 配置项 {@code "encoding" = "wide"} 选择宽指令编码：输出以 {@code encoding wide} 开头，
+ * 表达式临时值轮转使用r16-r63，addi可携带32位立即数。临时值不跨越调用存活，
+ * 因此CALL不保存r16-r63也不影响正确性。
+ * </p>
  */
 public class RegisterVMGenerator implements ICodeGenerator {
 
@@ -57,10 +64,19 @@ public class RegisterVMGenerator implements ICodeGenerator {
      */
     public static final String TARGET_VM = "EP18R";
 
+    /**
+     * Configuration key selecting the instruction encoding ({@code "narrow"} or {@code "wide"}).
+     */
+    public static final String ENCODING_OPTION = "encoding";
+
+    /** First register of the wide-encoding temporary pool. */
+    private static final int WIDE_TEMP_BASE = InstructionEncoding.NARROW.getRegisterCount();
+
     private final RegisterEmitter emitter;
     private final RegisterOperatorEmitter operatorEmitter;
     private final IRegisterAllocator registerAllocator;
     private String lastAssemblyOutput = "";
+    private InstructionEncoding encoding = InstructionEncoding.NARROW;
 
     /**
      * Creates a new RegisterVMGenerator with default emitters and a simple round-robin allocator.
@@ -95,7 +111,7 @@ public class RegisterVMGenerator implements ICodeGenerator {
             int instructionCount = generateInstructions(instructions, errors);
 
             long generationTime = System.currentTimeMillis() - startTime;
-            String output = emitter.flush();
+            String output = finish(emitter.flush());
 
             return errors.isEmpty()
                     ? CodeGenerationResult.success(output, TARGET_VM, instructionCount, generationTime)
@@ -116,7 +132,7 @@ public class RegisterVMGenerator implements ICodeGenerator {
         try {
             int instructionCount = generateInstructions(instructions, errors);
             long generationTime = System.currentTimeMillis() - startTime;
-            String output = emitter.flush();
+            String output = finish(emitter.flush());
 
             return errors.isEmpty()
                     ? CodeGenerationResult.success(output, TARGET_VM, instructionCount, generationTime)
@@ -135,7 +151,30 @@ public class RegisterVMGenerator implements ICodeGenerator {
 
     @Override
     public void configure(Map<String, Object> config) {
-        // Configuration support for future enhancements
+        Object value = config.get(ENCODING_OPTION);
+        if (value instanceof InstructionEncoding selected) {
+            encoding = selected;
+        } else if (value != null) {
+            encoding = InstructionEncoding.fromName(value.toString());
+        }
+    }
+
+    /**
+     * Returns the instruction encoding the generated assembly targets.
+     */
+    public InstructionEncoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Runs the assembly-level passes and prepends the encoding directive for wide output.
+     */
+    private String finish(String assembly) {
+        String output = CallSaveMasks.apply(BranchFusion.apply(assembly, encoding));
+        if (!encoding.isWide()) {
+            return output;
+        }
+        return RegisterByteCodeAssembler.ENCODING_DIRECTIVE + " " + encoding.getName() + "\n" + output;
     }
 
     @Override
@@ -170,7 +209,7 @@ public class RegisterVMGenerator implements ICodeGenerator {
             }
 
             // Default code generation path for this function
-            RegisterGeneratorVisitor visitor = new RegisterGeneratorVisitor(emitter, operatorEmitter, registerAllocator, errors);
+            RegisterGeneratorVisitor visitor = new RegisterGeneratorVisitor(emitter, operatorEmitter, registerAllocator, errors, encoding);
 
             for (IRNode node : functionInstructions) {
                 if (node instanceof Stmt stmt) {
@@ -254,17 +293,23 @@ public class RegisterVMGenerator implements ICodeGenerator {
         private final IRegisterAllocator registerAllocator;
         private final List<String> errors;
         private int instructionCount = 0;
+        private final boolean wide;
         private int tempReg = 5;  // Start from t0 (r5)
 
         public RegisterGeneratorVisitor(
                 RegisterEmitter emitter,
                 RegisterOperatorEmitter operatorEmitter,
                 IRegisterAllocator registerAllocator,
-                List<String> errors) {
+                List<String> errors,
+                InstructionEncoding encoding) {
             this.emitter = emitter;
             this.operatorEmitter = operatorEmitter;
             this.registerAllocator = registerAllocator;
             this.errors = errors;
+            this.wide = encoding.isWide();
+            if (wide) {
+                tempReg = WIDE_TEMP_BASE;
+            }
         }
 
         public int getInstructionCount() {
@@ -304,6 +349,11 @@ public class RegisterVMGenerator implements ICodeGenerator {
                     throw new IllegalStateException("No registers available for temporary allocation");
                 }
                 return reg;
+            } else if (wide) {
+                // 宽编码：在r16-r63中轮转，不占用ABI寄存器
+                int reg = tempReg;
+                tempReg = tempReg + 1 < InstructionEncoding.WIDE.getRegisterCount() ? tempReg + 1 : WIDE_TEMP_BASE;
+                return reg;
             } else {
                 int reg = tempReg;
                 tempReg = (tempReg + 1) % 10;
@@ -0,0 +1,128 @@
+package org.teachfx.antlr4.ep21.pass.codegen;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.teachfx.antlr4.ep18r.stackvm.InstructionEncoding;
+import org.teachfx.antlr4.ep18r.stackvm.config.VMConfig;
+import org.teachfx.antlr4.ep18r.stackvm.interpreter.RegisterVMInterpreter;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BranchFusion.
+ */
+@DisplayName("BranchFusion Tests")
+public class BranchFusionTest {
+
+    /** Same shape as the TRO iterative Fibonacci loop. */
+    private static final String LOOP = """
+            .def main: args=0, locals=0
+                call fib
+                halt
+            .def fib: args=0, locals=0
+                li r5, 20
+                li r10, 0
+                li r11, 1
+            loop:
+                li r6, 1
+                sgt r7, r5, r6
+                jf r7, end
+                add r12, r10, r11
+                mov r10, r11
+                mov r11, r12
+                li r6, 1
+                sub r5, r5, r6
+                j loop
+            end:
+                mov r2, r11
+                ret
+            """;
+
+    @Test
+    @DisplayName("Should fuse loop header compare/branch and constant decrement")
+    void testFusesLoopHeader() {
+        String output = BranchFusion.apply(LOOP);
+
+        assertTrue(output.contains("    li r6, 1\n    bge r6, r5, end\n"), output);
+        assertTrue(output.contains("    addi r5, r5, -1\n"), output);
+        assertFalse(output.contains("sgt"), output);
+        assertEquals(LOOP.split("\n").length - 2, output.split("\n").length);
+    }
+
+    @Test
+    @DisplayName("Should keep pairs whose temporary is still live or whose branch is a jump target")
+    void testKeepsLiveTemporaries() {
+        String assembly = """
+                .def main: args=0, locals=0
+                    li r5, 3
+                    li r6, 4
+                    slt r7, r5, r6
+                    jt r7, yes
+                    li r8, 2
+                    add r9, r5, r8
+                    print r8
+                    seq r7, r5, r6
+                again:
+                    jf r7, yes
+                    halt
+                yes:
+                    mov r2, r7
+                    halt
+                """;
+
+        String output = BranchFusion.apply(assembly);
+
+        // r7 is read at "yes", r8 is printed, and "again" may be reached from elsewhere
+        assertEquals(assembly, output);
+    }
+
+    @Test
+    @DisplayName("Fused assembly should run on the EP18R VM with the same result")
+    void testFusedProgramRuns() throws Exception {
+        assertEquals(run(LOOP), run(BranchFusion.apply(LOOP)));
+        assertEquals(6765, run(BranchFusion.apply(LOOP)));
+    }
+
+    @Test
+    @DisplayName("Wide encoding should fuse 32-bit immediates on registers above r15")
+    void testFusesWideImmediates() throws Exception {
+        String assembly = """
+                encoding wide
+                .def main: args=0, locals=0
+                    call big
+                    halt
+                .def big: args=0, locals=0
+                    li r2, 0
+                    li r20, 5
+                    li r40, 100000
+                    add r20, r20, r40
+                    li r41, 70000
+                    slt r42, r41, r20
+                    jf r42, done
+                    mov r2, r20
+                done:
+                    ret
+                """;
+
+        String narrow = BranchFusion.apply(assembly);
+        assertTrue(narrow.contains("li r40, 100000\n"), narrow);
+
+        String wide = BranchFusion.apply(assembly, InstructionEncoding.WIDE);
+        assertTrue(wide.contains("    addi r20, r20, 100000\n"), wide);
+        assertTrue(wide.contains("    bge r41, r20, done\n"), wide);
+        assertFalse(wide.contains("li r40"), wide);
+        assertEquals(100005, run(wide));
+    }
+
+    private static int run(String assembly) throws Exception {
+        RegisterVMInterpreter vm = new RegisterVMInterpreter(new VMConfig.Builder().build());
+        boolean hasErrors = RegisterVMInterpreter.load(vm,
+                new ByteArrayInputStream(assembly.getBytes(StandardCharsets.UTF_8)));
+        assertFalse(hasErrors);
+        vm.exec();
+        return vm.getRegister(2);
+    }
+}
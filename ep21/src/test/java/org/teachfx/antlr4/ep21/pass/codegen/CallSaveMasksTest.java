@@ -0,0 +1,70 @@
+package org.teachfx.antlr4.ep21.pass.codegen;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CallSaveMasks.
+ */
+@DisplayName("CallSaveMasks Tests")
+public class CallSaveMasksTest {
+
+    @Test
+    @DisplayName("Should save only registers live after the call")
+    void testMaskFromLiveOut() {
+        String assembly = """
+                .def main: args=0, locals=0
+                    li r3, 7
+                    li r5, 1
+                    call f
+                    add r2, r2, r3
+                    ret
+                .def f: args=0, locals=0
+                    li r2, 1
+                    ret
+                """;
+
+        String output = CallSaveMasks.apply(assembly);
+
+        // r3 (a1) is read after the call -> bit 0; r5 is dead
+        assertTrue(output.contains("    callm 1, f\n"), output);
+        assertFalse(output.contains("call f"), output);
+    }
+
+    @Test
+    @DisplayName("Should follow branches and keep plain call when everything may be observed")
+    void testBranchesAndHalt() {
+        String assembly = """
+                .def main: args=0, locals=0
+                    li r4, 2
+                loop:
+                    call f
+                    jf r2, loop
+                    mov r2, r4
+                    ret
+                .def g: args=0, locals=0
+                    call f
+                    halt
+                .def f: args=1, locals=0
+                    ret
+                """;
+
+        String output = CallSaveMasks.apply(assembly);
+
+        // r4 (a2) is live around the loop -> bit 1
+        assertTrue(output.contains("    callm 2, f\n"), output);
+        // halt observes every register, so g keeps a full save
+        assertTrue(output.contains("    call f\n    halt"), output);
+    }
+
+    @Test
+    @DisplayName("Should map live registers to mask bits in StackFrame order")
+    void testMaskBitOrder() {
+        assertEquals(0, CallSaveMasks.maskFor(1 << 2));
+        assertEquals(1 << 5, CallSaveMasks.maskFor(1 << 15));
+        assertEquals(1 << 6, CallSaveMasks.maskFor(1 << 1));
+        assertEquals(CallSaveMasks.ALL_SAVED, CallSaveMasks.maskFor(0xFFFF));
+    }
+}
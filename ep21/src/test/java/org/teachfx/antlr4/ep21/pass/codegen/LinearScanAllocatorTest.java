@@ -531,6 +531,42 @@ class LinearScanAllocatorTest {
         }
     }
 
+    @Nested
+    @DisplayName("Wide Register File Tests")
+    class WideRegisterFileTests {
+
+        @Test
+        @DisplayName("Should use r16-r63 after the ABI registers before spilling")
+        void testAllocatesWideRegistersBeforeSpilling() {
+            LinearScanAllocator alloc = new LinearScanAllocator(true, 64);
+
+            for (int i = 0; i < 13; i++) {
+                assertThat(alloc.allocate("low" + i)).isLessThan(16);
+            }
+            assertThat(alloc.allocate("wide0")).isEqualTo(16);
+
+            for (int i = 1; i < 48; i++) {
+                assertThat(alloc.allocate("wide" + i)).isEqualTo(16 + i);
+            }
+            assertThat(alloc.getSpillSlotCount()).isZero();
+            assertThat(alloc.isCallerSaved(40)).isTrue();
+            assertThat(alloc.isCalleeSaved(40)).isFalse();
+
+            alloc.allocate("overflow");
+            assertThat(alloc.getSpillSlotCount()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("Should reject register counts outside 16-64")
+        void testRejectsInvalidRegisterCount() {
+            assertThatThrownBy(() -> new LinearScanAllocator(true, 8))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> new LinearScanAllocator(true, 65))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThat(new LinearScanAllocator(false, 16).getAvailableRegisterCount()).isEqualTo(13);
+        }
+    }
+
     @Nested
     @DisplayName("Integration Scenario Tests")
     class IntegrationScenarioTests {
@@ -145,10 +145,11 @@ public class RegisterVMGeneratorTROTest {
 
         String output = result.getOutput();
 
-        // Should have base case check (n <= 1)
-        assertTrue(output.contains("sle") || output.contains("sgt"),
+        // Should have base case check (n <= 1), either as sle/sgt + jf or fused into blt/bge
+        assertTrue(output.contains("sle") || output.contains("sgt") || output.contains("blt") || output.contains("bge"),
                    "Should have comparison instruction for base case");
-        assertTrue(output.contains("jf"), "Should have conditional jump");
+        assertTrue(output.contains("jf") || output.contains("blt") || output.contains("bge"),
+                   "Should have conditional jump");
         assertTrue(output.contains("ret"), "Should have return instruction");
     }
 
@@ -218,10 +219,11 @@ public class RegisterVMGeneratorTROTest {
 
         String output = result.getOutput();
 
-        // Should have loop condition check
-        assertTrue(output.contains("sle") || output.contains("slt") || output.contains("sgt"),
+        // Should have loop condition check, either as set + jt/jf or fused into blt/bge
+        assertTrue(output.contains("sle") || output.contains("slt") || output.contains("sgt")
+                   || output.contains("blt") || output.contains("bge"),
                    "Should have comparison instruction for loop condition");
-        assertTrue(output.contains("jt") || output.contains("jf"),
+        assertTrue(output.contains("jt") || output.contains("jf") || output.contains("blt") || output.contains("bge"),
                    "Should have conditional jump for loop control");
     }
 }
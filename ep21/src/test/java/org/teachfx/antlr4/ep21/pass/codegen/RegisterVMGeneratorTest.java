@@ -3,8 +3,11 @@ package org.teachfx.antlr4.ep21.pass.codegen;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import org.teachfx.antlr4.ep18r.stackvm.InstructionEncoding;
 import org.teachfx.antlr4.ep21.ir.Prog;
 
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -57,4 +60,17 @@ public class RegisterVMGeneratorTest {
 
         assertEquals(0, result.getInstructionCount());
     }
+
+    @Test
+    @DisplayName("Should declare the wide encoding when configured")
+    void testWideEncodingOption() {
+        assertEquals(InstructionEncoding.NARROW, generator.getEncoding());
+
+        generator.configure(Map.of(RegisterVMGenerator.ENCODING_OPTION, "wide"));
+        CodeGenerationResult result = generator.generate(new Prog());
+
+        assertEquals(InstructionEncoding.WIDE, generator.getEncoding());
+        assertTrue(result.isSuccess());
+        assertTrue(result.getOutput().startsWith("encoding wide\n"), result.getOutput());
+    }
 }